@@ -2,8 +2,15 @@ package com.onelubo.strongnostr;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.autoconfigure.data.mongo.MongoReactiveDataAutoConfiguration;
+import org.springframework.boot.autoconfigure.data.mongo.MongoReactiveRepositoriesAutoConfiguration;
+import org.springframework.boot.autoconfigure.mongo.MongoReactiveAutoConfiguration;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
-@SpringBootApplication
+// Reactive Mongo is set up by ReactiveMongoConfig, only in the reactive profile
+@SpringBootApplication(exclude = {MongoReactiveAutoConfiguration.class, MongoReactiveDataAutoConfiguration.class,
+                                  MongoReactiveRepositoriesAutoConfiguration.class})
+@EnableScheduling
 public class StrongNostr {
 
 	public static void main(String[] args) {
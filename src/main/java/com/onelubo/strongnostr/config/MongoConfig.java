@@ -25,6 +25,8 @@ import java.util.Optional;
 @EnableMongoAuditing(dateTimeProviderRef = "auditingDateTimeProvider")
 public class MongoConfig extends AbstractMongoClientConfiguration {
 
+    static final String DATABASE_NAME = "strongnostr";
+
     @Value("${spring.data.mongodb.uri:mongodb://localhost:27017}")
     private String mongoUri;
 
@@ -39,7 +41,7 @@ public class MongoConfig extends AbstractMongoClientConfiguration {
 
     @Override
     protected String getDatabaseName() {
-        return "strongnostr";
+        return DATABASE_NAME;
     }
 
     @Override
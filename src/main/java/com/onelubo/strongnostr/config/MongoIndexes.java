@@ -0,0 +1,78 @@
+package com.onelubo.strongnostr.config;
+
+import com.onelubo.strongnostr.model.history.PersonalRecord;
+import com.onelubo.strongnostr.model.history.SetHistoryEntry;
+import com.onelubo.strongnostr.model.history.TrainingRollup;
+import com.onelubo.strongnostr.model.user.User;
+import com.onelubo.strongnostr.model.workout.Exercise;
+import com.onelubo.strongnostr.model.workout.Workout;
+import com.onelubo.strongnostr.model.workout.WorkoutTombstone;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.data.mongodb.core.index.IndexResolver;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Stream;
+
+/**
+ * Creates the indexes declared on the documents before the app serves requests. {@link MongoConfig}
+ * leaves Spring Data's automatic index creation off, and the exercise, user and personal record
+ * upserts rely on unique indexes to settle concurrent inserts.
+ */
+@Component
+public class MongoIndexes {
+
+    private static final Logger logger = LoggerFactory.getLogger(MongoIndexes.class);
+
+    static final List<Class<?>> INDEXED_DOCUMENTS = List.of(Exercise.class, Workout.class, WorkoutTombstone.class,
+                                                            SetHistoryEntry.class, TrainingRollup.class,
+                                                            PersonalRecord.class, User.class);
+
+    private final MongoTemplate mongoTemplate;
+
+    public MongoIndexes(MongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    @PostConstruct
+    public void ensureIndexes() {
+        backfillExerciseIdentityKeys();
+        IndexResolver indexResolver = IndexResolver.create(mongoTemplate.getConverter().getMappingContext());
+        for (Class<?> document : INDEXED_DOCUMENTS) {
+            IndexOperations indexOps = mongoTemplate.indexOps(document);
+            indexResolver.resolveIndexFor(document).forEach(indexOps::ensureIndex);
+        }
+    }
+
+    /**
+     * Key exercises stored before the identity key existed, so the unique index can be built. When
+     * several normalise to the same identity only the first is keyed; the rest keep serving the
+     * workouts that reference them but are no longer matched by name.
+     */
+    private void backfillExerciseIdentityKeys() {
+        Set<String> keyed = new HashSet<>(mongoTemplate.findDistinct(new Query(Criteria.where("identityKey").exists(true)),
+                                                                     "identityKey", Exercise.class, String.class));
+        Query unkeyed = new Query(Criteria.where("identityKey").exists(false));
+        try (Stream<Exercise> exercises = mongoTemplate.stream(unkeyed, Exercise.class)) {
+            exercises.forEach(exercise -> {
+                String identityKey = Exercise.identityKeyOf(exercise.getName(), exercise.getDescription(),
+                                                            exercise.getEquipment());
+                if (keyed.add(identityKey)) {
+                    mongoTemplate.updateFirst(new Query(Criteria.where("_id").is(exercise.getId())),
+                                              new Update().set("identityKey", identityKey), Exercise.class);
+                } else {
+                    logger.warn("Exercise {} duplicates an existing identity, leaving it unkeyed", exercise.getId());
+                }
+            });
+        }
+    }
+}
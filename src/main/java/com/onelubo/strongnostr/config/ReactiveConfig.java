@@ -0,0 +1,50 @@
+package com.onelubo.strongnostr.config;
+
+import com.onelubo.strongnostr.service.ChallengeStore;
+import org.springframework.boot.web.embedded.netty.NettyReactiveWebServerFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.redis.connection.ReactiveRedisConnectionFactory;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.data.redis.serializer.Jackson2JsonRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializationContext;
+import org.springframework.data.redis.serializer.StringRedisSerializer;
+
+/**
+ * The reactive profile serves the auth endpoints on WebFlux: a few Netty event loop threads hold every
+ * connection, Redis and Mongo are awaited without parking a thread, and the CPU-bound checks run on the
+ * bounded signature verification pool. Workout, exercise and live session endpoints stay on the servlet
+ * stack and are not served in this profile.
+ */
+@Configuration
+@Profile("reactive")
+public class ReactiveConfig {
+
+    /**
+     * Tomcat is on the classpath for the servlet stack and would otherwise serve WebFlux as well
+     */
+    @Bean
+    public NettyReactiveWebServerFactory nettyReactiveWebServerFactory() {
+        return new NettyReactiveWebServerFactory();
+    }
+
+    /**
+     * Jedis only blocks, so the reactive templates get a Lettuce connection of their own
+     */
+    @Bean
+    public LettuceConnectionFactory reactiveRedisConnectionFactory() {
+        return new LettuceConnectionFactory();
+    }
+
+    @Bean
+    public ReactiveRedisTemplate<String, ChallengeStore.StoredChallenge> reactiveChallengeRedisTemplate(
+            ReactiveRedisConnectionFactory reactiveRedisConnectionFactory) {
+        RedisSerializationContext<String, ChallengeStore.StoredChallenge> serializationContext =
+                RedisSerializationContext.<String, ChallengeStore.StoredChallenge>newSerializationContext(new StringRedisSerializer())
+                                         .value(new Jackson2JsonRedisSerializer<>(ChallengeStore.StoredChallenge.class))
+                                         .build();
+        return new ReactiveRedisTemplate<>(reactiveRedisConnectionFactory, serializationContext);
+    }
+}
@@ -0,0 +1,50 @@
+package com.onelubo.strongnostr.config;
+
+import com.mongodb.ConnectionString;
+import com.mongodb.MongoClientSettings;
+import com.mongodb.reactivestreams.client.MongoClient;
+import com.mongodb.reactivestreams.client.MongoClients;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.SimpleReactiveMongoDatabaseFactory;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.convert.MongoCustomConversions;
+import org.springframework.data.mongodb.core.convert.NoOpDbRefResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import org.springframework.data.mongodb.repository.config.EnableReactiveMongoRepositories;
+
+/**
+ * Reactive Mongo for the reactive profile, on the database, mapping and conversions of {@link MongoConfig}.
+ * Boot's own reactive Mongo configuration is excluded, so the servlet stack opens no client it never uses.
+ */
+@Configuration
+@Profile("reactive")
+@EnableReactiveMongoRepositories(basePackages = "com.onelubo.strongnostr.repository")
+public class ReactiveMongoConfig {
+
+    @Value("${spring.data.mongodb.uri:mongodb://localhost:27017}")
+    private String mongoUri;
+
+    @Bean
+    public MongoClient reactiveMongoClient() {
+        ConnectionString connectionString = new ConnectionString(mongoUri);
+        MongoClientSettings settings = MongoClientSettings.builder()
+                                                          .applyConnectionString(connectionString)
+                                                          .build();
+
+        return MongoClients.create(settings);
+    }
+
+    @Bean
+    public ReactiveMongoTemplate reactiveMongoTemplate(MongoClient reactiveMongoClient, MongoMappingContext mongoMappingContext,
+                                                       MongoCustomConversions customConversions) {
+        MappingMongoConverter converter = new MappingMongoConverter(NoOpDbRefResolver.INSTANCE, mongoMappingContext);
+        converter.setCustomConversions(customConversions);
+        converter.afterPropertiesSet();
+        return new ReactiveMongoTemplate(new SimpleReactiveMongoDatabaseFactory(reactiveMongoClient, MongoConfig.DATABASE_NAME),
+                                         converter);
+    }
+}
@@ -0,0 +1,37 @@
+package com.onelubo.strongnostr.config;
+
+import com.onelubo.strongnostr.rest.LiveWorkoutWebSocketHandler;
+import com.onelubo.strongnostr.security.JwtHandshakeInterceptor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.web.socket.config.annotation.EnableWebSocket;
+import org.springframework.web.socket.config.annotation.WebSocketConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketHandlerRegistry;
+
+@Configuration
+@Profile("!reactive")
+@EnableWebSocket
+public class WebSocketConfig implements WebSocketConfigurer {
+
+    public static final String LIVE_WORKOUT_PATH = "/api/v1/nostr/live";
+
+    private final LiveWorkoutWebSocketHandler liveWorkoutWebSocketHandler;
+    private final JwtHandshakeInterceptor jwtHandshakeInterceptor;
+    private final String[] allowedOrigins;
+
+    public WebSocketConfig(LiveWorkoutWebSocketHandler liveWorkoutWebSocketHandler,
+                           JwtHandshakeInterceptor jwtHandshakeInterceptor,
+                           @Value("${strongnostr.live-session.allowed-origins:http://localhost:3000,https://127.0.0.1:3000}") String[] allowedOrigins) {
+        this.liveWorkoutWebSocketHandler = liveWorkoutWebSocketHandler;
+        this.jwtHandshakeInterceptor = jwtHandshakeInterceptor;
+        this.allowedOrigins = allowedOrigins;
+    }
+
+    @Override
+    public void registerWebSocketHandlers(WebSocketHandlerRegistry registry) {
+        registry.addHandler(liveWorkoutWebSocketHandler, LIVE_WORKOUT_PATH)
+                .addInterceptors(jwtHandshakeInterceptor)
+                .setAllowedOrigins(allowedOrigins);
+    }
+}
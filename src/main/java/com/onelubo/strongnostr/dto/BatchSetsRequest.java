@@ -0,0 +1,16 @@
+package com.onelubo.strongnostr.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+
+import java.util.List;
+
+@Schema(description = "Sets to append to a workout in a single request, in the order they were performed")
+public record BatchSetsRequest(
+        @Schema(description = "Exercise and set pairs")
+        @NotEmpty(message = "At least one set is required")
+        @Size(max = 500, message = "At most 500 sets can be logged at once")
+        List<@Valid ExerciseSetDto> sets) {
+}
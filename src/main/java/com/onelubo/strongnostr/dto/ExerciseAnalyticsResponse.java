@@ -0,0 +1,27 @@
+package com.onelubo.strongnostr.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import java.time.Instant;
+import java.util.List;
+
+@Schema(description = "Analytics of one exercise over the user's set history")
+public record ExerciseAnalyticsResponse(
+        @Schema(description = "Exercise ID") String exerciseId,
+        @Schema(description = "Exercise name", example = "Bench Press") String exerciseName,
+        @Schema(description = "Working sets analysed", example = "240") int sets,
+        @Schema(description = "Total volume (weight * reps)", example = "96000.0") double totalVolume,
+        @Schema(description = "Best estimated one-rep max (Epley)", example = "120.5") double bestEstimatedOneRepMax,
+        @Schema(description = "Estimated one-rep max over time, slope in kg per day") LinearFit estimatedOneRepMaxTrend,
+        @Schema(description = "RPE as a function of weight, slope in RPE per kg") LinearFit rpeVsLoad,
+        @Schema(description = "Volume of each session, oldest first") List<VolumePoint> volumeLoad) {
+
+    /**
+     * Least-squares line; null in the response when fewer than two distinct x values exist
+     */
+    public record LinearFit(int points, double slope, double intercept, double r2) {
+    }
+
+    public record VolumePoint(Instant performedAt, double volume) {
+    }
+}
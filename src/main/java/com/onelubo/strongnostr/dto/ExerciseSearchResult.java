@@ -0,0 +1,20 @@
+package com.onelubo.strongnostr.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+@Schema(description = "Exercise matching a type-ahead search")
+public record ExerciseSearchResult(
+        @Schema(description = "Exercise Id", example = "exercise12345")
+        String id,
+        @Schema(description = "Name of the exercise", example = "Bench Press")
+        String name,
+        @Schema(description = "Description of the exercise")
+        String description,
+        @Schema(description = "Equipment used for the exercise", example = "Barbell")
+        String equipment,
+        @Schema(description = "Whether this is a user-defined exercise", example = "false")
+        boolean custom,
+        @Schema(description = "Relevance score, higher is better", example = "17.3")
+        double score
+) {
+}
@@ -0,0 +1,18 @@
+package com.onelubo.strongnostr.dto;
+
+import com.onelubo.strongnostr.model.history.SetHistoryEntry;
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import java.time.Instant;
+import java.util.List;
+
+@Schema(description = "Sets of one exercise performed in a single workout")
+public record ExerciseSessionResponse(
+        @Schema(description = "Workout ID", example = "workout12345")
+        String workoutId,
+        @Schema(description = "When the workout was performed", example = "2023-10-01T12:00:00Z")
+        Instant performedAt,
+        @Schema(description = "Sets performed for the exercise, in order")
+        List<SetHistoryEntry> sets
+) {
+}
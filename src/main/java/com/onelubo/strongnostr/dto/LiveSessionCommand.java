@@ -0,0 +1,19 @@
+package com.onelubo.strongnostr.dto;
+
+import com.onelubo.strongnostr.model.workout.Exercise;
+import com.onelubo.strongnostr.model.workout.WorkoutSet;
+
+/**
+ * Client message on the live workout channel
+ *
+ * @param type      {@code start}, {@code set} or {@code end}
+ * @param workoutId workout to resume on {@code start}; a new workout is started when absent
+ * @param exercise  exercise of a {@code set} message
+ * @param set       the performed set of a {@code set} message
+ */
+public record LiveSessionCommand(String type, String workoutId, Exercise exercise, WorkoutSet set) {
+
+    public static final String START = "start";
+    public static final String SET = "set";
+    public static final String END = "end";
+}
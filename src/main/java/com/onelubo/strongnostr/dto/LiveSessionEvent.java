@@ -0,0 +1,19 @@
+package com.onelubo.strongnostr.dto;
+
+/**
+ * Server message on the live workout channel
+ *
+ * @param type    {@code started}, {@code setLogged}, {@code ended} or {@code error}
+ * @param workout current state of the workout, including metrics and records broken by the last set
+ * @param message error description for {@code error} events
+ */
+public record LiveSessionEvent(String type, WorkoutResponse workout, String message) {
+
+    public static LiveSessionEvent of(String type, WorkoutResponse workout) {
+        return new LiveSessionEvent(type, workout, null);
+    }
+
+    public static LiveSessionEvent error(String message) {
+        return new LiveSessionEvent("error", null, message);
+    }
+}
@@ -0,0 +1,12 @@
+package com.onelubo.strongnostr.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+@Schema(description = "Training consistency derived from the user's training calendar")
+public record TrainingCalendarResponse(
+        @Schema(description = "Consecutive trained days up to today (or yesterday)", example = "4") int currentStreak,
+        @Schema(description = "Longest run of consecutive trained days", example = "12") int longestStreak,
+        @Schema(description = "Trained days in the last 7 days", example = "3") int daysLast7,
+        @Schema(description = "Trained days in the last 30 days", example = "13") int daysLast30,
+        @Schema(description = "Average trained days per week over the last 12 weeks", example = "3.25") double averageDaysPerWeek) {
+}
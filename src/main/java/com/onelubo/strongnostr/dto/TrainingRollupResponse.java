@@ -0,0 +1,13 @@
+package com.onelubo.strongnostr.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+@Schema(description = "Training totals of one week or month")
+public record TrainingRollupResponse(
+        @Schema(description = "First day of the bucket", example = "2024-01-01") String bucketStart,
+        @Schema(description = "Workouts (or exercise sessions) in the bucket", example = "4") long workouts,
+        @Schema(description = "Total volume (weight * reps)", example = "12500.0") double volume,
+        @Schema(description = "Total sets", example = "60") long sets,
+        @Schema(description = "Total reps", example = "420") long reps,
+        @Schema(description = "Average RPE of the sets that recorded one", example = "7.5") Double averageRpe) {
+}
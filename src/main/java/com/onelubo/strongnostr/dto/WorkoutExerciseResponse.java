@@ -46,4 +46,40 @@ public class WorkoutExerciseResponse {
         this.totalRestTimeSeconds = totalRestTimeSeconds;
         this.notes = notes;
     }
+
+    public String getExerciseId() {
+        return exerciseId;
+    }
+
+    public String getExerciseName() {
+        return exerciseName;
+    }
+
+    public String getEquipment() {
+        return equipment;
+    }
+
+    public List<WorkoutSet> getSets() {
+        return sets;
+    }
+
+    public Double getTotalVolume() {
+        return totalVolume;
+    }
+
+    public Double getAverageRpe() {
+        return averageRpe;
+    }
+
+    public Integer getTotalReps() {
+        return totalReps;
+    }
+
+    public Integer getTotalRestTimeSeconds() {
+        return totalRestTimeSeconds;
+    }
+
+    public String getNotes() {
+        return notes;
+    }
 }
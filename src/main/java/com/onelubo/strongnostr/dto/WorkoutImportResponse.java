@@ -0,0 +1,18 @@
+package com.onelubo.strongnostr.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+@Schema(description = "Summary of a Strong CSV import")
+public record WorkoutImportResponse(
+        @Schema(description = "Number of CSV rows read (excluding header)", example = "12500")
+        long rowsRead,
+        @Schema(description = "Number of rows skipped because they could not be parsed", example = "3")
+        long rowsSkipped,
+        @Schema(description = "Number of workouts written", example = "420")
+        long workoutsImported,
+        @Schema(description = "Number of sets written", example = "12497")
+        long setsImported,
+        @Schema(description = "Number of distinct exercises resolved", example = "57")
+        int exercisesResolved
+) {
+}
@@ -1,6 +1,6 @@
 package com.onelubo.strongnostr.dto;
 
-import com.onelubo.strongnostr.model.workout.WorkoutExercise;
+import com.onelubo.strongnostr.model.history.PersonalRecordType;
 import io.swagger.v3.oas.annotations.media.Schema;
 
 import java.util.List;
@@ -41,7 +41,10 @@ public class WorkoutResponse {
     @Schema(description = "Indicates if the workout is public or private", example = "true")
     private Boolean isPublic;
 
-    public WorkoutResponse(String id, String userNPub, String workoutDate, List<WorkoutExerciseResponse> exercises, Double totalVolume, Integer totalSets, Integer totalReps, Double averageRpe, Integer durationSeconds, String notes, Boolean isPublic) {
+    @Schema(description = "Personal records broken by this request, empty when none", example = "[\"HEAVIEST_WEIGHT\"]")
+    private List<PersonalRecordType> newPersonalRecords;
+
+    public WorkoutResponse(String id, String userNPub, String workoutDate, List<WorkoutExerciseResponse> exercises, Double totalVolume, Integer totalSets, Integer totalReps, Double averageRpe, Integer durationSeconds, String notes, Boolean isPublic, List<PersonalRecordType> newPersonalRecords) {
         this.id = id;
         this.userNPub = userNPub;
         this.workoutDate = workoutDate;
@@ -53,5 +56,58 @@ public class WorkoutResponse {
         this.durationSeconds = durationSeconds;
         this.notes = notes;
         this.isPublic = isPublic;
+        this.newPersonalRecords = newPersonalRecords;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getUserNPub() {
+        return userNPub;
+    }
+
+    public String getWorkoutDate() {
+        return workoutDate;
+    }
+
+    public List<WorkoutExerciseResponse> getExercises() {
+        return exercises;
+    }
+
+    public Double getTotalVolume() {
+        return totalVolume;
+    }
+
+    public Integer getTotalSets() {
+        return totalSets;
+    }
+
+    public Integer getTotalReps() {
+        return totalReps;
+    }
+
+    public Double getAverageRpe() {
+        return averageRpe;
+    }
+
+    public Integer getDurationSeconds() {
+        return durationSeconds;
+    }
+
+    public String getNotes() {
+        return notes;
+    }
+
+    public Boolean getIsPublic() {
+        return isPublic;
+    }
+
+    public List<PersonalRecordType> getNewPersonalRecords() {
+        return newPersonalRecords;
+    }
+
+    public boolean isNewPersonalRecord() {
+        return newPersonalRecords != null && !newPersonalRecords.isEmpty();
     }
 }
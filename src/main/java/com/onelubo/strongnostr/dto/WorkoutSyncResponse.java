@@ -0,0 +1,23 @@
+package com.onelubo.strongnostr.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import java.util.List;
+
+@Schema(description = "Workout changes since a sync token")
+public record WorkoutSyncResponse(
+        @Schema(description = "Workouts created or modified since the token, oldest change first")
+        List<WorkoutResponse> changed,
+        @Schema(description = "Ids of workouts deleted since the token")
+        List<String> deleted,
+        @Schema(description = "Token to pass on the next sync")
+        String nextToken,
+        @Schema(description = "Whether more changes are waiting; sync again with nextToken right away")
+        boolean hasMore,
+        @Schema(description = "The token is too old to sync from; discard local workouts and sync without a token")
+        boolean resetRequired) {
+
+    public static WorkoutSyncResponse reset() {
+        return new WorkoutSyncResponse(List.of(), List.of(), null, false, true);
+    }
+}
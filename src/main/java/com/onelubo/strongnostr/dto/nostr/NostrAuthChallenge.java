@@ -7,11 +7,17 @@ public class NostrAuthChallenge {
     private final String challenge;
     private final long timestamp;
     private final String message;
+    private final int powDifficulty;
 
     public NostrAuthChallenge(String id, String challenge, long timestamp) {
+        this(id, challenge, timestamp, 0);
+    }
+
+    public NostrAuthChallenge(String id, String challenge, long timestamp, int powDifficulty) {
         this.id = id;
         this.challenge = challenge;
         this.timestamp = timestamp;
+        this.powDifficulty = powDifficulty;
         this.message = String.format("%s at %s", challenge, Instant.ofEpochMilli(timestamp).toString());
     }
 
@@ -28,4 +34,11 @@ public class NostrAuthChallenge {
     public String getMessage() {
         return message;
     }
+
+    /**
+     * NIP-13 leading zero bits the login event id needed when the challenge was issued; 0 means none
+     */
+    public int getPowDifficulty() {
+        return powDifficulty;
+    }
 }
@@ -0,0 +1,7 @@
+package com.onelubo.strongnostr.exception;
+
+public class ConcurrencyLimitExceededException extends RuntimeException {
+    public ConcurrencyLimitExceededException(String limiterName) {
+        super("Concurrency limit reached for " + limiterName + ", retry shortly");
+    }
+}
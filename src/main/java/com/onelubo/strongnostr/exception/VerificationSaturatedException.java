@@ -0,0 +1,9 @@
+package com.onelubo.strongnostr.exception;
+
+public class VerificationSaturatedException extends RuntimeException {
+    public static final String MESSAGE = "Too many logins in progress, retry shortly";
+
+    public VerificationSaturatedException() {
+        super(MESSAGE);
+    }
+}
@@ -0,0 +1,35 @@
+package com.onelubo.strongnostr.model.history;
+
+/**
+ * Estimated one-rep max formulas
+ */
+public final class OneRepMax {
+
+    private OneRepMax() {}
+
+    /**
+     * Epley: w * (1 + r / 30)
+     */
+    public static double epley(double weight, int reps) {
+        if (reps <= 0) {
+            return 0.0;
+        }
+        if (reps == 1) {
+            return weight;
+        }
+        return weight * (1.0 + reps / 30.0);
+    }
+
+    /**
+     * Brzycki: w * 36 / (37 - r), only meaningful below 37 reps
+     */
+    public static double brzycki(double weight, int reps) {
+        if (reps <= 0 || reps >= 37) {
+            return 0.0;
+        }
+        if (reps == 1) {
+            return weight;
+        }
+        return weight * 36.0 / (37.0 - reps);
+    }
+}
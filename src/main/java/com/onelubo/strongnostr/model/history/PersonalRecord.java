@@ -0,0 +1,97 @@
+package com.onelubo.strongnostr.model.history;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+import java.util.Map;
+
+/**
+ * Personal records of one user for one exercise.
+ * Each record is an embedded document whose first field is the value being maximised, so the
+ * whole document can be advanced atomically with {@code $max} (BSON compares embedded
+ * documents field by field, later fields act as tie-breakers).
+ */
+@Document(collection = "personal_records")
+@CompoundIndex(name = "user_exercise", def = "{'userNPub': 1, 'exerciseId': 1}", unique = true)
+public class PersonalRecord {
+
+    @Id
+    private String id;
+
+    private String userNPub;
+    private String exerciseId;
+    private String exerciseName;
+
+    private RecordSet heaviestSet;
+    private RecordSet highestRepSet;
+    private RecordSet bestEpley;
+    private RecordSet bestBrzycki;
+    private RecordSet bestSessionVolume;
+
+    /**
+     * Most reps performed at each weight, keyed by {@link #weightKey(double)}
+     */
+    private Map<String, Integer> repsAtWeight;
+
+    public PersonalRecord() {}
+
+    public String getId() {
+        return id;
+    }
+
+    public String getUserNPub() {
+        return userNPub;
+    }
+
+    public String getExerciseId() {
+        return exerciseId;
+    }
+
+    public String getExerciseName() {
+        return exerciseName;
+    }
+
+    public RecordSet getHeaviestSet() {
+        return heaviestSet;
+    }
+
+    public RecordSet getHighestRepSet() {
+        return highestRepSet;
+    }
+
+    public RecordSet getBestEpley() {
+        return bestEpley;
+    }
+
+    public RecordSet getBestBrzycki() {
+        return bestBrzycki;
+    }
+
+    public RecordSet getBestSessionVolume() {
+        return bestSessionVolume;
+    }
+
+    public Map<String, Integer> getRepsAtWeight() {
+        return repsAtWeight;
+    }
+
+    /**
+     * Map keys may not contain '.', so 102.5 kg is stored as "102_5"
+     */
+    public static String weightKey(double weight) {
+        String formatted = weight == Math.rint(weight) ? Long.toString((long) weight) : Double.toString(weight);
+        return formatted.replace('.', '_');
+    }
+
+    /**
+     * @param value       the maximised quantity (weight, reps, e1RM or volume)
+     * @param weight      weight of the set (heaviest set of the session for volume records)
+     * @param reps        reps of the set (total reps of the session for volume records)
+     * @param achievedAt  when the record was set
+     * @param workoutId   workout in which the record was set
+     */
+    public record RecordSet(double value, double weight, int reps, Instant achievedAt, String workoutId) {
+    }
+}
@@ -0,0 +1,9 @@
+package com.onelubo.strongnostr.model.history;
+
+public enum PersonalRecordType {
+    HEAVIEST_WEIGHT,
+    MOST_REPS,
+    MOST_REPS_AT_WEIGHT,
+    BEST_ESTIMATED_1RM,
+    BEST_SESSION_VOLUME
+}
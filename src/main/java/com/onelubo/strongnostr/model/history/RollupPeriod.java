@@ -0,0 +1,40 @@
+package com.onelubo.strongnostr.model.history;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.temporal.TemporalAdjusters;
+
+/**
+ * Bucket sizes of the training rollups. Buckets are calendar weeks (starting Monday) and months
+ * in the workout's own offset, identified by the ISO date of their first day.
+ */
+public enum RollupPeriod {
+    WEEK("week"),
+    MONTH("month");
+
+    private final String mongoUnit;
+
+    RollupPeriod(String mongoUnit) {
+        this.mongoUnit = mongoUnit;
+    }
+
+    /**
+     * Unit name understood by {@code $dateTrunc}
+     */
+    public String getMongoUnit() {
+        return mongoUnit;
+    }
+
+    public String bucketStart(OffsetDateTime dateTime) {
+        return bucketStart(dateTime.toLocalDate());
+    }
+
+    public String bucketStart(LocalDate date) {
+        LocalDate start = switch (this) {
+            case WEEK -> date.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+            case MONTH -> date.withDayOfMonth(1);
+        };
+        return start.toString();
+    }
+}
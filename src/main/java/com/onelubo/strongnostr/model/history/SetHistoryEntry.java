@@ -0,0 +1,118 @@
+package com.onelubo.strongnostr.model.history;
+
+import com.onelubo.strongnostr.model.workout.Workout;
+import com.onelubo.strongnostr.model.workout.WorkoutExercise;
+import com.onelubo.strongnostr.model.workout.WorkoutSet;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+
+/**
+ * One performed set, flattened out of its {@link Workout} so per-exercise history
+ * can be answered from an index instead of loading and scanning whole workouts.
+ */
+@Document(collection = "set_history")
+@CompoundIndexes({
+        @CompoundIndex(name = "user_exercise_performed", def = "{'userNPub': 1, 'exerciseId': 1, 'performedAt': -1, 'setNumber': -1}"),
+        @CompoundIndex(name = "workout_exercise", def = "{'workoutId': 1, 'exerciseId': 1}")
+})
+public class SetHistoryEntry {
+
+    @Id
+    private String id;
+
+    private String userNPub;
+    private String exerciseId;
+    private String exerciseName;
+    private String workoutId;
+    private Instant performedAt;
+
+    /**
+     * 1-based position of the set within the exercise in its workout
+     */
+    private int setNumber;
+
+    private Double weight;
+    private Integer reps;
+    private Double rpe;
+    private Boolean warmup;
+    private Double volume;
+
+    public SetHistoryEntry() {}
+
+    public SetHistoryEntry(Workout workout, WorkoutExercise exercise, WorkoutSet set, int setNumber) {
+        this.userNPub = workout.getUserNPub();
+        this.exerciseId = exercise.getExerciseId();
+        this.exerciseName = exercise.getExerciseName();
+        this.workoutId = workout.getId();
+        this.performedAt = workout.getWorkoutDate() != null ? workout.getWorkoutDate().toInstant() : Instant.now();
+        this.setNumber = setNumber;
+        this.weight = set.getWeight();
+        this.reps = set.getReps();
+        this.rpe = set.getRpe();
+        this.warmup = set.getWarmup();
+        this.volume = set.getWeight() != null && set.getReps() != null ? set.getWeight() * set.getReps() : 0.0;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getUserNPub() {
+        return userNPub;
+    }
+
+    public String getExerciseId() {
+        return exerciseId;
+    }
+
+    public String getExerciseName() {
+        return exerciseName;
+    }
+
+    public String getWorkoutId() {
+        return workoutId;
+    }
+
+    public Instant getPerformedAt() {
+        return performedAt;
+    }
+
+    public int getSetNumber() {
+        return setNumber;
+    }
+
+    public Double getWeight() {
+        return weight;
+    }
+
+    public Integer getReps() {
+        return reps;
+    }
+
+    public Double getRpe() {
+        return rpe;
+    }
+
+    public Boolean getWarmup() {
+        return warmup;
+    }
+
+    public Double getVolume() {
+        return volume;
+    }
+
+    @Override
+    public String toString() {
+        return "SetHistoryEntry{" +
+                "exerciseName='" + exerciseName + '\'' +
+                ", performedAt=" + performedAt +
+                ", setNumber=" + setNumber +
+                ", weight=" + weight +
+                ", reps=" + reps +
+                '}';
+    }
+}
@@ -0,0 +1,87 @@
+package com.onelubo.strongnostr.model.history;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+/**
+ * Training totals of one user over one week or month, either for a single exercise or,
+ * with {@link #ALL_EXERCISES}, for every exercise combined. Maintained with {@code $inc}
+ * as sets are written, so charts read one document per bucket.
+ */
+@Document(collection = "training_rollups")
+@CompoundIndex(name = "user_period_exercise_bucket",
+        def = "{'userNPub': 1, 'period': 1, 'exerciseId': 1, 'bucketStart': 1}", unique = true)
+public class TrainingRollup {
+
+    public static final String ALL_EXERCISES = "*";
+
+    @Id
+    private String id;
+
+    private String userNPub;
+    private RollupPeriod period;
+    private String exerciseId;
+    private String exerciseName;
+
+    /**
+     * ISO date of the first day of the bucket, e.g. 2024-01-01
+     */
+    private String bucketStart;
+
+    /**
+     * Workouts in the bucket, or sessions of the exercise for per-exercise rollups
+     */
+    private long workouts;
+    private double volume;
+    private long sets;
+    private long reps;
+    private double rpeSum;
+    private long rpeCount;
+
+    public TrainingRollup() {}
+
+    public String getId() {
+        return id;
+    }
+
+    public String getUserNPub() {
+        return userNPub;
+    }
+
+    public RollupPeriod getPeriod() {
+        return period;
+    }
+
+    public String getExerciseId() {
+        return exerciseId;
+    }
+
+    public String getExerciseName() {
+        return exerciseName;
+    }
+
+    public String getBucketStart() {
+        return bucketStart;
+    }
+
+    public long getWorkouts() {
+        return workouts;
+    }
+
+    public double getVolume() {
+        return volume;
+    }
+
+    public long getSets() {
+        return sets;
+    }
+
+    public long getReps() {
+        return reps;
+    }
+
+    public Double getAverageRpe() {
+        return rpeCount > 0 ? rpeSum / rpeCount : null;
+    }
+}
@@ -0,0 +1,203 @@
+package com.onelubo.strongnostr.model.user;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Days on which a user trained, one bit per day of year in six 64-bit words per year
+ * (bit {@code dayOfYear - 1}). Streak and frequency questions are answered with word-level
+ * bit operations instead of date scans over workouts.
+ */
+public final class TrainingCalendar {
+
+    public static final int WORDS_PER_YEAR = 6;
+
+    private final TreeMap<Integer, long[]> years = new TreeMap<>();
+
+    public TrainingCalendar() {}
+
+    /**
+     * @param persisted the calendar as stored on the user, keyed by year
+     */
+    public static TrainingCalendar of(Map<String, long[]> persisted) {
+        TrainingCalendar calendar = new TrainingCalendar();
+        if (persisted != null) {
+            persisted.forEach((year, words) -> calendar.years.put(Integer.parseInt(year), fit(words)));
+        }
+        return calendar;
+    }
+
+    public static int word(LocalDate day) {
+        return (day.getDayOfYear() - 1) >>> 6;
+    }
+
+    public static long mask(LocalDate day) {
+        return 1L << ((day.getDayOfYear() - 1) & 63);
+    }
+
+    public void mark(LocalDate day) {
+        years.computeIfAbsent(day.getYear(), y -> new long[WORDS_PER_YEAR])[word(day)] |= mask(day);
+    }
+
+    public void clear(LocalDate day) {
+        long[] words = years.get(day.getYear());
+        if (words != null) {
+            words[word(day)] &= ~mask(day);
+        }
+    }
+
+    public boolean isTrained(LocalDate day) {
+        long[] words = years.get(day.getYear());
+        return words != null && (words[word(day)] & mask(day)) != 0;
+    }
+
+    /**
+     * Consecutive trained days ending today, or yesterday when today has not been trained yet
+     */
+    public int currentStreak(LocalDate today) {
+        int streak = streakEndingAt(today);
+        return streak > 0 ? streak : streakEndingAt(today.minusDays(1));
+    }
+
+    /**
+     * Consecutive trained days ending at {@code day}, walking backwards a word at a time
+     */
+    public int streakEndingAt(LocalDate day) {
+        int streak = 0;
+        int year = day.getYear();
+        int index = day.getDayOfYear() - 1;
+        while (true) {
+            long[] words = years.get(year);
+            if (words == null) {
+                return streak;
+            }
+            int run = onesEndingAt(words, index);
+            streak += run;
+            if (run <= index) {
+                return streak;
+            }
+            year--;
+            index = LocalDate.of(year, 12, 31).getDayOfYear() - 1;
+        }
+    }
+
+    public int longestStreak() {
+        int longest = 0;
+        int run = 0;
+        Integer previousYear = null;
+        for (Map.Entry<Integer, long[]> entry : years.entrySet()) {
+            if (previousYear != null && entry.getKey() != previousYear + 1) {
+                run = 0;
+            }
+            previousYear = entry.getKey();
+            long[] words = entry.getValue();
+            int days = LocalDate.of(entry.getKey(), 12, 31).getDayOfYear();
+            for (int w = 0; w < WORDS_PER_YEAR; w++) {
+                long word = words[w];
+                int bits = Math.min(64, days - (w << 6));
+                if (bits <= 0) {
+                    break;
+                }
+                if (word == 0L) {
+                    run = 0;
+                    continue;
+                }
+                if (bits == 64 && word == -1L) {
+                    run += 64;
+                    longest = Math.max(longest, run);
+                    continue;
+                }
+                for (int b = 0; b < bits; b++) {
+                    if ((word & (1L << b)) != 0) {
+                        run++;
+                        longest = Math.max(longest, run);
+                    } else {
+                        run = 0;
+                    }
+                }
+            }
+        }
+        return longest;
+    }
+
+    /**
+     * Trained days in [from, to], counted with masked popcounts
+     */
+    public int daysTrained(LocalDate from, LocalDate to) {
+        int count = 0;
+        for (int year = from.getYear(); year <= to.getYear(); year++) {
+            long[] words = years.get(year);
+            if (words == null) {
+                continue;
+            }
+            int first = year == from.getYear() ? from.getDayOfYear() - 1 : 0;
+            int last = year == to.getYear() ? to.getDayOfYear() - 1 : LocalDate.of(year, 12, 31).getDayOfYear() - 1;
+            for (int w = first >>> 6; w <= last >>> 6; w++) {
+                long word = words[w];
+                int low = Math.max(first, w << 6) & 63;
+                int high = Math.min(last, (w << 6) + 63) & 63;
+                long range = (high == 63 ? -1L : (1L << (high + 1)) - 1) & (-1L << low);
+                count += Long.bitCount(word & range);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Trained days of one year in date order, for heatmaps
+     */
+    public List<LocalDate> trainedDays(int year) {
+        List<LocalDate> days = new ArrayList<>();
+        long[] words = years.get(year);
+        if (words == null) {
+            return days;
+        }
+        for (int w = 0; w < WORDS_PER_YEAR; w++) {
+            long word = words[w];
+            while (word != 0L) {
+                int bit = Long.numberOfTrailingZeros(word);
+                days.add(LocalDate.ofYearDay(year, (w << 6) + bit + 1));
+                word &= word - 1;
+            }
+        }
+        return days;
+    }
+
+    public long[] words(int year) {
+        long[] words = years.get(year);
+        return words != null ? words.clone() : new long[WORDS_PER_YEAR];
+    }
+
+    /**
+     * Number of consecutive set bits from {@code index} downwards
+     */
+    private static int onesEndingAt(long[] words, int index) {
+        int w = index >>> 6;
+        int b = index & 63;
+        long shifted = words[w] << (63 - b);
+        int run = Long.numberOfLeadingZeros(~shifted);
+        if (run <= b) {
+            return run;
+        }
+        int total = b + 1;
+        while (w > 0) {
+            w--;
+            if (words[w] != -1L) {
+                return total + Long.numberOfLeadingZeros(~words[w]);
+            }
+            total += 64;
+        }
+        return total;
+    }
+
+    private static long[] fit(long[] words) {
+        long[] fitted = new long[WORDS_PER_YEAR];
+        if (words != null) {
+            System.arraycopy(words, 0, fitted, 0, Math.min(words.length, WORDS_PER_YEAR));
+        }
+        return fitted;
+    }
+}
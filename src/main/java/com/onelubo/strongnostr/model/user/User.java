@@ -6,6 +6,8 @@ import org.springframework.data.annotation.Id;
 import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 
+import java.util.Map;
+
 
 @Document(collection = "users")
 public class User {
@@ -40,6 +42,11 @@ public class User {
 
     private boolean verified = false;
 
+    /**
+     * Trained days as {@link TrainingCalendar} words keyed by year, maintained with {@code $bit} updates
+     */
+    private Map<String, long[]> trainingCalendar;
+
     public User(String username, String npub, String nPubHex) {
         this.username = username;
         this.npub = npub;
@@ -62,6 +69,10 @@ public class User {
         this.nostrProfile = nostrProfile;
     }
 
+    public TrainingCalendar getTrainingCalendar() {
+        return TrainingCalendar.of(trainingCalendar);
+    }
+
     public void markAsVerified() {
         this.verified = true;
     }
@@ -0,0 +1,34 @@
+package com.onelubo.strongnostr.model.user;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+/**
+ * Next free numeric suffix for usernames derived from one base name
+ */
+@Document(collection = "username_counters")
+public class UsernameCounter {
+
+    /**
+     * The base name, e.g. {@code nostr_user}
+     */
+    @Id
+    private String id;
+
+    private long next;
+
+    public UsernameCounter() {}
+
+    public UsernameCounter(String id, long next) {
+        this.id = id;
+        this.next = next;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public long getNext() {
+        return next;
+    }
+}
@@ -4,10 +4,12 @@ import jakarta.validation.constraints.NotBlank;
 import org.springframework.data.annotation.CreatedDate;
 import org.springframework.data.annotation.Id;
 import org.springframework.data.annotation.LastModifiedDate;
+import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.index.TextIndexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import java.time.OffsetDateTime;
+import java.util.Locale;
 import java.util.Objects;
 
 @Document(collection = "exercises")
@@ -24,6 +26,13 @@ public class Exercise {
 
     private String equipment;
 
+    /**
+     * Normalised (name, description, equipment), so " bench  press" and "Bench Press" are one exercise.
+     * Exercises stored before the key existed and duplicating another's identity are left without one.
+     */
+    @Indexed(name = "exercise_identity", unique = true, partialFilter = "{ 'identityKey': { '$exists': true } }")
+    private String identityKey;
+
     private boolean isCustom = false;
 
     private String createdByUserId;
@@ -42,12 +51,25 @@ public class Exercise {
         this.equipment = equipment;
         this.isCustom = isCustom;
         this.createdByUserId = createdByUserId;
+        this.identityKey = identityKeyOf(name, description, equipment);
     }
 
     public Exercise(String name, String description, String equipment) {
         this.name = name;
         this.description = description;
         this.equipment = equipment;
+        this.identityKey = identityKeyOf(name, description, equipment);
+    }
+
+    public static String identityKeyOf(String name, String description, String equipment) {
+        return normalise(name) + '\u001f' + normalise(description) + '\u001f' + normalise(equipment);
+    }
+
+    private static String normalise(String value) {
+        if (value == null) {
+            return "";
+        }
+        return value.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
     }
 
     public String getId() {
@@ -70,22 +92,37 @@ public class Exercise {
         this.id = id;
     }
 
+    public String getIdentityKey() {
+        return identityKey;
+    }
+
     public void setName(String name) {
         this.name = name;
+        this.identityKey = identityKeyOf(name, description, equipment);
     }
 
     public void setDescription(String description) {
         this.description = description;
+        this.identityKey = identityKeyOf(name, description, equipment);
     }
 
     public void setEquipment(String equipment) {
         this.equipment = equipment;
+        this.identityKey = identityKeyOf(name, description, equipment);
     }
 
     public void setCreatedByUserId(String userNPub) {
         this.createdByUserId = userNPub;
     }
 
+    public String getCreatedByUserId() {
+        return createdByUserId;
+    }
+
+    public boolean isCustom() {
+        return isCustom;
+    }
+
     @Override
     public boolean equals(Object object) {
         if (object == null || getClass() != object.getClass()) return false;
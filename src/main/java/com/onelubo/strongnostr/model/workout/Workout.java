@@ -1,26 +1,44 @@
 package com.onelubo.strongnostr.model.workout;
 
 import com.onelubo.strongnostr.dto.WorkoutResponse;
+import com.onelubo.strongnostr.model.history.PersonalRecordType;
 import jakarta.validation.constraints.NotEmpty;
 import jakarta.validation.constraints.NotNull;
 import org.springframework.data.annotation.CreatedDate;
 import org.springframework.data.annotation.Id;
 import org.springframework.data.annotation.LastModifiedDate;
+import org.springframework.data.annotation.Transient;
+import org.springframework.data.annotation.Version;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
 import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import java.time.OffsetDateTime;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumSet;
 import java.util.List;
+import java.util.Set;
 
 @Document(collection = "workouts")
+@CompoundIndexes({
+        @CompoundIndex(name = "user_workout_date", def = "{'userNPub': 1, 'workoutDate.dateTime': -1}"),
+        @CompoundIndex(name = "user_sync_version", def = "{'userNPub': 1, 'syncVersion': 1}")
+})
 public class Workout {
 
     @Id
     private String id;
 
+    /**
+     * Optimistic lock: a save fails if another writer saved the workout since it was read
+     */
+    @Version
+    private Long version;
+
     @NotNull(message = "User ID is required")
-    @Indexed(unique = true)
+    @Indexed
     private String userNPub;
 
     @NotNull(message = "Workout date is required")
@@ -46,11 +64,27 @@ public class Workout {
     @LastModifiedDate
     private OffsetDateTime updatedAt;
 
+    /**
+     * Position of the last write of this workout in the user's change sequence, used by delta sync
+     */
+    private Long syncVersion;
+
+    /**
+     * Records broken by the last write of this instance, not persisted
+     */
+    @Transient
+    private Set<PersonalRecordType> newPersonalRecords = EnumSet.noneOf(PersonalRecordType.class);
+
     public Workout(String userNPub) {
         this.userNPub = userNPub;
         this.workoutDate = OffsetDateTime.now();
     }
 
+    public Workout(String userNPub, OffsetDateTime workoutDate) {
+        this.userNPub = userNPub;
+        this.workoutDate = workoutDate;
+    }
+
     public Workout() {}
 
     public void calculateMetrics() {
@@ -94,12 +128,29 @@ public class Workout {
                 .filter(exercise -> exercise.getExerciseId().equals(newExercise.getExerciseId()))
                 .findFirst()
                 .ifPresentOrElse(
-                        exercise -> exercise.addWorkoutSet(newExercise.getHeaviestSet()),
+                        exercise -> exercise.addWorkoutSets(newExercise.getSets()),
                         () -> exercises.add(newExercise)
                                 );
         this.calculateMetrics();
     }
 
+    /**
+     * Merge a batch of exercises into the workout, appending to exercises already present,
+     * and recompute the workout metrics once
+     */
+    public void addSets(Collection<WorkoutExercise> newExercises) {
+        for (WorkoutExercise newExercise : newExercises) {
+            exercises.stream()
+                    .filter(exercise -> exercise.getExerciseId().equals(newExercise.getExerciseId()))
+                    .findFirst()
+                    .ifPresentOrElse(
+                            exercise -> exercise.addWorkoutSets(newExercise.getSets()),
+                            () -> exercises.add(newExercise)
+                                    );
+        }
+        this.calculateMetrics();
+    }
+
     public void addExercise(WorkoutExercise exercise) {
         this.exercises.add(exercise);
         this.calculateMetrics();
@@ -140,6 +191,56 @@ public class Workout {
         return durationSeconds;
     }
 
+    public void setDurationSeconds(Integer durationSeconds) {
+        this.durationSeconds = durationSeconds;
+    }
+
+    public String getNotes() {
+        return notes;
+    }
+
+    public void setNotes(String notes) {
+        this.notes = notes;
+    }
+
+    public String getUserNPub() {
+        return userNPub;
+    }
+
+    public OffsetDateTime getWorkoutDate() {
+        return workoutDate;
+    }
+
+    public Long getVersion() {
+        return version;
+    }
+
+    /**
+     * Only for writes that bypass the template's version handling, such as bulk inserts
+     */
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+
+    public Long getSyncVersion() {
+        return syncVersion;
+    }
+
+    public void setSyncVersion(Long syncVersion) {
+        this.syncVersion = syncVersion;
+    }
+
+    public Set<PersonalRecordType> getNewPersonalRecords() {
+        return newPersonalRecords;
+    }
+
+    public void addNewPersonalRecords(Collection<PersonalRecordType> records) {
+        if (newPersonalRecords == null) {
+            newPersonalRecords = EnumSet.noneOf(PersonalRecordType.class);
+        }
+        newPersonalRecords.addAll(records);
+    }
+
     public WorkoutResponse toWorkoutResponse() {
         return new WorkoutResponse(
                 id,
@@ -152,7 +253,8 @@ public class Workout {
                 averageRpe,
                 durationSeconds,
                 notes,
-                isPublic
+                isPublic,
+                newPersonalRecords == null ? List.of() : List.copyOf(newPersonalRecords)
         );
     }
 
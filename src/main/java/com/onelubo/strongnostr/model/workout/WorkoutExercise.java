@@ -80,6 +80,26 @@ public class WorkoutExercise {
                     .orElse(null);
     }
 
+    /**
+     * Working set with the most reps, by the same rules as the personal-record table, or null without one
+     */
+    public WorkoutSet getHighestRepWorkingSet() {
+            return sets.stream()
+                    .filter(WorkoutSet::countsTowardsRecords)
+                    .max(WorkoutSet.BY_REPS_THEN_WEIGHT)
+                    .orElse(null);
+    }
+
+    /**
+     * Heaviest working set, by the same rules as the personal-record table, or null without one
+     */
+    public WorkoutSet getHeaviestWorkingSet() {
+            return sets.stream()
+                    .filter(WorkoutSet::countsTowardsRecords)
+                    .max(WorkoutSet.BY_WEIGHT_THEN_REPS)
+                    .orElse(null);
+    }
+
     public Integer getTotalReps() {
         return totalReps;
     }
@@ -108,6 +128,14 @@ public class WorkoutExercise {
         return exerciseName;
     }
 
+    public String getEquipment() {
+        return equipment;
+    }
+
+    public List<WorkoutSet> getSets() {
+        return sets;
+    }
+
     public void addWorkoutSet(WorkoutSet set) {
         if (set != null) {
             sets.add(set);
@@ -115,6 +143,16 @@ public class WorkoutExercise {
         }
     }
 
+    /**
+     * Append several sets and recompute the metrics once
+     */
+    public void addWorkoutSets(List<WorkoutSet> newSets) {
+        if (newSets != null && !newSets.isEmpty()) {
+            sets.addAll(newSets);
+            this.calculateMetrics();
+        }
+    }
+
     public WorkoutExerciseResponse toWorkoutExerciseResponse() {
         return new WorkoutExerciseResponse(
                 exerciseId,
@@ -5,8 +5,22 @@ import jakarta.validation.constraints.NotNull;
 import jakarta.validation.constraints.Positive;
 import jakarta.validation.constraints.PositiveOrZero;
 
+import java.util.Comparator;
+
 public class WorkoutSet {
 
+    /**
+     * Heaviest first; equal weights are settled by reps
+     */
+    public static final Comparator<WorkoutSet> BY_WEIGHT_THEN_REPS =
+            Comparator.comparingDouble(WorkoutSet::getWeight).thenComparingInt(WorkoutSet::getReps);
+
+    /**
+     * Most reps first; equal reps are settled by weight
+     */
+    public static final Comparator<WorkoutSet> BY_REPS_THEN_WEIGHT =
+            Comparator.comparingInt(WorkoutSet::getReps).thenComparingDouble(WorkoutSet::getWeight);
+
     @Schema(description = "Weight lifted in kilograms", example = "80.0")
     @NotNull(message = "Weight is required")
     @PositiveOrZero(message = "Weight must be zero or positive")
@@ -84,6 +98,13 @@ public class WorkoutSet {
         isWarmup = warmup;
     }
 
+    /**
+     * Whether the set can stand as a record: a complete working set, never a warmup
+     */
+    public boolean countsTowardsRecords() {
+        return weight != null && reps != null && reps > 0 && !Boolean.TRUE.equals(isWarmup);
+    }
+
     @Override
     public String toString() {
         StringBuilder builder = new StringBuilder();
@@ -0,0 +1,80 @@
+package com.onelubo.strongnostr.model.workout;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Per-user sequence handing out the sync versions of workouts and tombstones, the reservations
+ * whose writes have not completed yet, and a count of completed workout writes that list ETags
+ * are derived from
+ */
+@Document(collection = "workout_sync_counters")
+public class WorkoutSyncCounter {
+
+    /**
+     * The user's npub
+     */
+    @Id
+    private String id;
+
+    private long version;
+
+    /**
+     * Bumped after each write completes, so unlike {@link #version} it never runs ahead of the data
+     */
+    private long changes;
+
+    /**
+     * Versions handed out to writes that are still in flight
+     */
+    private List<PendingReservation> pending;
+
+    public WorkoutSyncCounter() {}
+
+    public WorkoutSyncCounter(String id, long version) {
+        this.id = id;
+        this.version = version;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public long getChanges() {
+        return changes;
+    }
+
+    public List<PendingReservation> getPending() {
+        return pending;
+    }
+
+    /**
+     * Highest version below which every reserved write has completed. Reservations older than
+     * {@code abandonedBefore} belong to writers that died and no longer hold the watermark back.
+     */
+    public long committedVersion(Instant abandonedBefore) {
+        if (pending == null) {
+            return version;
+        }
+        return pending.stream()
+                      .filter(reservation -> reservation.reservedAt().isAfter(abandonedBefore))
+                      .mapToLong(reservation -> reservation.first() - 1)
+                      .min()
+                      .orElse(version);
+    }
+
+    /**
+     * @param first       the first version of the reserved block
+     * @param reservation identifies the writer that releases it
+     * @param reservedAt  when the block was handed out
+     */
+    public record PendingReservation(long first, String reservation, Instant reservedAt) {
+    }
+}
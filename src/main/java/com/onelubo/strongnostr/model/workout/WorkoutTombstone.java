@@ -0,0 +1,59 @@
+package com.onelubo.strongnostr.model.workout;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * Marker left behind by a deleted workout so that syncing clients learn about the deletion.
+ * Expires after {@link #RETENTION}; clients whose sync token is older must resync from scratch.
+ */
+@Document(collection = "workout_tombstones")
+@CompoundIndex(name = "user_sync_version", def = "{'userNPub': 1, 'syncVersion': 1}")
+public class WorkoutTombstone {
+
+    public static final Duration RETENTION = Duration.ofDays(90);
+
+    @Id
+    private String id;
+
+    private String userNPub;
+    private String workoutId;
+    private long syncVersion;
+
+    @Indexed(expireAfter = "90d")
+    private Instant deletedAt;
+
+    public WorkoutTombstone() {}
+
+    public WorkoutTombstone(String userNPub, String workoutId, long syncVersion, Instant deletedAt) {
+        this.userNPub = userNPub;
+        this.workoutId = workoutId;
+        this.syncVersion = syncVersion;
+        this.deletedAt = deletedAt;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getUserNPub() {
+        return userNPub;
+    }
+
+    public String getWorkoutId() {
+        return workoutId;
+    }
+
+    public long getSyncVersion() {
+        return syncVersion;
+    }
+
+    public Instant getDeletedAt() {
+        return deletedAt;
+    }
+}
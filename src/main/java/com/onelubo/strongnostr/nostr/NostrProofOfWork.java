@@ -0,0 +1,65 @@
+package com.onelubo.strongnostr.nostr;
+
+import java.util.List;
+
+/**
+ * NIP-13 proof of work: the difficulty of an event is the number of leading zero bits of its id.
+ * Clients mine it by varying a {@code ["nonce", "<n>", "<target>"]} tag, which is part of the id.
+ */
+public final class NostrProofOfWork {
+
+    private NostrProofOfWork() {
+    }
+
+    /**
+     * Count the leading zero bits of a hex event id
+     * @param idHex 64-char hex event id
+     * @return the difficulty, 0 for a null or non-hex id
+     */
+    public static int leadingZeroBits(String idHex) {
+        if (idHex == null) {
+            return 0;
+        }
+        int bits = 0;
+        for (int i = 0; i < idHex.length(); i++) {
+            int nibble = Character.digit(idHex.charAt(i), 16);
+            if (nibble < 0) {
+                return 0;
+            }
+            if (nibble != 0) {
+                return bits + Integer.numberOfLeadingZeros(nibble) - 28;
+            }
+            bits += 4;
+        }
+        return bits;
+    }
+
+    /**
+     * Difficulty an event can be credited with. When the nonce tag commits to a target, the event
+     * counts for no more than that target, so ids that came out lucky while mining for a lower
+     * difficulty are not rewarded.
+     * @param idHex the computed event id
+     * @param tags the event tags
+     */
+    public static int difficulty(String idHex, List<List<String>> tags) {
+        int bits = leadingZeroBits(idHex);
+        int committed = committedTarget(tags);
+        return committed >= 0 ? Math.min(bits, committed) : bits;
+    }
+
+    private static int committedTarget(List<List<String>> tags) {
+        if (tags == null) {
+            return -1;
+        }
+        for (List<String> tag : tags) {
+            if (tag != null && tag.size() >= 3 && "nonce".equals(tag.get(0))) {
+                try {
+                    return Integer.parseInt(tag.get(2).trim());
+                } catch (NumberFormatException e) {
+                    return 0;
+                }
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,16 @@
+package com.onelubo.strongnostr.repository;
+
+import com.onelubo.strongnostr.model.history.PersonalRecord;
+import org.springframework.data.mongodb.repository.MongoRepository;
+
+import java.util.List;
+import java.util.Optional;
+
+public interface PersonalRecordRepository extends MongoRepository<PersonalRecord, String> {
+
+    List<PersonalRecord> findByUserNPub(String userNPub);
+
+    Optional<PersonalRecord> findByUserNPubAndExerciseId(String userNPub, String exerciseId);
+
+    void deleteByUserNPubAndExerciseId(String userNPub, String exerciseId);
+}
@@ -0,0 +1,13 @@
+package com.onelubo.strongnostr.repository;
+
+import com.onelubo.strongnostr.model.user.User;
+import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
+import reactor.core.publisher.Mono;
+
+/**
+ * {@link UserRepository} for the reactive profile
+ */
+public interface ReactiveUserRepository extends ReactiveMongoRepository<User, String> {
+
+    Mono<User> findByNpub(String nostrPublicKey);
+}
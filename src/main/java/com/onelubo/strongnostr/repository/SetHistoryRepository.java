@@ -0,0 +1,11 @@
+package com.onelubo.strongnostr.repository;
+
+import com.onelubo.strongnostr.model.history.SetHistoryEntry;
+import org.springframework.data.mongodb.repository.MongoRepository;
+
+public interface SetHistoryRepository extends MongoRepository<SetHistoryEntry, String> {
+
+    void deleteByWorkoutIdAndExerciseId(String workoutId, String exerciseId);
+
+    void deleteByWorkoutId(String workoutId);
+}
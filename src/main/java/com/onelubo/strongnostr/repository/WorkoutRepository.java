@@ -4,8 +4,25 @@ import com.onelubo.strongnostr.model.workout.Workout;
 import org.springframework.data.mongodb.repository.MongoRepository;
 
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.mongodb.repository.Query;
+import org.springframework.data.mongodb.repository.Update;
+
 import java.util.List;
+import java.util.Optional;
 
 public interface WorkoutRepository extends MongoRepository<Workout, String> {
     List<Workout> findByUserNPub(String npub, Pageable page);
+
+    /**
+     * Only the owner and version, enough for ownership checks and conditional requests
+     */
+    @Query(value = "{ '_id': ?0 }", fields = "{ 'userNPub': 1, 'version': 1 }")
+    Optional<Workout> findVersionById(String id);
+
+    /**
+     * Give workouts written before optimistic locking a version, so saves treat them as existing documents
+     */
+    @Query("{ 'version': { '$exists': false } }")
+    @Update("{ '$set': { 'version': 0 } }")
+    long initializeMissingVersions();
 }
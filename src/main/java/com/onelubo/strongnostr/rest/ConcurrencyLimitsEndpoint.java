@@ -0,0 +1,35 @@
+package com.onelubo.strongnostr.rest;
+
+import com.onelubo.strongnostr.service.AdaptiveConcurrencyLimiter;
+import com.onelubo.strongnostr.service.ConcurrencyLimiters;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * {@code /actuator/concurrency}: the current adaptive limits, calls in flight and rejections
+ */
+@Component
+@Endpoint(id = "concurrency")
+public class ConcurrencyLimitsEndpoint {
+
+    private final ConcurrencyLimiters concurrencyLimiters;
+
+    public ConcurrencyLimitsEndpoint(ConcurrencyLimiters concurrencyLimiters) {
+        this.concurrencyLimiters = concurrencyLimiters;
+    }
+
+    @ReadOperation
+    public Map<String, LimiterStats> limits() {
+        Map<String, LimiterStats> limits = new LinkedHashMap<>();
+        for (AdaptiveConcurrencyLimiter limiter : concurrencyLimiters.all()) {
+            limits.put(limiter.getName(), new LimiterStats(limiter.getLimit(), limiter.getInFlight(), limiter.getRejected()));
+        }
+        return limits;
+    }
+
+    public record LimiterStats(int limit, int inFlight, long rejected) {}
+}
@@ -1,22 +1,41 @@
 package com.onelubo.strongnostr.rest;
 
+import com.onelubo.strongnostr.dto.ExerciseAnalyticsResponse;
+import com.onelubo.strongnostr.dto.ExerciseSearchResult;
+import com.onelubo.strongnostr.model.history.PersonalRecord;
 import com.onelubo.strongnostr.model.workout.Exercise;
+import com.onelubo.strongnostr.service.analytics.SetAnalyticsService;
 import com.onelubo.strongnostr.service.workout.ExerciseService;
+import com.onelubo.strongnostr.service.workout.PersonalRecordService;
+import com.onelubo.strongnostr.service.workout.SetHistoryService;
 import jakarta.validation.Valid;
+import org.springframework.context.annotation.Profile;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
 
+import java.time.Instant;
+import java.util.List;
+
 @RestController
+@Profile("!reactive")
 @RequestMapping("/api/v1/nostr/exercise")
 @PreAuthorize("hasRole('ROLE_USER')")
 public class ExerciseController {
 
     private final ExerciseService exerciseService;
+    private final SetHistoryService setHistoryService;
+    private final PersonalRecordService personalRecordService;
+    private final SetAnalyticsService setAnalyticsService;
 
-    public ExerciseController(ExerciseService exerciseService) {
+    public ExerciseController(ExerciseService exerciseService, SetHistoryService setHistoryService,
+                              PersonalRecordService personalRecordService, SetAnalyticsService setAnalyticsService) {
         this.exerciseService = exerciseService;
+        this.setHistoryService = setHistoryService;
+        this.personalRecordService = personalRecordService;
+        this.setAnalyticsService = setAnalyticsService;
     }
 
     @PostMapping
@@ -28,4 +47,50 @@ public class ExerciseController {
         return ResponseEntity.ok(createdExercise);
 
     }
+
+    @GetMapping("/search")
+    public ResponseEntity<List<ExerciseSearchResult>> searchExercises(@RequestParam("q") String query,
+                                                                      @RequestParam(defaultValue = "10") int limit,
+                                                                      Authentication authentication) {
+        String userNPub = authentication.getName();
+        return ResponseEntity.ok(exerciseService.searchExercises(query, userNPub, Math.min(limit, 50)));
+    }
+
+    @GetMapping("/{exerciseId}/history")
+    public ResponseEntity<?> getExerciseHistory(@PathVariable("exerciseId") String exerciseId,
+                                                @RequestParam(defaultValue = "5") int sessions,
+                                                @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant from,
+                                                @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant to,
+                                                Authentication authentication) {
+        String userNPub = authentication.getName();
+
+        if (from != null || to != null) {
+            Instant rangeStart = from != null ? from : Instant.EPOCH;
+            Instant rangeEnd = to != null ? to : Instant.now();
+            return ResponseEntity.ok(setHistoryService.getSetsBetween(userNPub, exerciseId, rangeStart, rangeEnd));
+        }
+        return ResponseEntity.ok(setHistoryService.getLastSessions(userNPub, exerciseId, Math.min(Math.max(sessions, 1), 100)));
+    }
+
+    @GetMapping("/records")
+    public ResponseEntity<List<PersonalRecord>> getPersonalRecords(Authentication authentication) {
+        return ResponseEntity.ok(personalRecordService.getPersonalRecords(authentication.getName()));
+    }
+
+    @GetMapping("/{exerciseId}/records")
+    public ResponseEntity<PersonalRecord> getPersonalRecord(@PathVariable("exerciseId") String exerciseId,
+                                                            Authentication authentication) {
+        return personalRecordService.getPersonalRecord(authentication.getName(), exerciseId)
+                                    .map(ResponseEntity::ok)
+                                    .orElse(ResponseEntity.notFound().build());
+    }
+
+    @GetMapping("/analytics")
+    public ResponseEntity<List<ExerciseAnalyticsResponse>> getAnalytics(@RequestParam(required = false) String exerciseId,
+                                                                        @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant from,
+                                                                        @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant to,
+                                                                        Authentication authentication) {
+        String userNPub = authentication.getName();
+        return ResponseEntity.ok(setAnalyticsService.analyse(userNPub, exerciseId, from, to));
+    }
 }
@@ -0,0 +1,218 @@
+package com.onelubo.strongnostr.rest;
+
+import com.onelubo.strongnostr.service.IdempotencyStore;
+import com.onelubo.strongnostr.service.IdempotencyStore.StoredResponse;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Makes workout writes safe to retry. The first request with a given {@code Idempotency-Key} runs
+ * and its response is stored; retries with the same key replay that response without reaching
+ * the controller, so no workout or set is written twice. Only responses that show the request was
+ * turned away before it ran (client errors, shed load) release the key for another attempt. Keys
+ * are scoped per user, and reusing one for a different method, path or body is rejected.
+ * <p>
+ * The body is buffered to fingerprint it, so streaming uploads such as the CSV import are not covered;
+ * they would lose their streaming and can outlast any reasonable in-progress claim.
+ */
+@Component
+public class IdempotencyFilter extends OncePerRequestFilter {
+
+    public static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+    public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+
+    private static final String WORKOUT_PATH = "/api/v1/nostr/workout";
+    private static final Set<String> STREAMING_PATHS = Set.of(WORKOUT_PATH + "/import");
+    private static final Set<String> WRITE_METHODS = Set.of("POST", "PUT", "PATCH", "DELETE");
+    private static final int MAX_KEY_LENGTH = 255;
+
+    private final IdempotencyStore idempotencyStore;
+    private final Duration responseTtl;
+    private final Duration inProgressTtl;
+
+    public IdempotencyFilter(IdempotencyStore idempotencyStore,
+                             @Value("${strongnostr.idempotency.ttl-hours:24}") long ttlHours,
+                             @Value("${strongnostr.idempotency.in-progress-seconds:300}") long inProgressSeconds) {
+        this.idempotencyStore = idempotencyStore;
+        this.responseTtl = Duration.ofHours(ttlHours);
+        this.inProgressTtl = Duration.ofSeconds(inProgressSeconds);
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return request.getHeader(IDEMPOTENCY_KEY_HEADER) == null
+               || !WRITE_METHODS.contains(request.getMethod())
+               || !request.getRequestURI().startsWith(WORKOUT_PATH)
+               || STREAMING_PATHS.contains(request.getRequestURI());
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response,
+                                    FilterChain filterChain) throws ServletException, IOException {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication == null || authentication instanceof AnonymousAuthenticationToken) {
+            // Security rejects the request anyway; nothing to scope the key to
+            filterChain.doFilter(request, response);
+            return;
+        }
+
+        String idempotencyKey = request.getHeader(IDEMPOTENCY_KEY_HEADER);
+        if (idempotencyKey.isBlank() || idempotencyKey.length() > MAX_KEY_LENGTH) {
+            response.sendError(HttpStatus.BAD_REQUEST.value(), "Invalid Idempotency-Key header");
+            return;
+        }
+
+        String key = authentication.getName() + ":" + idempotencyKey;
+        CachedBodyRequest cachedRequest = new CachedBodyRequest(request);
+        String fingerprint = request.getMethod() + " " + request.getRequestURI() + " " + sha256(cachedRequest.body);
+
+        if (!idempotencyStore.reserve(key, fingerprint, inProgressTtl)) {
+            replayOrReject(idempotencyStore.get(key), fingerprint, response);
+            return;
+        }
+
+        ContentCachingResponseWrapper cachingResponse = new ContentCachingResponseWrapper(response);
+        boolean stored = false;
+        try {
+            filterChain.doFilter(cachedRequest, cachingResponse);
+            if (tookEffect(cachingResponse.getStatus())) {
+                String body = new String(cachingResponse.getContentAsByteArray(), StandardCharsets.UTF_8);
+                idempotencyStore.complete(key, new StoredResponse(fingerprint, true, cachingResponse.getStatus(),
+                                                                  cachingResponse.getContentType(), body,
+                                                                  System.currentTimeMillis() + responseTtl.toMillis()),
+                                          responseTtl);
+                stored = true;
+            }
+        } finally {
+            if (!stored) {
+                // Rejected before running, or the filter chain threw: a retry with the same key should run again
+                idempotencyStore.release(key);
+            }
+            cachingResponse.copyBodyToResponse();
+        }
+    }
+
+    /**
+     * Whether the response may stand for a write that happened. Client errors and shed load mean
+     * the request was turned away; anything else, a server error included, may follow a committed
+     * write, so it is kept and replayed rather than run a second time.
+     */
+    private static boolean tookEffect(int status) {
+        HttpStatus httpStatus = HttpStatus.resolve(status);
+        return httpStatus == null
+               || !(httpStatus.is4xxClientError() || httpStatus == HttpStatus.SERVICE_UNAVAILABLE);
+    }
+
+    private static String sha256(byte[] body) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(body));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private void replayOrReject(Optional<StoredResponse> existing, String fingerprint,
+                                HttpServletResponse response) throws IOException {
+        if (existing.isEmpty() || !existing.get().completed()) {
+            // Still running (or released a moment ago); the client should retry shortly
+            response.setHeader(HttpHeaders.RETRY_AFTER, "1");
+            response.sendError(HttpStatus.CONFLICT.value(), "A request with this Idempotency-Key is in progress");
+            return;
+        }
+        StoredResponse stored = existing.get();
+        if (!stored.fingerprint().equals(fingerprint)) {
+            response.sendError(HttpStatus.UNPROCESSABLE_ENTITY.value(),
+                               "Idempotency-Key was already used for a different request");
+            return;
+        }
+        response.setStatus(stored.status());
+        response.setHeader(REPLAYED_HEADER, "true");
+        if (stored.contentType() != null) {
+            response.setContentType(stored.contentType());
+        }
+        if (stored.body() != null && !stored.body().isEmpty()) {
+            response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+            response.getWriter().write(stored.body());
+        }
+    }
+
+    /**
+     * Reads the body up front so it can be fingerprinted, then serves it to the controller
+     */
+    private static final class CachedBodyRequest extends HttpServletRequestWrapper {
+
+        private final byte[] body;
+
+        CachedBodyRequest(HttpServletRequest request) throws IOException {
+            super(request);
+            this.body = request.getInputStream().readAllBytes();
+        }
+
+        @Override
+        public ServletInputStream getInputStream() {
+            ByteArrayInputStream input = new ByteArrayInputStream(body);
+            return new ServletInputStream() {
+                @Override
+                public boolean isFinished() {
+                    return input.available() == 0;
+                }
+
+                @Override
+                public boolean isReady() {
+                    return true;
+                }
+
+                @Override
+                public void setReadListener(ReadListener readListener) {
+                    // The whole body is already in memory, so it is available and complete at once
+                    try {
+                        readListener.onDataAvailable();
+                        readListener.onAllDataRead();
+                    } catch (IOException e) {
+                        readListener.onError(e);
+                    }
+                }
+
+                @Override
+                public int read() {
+                    return input.read();
+                }
+            };
+        }
+
+        @Override
+        public BufferedReader getReader() {
+            String encoding = getCharacterEncoding();
+            return new BufferedReader(new InputStreamReader(new ByteArrayInputStream(body),
+                                                            encoding != null ? Charset.forName(encoding)
+                                                                             : StandardCharsets.UTF_8));
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package com.onelubo.strongnostr.rest;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.onelubo.strongnostr.dto.LiveSessionCommand;
+import com.onelubo.strongnostr.dto.LiveSessionEvent;
+import com.onelubo.strongnostr.dto.WorkoutResponse;
+import com.onelubo.strongnostr.exception.WorkoutNotFoundException;
+import com.onelubo.strongnostr.model.workout.Workout;
+import com.onelubo.strongnostr.model.workout.WorkoutSet;
+import com.onelubo.strongnostr.security.JwtHandshakeInterceptor;
+import com.onelubo.strongnostr.service.workout.LiveWorkoutSessionService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.ConcurrentWebSocketSessionDecorator;
+import org.springframework.web.socket.handler.TextWebSocketHandler;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Live workout channel: clients send {@link LiveSessionCommand}s and receive a {@link LiveSessionEvent}
+ * with the updated workout after each one. The session's workout is persisted when the socket closes.
+ */
+@Component
+public class LiveWorkoutWebSocketHandler extends TextWebSocketHandler {
+
+    private static final Logger logger = LoggerFactory.getLogger(LiveWorkoutWebSocketHandler.class);
+    private static final int SEND_TIME_LIMIT_MILLIS = 5000;
+    private static final int SEND_BUFFER_BYTES = 64 * 1024;
+
+    private final LiveWorkoutSessionService liveWorkoutSessionService;
+    private final ObjectMapper objectMapper;
+    private final Map<String, WebSocketSession> sessions = new ConcurrentHashMap<>();
+
+    public LiveWorkoutWebSocketHandler(LiveWorkoutSessionService liveWorkoutSessionService, ObjectMapper objectMapper) {
+        this.liveWorkoutSessionService = liveWorkoutSessionService;
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    public void afterConnectionEstablished(WebSocketSession session) {
+        sessions.put(session.getId(),
+                     new ConcurrentWebSocketSessionDecorator(session, SEND_TIME_LIMIT_MILLIS, SEND_BUFFER_BYTES));
+    }
+
+    @Override
+    protected void handleTextMessage(WebSocketSession session, TextMessage message) throws IOException {
+        WebSocketSession target = sessions.getOrDefault(session.getId(), session);
+        String userNPub = (String) session.getAttributes().get(JwtHandshakeInterceptor.NPUB_ATTRIBUTE);
+
+        LiveSessionCommand command;
+        try {
+            command = objectMapper.readValue(message.getPayload(), LiveSessionCommand.class);
+        } catch (JsonProcessingException e) {
+            send(target, LiveSessionEvent.error("Malformed message"));
+            return;
+        }
+
+        try {
+            switch (command.type() == null ? "" : command.type()) {
+                case LiveSessionCommand.START -> {
+                    Workout workout = liveWorkoutSessionService.start(session.getId(), userNPub, command.workoutId());
+                    send(target, LiveSessionEvent.of("started", workout.toWorkoutResponse()));
+                }
+                case LiveSessionCommand.SET -> {
+                    String error = validate(command);
+                    if (error != null) {
+                        send(target, LiveSessionEvent.error(error));
+                        return;
+                    }
+                    WorkoutResponse workout = liveWorkoutSessionService.logSet(session.getId(), command.exercise(), command.set());
+                    send(target, LiveSessionEvent.of("setLogged", workout));
+                }
+                case LiveSessionCommand.END -> {
+                    Workout workout = liveWorkoutSessionService.end(session.getId());
+                    send(target, LiveSessionEvent.of("ended", workout != null ? workout.toWorkoutResponse() : null));
+                    target.close(CloseStatus.NORMAL);
+                }
+                default -> send(target, LiveSessionEvent.error("Unknown message type: " + command.type()));
+            }
+        } catch (WorkoutNotFoundException e) {
+            send(target, LiveSessionEvent.error(String.format("Workout with ID '%s' not found", command.workoutId())));
+        } catch (IllegalStateException | IllegalArgumentException e) {
+            send(target, LiveSessionEvent.error(e.getMessage()));
+        }
+    }
+
+    @Override
+    public void afterConnectionClosed(WebSocketSession session, CloseStatus status) {
+        sessions.remove(session.getId());
+        try {
+            liveWorkoutSessionService.end(session.getId());
+        } catch (Exception e) {
+            // The session stays open, so the periodic flush keeps retrying its sets until they are saved or dropped
+            logger.warn("Failed to persist live workout of session {} on close: {}", session.getId(), e.getMessage());
+        }
+    }
+
+    private static String validate(LiveSessionCommand command) {
+        if (command.exercise() == null || command.exercise().getName() == null || command.exercise().getName().isBlank()) {
+            return "Exercise name is required";
+        }
+        WorkoutSet set = command.set();
+        if (set == null || set.getWeight() == null || set.getReps() == null) {
+            return "Weight and reps are required";
+        }
+        if (set.getWeight() < 0 || set.getReps() <= 0) {
+            return "Weight must be zero or positive and reps must be positive";
+        }
+        return null;
+    }
+
+    private void send(WebSocketSession session, LiveSessionEvent event) throws IOException {
+        session.sendMessage(new TextMessage(objectMapper.writeValueAsString(event)));
+    }
+}
@@ -1,39 +1,106 @@
 package com.onelubo.strongnostr.rest;
 
+import com.onelubo.strongnostr.dto.BatchSetsRequest;
 import com.onelubo.strongnostr.dto.ExerciseSetDto;
+import com.onelubo.strongnostr.dto.TrainingCalendarResponse;
+import com.onelubo.strongnostr.dto.TrainingRollupResponse;
+import com.onelubo.strongnostr.dto.WorkoutImportResponse;
 import com.onelubo.strongnostr.dto.WorkoutResponse;
+import com.onelubo.strongnostr.dto.WorkoutSyncResponse;
+import com.onelubo.strongnostr.exception.ConcurrencyLimitExceededException;
 import com.onelubo.strongnostr.exception.WorkoutNotFoundException;
+import com.onelubo.strongnostr.model.history.RollupPeriod;
 import com.onelubo.strongnostr.model.workout.Workout;
+import com.onelubo.strongnostr.service.workout.StrongCsvImportService;
+import com.onelubo.strongnostr.service.workout.TrainingCalendarService;
+import com.onelubo.strongnostr.service.workout.TrainingRollupService;
+import com.onelubo.strongnostr.service.workout.WorkoutExportService;
 import com.onelubo.strongnostr.service.workout.WorkoutService;
+import com.onelubo.strongnostr.service.workout.WorkoutSyncService;
 import jakarta.validation.Valid;
+import org.springframework.context.annotation.Profile;
 import org.springframework.context.support.DefaultMessageSourceResolvable;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.AccessDeniedException;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.Authentication;
 import org.springframework.validation.BindingResult;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.time.ZoneId;
 import java.util.List;
+import java.util.Locale;
 
 @RestController
+@Profile("!reactive")
 @RequestMapping("/api/v1/nostr/workout")
 @PreAuthorize("hasRole('ROLE_USER')")
 public class WorkoutController {
 
     private final WorkoutService workoutService;
+    private final StrongCsvImportService strongCsvImportService;
+    private final WorkoutExportService workoutExportService;
+    private final TrainingRollupService trainingRollupService;
+    private final TrainingCalendarService trainingCalendarService;
+    private final WorkoutSyncService workoutSyncService;
 
-    public WorkoutController(WorkoutService workoutService) {
+    public WorkoutController(WorkoutService workoutService, StrongCsvImportService strongCsvImportService,
+                             WorkoutExportService workoutExportService, TrainingRollupService trainingRollupService,
+                             TrainingCalendarService trainingCalendarService, WorkoutSyncService workoutSyncService) {
         this.workoutService = workoutService;
+        this.strongCsvImportService = strongCsvImportService;
+        this.workoutExportService = workoutExportService;
+        this.trainingRollupService = trainingRollupService;
+        this.trainingCalendarService = trainingCalendarService;
+        this.workoutSyncService = workoutSyncService;
     }
 
+    /**
+     * One owner-and-version projection settles both the ownership check and conditional requests,
+     * so a 304 costs a single round trip and a 200 one more to load the workout
+     */
     @GetMapping("/{workoutId}")
-    @PreAuthorize("@workoutService.isWorkoutOwner(authentication, #workoutId)")
-    public ResponseEntity<?> getWorkoutById(@PathVariable("workoutId") String workoutId, Authentication authentication) {
+    public ResponseEntity<?> getWorkoutById(@PathVariable("workoutId") String workoutId, Authentication authentication,
+                                            WebRequest webRequest) {
+        // Unknown workouts are reported as not owned, as method security does for the other endpoints
+        Workout header = workoutService.getWorkoutHeader(workoutId)
+                                       .filter(found -> authentication.getName().equals(found.getUserNPub()))
+                                       .orElseThrow(() -> new AccessDeniedException("Access Denied"));
+        String eTag = WorkoutService.eTagOf(header);
+        if (webRequest.checkNotModified(eTag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(eTag).build();
+        }
         try {
             Workout workout = workoutService.getWorkoutById(workoutId);
-            return ResponseEntity.ok(workout.toWorkoutResponse());
+            return ResponseEntity.ok().eTag(WorkoutService.eTagOf(workout)).body(workout.toWorkoutResponse());
+        } catch (WorkoutNotFoundException e) {
+            return ResponseEntity.status(404).body(String.format("Workout with ID '%s' not found", workoutId));
+        }
+    }
+
+    @DeleteMapping("/{workoutId}")
+    @PreAuthorize("@workoutService.isWorkoutOwner(authentication, #workoutId)")
+    public ResponseEntity<?> deleteWorkout(@PathVariable("workoutId") String workoutId) {
+        try {
+            workoutService.deleteWorkout(workoutId);
+            return ResponseEntity.noContent().build();
         } catch (WorkoutNotFoundException e) {
             return ResponseEntity.status(404).body(String.format("Workout with ID '%s' not found", workoutId));
+        } catch (OptimisticLockingFailureException e) {
+            return ResponseEntity.status(409).body("Workout is being modified concurrently, please retry");
+        } catch (ConcurrencyLimitExceededException e) {
+            return overloaded(e);
         }
     }
 
@@ -45,8 +112,12 @@ public class WorkoutController {
 
         String userNPub = authentication.getName();
 
-        Workout createdWorkout = workoutService.createWorkout(workoutDto.getExercise(), workoutDto.getWorkoutSet(), userNPub);
-        return ResponseEntity.ok(createdWorkout.toWorkoutResponse());
+        try {
+            Workout createdWorkout = workoutService.createWorkout(workoutDto.getExercise(), workoutDto.getWorkoutSet(), userNPub);
+            return ResponseEntity.ok(createdWorkout.toWorkoutResponse());
+        } catch (ConcurrencyLimitExceededException e) {
+            return overloaded(e);
+        }
     }
 
     @PostMapping("/addExercise/{workoutId}")
@@ -60,14 +131,130 @@ public class WorkoutController {
 
         } catch (WorkoutNotFoundException e) {
             return ResponseEntity.status(404).body("Workout with ID " + workoutId + " not found");
+        } catch (OptimisticLockingFailureException e) {
+            return ResponseEntity.status(409).body("Workout is being modified concurrently, please retry");
+        } catch (ConcurrencyLimitExceededException e) {
+            return overloaded(e);
+        }
+    }
+
+    @PostMapping("/{workoutId}/sets")
+    @PreAuthorize("@workoutService.isWorkoutOwner(authentication, #workoutId)")
+    public ResponseEntity<?> addSets(@Valid @RequestBody BatchSetsRequest batchSetsRequest, BindingResult bindingResult,
+                                     @PathVariable("workoutId") String workoutId) {
+        if (bindingResult.hasErrors()) {
+            return ResponseEntity.badRequest().body(bindingResult.getAllErrors().stream().map(DefaultMessageSourceResolvable::getDefaultMessage).toList());
+        }
+        try {
+            Workout existingWorkout = workoutService.getWorkoutById(workoutId);
+            Workout updatedWorkout = workoutService.addSetsToWorkout(existingWorkout, batchSetsRequest.sets());
+            return ResponseEntity.ok(updatedWorkout.toWorkoutResponse());
+        } catch (WorkoutNotFoundException e) {
+            return ResponseEntity.status(404).body("Workout with ID " + workoutId + " not found");
+        } catch (OptimisticLockingFailureException e) {
+            return ResponseEntity.status(409).body("Workout is being modified concurrently, please retry");
+        } catch (ConcurrencyLimitExceededException e) {
+            return overloaded(e);
         }
     }
 
     @GetMapping()
     public ResponseEntity<List<WorkoutResponse>> getWorkouts(Authentication authentication, @RequestParam(defaultValue = "0") int page,
-                                                             @RequestParam(defaultValue = "10") int size){
+                                                             @RequestParam(defaultValue = "10") int size,
+                                                             WebRequest webRequest){
         String userNPub = authentication.getName();
+        // Read before the list, so a write landing in between can only make the ETag stale, never the body
+        String eTag = workoutService.getWorkoutListETag(userNPub, page, size);
+        if (webRequest.checkNotModified(eTag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(eTag).build();
+        }
         List<Workout> workouts = workoutService.getWorkoutsByUser(userNPub, page, size);
-        return ResponseEntity.ok(workouts.stream().map(Workout::toWorkoutResponse).toList());
+        return ResponseEntity.ok().eTag(eTag).body(workouts.stream().map(Workout::toWorkoutResponse).toList());
+    }
+
+    @GetMapping("/sync")
+    public ResponseEntity<?> syncWorkouts(@RequestParam(required = false) String token,
+                                          @RequestParam(defaultValue = "100") int limit,
+                                          Authentication authentication) {
+        String userNPub = authentication.getName();
+        try {
+            WorkoutSyncResponse changes = workoutSyncService.sync(userNPub, token, Math.min(limit, 500));
+            return ResponseEntity.ok(changes);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
+    @PostMapping(value = "/import", consumes = {"text/csv", MediaType.APPLICATION_OCTET_STREAM_VALUE})
+    public ResponseEntity<?> importStrongCsv(InputStream csvStream,
+                                             @RequestParam(defaultValue = "UTC") String timeZone,
+                                             Authentication authentication) throws IOException {
+        String userNPub = authentication.getName();
+        try {
+            WorkoutImportResponse importResponse = strongCsvImportService.importStrongCsv(csvStream, userNPub,
+                                                                                         ZoneId.of(timeZone));
+            return ResponseEntity.ok(importResponse);
+        } catch (DateTimeException | IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> exportWorkouts(@RequestParam(defaultValue = "ndjson") String format,
+                                                                Authentication authentication) {
+        String userNPub = authentication.getName();
+
+        if ("csv".equalsIgnoreCase(format)) {
+            return ResponseEntity.ok()
+                                 .contentType(MediaType.parseMediaType("text/csv"))
+                                 .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"workouts.csv\"")
+                                 .body(outputStream -> workoutExportService.exportCsv(userNPub, outputStream));
+        }
+        if ("ndjson".equalsIgnoreCase(format)) {
+            return ResponseEntity.ok()
+                                 .contentType(MediaType.APPLICATION_NDJSON)
+                                 .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"workouts.ndjson\"")
+                                 .body(outputStream -> workoutExportService.exportNdjson(userNPub, outputStream));
+        }
+        return ResponseEntity.badRequest().build();
+    }
+
+    @GetMapping("/rollups")
+    public ResponseEntity<?> getRollups(@RequestParam(defaultValue = "week") String period,
+                                        @RequestParam(required = false) String exerciseId,
+                                        @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+                                        @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+                                        Authentication authentication) {
+        String userNPub = authentication.getName();
+        RollupPeriod rollupPeriod;
+        try {
+            rollupPeriod = RollupPeriod.valueOf(period.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body("Unsupported period: " + period);
+        }
+        List<TrainingRollupResponse> rollups = trainingRollupService.getRollups(userNPub, rollupPeriod, exerciseId, from, to);
+        return ResponseEntity.ok(rollups);
+    }
+
+    @GetMapping("/calendar")
+    public ResponseEntity<?> getTrainingCalendar(@RequestParam(defaultValue = "UTC") String timeZone,
+                                                 Authentication authentication) {
+        String userNPub = authentication.getName();
+        try {
+            LocalDate today = LocalDate.now(ZoneId.of(timeZone));
+            TrainingCalendarResponse stats = trainingCalendarService.getStats(userNPub, today);
+            return ResponseEntity.ok(stats);
+        } catch (DateTimeException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
+    @GetMapping("/calendar/{year}")
+    public ResponseEntity<List<LocalDate>> getTrainedDays(@PathVariable("year") int year, Authentication authentication) {
+        return ResponseEntity.ok(trainingCalendarService.getTrainedDays(authentication.getName(), year));
+    }
+
+    private static ResponseEntity<String> overloaded(ConcurrencyLimitExceededException e) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).header(HttpHeaders.RETRY_AFTER, "1").body(e.getMessage());
     }
 }
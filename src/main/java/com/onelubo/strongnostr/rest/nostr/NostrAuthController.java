@@ -3,15 +3,29 @@ package com.onelubo.strongnostr.rest.nostr;
 import com.onelubo.strongnostr.dto.nostr.NostrAuthChallenge;
 import com.onelubo.strongnostr.dto.nostr.NostrAuthRequest;
 import com.onelubo.strongnostr.dto.nostr.NostrAuthResult;
+import com.onelubo.strongnostr.exception.ConcurrencyLimitExceededException;
+import com.onelubo.strongnostr.exception.VerificationSaturatedException;
+import com.onelubo.strongnostr.service.AdaptiveConcurrencyLimiter;
 import com.onelubo.strongnostr.service.ChallengeStore;
+import com.onelubo.strongnostr.service.ConcurrencyLimiters;
+import com.onelubo.strongnostr.service.nostr.AuthAttempt;
+import com.onelubo.strongnostr.service.nostr.AuthRateLimiter;
 import com.onelubo.strongnostr.service.nostr.NostrAuthenticationService;
+import com.onelubo.strongnostr.service.nostr.SignatureVerificationPool;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.media.ExampleObject;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletRequest;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
@@ -19,9 +33,11 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
 import java.util.Optional;
+import java.util.function.Supplier;
 
 
 @RestController
+@Profile("!reactive")
 @RequestMapping("/api/v1/nostr/auth")
 @Tag(name = "Authentication", description = "Nostr-based authentication endpoints")
 public class NostrAuthController {
@@ -30,10 +46,20 @@ public class NostrAuthController {
 
     private final NostrAuthenticationService nostrAuthenticationService;
     private final ChallengeStore challengeStore;
+    private final SignatureVerificationPool signatureVerificationPool;
+    private final AuthRateLimiter authRateLimiter;
+    private final AdaptiveConcurrencyLimiter loginLimiter;
+    private final ObservationRegistry observationRegistry;
 
-    public NostrAuthController(NostrAuthenticationService nostrAuthenticationService, ChallengeStore challengeStore) {
+    public NostrAuthController(NostrAuthenticationService nostrAuthenticationService, ChallengeStore challengeStore,
+                               SignatureVerificationPool signatureVerificationPool, AuthRateLimiter authRateLimiter,
+                               ConcurrencyLimiters concurrencyLimiters, ObservationRegistry observationRegistry) {
         this.nostrAuthenticationService = nostrAuthenticationService;
         this.challengeStore = challengeStore;
+        this.signatureVerificationPool = signatureVerificationPool;
+        this.authRateLimiter = authRateLimiter;
+        this.loginLimiter = concurrencyLimiters.login();
+        this.observationRegistry = observationRegistry;
     }
 
     @Operation(
@@ -41,6 +67,7 @@ public class NostrAuthController {
             description = """
                       Generates a unique authentication challenge that must be signed with your Nostr private key.
                       The challenge is valid for 5 minutes and can only be used once.
+                      A non-zero powDifficulty means the login event must carry NIP-13 proof of work.
                       """,
             responses = {
                     @ApiResponse(
@@ -56,17 +83,28 @@ public class NostrAuthController {
                                                     "challengeId": "123e4567-e89b-12d3-a456-426614174000",
                                                     "challenge": "Strong Nostr authentication challenge: c0fb86d0-56dc-43a7-aee9-64ce77dc324b",
                                                     "expiresAt": 1703520000000,
-                                                    "message": "Strong Nostr authentication challenge: c0fb86d0-56dc-43a7-aee9-64ce77dc324b at 1703520000000"
+                                                    "message": "Strong Nostr authentication challenge: c0fb86d0-56dc-43a7-aee9-64ce77dc324b at 1703520000000",
+                                                    "powDifficulty": 0
                                                     """
                                     )
                             )
+                    ),
+                    @ApiResponse(
+                            responseCode = "429",
+                            description = "Too many challenges requested from this address; retry after the Retry-After delay"
                     )
             }
     )
     @PostMapping("/challenge")
-    public ResponseEntity<NostrAuthChallenge> createChallenge() {
+    public ResponseEntity<NostrAuthChallenge> createChallenge(HttpServletRequest request) {
+        long waitMillis = authRateLimiter.checkChallenge(request.getRemoteAddr());
+        if (waitMillis > 0) {
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                                 .header(HttpHeaders.RETRY_AFTER, retryAfterSeconds(waitMillis))
+                                 .build();
+        }
         NostrAuthChallenge challenge = nostrAuthenticationService.generateAuthChallenge();
-        challengeStore.storeChallenge(challenge);
+        challengeStoreObservation("store").observe(() -> challengeStore.storeChallenge(challenge));
         return  ResponseEntity.ok(challenge);
     }
 
@@ -81,6 +119,8 @@ public class NostrAuthController {
                           - Content: The exact challenge string received from the challenge endpoint
                           - Signature: BIP340 Schnorr signature of the event ID
                           - Created_at: Unix timestamp (should be recent)
+                          - Tags: when proof of work is required, a NIP-13 nonce tag mined so the event ID has that many
+                            leading zero bits; the required difficulty rises with load and is reported in the error message
                           """,
             requestBody = @io.swagger.v3.oas.annotations.parameters.RequestBody(
                     description = "Nostr event containing the signed challenge",
@@ -157,21 +197,101 @@ public class NostrAuthController {
                                             """
                             )
                     )
+            ),
+            @ApiResponse(
+                    responseCode = "429",
+                    description = "Too many login attempts from this address or for this npub; retry after the Retry-After delay"
+            ),
+            @ApiResponse(
+                    responseCode = "503",
+                    description = "Too many logins in progress; retry after the Retry-After delay"
             )
     })
     @PostMapping("/login")
-    public ResponseEntity<NostrAuthResult> loginWithNostrEvent(@RequestBody NostrAuthRequest nostrAuthRequest) {
+    public ResponseEntity<NostrAuthResult> loginWithNostrEvent(@RequestBody NostrAuthRequest nostrAuthRequest,
+                                                               HttpServletRequest request) {
         logger.info("Received request: {}", nostrAuthRequest);
-        Optional<ChallengeStore.StoredChallenge> storedChallenge = challengeStore.getChallenge(nostrAuthRequest.getChallengeId());
+        // Outcome and reason are always set, so every login lands in the same set of tagged series
+        Observation observation = Observation.createNotStarted("strongnostr.login", observationRegistry)
+                                             .lowCardinalityKeyValue("outcome", "error")
+                                             .lowCardinalityKeyValue("reason", "none")
+                                             .start();
+        try (Observation.Scope scope = observation.openScope()) {
+            ResponseEntity<NostrAuthResult> response = admitAndLogin(nostrAuthRequest, request);
+            observation.lowCardinalityKeyValue("outcome", outcome(response.getStatusCode()));
+            return response;
+        } catch (RuntimeException e) {
+            observation.lowCardinalityKeyValue("reason", "exception");
+            observation.error(e);
+            throw e;
+        } finally {
+            observation.stop();
+        }
+    }
+
+    private ResponseEntity<NostrAuthResult> admitAndLogin(NostrAuthRequest nostrAuthRequest, HttpServletRequest request) {
+        String claimedNpub = nostrAuthRequest.getNostrEvent() != null ? nostrAuthRequest.getNostrEvent().getNpub() : null;
+        long waitMillis = authRateLimiter.checkLogin(request.getRemoteAddr(), claimedNpub);
+        if (waitMillis > 0) {
+            tagLoginReason("rate_limit");
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                                 .header(HttpHeaders.RETRY_AFTER, retryAfterSeconds(waitMillis))
+                                 .body(NostrAuthResult.failure("Too many login attempts"));
+        }
+        if (!signatureVerificationPool.tryAdmit()) {
+            // Turned away before the challenge is consumed, so the client can retry with the same one
+            tagLoginReason("verification_queue");
+            return saturated(VerificationSaturatedException.MESSAGE);
+        }
+
+        try {
+            return loginLimiter.execute(() -> login(nostrAuthRequest));
+        } catch (ConcurrencyLimitExceededException e) {
+            tagLoginReason("concurrency_limit");
+            return saturated(e.getMessage());
+        } catch (VerificationSaturatedException e) {
+            tagLoginReason("verification_queue");
+            return saturated(e.getMessage());
+        } finally {
+            signatureVerificationPool.leave();
+        }
+    }
+
+    private ResponseEntity<NostrAuthResult> login(NostrAuthRequest nostrAuthRequest) {
+        // Structure and encoding first: a malformed event never reaches the store or uses up its challenge
+        AuthAttempt attempt = new AuthAttempt(nostrAuthRequest.getNostrEvent());
+        NostrAuthResult malformed = nostrAuthenticationService.checkEvent(attempt);
+        if (malformed != null) {
+            logger.info("Authentication failed: {}", malformed.message());
+            return ResponseEntity.badRequest().body(malformed);
+        }
+
+        Optional<ChallengeStore.StoredChallenge> storedChallenge =
+                observeChallengeStore("get", () -> challengeStore.getChallenge(nostrAuthRequest.getChallengeId()));
 
         if (storedChallenge.isEmpty() || storedChallenge.get().used()) {
+            tagLoginReason("challenge");
             return ResponseEntity.badRequest().body(NostrAuthResult.failure("Invalid or expired challenge"));
         }
 
-        challengeStore.markChallengeAsUsed(nostrAuthRequest.getChallengeId());
+        if (!observeChallengeStore("mark_used", () -> challengeStore.markChallengeAsUsed(nostrAuthRequest.getChallengeId()))) {
+            // Another login with the same challenge got there first
+            tagLoginReason("challenge");
+            return ResponseEntity.badRequest().body(NostrAuthResult.failure("Invalid or expired challenge"));
+        }
 
-        NostrAuthResult nostrAuthResult = nostrAuthenticationService.authenticateWithNostrEvent(nostrAuthRequest,
-                                                                                                storedChallenge.get().challenge());
+        NostrAuthResult nostrAuthResult;
+        try {
+            nostrAuthResult = nostrAuthenticationService.authenticate(attempt, nostrAuthRequest.getUserProfile(),
+                                                                      storedChallenge.get());
+        } catch (VerificationSaturatedException e) {
+            // The queue filled up after the saturation check; nothing was verified, so hand the challenge back
+            observeChallengeStore("release", () -> {
+                challengeStore.releaseChallenge(nostrAuthRequest.getChallengeId());
+                return null;
+            });
+            throw e;
+        }
         if (nostrAuthResult.success()) {
             return ResponseEntity.ok(nostrAuthResult);
         } else {
@@ -180,4 +300,42 @@ public class NostrAuthController {
         }
     }
 
+    private Observation challengeStoreObservation(String operation) {
+        return Observation.createNotStarted("strongnostr.login.challenge.store", observationRegistry)
+                          .lowCardinalityKeyValue("operation", operation);
+    }
+
+    private <T> T observeChallengeStore(String operation, Supplier<T> call) {
+        return challengeStoreObservation(operation).observe(call);
+    }
+
+    private void tagLoginReason(String reason) {
+        Observation login = observationRegistry.getCurrentObservation();
+        if (login != null) {
+            login.lowCardinalityKeyValue("reason", reason);
+        }
+    }
+
+    private static String outcome(HttpStatusCode status) {
+        if (status.is2xxSuccessful()) {
+            return "success";
+        }
+        return switch (status.value()) {
+            case 400 -> "rejected";
+            case 429 -> "rate_limited";
+            case 503 -> "overloaded";
+            default -> "error";
+        };
+    }
+
+    private static String retryAfterSeconds(long waitMillis) {
+        return String.valueOf(Math.max(1, (waitMillis + 999) / 1000));
+    }
+
+    private static ResponseEntity<NostrAuthResult> saturated(String message) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                             .header(HttpHeaders.RETRY_AFTER, "1")
+                             .body(NostrAuthResult.failure(message));
+    }
+
 }
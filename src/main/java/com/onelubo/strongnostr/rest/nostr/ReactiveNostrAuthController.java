@@ -0,0 +1,142 @@
+package com.onelubo.strongnostr.rest.nostr;
+
+import com.onelubo.strongnostr.dto.nostr.NostrAuthChallenge;
+import com.onelubo.strongnostr.dto.nostr.NostrAuthRequest;
+import com.onelubo.strongnostr.dto.nostr.NostrAuthResult;
+import com.onelubo.strongnostr.exception.VerificationSaturatedException;
+import com.onelubo.strongnostr.service.ChallengeStoreReactiveRedis;
+import com.onelubo.strongnostr.service.nostr.AuthAttempt;
+import com.onelubo.strongnostr.service.nostr.AuthRateLimiter;
+import com.onelubo.strongnostr.service.nostr.NostrAuthenticationService;
+import com.onelubo.strongnostr.service.nostr.ReactiveNostrAuthenticationService;
+import com.onelubo.strongnostr.service.nostr.SignatureVerificationPool;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.net.InetSocketAddress;
+import java.util.concurrent.Callable;
+
+/**
+ * {@link NostrAuthController} on WebFlux for the reactive profile: the same endpoints, admission and
+ * checks, with the challenge and the user awaited without holding a thread. The rate limiter may block
+ * on Redis, so its checks run on the bounded elastic scheduler.
+ */
+@RestController
+@Profile("reactive")
+@RequestMapping("/api/v1/nostr/auth")
+public class ReactiveNostrAuthController {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReactiveNostrAuthController.class);
+
+    private final NostrAuthenticationService nostrAuthenticationService;
+    private final ReactiveNostrAuthenticationService reactiveNostrAuthenticationService;
+    private final ChallengeStoreReactiveRedis challengeStore;
+    private final SignatureVerificationPool signatureVerificationPool;
+    private final AuthRateLimiter authRateLimiter;
+
+    public ReactiveNostrAuthController(NostrAuthenticationService nostrAuthenticationService,
+                                       ReactiveNostrAuthenticationService reactiveNostrAuthenticationService,
+                                       ChallengeStoreReactiveRedis challengeStore,
+                                       SignatureVerificationPool signatureVerificationPool, AuthRateLimiter authRateLimiter) {
+        this.nostrAuthenticationService = nostrAuthenticationService;
+        this.reactiveNostrAuthenticationService = reactiveNostrAuthenticationService;
+        this.challengeStore = challengeStore;
+        this.signatureVerificationPool = signatureVerificationPool;
+        this.authRateLimiter = authRateLimiter;
+    }
+
+    @PostMapping("/challenge")
+    public Mono<ResponseEntity<NostrAuthChallenge>> createChallenge(ServerHttpRequest request) {
+        return rateLimit(() -> authRateLimiter.checkChallenge(remoteAddress(request)))
+                .flatMap(waitMillis -> {
+                    if (waitMillis > 0) {
+                        return Mono.just(ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                                                       .header(HttpHeaders.RETRY_AFTER, retryAfterSeconds(waitMillis))
+                                                       .<NostrAuthChallenge>build());
+                    }
+                    NostrAuthChallenge challenge = nostrAuthenticationService.generateAuthChallenge();
+                    return challengeStore.storeChallenge(challenge).thenReturn(ResponseEntity.ok(challenge));
+                });
+    }
+
+    @PostMapping("/login")
+    public Mono<ResponseEntity<NostrAuthResult>> loginWithNostrEvent(@RequestBody NostrAuthRequest nostrAuthRequest,
+                                                                     ServerHttpRequest request) {
+        logger.info("Received request: {}", nostrAuthRequest);
+        String claimedNpub = nostrAuthRequest.getNostrEvent() != null ? nostrAuthRequest.getNostrEvent().getNpub() : null;
+        return rateLimit(() -> authRateLimiter.checkLogin(remoteAddress(request), claimedNpub))
+                .flatMap(waitMillis -> {
+                    if (waitMillis > 0) {
+                        return Mono.just(ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                                                       .header(HttpHeaders.RETRY_AFTER, retryAfterSeconds(waitMillis))
+                                                       .body(NostrAuthResult.failure("Too many login attempts")));
+                    }
+                    if (!signatureVerificationPool.tryAdmit()) {
+                        // Turned away before the challenge is consumed, so the client can retry with the same one
+                        return Mono.just(saturated(VerificationSaturatedException.MESSAGE));
+                    }
+                    return Mono.defer(() -> login(nostrAuthRequest))
+                               .onErrorResume(VerificationSaturatedException.class, e -> Mono.just(saturated(e.getMessage())))
+                               .doFinally(signal -> signatureVerificationPool.leave());
+                });
+    }
+
+    private Mono<ResponseEntity<NostrAuthResult>> login(NostrAuthRequest nostrAuthRequest) {
+        // Structure and encoding first: a malformed event never reaches the store or uses up its challenge
+        AuthAttempt attempt = new AuthAttempt(nostrAuthRequest.getNostrEvent());
+        NostrAuthResult malformed = nostrAuthenticationService.checkEvent(attempt);
+        if (malformed != null) {
+            logger.info("Authentication failed: {}", malformed.message());
+            return Mono.just(ResponseEntity.badRequest().body(malformed));
+        }
+
+        String challengeId = nostrAuthRequest.getChallengeId();
+        return challengeStore.getChallenge(challengeId)
+                             .filter(storedChallenge -> !storedChallenge.used())
+                             // Another login with the same challenge may get there first
+                             .filterWhen(storedChallenge -> challengeStore.markChallengeAsUsed(challengeId))
+                             .flatMap(storedChallenge -> reactiveNostrAuthenticationService
+                                     .authenticate(attempt, nostrAuthRequest.getUserProfile(), storedChallenge)
+                                     // The queue filled up after admission; nothing was verified, so hand the challenge back
+                                     .onErrorResume(VerificationSaturatedException.class,
+                                                    e -> challengeStore.releaseChallenge(challengeId).then(Mono.error(e))))
+                             .map(nostrAuthResult -> {
+                                 if (nostrAuthResult.success()) {
+                                     return ResponseEntity.ok(nostrAuthResult);
+                                 }
+                                 logger.info("Authentication failed: {}", nostrAuthResult.message());
+                                 return ResponseEntity.badRequest().body(nostrAuthResult);
+                             })
+                             .defaultIfEmpty(ResponseEntity.badRequest().body(NostrAuthResult.failure("Invalid or expired challenge")));
+    }
+
+    private static Mono<Long> rateLimit(Callable<Long> check) {
+        return Mono.fromCallable(check).subscribeOn(Schedulers.boundedElastic());
+    }
+
+    private static String remoteAddress(ServerHttpRequest request) {
+        InetSocketAddress remoteAddress = request.getRemoteAddress();
+        return remoteAddress != null ? remoteAddress.getAddress().getHostAddress() : null;
+    }
+
+    private static String retryAfterSeconds(long waitMillis) {
+        return String.valueOf(Math.max(1, (waitMillis + 999) / 1000));
+    }
+
+    private static ResponseEntity<NostrAuthResult> saturated(String message) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                             .header(HttpHeaders.RETRY_AFTER, "1")
+                             .body(NostrAuthResult.failure(message));
+    }
+}
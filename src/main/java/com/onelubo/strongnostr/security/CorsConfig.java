@@ -13,6 +13,13 @@ public class CorsConfig {
 
     @Bean
     public CorsConfigurationSource corsConfigurationSource() {
+        UrlBasedCorsConfigurationSource source = new UrlBasedCorsConfigurationSource();
+        source.registerCorsConfiguration("/**", corsConfiguration());
+
+        return  source;
+    }
+
+    static CorsConfiguration corsConfiguration() {
         CorsConfiguration corsConfiguration = new CorsConfiguration();
 
         corsConfiguration.setAllowedOrigins(List.of("http://localhost:3000", "https://127.0.0.1:3000"));
@@ -20,13 +27,13 @@ public class CorsConfig {
         corsConfiguration.setAllowedMethods(List.of("GET", "POST", "PUT", "DELETE", "OPTIONS"));
 
         corsConfiguration.setAllowedHeaders(List.of("Authorization", "Content-Type", "Accept",
-                                                    "X-Requested-With", "Origin"));
+                                                    "X-Requested-With", "Origin", "Idempotency-Key",
+                                                    "If-None-Match"));
 
-        corsConfiguration.setAllowCredentials(true);
+        corsConfiguration.setExposedHeaders(List.of("Idempotent-Replayed", "Retry-After", "ETag"));
 
-        UrlBasedCorsConfigurationSource source = new UrlBasedCorsConfigurationSource();
-        source.registerCorsConfiguration("/**", corsConfiguration);
+        corsConfiguration.setAllowCredentials(true);
 
-        return  source;
+        return corsConfiguration;
     }
 }
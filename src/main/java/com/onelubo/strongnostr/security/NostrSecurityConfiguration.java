@@ -1,13 +1,18 @@
 package com.onelubo.strongnostr.security;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
 import org.springframework.security.config.annotation.web.configurers.AbstractHttpConfigurer;
 import org.springframework.security.config.http.*;
 import org.springframework.security.config.annotation.method.configuration.EnableMethodSecurity;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
+import org.springframework.security.authorization.AuthorizationDecision;
+import org.springframework.security.authorization.AuthorizationManager;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.web.SecurityFilterChain;
+import org.springframework.security.web.access.intercept.RequestAuthorizationContext;
 import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
 import org.springframework.web.cors.CorsConfiguration;
 import org.springframework.web.cors.CorsConfigurationSource;
@@ -17,18 +22,22 @@ import org.springframework.web.filter.CommonsRequestLoggingFilter;
 import java.util.List;
 
 @Configuration
+@Profile("!reactive")
 @EnableWebSecurity
 @EnableMethodSecurity()
 public class NostrSecurityConfiguration {
     private final JwtAuthenticationEntryPoint jwtAuthenticationEntryPoint;
     private final JwtRequestFilter jwtRequestFilter;
     private final CorsConfigurationSource corsConfigurationSource;
+    private final int managementPort;
 
     public NostrSecurityConfiguration(JwtAuthenticationEntryPoint jwtAuthenticationEntryPoint,
-                                      JwtRequestFilter jwtRequestFilter, CorsConfigurationSource corsConfigurationSource) {
+                                      JwtRequestFilter jwtRequestFilter, CorsConfigurationSource corsConfigurationSource,
+                                      @Value("${management.server.port:-1}") int managementPort) {
         this.jwtAuthenticationEntryPoint = jwtAuthenticationEntryPoint;
         this.jwtRequestFilter = jwtRequestFilter;
         this.corsConfigurationSource = corsConfigurationSource;
+        this.managementPort = managementPort;
     }
 
     @Bean
@@ -41,10 +50,15 @@ public class NostrSecurityConfiguration {
                                 .requestMatchers("/api/v1/nostr/auth/challenge", "/api/v1/nostr/auth/login").permitAll()
                                 .requestMatchers("/api/health", "/api/public/**").permitAll()
                                 .requestMatchers("/actuator", "/actuator/health").permitAll()
+                                // Operational detail and scrape target, only reachable on the internal management port
+                                .requestMatchers("/actuator/concurrency", "/actuator/prometheus").access(onManagementPort())
                                 .requestMatchers("/swagger-ui/**", "/v3/api-docs/**", "/api/docs/**","/api-docs",
                                                  "/api-docs.yaml", "/api-docs.yaml/{group}",
                                                  "/api-docs/swagger-config", "/api-docs/{group}").permitAll()
                                 .requestMatchers("/api/v1/nostr/workout/**").authenticated()
+                                .requestMatchers("/api/v1/nostr/exercise/**").authenticated()
+                                // The handshake is authenticated by JwtHandshakeInterceptor, which also accepts a query token
+                                .requestMatchers("/api/v1/nostr/live").permitAll()
                                 .anyRequest().denyAll())
                 .exceptionHandling(ex -> ex
                         .authenticationEntryPoint(jwtAuthenticationEntryPoint))
@@ -54,6 +68,15 @@ public class NostrSecurityConfiguration {
                 .build();
     }
 
+    /**
+     * Grants requests that arrived on {@code management.server.port}; with no separate management
+     * port configured nothing matches, so these endpoints are never public on the application port
+     */
+    private AuthorizationManager<RequestAuthorizationContext> onManagementPort() {
+        return (authentication, context) ->
+                new AuthorizationDecision(managementPort > 0 && context.getRequest().getLocalPort() == managementPort);
+    }
+
     //TODO: can be removed after testing
     @Bean
     public CommonsRequestLoggingFilter logFilter() {
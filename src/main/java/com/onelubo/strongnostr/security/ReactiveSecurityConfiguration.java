@@ -0,0 +1,62 @@
+package com.onelubo.strongnostr.security;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.security.authorization.AuthorizationDecision;
+import org.springframework.security.authorization.ReactiveAuthorizationManager;
+import org.springframework.security.config.annotation.web.reactive.EnableWebFluxSecurity;
+import org.springframework.security.config.web.server.ServerHttpSecurity;
+import org.springframework.security.web.server.SecurityWebFilterChain;
+import org.springframework.security.web.server.authorization.AuthorizationContext;
+import org.springframework.web.cors.reactive.UrlBasedCorsConfigurationSource;
+import reactor.core.publisher.Mono;
+
+import java.net.InetSocketAddress;
+
+/**
+ * {@link NostrSecurityConfiguration} for the reactive profile, which serves only the auth endpoints
+ */
+@Configuration
+@Profile("reactive")
+@EnableWebFluxSecurity
+public class ReactiveSecurityConfiguration {
+
+    private final int managementPort;
+
+    public ReactiveSecurityConfiguration(@Value("${management.server.port:-1}") int managementPort) {
+        this.managementPort = managementPort;
+    }
+
+    @Bean
+    public SecurityWebFilterChain securityWebFilterChain(ServerHttpSecurity http) {
+        UrlBasedCorsConfigurationSource corsConfigurationSource = new UrlBasedCorsConfigurationSource();
+        corsConfigurationSource.registerCorsConfiguration("/**", CorsConfig.corsConfiguration());
+
+        return http
+                .csrf(ServerHttpSecurity.CsrfSpec::disable)
+                .cors(cors -> cors.configurationSource(corsConfigurationSource))
+                .httpBasic(ServerHttpSecurity.HttpBasicSpec::disable)
+                .formLogin(ServerHttpSecurity.FormLoginSpec::disable)
+                .authorizeExchange(
+                        exchange -> exchange
+                                .pathMatchers("/api/v1/nostr/auth/challenge", "/api/v1/nostr/auth/login").permitAll()
+                                .pathMatchers("/actuator", "/actuator/health").permitAll()
+                                // Operational detail and scrape target, only reachable on the internal management port
+                                .pathMatchers("/actuator/concurrency", "/actuator/prometheus").access(onManagementPort())
+                                .anyExchange().denyAll())
+                .build();
+    }
+
+    /**
+     * @see NostrSecurityConfiguration
+     */
+    private ReactiveAuthorizationManager<AuthorizationContext> onManagementPort() {
+        return (authentication, context) -> {
+            InetSocketAddress localAddress = context.getExchange().getRequest().getLocalAddress();
+            return Mono.just(new AuthorizationDecision(managementPort > 0 && localAddress != null
+                                                               && localAddress.getPort() == managementPort));
+        };
+    }
+}
@@ -0,0 +1,126 @@
+package com.onelubo.strongnostr.service;
+
+import com.onelubo.strongnostr.exception.ConcurrencyLimitExceededException;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * Concurrency limit that finds itself from observed latency, after the gradient algorithm of
+ * Netflix's concurrency-limits. A long-term average of latency stands for the no-load baseline;
+ * while recent calls are as fast as that the limit grows by about its square root, and as they
+ * slow down the gradient {@code baseline / latency} shrinks it toward what the backend sustains.
+ * Calls that fail with an overload signal (a timeout, a saturated pool) cut the limit
+ * multiplicatively. Calls over the limit are rejected at once rather than queued.
+ */
+public class AdaptiveConcurrencyLimiter {
+
+    private static final double BASELINE_WINDOW = 600;
+    private static final double SMOOTHING = 0.2;
+    private static final double TOLERANCE = 1.5;
+    private static final double MIN_GRADIENT = 0.5;
+    private static final double BACKOFF_RATIO = 0.9;
+
+    private final String name;
+    private final int minLimit;
+    private final int maxLimit;
+    private final Predicate<Throwable> isOverload;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicLong rejected = new AtomicLong();
+    private final ReentrantLock updateLock = new ReentrantLock();
+    private volatile double limit;
+    private double baselineNanos;
+
+    public AdaptiveConcurrencyLimiter(String name, int initialLimit, int minLimit, int maxLimit,
+                                      Predicate<Throwable> isOverload) {
+        if (minLimit < 1 || minLimit > maxLimit || initialLimit < minLimit || initialLimit > maxLimit) {
+            throw new IllegalArgumentException("Concurrency limits must satisfy 1 <= min <= initial <= max");
+        }
+        this.name = name;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.isOverload = isOverload;
+        this.limit = initialLimit;
+    }
+
+    /**
+     * Run {@code work} if the limit allows another call in flight
+     *
+     * @throws ConcurrencyLimitExceededException if it does not
+     */
+    public <T> T execute(Supplier<T> work) {
+        int current;
+        do {
+            current = inFlight.get();
+            if (current >= getLimit()) {
+                rejected.incrementAndGet();
+                throw new ConcurrencyLimitExceededException(name);
+            }
+        } while (!inFlight.compareAndSet(current, current + 1));
+
+        long start = System.nanoTime();
+        try {
+            T result = work.get();
+            onSample(System.nanoTime() - start, current + 1);
+            return result;
+        } catch (RuntimeException e) {
+            if (isOverload.test(e)) {
+                onOverload();
+            }
+            throw e;
+        } finally {
+            inFlight.decrementAndGet();
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getLimit() {
+        return (int) limit;
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    public long getRejected() {
+        return rejected.get();
+    }
+
+    void onSample(long latencyNanos, int inFlightAtStart) {
+        if (latencyNanos <= 0 || !updateLock.tryLock()) {
+            // Another sample is being applied; with a steady stream of calls skipping one is harmless
+            return;
+        }
+        try {
+            baselineNanos = baselineNanos == 0 ? latencyNanos : baselineNanos + (latencyNanos - baselineNanos) / BASELINE_WINDOW;
+            double gradient = Math.max(MIN_GRADIENT, Math.min(1.0, TOLERANCE * baselineNanos / latencyNanos));
+            double target = limit * gradient + Math.sqrt(limit);
+            if (target > limit && inFlightAtStart < limit / 2) {
+                // The limit is not what holds callers back, so latency says nothing about raising it
+                return;
+            }
+            limit = clamp(limit * (1 - SMOOTHING) + target * SMOOTHING);
+        } finally {
+            updateLock.unlock();
+        }
+    }
+
+    private void onOverload() {
+        updateLock.lock();
+        try {
+            limit = clamp(limit * BACKOFF_RATIO);
+        } finally {
+            updateLock.unlock();
+        }
+    }
+
+    private double clamp(double value) {
+        return Math.max(minLimit, Math.min(maxLimit, value));
+    }
+}
@@ -10,16 +10,30 @@ public interface ChallengeStore {
     void storeChallenge(NostrAuthChallenge nostrAuthChallenge);
     Optional<StoredChallenge> getChallenge(String challengeId);
     boolean markChallengeAsUsed(String challengeId);
+
+    /**
+     * Undo {@link #markChallengeAsUsed} for a login turned away before its signature was checked,
+     * so the client can retry with the same challenge
+     */
+    void releaseChallenge(String challengeId);
     default void cleanupExpired() {}
     default void shutdown() {}
 
+    /**
+     * @param powDifficulty NIP-13 bits the challenge was issued with, which its login event must carry
+     */
     record StoredChallenge(
             String challenge,
             long expiresAt,
-            boolean used
+            boolean used,
+            int powDifficulty
     ) {
         public StoredChallenge markUsed() {
-            return new StoredChallenge(challenge, expiresAt, true);
+            return new StoredChallenge(challenge, expiresAt, true, powDifficulty);
+        }
+
+        public StoredChallenge release() {
+            return new StoredChallenge(challenge, expiresAt, false, powDifficulty);
         }
     }
 }
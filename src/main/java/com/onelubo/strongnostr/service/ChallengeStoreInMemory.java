@@ -1,17 +1,15 @@
 package com.onelubo.strongnostr.service;
 
 import com.onelubo.strongnostr.dto.nostr.NostrAuthChallenge;
-import jakarta.annotation.PostConstruct;
-import jakarta.annotation.PreDestroy;
 import org.springframework.context.annotation.Profile;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
 import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * In-memory challenge storage (use Redis in production)
@@ -21,17 +19,12 @@ import java.util.concurrent.TimeUnit;
 public class ChallengeStoreInMemory implements ChallengeStore {
 
     private final Map<String, StoredChallenge> challenges = new ConcurrentHashMap<>();
-    private final ScheduledExecutorService cleanupExecutor = Executors.newSingleThreadScheduledExecutor();
-
-    @PostConstruct
-    public void init() {
-        cleanupExecutor.scheduleAtFixedRate(this::cleanupExpired, 1, 1, TimeUnit.MINUTES);
-    }
 
     @Override
     public void storeChallenge(NostrAuthChallenge nostrAuthChallenge) {
-        long expiresAt = nostrAuthChallenge.getTimestamp() + CHALLENGE_VALIDITY_SECONDS * 1000L;
-        StoredChallenge stored = new StoredChallenge(nostrAuthChallenge.getChallenge(), expiresAt,false);
+        long expiresAt = (nostrAuthChallenge.getTimestamp() + CHALLENGE_VALIDITY_SECONDS) * 1000L;
+        StoredChallenge stored = new StoredChallenge(nostrAuthChallenge.getChallenge(), expiresAt, false,
+                                                     nostrAuthChallenge.getPowDifficulty());
         challenges.put(nostrAuthChallenge.getId(), stored);
     }
 
@@ -42,31 +35,31 @@ public class ChallengeStoreInMemory implements ChallengeStore {
 
     @Override
     public boolean markChallengeAsUsed(String challengeId) {
-        StoredChallenge challenge = challenges.get(challengeId);
-        if (challenge != null && !challenge.used() && challenge.expiresAt() > System.currentTimeMillis()) {
-            challenges.put(challengeId, challenge.markUsed());
-            return true;
-        }
-        return false;
+        long now = System.currentTimeMillis();
+        AtomicBoolean claimed = new AtomicBoolean();
+        // Atomic per key, so of two logins racing for one challenge only one claims it
+        challenges.computeIfPresent(challengeId, (id, challenge) -> {
+            if (challenge.used() || challenge.expiresAt() <= now) {
+                return challenge;
+            }
+            claimed.set(true);
+            return challenge.markUsed();
+        });
+        return claimed.get();
     }
 
     @Override
-    public void cleanupExpired() {
-        long now = System.currentTimeMillis();
-        challenges.entrySet().removeIf(entry -> entry.getValue().expiresAt() <= now);
+    public void releaseChallenge(String challengeId) {
+        challenges.computeIfPresent(challengeId, (id, challenge) -> challenge.release());
     }
 
-    @PreDestroy
+    /**
+     * Runs on the application's task scheduler, so it follows the virtual-thread mode
+     */
+    @Scheduled(initialDelay = 1, fixedRate = 1, timeUnit = TimeUnit.MINUTES)
     @Override
-    public void shutdown() {
-        cleanupExecutor.shutdown();
-        try {
-            if (!cleanupExecutor.awaitTermination(5, TimeUnit.SECONDS)) {
-                cleanupExecutor.shutdownNow();
-            }
-        } catch (InterruptedException e) {
-            cleanupExecutor.shutdownNow();
-            Thread.currentThread().interrupt();
-        }
+    public void cleanupExpired() {
+        long now = System.currentTimeMillis();
+        challenges.entrySet().removeIf(entry -> entry.getValue().expiresAt() <= now);
     }
 }
@@ -0,0 +1,63 @@
+package com.onelubo.strongnostr.service;
+
+import com.onelubo.strongnostr.dto.nostr.NostrAuthChallenge;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.serializer.GenericToStringSerializer;
+import org.springframework.data.redis.serializer.RedisElementReader;
+import org.springframework.data.redis.serializer.RedisElementWriter;
+import org.springframework.data.redis.serializer.StringRedisSerializer;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * {@link ChallengeStoreRedis} for the reactive profile, with the same keys, values and claim scripts,
+ * so a challenge issued by either stack can be used on the other
+ */
+@Profile("reactive")
+@Component
+public class ChallengeStoreReactiveRedis {
+
+    private final ReactiveRedisTemplate<String, ChallengeStore.StoredChallenge> reactiveChallengeRedisTemplate;
+
+    public ChallengeStoreReactiveRedis(ReactiveRedisTemplate<String, ChallengeStore.StoredChallenge> reactiveChallengeRedisTemplate) {
+        this.reactiveChallengeRedisTemplate = reactiveChallengeRedisTemplate;
+    }
+
+    public Mono<Void> storeChallenge(NostrAuthChallenge nostrAuthChallenge) {
+        ChallengeStore.StoredChallenge stored = ChallengeStoreRedis.stored(nostrAuthChallenge);
+        Duration ttl = Duration.ofMillis(stored.expiresAt() - System.currentTimeMillis());
+        return reactiveChallengeRedisTemplate.opsForValue().set(nostrAuthChallenge.getId(), stored, ttl).then();
+    }
+
+    public Mono<ChallengeStore.StoredChallenge> getChallenge(String challengeId) {
+        return reactiveChallengeRedisTemplate.opsForValue().get(challengeId);
+    }
+
+    /**
+     * @see ChallengeStore#markChallengeAsUsed
+     */
+    public Mono<Boolean> markChallengeAsUsed(String challengeId) {
+        return runScript(ChallengeStoreRedis.MARK_USED, challengeId, String.valueOf(System.currentTimeMillis()))
+                .map(claimed -> claimed == 1L)
+                .defaultIfEmpty(false);
+    }
+
+    /**
+     * @see ChallengeStore#releaseChallenge
+     */
+    public Mono<Void> releaseChallenge(String challengeId) {
+        return runScript(ChallengeStoreRedis.RELEASE, challengeId).then();
+    }
+
+    private Mono<Long> runScript(RedisScript<Long> script, String challengeId, String... args) {
+        return reactiveChallengeRedisTemplate.execute(script, List.of(challengeId), List.of(args),
+                                                      RedisElementWriter.from(new StringRedisSerializer()),
+                                                      RedisElementReader.from(new GenericToStringSerializer<>(Long.class)))
+                                             .next();
+    }
+}
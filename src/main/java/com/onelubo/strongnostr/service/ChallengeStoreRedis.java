@@ -1,39 +1,75 @@
 package com.onelubo.strongnostr.service;
 
 import com.onelubo.strongnostr.dto.nostr.NostrAuthChallenge;
-import jakarta.annotation.PostConstruct;
 import org.springframework.context.annotation.Profile;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.serializer.GenericToStringSerializer;
+import org.springframework.data.redis.serializer.StringRedisSerializer;
 import org.springframework.stereotype.Component;
 
+import java.util.List;
 import java.util.Optional;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 
+/**
+ * Challenges shared by every instance. Marking one used and handing it back are scripts that flip the
+ * flag of the stored JSON on the Redis side, so two logins racing for one challenge cannot both claim
+ * it, and the key keeps the expiry it was stored with.
+ */
 @Profile("redis")
 @Component
 public class ChallengeStoreRedis implements ChallengeStore {
 
+    // Returns 1 if this call flipped an unused, unexpired challenge to used
+    static final RedisScript<Long> MARK_USED = new DefaultRedisScript<>("""
+            local value = redis.call('GET', KEYS[1])
+            if not value then
+                return 0
+            end
+            local challenge = cjson.decode(value)
+            if challenge.used or challenge.expiresAt <= tonumber(ARGV[1]) then
+                return 0
+            end
+            challenge.used = true
+            redis.call('SET', KEYS[1], cjson.encode(challenge), 'KEEPTTL')
+            return 1
+            """, Long.class);
+
+    static final RedisScript<Long> RELEASE = new DefaultRedisScript<>("""
+            local value = redis.call('GET', KEYS[1])
+            if not value then
+                return 0
+            end
+            local challenge = cjson.decode(value)
+            if not challenge.used then
+                return 0
+            end
+            challenge.used = false
+            redis.call('SET', KEYS[1], cjson.encode(challenge), 'KEEPTTL')
+            return 1
+            """, Long.class);
+
     private final RedisTemplate<String, StoredChallenge> redisTemplate;
-    private final ScheduledExecutorService cleanupExecutor = Executors.newSingleThreadScheduledExecutor();
 
     public ChallengeStoreRedis(RedisTemplate<String, StoredChallenge> redisTemplate) {
         this.redisTemplate = redisTemplate;
     }
 
-    @PostConstruct
-    public void init() {
-        cleanupExecutor.scheduleAtFixedRate(this::cleanupExpired, 1, 1, TimeUnit.MINUTES);
-    }
     @Override
     public void storeChallenge(NostrAuthChallenge nostrAuthChallenge) {
-        long expiresAt = (nostrAuthChallenge.getTimestamp()  + CHALLENGE_VALIDITY_SECONDS) * 1000L;
-        StoredChallenge stored = new StoredChallenge(nostrAuthChallenge.getChallenge(), expiresAt,false);
-        long ttl = expiresAt - System.currentTimeMillis();
+        StoredChallenge stored = stored(nostrAuthChallenge);
+        long ttl = stored.expiresAt() - System.currentTimeMillis();
         redisTemplate.opsForValue().set(nostrAuthChallenge.getId(), stored, ttl, TimeUnit.MILLISECONDS);
     }
 
+    static StoredChallenge stored(NostrAuthChallenge nostrAuthChallenge) {
+        long expiresAt = (nostrAuthChallenge.getTimestamp()  + CHALLENGE_VALIDITY_SECONDS) * 1000L;
+        return new StoredChallenge(nostrAuthChallenge.getChallenge(), expiresAt, false,
+                                   nostrAuthChallenge.getPowDifficulty());
+    }
+
     @Override
     public Optional<StoredChallenge> getChallenge(String challengeId) {
         return Optional.ofNullable(redisTemplate.opsForValue().get(challengeId));
@@ -41,12 +77,17 @@ public class ChallengeStoreRedis implements ChallengeStore {
 
     @Override
     public boolean markChallengeAsUsed(String challengeId) {
-        StoredChallenge challenge = redisTemplate.opsForValue().get(challengeId);
-        if (challenge != null && !challenge.used() && challenge.expiresAt() > System.currentTimeMillis()) {
-            redisTemplate.opsForValue().set(challengeId, challenge.markUsed());
-            return  true;
-        }
-        return false;
+        return Long.valueOf(1).equals(runScript(MARK_USED, challengeId, String.valueOf(System.currentTimeMillis())));
+    }
+
+    @Override
+    public void releaseChallenge(String challengeId) {
+        runScript(RELEASE, challengeId);
+    }
+
+    private Long runScript(RedisScript<Long> script, String challengeId, String... args) {
+        return redisTemplate.execute(script, new StringRedisSerializer(), new GenericToStringSerializer<>(Long.class),
+                                     List.of(challengeId), (Object[]) args);
     }
 
     @Override
@@ -0,0 +1,68 @@
+package com.onelubo.strongnostr.service;
+
+import com.onelubo.strongnostr.exception.VerificationSaturatedException;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.dao.TransientDataAccessResourceException;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * The adaptive limiters in front of the login path and the Mongo-bound workout writes, published
+ * as gauges and on the {@code concurrency} actuator endpoint
+ */
+@Component
+public class ConcurrencyLimiters {
+
+    private final AdaptiveConcurrencyLimiter login;
+    private final AdaptiveConcurrencyLimiter workoutWrites;
+
+    public ConcurrencyLimiters(MeterRegistry meterRegistry,
+                               @Value("${strongnostr.concurrency.login.initial-limit:20}") int loginInitial,
+                               @Value("${strongnostr.concurrency.login.min-limit:4}") int loginMin,
+                               @Value("${strongnostr.concurrency.login.max-limit:500}") int loginMax,
+                               @Value("${strongnostr.concurrency.workout-writes.initial-limit:20}") int writesInitial,
+                               @Value("${strongnostr.concurrency.workout-writes.min-limit:2}") int writesMin,
+                               @Value("${strongnostr.concurrency.workout-writes.max-limit:500}") int writesMax) {
+        this.login = new AdaptiveConcurrencyLimiter("login", loginInitial, loginMin, loginMax,
+                                                    VerificationSaturatedException.class::isInstance);
+        this.workoutWrites = new AdaptiveConcurrencyLimiter("workoutWrites", writesInitial, writesMin, writesMax,
+                                                            ConcurrencyLimiters::isMongoOverload);
+        all().forEach(limiter -> register(meterRegistry, limiter));
+    }
+
+    public AdaptiveConcurrencyLimiter login() {
+        return login;
+    }
+
+    public AdaptiveConcurrencyLimiter workoutWrites() {
+        return workoutWrites;
+    }
+
+    public List<AdaptiveConcurrencyLimiter> all() {
+        return List.of(login, workoutWrites);
+    }
+
+    private static boolean isMongoOverload(Throwable e) {
+        return e instanceof QueryTimeoutException
+                || e instanceof DataAccessResourceFailureException
+                || e instanceof TransientDataAccessResourceException;
+    }
+
+    private static void register(MeterRegistry meterRegistry, AdaptiveConcurrencyLimiter limiter) {
+        Gauge.builder("strongnostr.concurrency.limit", limiter, AdaptiveConcurrencyLimiter::getLimit)
+             .tag("limiter", limiter.getName())
+             .register(meterRegistry);
+        Gauge.builder("strongnostr.concurrency.in.flight", limiter, AdaptiveConcurrencyLimiter::getInFlight)
+             .tag("limiter", limiter.getName())
+             .register(meterRegistry);
+        FunctionCounter.builder("strongnostr.concurrency.rejected", limiter, AdaptiveConcurrencyLimiter::getRejected)
+                       .tag("limiter", limiter.getName())
+                       .register(meterRegistry);
+    }
+}
@@ -0,0 +1,46 @@
+package com.onelubo.strongnostr.service;
+
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * Responses of write requests sent with an {@code Idempotency-Key}, so that client retries are
+ * answered from the store instead of being executed again
+ */
+public interface IdempotencyStore {
+
+    /**
+     * Claim the key for a request about to run; false if another request already holds or completed it
+     */
+    boolean reserve(String key, String fingerprint, Duration ttl);
+
+    Optional<StoredResponse> get(String key);
+
+    void complete(String key, StoredResponse response, Duration ttl);
+
+    /**
+     * Give up a claim without a response, so that a retry runs the request again
+     */
+    void release(String key);
+
+    default void cleanupExpired() {}
+    default void shutdown() {}
+
+    /**
+     * A claimed key, holding the response once the first execution completed
+     *
+     * @param fingerprint method, path and SHA-256 of the body of the request that claimed the key
+     */
+    record StoredResponse(
+            String fingerprint,
+            boolean completed,
+            int status,
+            String contentType,
+            String body,
+            long expiresAt
+    ) {
+        public static StoredResponse inProgress(String fingerprint, long expiresAt) {
+            return new StoredResponse(fingerprint, false, 0, null, null, expiresAt);
+        }
+    }
+}
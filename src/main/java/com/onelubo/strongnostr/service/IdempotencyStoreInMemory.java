@@ -0,0 +1,57 @@
+package com.onelubo.strongnostr.service;
+
+import org.springframework.context.annotation.Profile;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * In-memory idempotency storage, only valid for a single instance (use Redis in production)
+ */
+@Profile("!redis")
+@Component
+public class IdempotencyStoreInMemory implements IdempotencyStore {
+
+    private final Map<String, StoredResponse> responses = new ConcurrentHashMap<>();
+
+    @Override
+    public boolean reserve(String key, String fingerprint, Duration ttl) {
+        long now = System.currentTimeMillis();
+        StoredResponse claim = StoredResponse.inProgress(fingerprint, now + ttl.toMillis());
+        // Atomic per key: an expired entry is replaced, a live one is kept
+        StoredResponse current = responses.compute(key, (k, existing) ->
+                existing == null || existing.expiresAt() <= now ? claim : existing);
+        return current == claim;
+    }
+
+    @Override
+    public Optional<StoredResponse> get(String key) {
+        StoredResponse response = responses.get(key);
+        if (response == null || response.expiresAt() <= System.currentTimeMillis()) {
+            return Optional.empty();
+        }
+        return Optional.of(response);
+    }
+
+    @Override
+    public void complete(String key, StoredResponse response, Duration ttl) {
+        responses.put(key, response);
+    }
+
+    @Override
+    public void release(String key) {
+        responses.remove(key);
+    }
+
+    @Scheduled(initialDelay = 1, fixedRate = 1, timeUnit = TimeUnit.MINUTES)
+    @Override
+    public void cleanupExpired() {
+        long now = System.currentTimeMillis();
+        responses.entrySet().removeIf(entry -> entry.getValue().expiresAt() <= now);
+    }
+}
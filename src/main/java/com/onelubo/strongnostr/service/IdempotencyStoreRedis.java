@@ -0,0 +1,43 @@
+package com.onelubo.strongnostr.service;
+
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Optional;
+
+@Profile("redis")
+@Component
+public class IdempotencyStoreRedis implements IdempotencyStore {
+
+    private static final String KEY_PREFIX = "idempotency:";
+
+    private final RedisTemplate<String, StoredResponse> redisTemplate;
+
+    public IdempotencyStoreRedis(RedisTemplate<String, StoredResponse> redisTemplate) {
+        this.redisTemplate = redisTemplate;
+    }
+
+    @Override
+    public boolean reserve(String key, String fingerprint, Duration ttl) {
+        StoredResponse claim = StoredResponse.inProgress(fingerprint, System.currentTimeMillis() + ttl.toMillis());
+        // SET NX with expiry: exactly one instance wins the claim
+        return Boolean.TRUE.equals(redisTemplate.opsForValue().setIfAbsent(KEY_PREFIX + key, claim, ttl));
+    }
+
+    @Override
+    public Optional<StoredResponse> get(String key) {
+        return Optional.ofNullable(redisTemplate.opsForValue().get(KEY_PREFIX + key));
+    }
+
+    @Override
+    public void complete(String key, StoredResponse response, Duration ttl) {
+        redisTemplate.opsForValue().set(KEY_PREFIX + key, response, ttl);
+    }
+
+    @Override
+    public void release(String key) {
+        redisTemplate.delete(KEY_PREFIX + key);
+    }
+}
@@ -0,0 +1,23 @@
+package com.onelubo.strongnostr.service;
+
+public interface RateLimiter {
+
+    /**
+     * Take one permit for {@code key}
+     *
+     * @return 0 if the call is allowed, otherwise the milliseconds until a permit is expected
+     */
+    long tryAcquire(String key, RateLimit limit);
+    default void cleanupExpired() {}
+
+    /**
+     * Up to {@code burst} calls at once, refilled at {@code perMinute}
+     */
+    record RateLimit(int burst, int perMinute) {
+        public RateLimit {
+            if (burst <= 0 || perMinute <= 0) {
+                throw new IllegalArgumentException("Rate limits must be positive");
+            }
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.onelubo.strongnostr.service;
+
+import org.springframework.context.annotation.Profile;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Token buckets per key, only valid for a single instance (use Redis for several). Buckets are
+ * spread over the map's bins, refilled lazily on access and updated with a compare-and-set, so
+ * concurrent callers never block each other.
+ */
+@Profile("!redis")
+@Component
+public class RateLimiterInMemory implements RateLimiter {
+
+    private static final double NANOS_PER_MINUTE = TimeUnit.MINUTES.toNanos(1);
+
+    private final Map<String, Bucket> buckets = new ConcurrentHashMap<>();
+
+    @Override
+    public long tryAcquire(String key, RateLimit limit) {
+        return buckets.computeIfAbsent(key, k -> new Bucket(limit, System.nanoTime())).tryAcquire(System.nanoTime());
+    }
+
+    /**
+     * A full bucket is indistinguishable from a new one, so it can go
+     */
+    @Scheduled(initialDelay = 1, fixedRate = 1, timeUnit = TimeUnit.MINUTES)
+    @Override
+    public void cleanupExpired() {
+        long now = System.nanoTime();
+        buckets.values().removeIf(bucket -> bucket.isFull(now));
+    }
+
+    private static final class Bucket {
+        private final RateLimit limit;
+        private final double tokensPerNano;
+        private final AtomicReference<State> state;
+
+        Bucket(RateLimit limit, long now) {
+            this.limit = limit;
+            this.tokensPerNano = limit.perMinute() / NANOS_PER_MINUTE;
+            this.state = new AtomicReference<>(new State(limit.burst(), now));
+        }
+
+        long tryAcquire(long now) {
+            while (true) {
+                State current = state.get();
+                long refilledAt = Math.max(now, current.refilledAt());
+                double tokens = available(current, refilledAt);
+                if (tokens < 1) {
+                    return Math.max(1, TimeUnit.NANOSECONDS.toMillis((long) Math.ceil((1 - tokens) / tokensPerNano)));
+                }
+                if (state.compareAndSet(current, new State(tokens - 1, refilledAt))) {
+                    return 0;
+                }
+            }
+        }
+
+        boolean isFull(long now) {
+            State current = state.get();
+            return available(current, Math.max(now, current.refilledAt())) >= limit.burst();
+        }
+
+        private double available(State state, long now) {
+            return Math.min(limit.burst(), state.tokens() + (now - state.refilledAt()) * tokensPerNano);
+        }
+    }
+
+    private record State(double tokens, long refilledAt) {}
+}
@@ -0,0 +1,55 @@
+package com.onelubo.strongnostr.service;
+
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Token buckets per key, shared by every instance and with the same semantics as
+ * {@link RateLimiterInMemory}: up to {@code burst} calls at once, refilled at {@code perMinute}.
+ * Each bucket is a hash of its tokens and last refill time, which a script refills, takes from
+ * and expires atomically on the Redis side, using the Redis clock so that instances with skewed
+ * clocks agree.
+ */
+@Profile("redis")
+@Component
+public class RateLimiterRedis implements RateLimiter {
+
+    private static final String KEY_PREFIX = "ratelimit:bucket:";
+
+    // Returns 0 when a token was taken, else the millis until the next token is refilled.
+    // A bucket expires once it would be full again, since a full bucket is the same as a missing one.
+    private static final RedisScript<Long> TOKEN_BUCKET = new DefaultRedisScript<>("""
+            local time = redis.call('TIME')
+            local now = tonumber(time[1]) * 1000 + tonumber(time[2]) / 1000
+            local burst = tonumber(ARGV[1])
+            local tokensPerMilli = tonumber(ARGV[2]) / 60000
+            local bucket = redis.call('HMGET', KEYS[1], 'tokens', 'refilledAt')
+            local tokens = tonumber(bucket[1]) or burst
+            local refilledAt = tonumber(bucket[2]) or now
+            tokens = math.min(burst, tokens + math.max(0, now - refilledAt) * tokensPerMilli)
+            if tokens < 1 then
+                return math.max(1, math.ceil((1 - tokens) / tokensPerMilli))
+            end
+            redis.call('HSET', KEYS[1], 'tokens', tostring(tokens - 1), 'refilledAt', tostring(now))
+            redis.call('PEXPIRE', KEYS[1], math.ceil(burst / tokensPerMilli))
+            return 0
+            """, Long.class);
+
+    private final StringRedisTemplate redisTemplate;
+
+    public RateLimiterRedis(StringRedisTemplate redisTemplate) {
+        this.redisTemplate = redisTemplate;
+    }
+
+    @Override
+    public long tryAcquire(String key, RateLimit limit) {
+        Long waitMillis = redisTemplate.execute(TOKEN_BUCKET, List.of(KEY_PREFIX + key),
+                                                String.valueOf(limit.burst()), String.valueOf(limit.perMinute()));
+        return waitMillis != null ? waitMillis : 0L;
+    }
+}
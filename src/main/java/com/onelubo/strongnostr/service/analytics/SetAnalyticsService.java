@@ -0,0 +1,185 @@
+package com.onelubo.strongnostr.service.analytics;
+
+import com.mongodb.client.MongoCursor;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.Sorts;
+import com.onelubo.strongnostr.dto.ExerciseAnalyticsResponse;
+import com.onelubo.strongnostr.dto.ExerciseAnalyticsResponse.LinearFit;
+import com.onelubo.strongnostr.dto.ExerciseAnalyticsResponse.VolumePoint;
+import com.onelubo.strongnostr.model.history.OneRepMax;
+import com.onelubo.strongnostr.model.history.SetHistoryEntry;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Objects;
+import java.util.stream.IntStream;
+
+/**
+ * Trend lines, volume-load curves and RPE-vs-load regressions over a user's working sets.
+ * The set history is streamed straight from the cursor into {@link SetColumns} without mapping
+ * entities, and every statistic is a single pass over the primitive columns of one exercise.
+ * Large histories are analysed exercise-by-exercise on the fork/join pool.
+ */
+@Service
+public class SetAnalyticsService {
+
+    private static final double MILLIS_PER_DAY = 86_400_000.0;
+
+    private final MongoTemplate mongoTemplate;
+    private final int cursorBatchSize;
+    private final int parallelThreshold;
+
+    public SetAnalyticsService(MongoTemplate mongoTemplate,
+                               @Value("${strongnostr.analytics.cursor-batch-size:1000}") int cursorBatchSize,
+                               @Value("${strongnostr.analytics.parallel-threshold:20000}") int parallelThreshold) {
+        this.mongoTemplate = mongoTemplate;
+        this.cursorBatchSize = cursorBatchSize;
+        this.parallelThreshold = parallelThreshold;
+    }
+
+    /**
+     * Analytics of every exercise (or only {@code exerciseId} when given) performed in [from, to]
+     */
+    public List<ExerciseAnalyticsResponse> analyse(String userNPub, String exerciseId, Instant from, Instant to) {
+        return analyse(load(userNPub, exerciseId, from, to));
+    }
+
+    public List<ExerciseAnalyticsResponse> analyse(SetColumns columns) {
+        IntStream exercises = IntStream.range(0, columns.exerciseCount());
+        if (columns.size() >= parallelThreshold) {
+            exercises = exercises.parallel();
+        }
+        return exercises.mapToObj(exercise -> analyseExercise(columns, exercise)).toList();
+    }
+
+    /**
+     * Stream the user's working sets into columns, grouped by exercise and oldest first.
+     * The sort walks the (userNPub, exerciseId, performedAt, setNumber) index backwards.
+     */
+    public SetColumns load(String userNPub, String exerciseId, Instant from, Instant to) {
+        Objects.requireNonNull(userNPub);
+
+        List<Bson> filters = new ArrayList<>();
+        filters.add(Filters.eq("userNPub", userNPub));
+        if (exerciseId != null) {
+            filters.add(Filters.eq("exerciseId", exerciseId));
+        }
+        if (from != null) {
+            filters.add(Filters.gte("performedAt", Date.from(from)));
+        }
+        if (to != null) {
+            filters.add(Filters.lte("performedAt", Date.from(to)));
+        }
+        filters.add(Filters.ne("warmup", true));
+
+        SetColumns.Builder builder = SetColumns.builder();
+        try (MongoCursor<Document> cursor = mongoTemplate.getCollection(mongoTemplate.getCollectionName(SetHistoryEntry.class))
+                                                         .find(Filters.and(filters))
+                                                         .projection(Projections.fields(
+                                                                 Projections.include("exerciseId", "exerciseName", "performedAt",
+                                                                                     "weight", "reps", "rpe"),
+                                                                 Projections.excludeId()))
+                                                         .sort(Sorts.orderBy(Sorts.descending("exerciseId"),
+                                                                             Sorts.ascending("performedAt", "setNumber")))
+                                                         .batchSize(cursorBatchSize)
+                                                         .iterator()) {
+            while (cursor.hasNext()) {
+                Document row = cursor.next();
+                Number weight = (Number) row.get("weight");
+                Number reps = (Number) row.get("reps");
+                Number rpe = (Number) row.get("rpe");
+                Date performedAt = row.getDate("performedAt");
+                if (weight == null || reps == null || performedAt == null) {
+                    continue;
+                }
+                builder.add(row.getString("exerciseId"), row.getString("exerciseName"), performedAt.getTime(),
+                            weight.doubleValue(), reps.intValue(), rpe != null ? rpe.floatValue() : Float.NaN);
+            }
+        }
+        return builder.build();
+    }
+
+    static ExerciseAnalyticsResponse analyseExercise(SetColumns columns, int exercise) {
+        int start = columns.exerciseStart(exercise);
+        int end = columns.exerciseEnd(exercise);
+        long origin = columns.epoch(start);
+
+        RegressionSums trend = new RegressionSums();
+        RegressionSums rpeVsLoad = new RegressionSums();
+        List<VolumePoint> volumeLoad = new ArrayList<>();
+        double totalVolume = 0.0;
+        double bestEstimatedOneRepMax = 0.0;
+        double sessionVolume = 0.0;
+
+        for (int row = start; row < end; row++) {
+            double weight = columns.weight(row);
+            int reps = columns.reps(row);
+            long epoch = columns.epoch(row);
+            double volume = weight * reps;
+            double estimatedOneRepMax = OneRepMax.epley(weight, reps);
+
+            totalVolume += volume;
+            if (estimatedOneRepMax > bestEstimatedOneRepMax) {
+                bestEstimatedOneRepMax = estimatedOneRepMax;
+            }
+            trend.add((epoch - origin) / MILLIS_PER_DAY, estimatedOneRepMax);
+            float rpe = columns.rpe(row);
+            if (!Float.isNaN(rpe)) {
+                rpeVsLoad.add(weight, rpe);
+            }
+
+            // All sets of a session share the workout's timestamp
+            sessionVolume += volume;
+            if (row + 1 == end || columns.epoch(row + 1) != epoch) {
+                volumeLoad.add(new VolumePoint(Instant.ofEpochMilli(epoch), sessionVolume));
+                sessionVolume = 0.0;
+            }
+        }
+
+        return new ExerciseAnalyticsResponse(columns.exerciseId(exercise), columns.exerciseName(exercise), end - start,
+                                             totalVolume, bestEstimatedOneRepMax, trend.fit(), rpeVsLoad.fit(),
+                                             volumeLoad);
+    }
+
+    /**
+     * Running sums for an ordinary least-squares fit
+     */
+    private static final class RegressionSums {
+        private int n;
+        private double sumX;
+        private double sumY;
+        private double sumXX;
+        private double sumXY;
+        private double sumYY;
+
+        void add(double x, double y) {
+            n++;
+            sumX += x;
+            sumY += y;
+            sumXX += x * x;
+            sumXY += x * y;
+            sumYY += y * y;
+        }
+
+        LinearFit fit() {
+            double varianceX = n * sumXX - sumX * sumX;
+            if (n < 2 || varianceX == 0.0) {
+                return null;
+            }
+            double covariance = n * sumXY - sumX * sumY;
+            double slope = covariance / varianceX;
+            double intercept = (sumY - slope * sumX) / n;
+            double varianceY = n * sumYY - sumY * sumY;
+            double r2 = varianceY == 0.0 ? 1.0 : (covariance * covariance) / (varianceX * varianceY);
+            return new LinearFit(n, slope, intercept, r2);
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.onelubo.strongnostr.service.nostr;
+
+import com.onelubo.strongnostr.nostr.NostrEvent;
+
+/**
+ * A login event on its way through the {@link AuthEventPipeline}. Stages fill in what they derive
+ * so later ones do not repeat the work.
+ */
+public class AuthAttempt {
+
+    private final NostrEvent event;
+    private String expectedChallenge;
+    private int requiredDifficulty;
+    private String pubkeyHex;
+    private String computedEventId;
+
+    public AuthAttempt(NostrEvent event) {
+        this.event = event;
+    }
+
+    public NostrEvent getEvent() {
+        return event;
+    }
+
+    /**
+     * The challenge the login was issued, set once it has been read from the store
+     */
+    public String getExpectedChallenge() {
+        return expectedChallenge;
+    }
+
+    /**
+     * NIP-13 bits the challenge was issued with
+     */
+    public int getRequiredDifficulty() {
+        return requiredDifficulty;
+    }
+
+    public void setChallenge(String expectedChallenge, int requiredDifficulty) {
+        this.expectedChallenge = expectedChallenge;
+        this.requiredDifficulty = requiredDifficulty;
+    }
+
+    /**
+     * Lowercase hex public key, set once the encoding stage has resolved it
+     */
+    public String getPubkeyHex() {
+        return pubkeyHex;
+    }
+
+    public void setPubkeyHex(String pubkeyHex) {
+        this.pubkeyHex = pubkeyHex;
+    }
+
+    /**
+     * SHA-256 of the serialized event, set by the event-id stage
+     */
+    public String getComputedEventId() {
+        return computedEventId;
+    }
+
+    public void setComputedEventId(String computedEventId) {
+        this.computedEventId = computedEventId;
+    }
+}
@@ -0,0 +1,99 @@
+package com.onelubo.strongnostr.service.nostr;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs login event checks in order and stops at the first rejection. The stages are the
+ * {@link AuthEventStage} beans in their {@code @Order}, cheapest first, so a bad request is turned
+ * away by the least work that can spot it. Those that need only the event run before the challenge
+ * is read from the store, the rest once it has been claimed.
+ * Each stage gets a latency histogram tagged with its name and outcome, and a rejection counter.
+ */
+@Component
+public class AuthEventPipeline {
+
+    private final List<AuthEventStage> stages;
+    private final List<Timer> passed;
+    private final List<Timer> rejected;
+    private final List<Counter> rejections;
+
+    public AuthEventPipeline(MeterRegistry meterRegistry, List<AuthEventStage> stages) {
+        this.stages = List.copyOf(stages);
+        this.passed = timers(meterRegistry, "passed");
+        this.rejected = timers(meterRegistry, "rejected");
+        this.rejections = this.stages.stream()
+                                     .map(stage -> Counter.builder("strongnostr.auth.stage.rejected")
+                                                          .description("Logins rejected by a validation stage")
+                                                          .tag("stage", stage.name())
+                                                          .register(meterRegistry))
+                                     .toList();
+    }
+
+    /**
+     * @return null if every stage passed, otherwise the first rejection
+     */
+    public Rejection run(AuthAttempt attempt) {
+        Rejection rejection = runBeforeChallenge(attempt);
+        return rejection != null ? rejection : runWithChallenge(attempt);
+    }
+
+    /**
+     * Run the stages that need only the event
+     *
+     * @return null if they all passed, otherwise the first rejection
+     */
+    public Rejection runBeforeChallenge(AuthAttempt attempt) {
+        return run(attempt, true);
+    }
+
+    /**
+     * Run the stages that need the challenge, once it is set on the attempt
+     *
+     * @return null if they all passed, otherwise the first rejection
+     */
+    public Rejection runWithChallenge(AuthAttempt attempt) {
+        return run(attempt, false);
+    }
+
+    private Rejection run(AuthAttempt attempt, boolean beforeChallenge) {
+        for (int i = 0; i < stages.size(); i++) {
+            if (stages.get(i).beforeChallenge() != beforeChallenge) {
+                continue;
+            }
+            long start = System.nanoTime();
+            String failure = stages.get(i).check(attempt);
+            long elapsed = System.nanoTime() - start;
+            if (failure != null) {
+                rejected.get(i).record(elapsed, TimeUnit.NANOSECONDS);
+                rejections.get(i).increment();
+                return new Rejection(stages.get(i).name(), failure);
+            }
+            passed.get(i).record(elapsed, TimeUnit.NANOSECONDS);
+        }
+        return null;
+    }
+
+    private List<Timer> timers(MeterRegistry meterRegistry, String outcome) {
+        return stages.stream()
+                     .map(stage -> Timer.builder("strongnostr.auth.stage.duration")
+                                        .description("Time spent in a login validation stage")
+                                        .tag("stage", stage.name())
+                                        .tag("outcome", outcome)
+                                        .publishPercentileHistogram()
+                                        .register(meterRegistry))
+                     .toList();
+    }
+
+    /**
+     * @param stage name of the stage that turned the attempt away, low cardinality
+     * @param message failure message for the client
+     */
+    public record Rejection(String stage, String message) {
+    }
+}
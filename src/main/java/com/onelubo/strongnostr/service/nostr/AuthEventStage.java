@@ -0,0 +1,49 @@
+package com.onelubo.strongnostr.service.nostr;
+
+import java.util.function.Function;
+
+/**
+ * One check in the {@link AuthEventPipeline}
+ */
+public interface AuthEventStage {
+
+    /**
+     * Tag for this stage's timer and rejection counter
+     */
+    String name();
+
+    /**
+     * @return null if the attempt passes, otherwise the failure message returned to the client
+     */
+    String check(AuthAttempt attempt);
+
+    /**
+     * Whether the check needs only the event, so it can run before the challenge is read from the store
+     */
+    default boolean beforeChallenge() {
+        return false;
+    }
+
+    static AuthEventStage of(String name, Function<AuthAttempt, String> check) {
+        return of(name, false, check);
+    }
+
+    static AuthEventStage of(String name, boolean beforeChallenge, Function<AuthAttempt, String> check) {
+        return new AuthEventStage() {
+            @Override
+            public String name() {
+                return name;
+            }
+
+            @Override
+            public boolean beforeChallenge() {
+                return beforeChallenge;
+            }
+
+            @Override
+            public String check(AuthAttempt attempt) {
+                return check.apply(attempt);
+            }
+        };
+    }
+}
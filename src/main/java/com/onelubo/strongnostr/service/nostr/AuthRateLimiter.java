@@ -0,0 +1,59 @@
+package com.onelubo.strongnostr.service.nostr;
+
+import com.onelubo.strongnostr.service.RateLimiter;
+import com.onelubo.strongnostr.service.RateLimiter.RateLimit;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Limits on the unauthenticated auth endpoints, checked before any challenge store access or
+ * signature verification. Every call counts against the client's IP; logins also count against
+ * the npub they claim, which slows down spraying one account from many addresses. The npub is not
+ * verified at that point, so its limit is kept loose enough that someone else's attempts cannot
+ * lock its owner out for long.
+ */
+@Component
+public class AuthRateLimiter {
+
+    private final RateLimiter rateLimiter;
+    private final MeterRegistry meterRegistry;
+    private final RateLimit ipLimit;
+    private final RateLimit npubLimit;
+
+    public AuthRateLimiter(RateLimiter rateLimiter, MeterRegistry meterRegistry,
+                           @Value("${strongnostr.auth.rate-limit.ip-burst:20}") int ipBurst,
+                           @Value("${strongnostr.auth.rate-limit.ip-per-minute:60}") int ipPerMinute,
+                           @Value("${strongnostr.auth.rate-limit.npub-burst:10}") int npubBurst,
+                           @Value("${strongnostr.auth.rate-limit.npub-per-minute:20}") int npubPerMinute) {
+        this.rateLimiter = rateLimiter;
+        this.meterRegistry = meterRegistry;
+        this.ipLimit = new RateLimit(ipBurst, ipPerMinute);
+        this.npubLimit = new RateLimit(npubBurst, npubPerMinute);
+    }
+
+    /**
+     * @return 0 if the challenge may be issued, otherwise the milliseconds the client should wait
+     */
+    public long checkChallenge(String ip) {
+        return check("challenge", "ip", "ip:" + ip, ipLimit);
+    }
+
+    /**
+     * @return 0 if the login may proceed, otherwise the milliseconds the client should wait
+     */
+    public long checkLogin(String ip, String npub) {
+        long waitMillis = check("login", "ip", "ip:" + ip, ipLimit);
+        if (waitMillis > 0 || npub == null || npub.isBlank()) {
+            return waitMillis;
+        }
+        return check("login", "npub", "npub:" + npub, npubLimit);
+    }
+
+    private long check(String endpoint, String scope, String key, RateLimit limit) {
+        long waitMillis = rateLimiter.tryAcquire(key, limit);
+        meterRegistry.counter(waitMillis == 0 ? "strongnostr.auth.rate.allowed" : "strongnostr.auth.rate.limited",
+                              "endpoint", endpoint, "scope", scope).increment();
+        return waitMillis;
+    }
+}
@@ -0,0 +1,31 @@
+package com.onelubo.strongnostr.service.nostr;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+/**
+ * The event signs exactly the challenge that was issued for this login
+ */
+@Component
+@Order(40)
+public class ChallengeMatchStage implements AuthEventStage {
+
+    private static final Logger logger = LoggerFactory.getLogger(ChallengeMatchStage.class);
+
+    @Override
+    public String name() {
+        return "challenge";
+    }
+
+    @Override
+    public String check(AuthAttempt attempt) {
+        String content = attempt.getEvent().getContent();
+        if (!content.equals(attempt.getExpectedChallenge())) {
+            logger.debug("Challenge mismatch: expected={}, received={}", attempt.getExpectedChallenge(), content);
+            return "Challenge mismatch";
+        }
+        return null;
+    }
+}
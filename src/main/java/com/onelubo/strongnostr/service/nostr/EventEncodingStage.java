@@ -0,0 +1,70 @@
+package com.onelubo.strongnostr.service.nostr;
+
+import com.onelubo.strongnostr.nostr.NostrEvent;
+import com.onelubo.strongnostr.nostr.NostrKeyManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+/**
+ * Rejects anything the verifier would only choke on later, and binds the signing key to the npub
+ * the session is issued for
+ */
+@Component
+@Order(20)
+public class EventEncodingStage implements AuthEventStage {
+
+    private static final Logger logger = LoggerFactory.getLogger(EventEncodingStage.class);
+
+    private final NostrKeyManager nostrKeyManager;
+
+    public EventEncodingStage(NostrKeyManager nostrKeyManager) {
+        this.nostrKeyManager = nostrKeyManager;
+    }
+
+    @Override
+    public String name() {
+        return "encoding";
+    }
+
+    @Override
+    public boolean beforeChallenge() {
+        return true;
+    }
+
+    @Override
+    public String check(AuthAttempt attempt) {
+        NostrEvent event = attempt.getEvent();
+        if (!isHex(event.getSignature(), 128)) {
+            return "Malformed signature";
+        }
+        if (!isHex(event.getId(), 64)) {
+            return "Malformed event ID";
+        }
+        String npubHex;
+        try {
+            npubHex = nostrKeyManager.npubToHex(event.getNpub());
+        } catch (RuntimeException e) {
+            return "Malformed public key";
+        }
+        if (event.getPubkey() != null && !event.getPubkey().equalsIgnoreCase(npubHex)) {
+            logger.debug("Public key {} does not match npub {}", event.getPubkey(), event.getNpub());
+            return "Public key does not match npub";
+        }
+        attempt.setPubkeyHex(npubHex.toLowerCase());
+        return null;
+    }
+
+    private static boolean isHex(String value, int length) {
+        if (value == null || value.length() != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (Character.digit(value.charAt(i), 16) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,39 @@
+package com.onelubo.strongnostr.service.nostr;
+
+import com.onelubo.strongnostr.service.ChallengeStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+
+/**
+ * The challenge itself is single use; this bounds how long a captured event stays usable
+ */
+@Component
+@Order(30)
+public class EventFreshnessStage implements AuthEventStage {
+
+    private static final Logger logger = LoggerFactory.getLogger(EventFreshnessStage.class);
+
+    @Override
+    public String name() {
+        return "replay";
+    }
+
+    @Override
+    public boolean beforeChallenge() {
+        return true;
+    }
+
+    @Override
+    public String check(AuthAttempt attempt) {
+        long createdAt = attempt.getEvent().getCreatedAt();
+        if (Math.abs(Instant.now().getEpochSecond() - createdAt) > ChallengeStore.CHALLENGE_VALIDITY_SECONDS) {
+            logger.debug("Invalid or expired challenge: created_at={}", createdAt);
+            return "Invalid or expired challenge";
+        }
+        return null;
+    }
+}
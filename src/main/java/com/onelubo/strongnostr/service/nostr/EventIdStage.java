@@ -0,0 +1,105 @@
+package com.onelubo.strongnostr.service.nostr;
+
+import com.onelubo.strongnostr.nostr.NostrEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+import java.util.List;
+
+/**
+ * One SHA-256 of the NIP-01 serialization, which must match the id the event claims; the signature
+ * stage then verifies against this computed id
+ */
+@Component
+@Order(60)
+public class EventIdStage implements AuthEventStage {
+
+    private static final Logger logger = LoggerFactory.getLogger(EventIdStage.class);
+
+    @Override
+    public String name() {
+        return "event-id";
+    }
+
+    @Override
+    public String check(AuthAttempt attempt) {
+        String computedEventId = computeEventId(attempt.getEvent(), attempt.getPubkeyHex());
+        if (!computedEventId.equalsIgnoreCase(attempt.getEvent().getId())) {
+            logger.debug("Event ID mismatch: computed={}, expected={}", computedEventId, attempt.getEvent().getId());
+            return "Event ID mismatch";
+        }
+        attempt.setComputedEventId(computedEventId);
+        return null;
+    }
+
+    private static String computeEventId(NostrEvent nostrEvent, String pubkeyHex) {
+        try {
+            String serialized = serializeEventForId(nostrEvent, pubkeyHex);
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] hash = digest.digest(serialized.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(hash);
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to compute event ID", e);
+        }
+    }
+
+    private static String serializeEventForId(NostrEvent nostrEvent, String pubkeyHex) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("[0,\"");
+        sb.append(pubkeyHex);
+        sb.append("\",");
+        sb.append(nostrEvent.getCreatedAt());
+        sb.append(",");
+        sb.append(nostrEvent.getKind());
+        sb.append(",");
+        sb.append(serializeTags(nostrEvent.getTags()));
+        sb.append(",\"");
+        sb.append(escapeString(nostrEvent.getContent()));
+        sb.append("\"]");
+        return sb.toString();
+    }
+
+    private static String serializeTags(List<List<String>> tags) {
+        if (tags == null || tags.isEmpty()) {
+            return "[]";
+        }
+
+        StringBuilder sb = new StringBuilder("[");
+
+        for (int i = 0; i < tags.size(); i++) {
+            if (i > 0) {
+                sb.append(",");
+            }
+            List<String> tag = tags.get(i);
+            sb.append("[");
+
+            for (int j = 0; j < tag.size(); j++) {
+                if (j > 0) {
+                    sb.append(",");
+                }
+                sb.append("\"").append(escapeString(tag.get(j))).append("\"");
+            }
+            sb.append("]");
+        }
+        sb.append("]");
+
+        return sb.toString();
+    }
+
+    private static String escapeString(String str) {
+        if (str == null) {
+            return "";
+        }
+
+        return str.replace("\\", "\\\\")
+                  .replace("\"", "\\\"")
+                  .replace("\n", "\\n")
+                  .replace("\r", "\\r")
+                  .replace("\t", "\\t");
+    }
+}
@@ -0,0 +1,53 @@
+package com.onelubo.strongnostr.service.nostr;
+
+import com.onelubo.strongnostr.nostr.NostrEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+/**
+ * Field checks: the event is a login event with everything the later stages read, and its content
+ * looks like one of our challenges
+ */
+@Component
+@Order(10)
+public class EventStructureStage implements AuthEventStage {
+
+    private static final Logger logger = LoggerFactory.getLogger(EventStructureStage.class);
+
+    @Override
+    public String name() {
+        return "structure";
+    }
+
+    @Override
+    public boolean beforeChallenge() {
+        return true;
+    }
+
+    @Override
+    public String check(AuthAttempt attempt) {
+        NostrEvent event = attempt.getEvent();
+        if (!isValidNostrAuthEvent(event)) {
+            logger.debug("Invalid event received: {}", event);
+            return "Invalid nostr event structure";
+        }
+        String content = event.getContent();
+        String prefix = NostrAuthenticationService.CHALLENGE_PREFIX;
+        if (!content.startsWith(prefix) || content.length() <= prefix.length() + 30) { // 30 is the length of a typical UUID
+            logger.debug("Invalid or expired challenge: {}", content);
+            return "Invalid or expired challenge";
+        }
+        return null;
+    }
+
+    private static boolean isValidNostrAuthEvent(NostrEvent event) {
+        return event != null &&
+                event.getKind() == 22242 && // NIP-46 authentication event kind
+                event.getNpub() != null && !event.getNpub().trim().isEmpty() &&
+                event.getContent() != null && !event.getContent().trim().isEmpty() &&
+                event.getSignature() != null && !event.getSignature().trim().isEmpty() &&
+                event.getCreatedAt() > 0;
+    }
+}
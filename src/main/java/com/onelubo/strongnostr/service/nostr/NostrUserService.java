@@ -4,104 +4,142 @@ import com.onelubo.strongnostr.dto.nostr.NostrUserProfile;
 import com.onelubo.strongnostr.model.user.User;
 import com.onelubo.strongnostr.nostr.NostrKeyManager;
 import com.onelubo.strongnostr.repository.UserRepository;
+import org.bson.Document;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.stereotype.Service;
 
+/**
+ * Persists users as they log in. The profile fields are written with a single {@code findAndModify} whose
+ * filter only matches a stored profile that differs, so a returning user whose profile is unchanged costs
+ * no write, whichever instance wrote it last; first-time users are created through {@code $setOnInsert}.
+ */
 @Service
 public class NostrUserService {
 
-    private static final String BASE_USER_NAME = "nostr_user_";
+    private static final String BASE_USER_NAME = "nostr_user";
+    static final int MAX_USERNAME_ATTEMPTS = 5;
 
     private final UserRepository userRepository;
+    private final MongoTemplate mongoTemplate;
     private final NostrKeyManager nostrKeyManager;
+    private final UsernameAllocator usernameAllocator;
 
-    public NostrUserService(UserRepository userRepository, NostrKeyManager nostrKeyManager) {
+    public NostrUserService(UserRepository userRepository, MongoTemplate mongoTemplate, NostrKeyManager nostrKeyManager,
+                            UsernameAllocator usernameAllocator) {
         this.userRepository = userRepository;
+        this.mongoTemplate = mongoTemplate;
         this.nostrKeyManager = nostrKeyManager;
+        this.usernameAllocator = usernameAllocator;
     }
 
+    /**
+     * The user for a verified npub, created on first login, with the non-null fields of the given profile applied
+     */
     public User getOrCreateUser(String npub, NostrUserProfile userProfile) {
+        Update profile = profileUpdate(userProfile);
 
-        return userRepository.findByNpub(npub)
-                             .map(user -> {
-                                 updateUserFromProfile(user, userProfile);
-                                 return user;
-                             })
-                             .orElseGet(() -> createUser(npub, userProfile));
-    }
-
-    public void saveUser(User user) {
-        userRepository.save(user);
+        User user = null;
+        if (!profile.getUpdateObject().isEmpty()) {
+            user = mongoTemplate.findAndModify(byNpubWithProfileChanged(npub, profile), profile,
+                                               FindAndModifyOptions.options().returnNew(true), User.class);
+        }
+        if (user == null) {
+            // Unchanged profile or first login
+            user = userRepository.findByNpub(npub).orElse(null);
+        }
+        if (user == null) {
+            user = createUser(npub, userProfile);
+        }
+        return user;
     }
 
+    /**
+     * Upsert a first-time user. Only the insert allocates a username, so returning users never use up
+     * sequence numbers. The unique indexes settle races: a taken username (e.g. one given out before
+     * the allocator existed) is retried with the next one, and after a concurrent first login of the
+     * same npub the retry simply matches the user it created.
+     */
     private User createUser(String npub, NostrUserProfile userProfile) {
         String hexKey = nostrKeyManager.npubToHex(npub);
-        String userName = generateUniqueUsername(userProfile);
-
-        User newUser = new User(userName, npub, hexKey);
-        newUser.markAsVerified();
-
-        if (userProfile != null) {
-            updateUserFromProfile(newUser, userProfile);
+        String baseName = usernameBase(userProfile);
+        FindAndModifyOptions options = FindAndModifyOptions.options().upsert(true).returnNew(true);
+
+        for (int attempt = 1; ; attempt++) {
+            Update update = profileUpdate(userProfile)
+                    .setOnInsert("username", usernameAllocator.allocate(baseName))
+                    .setOnInsert("nPubHex", hexKey)
+                    .setOnInsert("verified", true);
+            try {
+                return mongoTemplate.findAndModify(byNpub(npub), update, options, User.class);
+            } catch (DuplicateKeyException e) {
+                if (attempt >= MAX_USERNAME_ATTEMPTS) {
+                    throw e;
+                }
+            }
         }
-
-        return  userRepository.save(newUser);
     }
 
-    private void updateUserFromProfile(User user, NostrUserProfile profileData) {
-        if (profileData == null) return;
-
-        NostrUserProfile userNostrProfile = user.getNostrProfile();
-        if (userNostrProfile == null) {
-            userNostrProfile = new NostrUserProfile();
-            user.setNostrProfile(userNostrProfile);
-        }
-
-        if (profileData.getName() != null) {
-            userNostrProfile.setName(profileData.getName());
-        }
-
-        if (profileData.getAbout() != null) {
-            userNostrProfile.setAbout(profileData.getAbout());
-        }
+    static Query byNpub(String npub) {
+        return new Query(Criteria.where("npub").is(npub));
+    }
 
-        if (profileData.getAvatarUrl() != null) {
-            userNostrProfile.setAvatarUrl(profileData.getAvatarUrl());
-        }
+    /**
+     * The user, provided at least one of the fields being set differs from the stored value
+     */
+    static Query byNpubWithProfileChanged(String npub, Update profile) {
+        Document fields = profile.getUpdateObject().get("$set", Document.class);
+        Criteria[] changed = fields.entrySet().stream()
+                                   .map(field -> Criteria.where(field.getKey()).ne(field.getValue()))
+                                   .toArray(Criteria[]::new);
+        return new Query(Criteria.where("npub").is(npub).orOperator(changed));
+    }
 
-        if (profileData.getNip05() != null) {
-            userNostrProfile.setNip05(profileData.getNip05());
+    /**
+     * {@code $set} for the non-null profile fields
+     */
+    static Update profileUpdate(NostrUserProfile profileData) {
+        Update update = new Update();
+        if (profileData == null) {
+            return update;
         }
+        setIfPresent(update, "nostrProfile.name", profileData.getName());
+        setIfPresent(update, "nostrProfile.about", profileData.getAbout());
+        setIfPresent(update, "nostrProfile.avatarUrl", profileData.getAvatarUrl());
+        setIfPresent(update, "nostrProfile.nip05", profileData.getNip05());
+        setIfPresent(update, "nostrProfile.lud16", profileData.getLud16());
+        return update;
+    }
 
-        if (profileData.getLud16() != null) {
-            userNostrProfile.setLud16(profileData.getLud16());
+    private static void setIfPresent(Update update, String field, String value) {
+        if (value != null) {
+            update.set(field, value);
         }
     }
 
-    private String generateUniqueUsername(NostrUserProfile nostrUserProfile) {
-        String baseName;
-
+    static String usernameBase(NostrUserProfile nostrUserProfile) {
         if (nostrUserProfile != null && nostrUserProfile.getName() != null &&
                 !nostrUserProfile.getName().trim().isEmpty()) {
-            baseName = generateCleanUserName(nostrUserProfile.getName());
-        } else {
-            baseName = BASE_USER_NAME;
+            String cleanUserName = generateCleanUserName(nostrUserProfile.getName());
+            if (!cleanUserName.isEmpty()) {
+                return cleanUserName;
+            }
         }
-
-        String userName = baseName;
-        int counter = 1;
-
-        while (userRepository.existsByUsername(userName)) {
-            counter++;
-        }
-
-        return  userName + counter;
+        return BASE_USER_NAME;
     }
 
-    private String generateCleanUserName(String userName) {
-        return userName.toLowerCase()
-                       .replaceAll("[^a-z0-9]", "_")
-                       .replaceAll("[_{2,}]", "_")
-                       .replaceAll("^_|_$", "")
-                       .substring(0, Math.min(userName.length(), 32));
+    /**
+     * Lower case letters and digits joined by single underscores, never ending in the allocator's separator
+     */
+    private static String generateCleanUserName(String userName) {
+        String cleanUserName = userName.toLowerCase()
+                                       .replaceAll("[^a-z0-9]", "_")
+                                       .replaceAll("_{2,}", "_")
+                                       .replaceAll("^_|_$", "");
+        return cleanUserName.substring(0, Math.min(cleanUserName.length(), 32));
     }
 }
@@ -0,0 +1,49 @@
+package com.onelubo.strongnostr.service.nostr;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Decides how much NIP-13 proof of work a login event must carry; it is fixed when the challenge
+ * is issued and stored with it, so the client knows what to mine for. The requirement follows the
+ * signature verification backlog: an idle pool asks for the minimum, and each queued verification
+ * raises it towards the maximum. Every extra bit doubles the client's hashing, while checking it
+ * is one pass over the id we already compute, so a flood costs the sender far more than us.
+ */
+@Component
+public class ProofOfWorkPolicy {
+
+    private final SignatureVerificationPool signatureVerificationPool;
+    private final boolean enabled;
+    private final int minDifficulty;
+    private final int maxDifficulty;
+
+    public ProofOfWorkPolicy(SignatureVerificationPool signatureVerificationPool, MeterRegistry meterRegistry,
+                             @Value("${strongnostr.auth.pow.enabled:false}") boolean enabled,
+                             @Value("${strongnostr.auth.pow.min-difficulty:0}") int minDifficulty,
+                             @Value("${strongnostr.auth.pow.max-difficulty:20}") int maxDifficulty) {
+        if (minDifficulty < 0 || maxDifficulty < minDifficulty || maxDifficulty > 256) {
+            throw new IllegalArgumentException("PoW difficulty must satisfy 0 <= min <= max <= 256");
+        }
+        this.signatureVerificationPool = signatureVerificationPool;
+        this.enabled = enabled;
+        this.minDifficulty = minDifficulty;
+        this.maxDifficulty = maxDifficulty;
+        Gauge.builder("strongnostr.auth.pow.difficulty", this, ProofOfWorkPolicy::requiredDifficulty)
+             .description("Leading zero bits currently required on login events")
+             .register(meterRegistry);
+    }
+
+    /**
+     * @return the leading zero bits a login event id needs right now, 0 when the check is off
+     */
+    public int requiredDifficulty() {
+        if (!enabled) {
+            return 0;
+        }
+        double fill = (double) signatureVerificationPool.queueDepth() / signatureVerificationPool.queueCapacity();
+        return minDifficulty + (int) Math.round((maxDifficulty - minDifficulty) * Math.min(1.0, fill));
+    }
+}
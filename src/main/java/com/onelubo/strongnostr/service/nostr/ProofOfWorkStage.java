@@ -0,0 +1,35 @@
+package com.onelubo.strongnostr.service.nostr;
+
+import com.onelubo.strongnostr.nostr.NostrEvent;
+import com.onelubo.strongnostr.nostr.NostrProofOfWork;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+/**
+ * Checked on the claimed id, before hashing; the event-id stage then makes sure the claim is true.
+ * The difficulty is the one the challenge was issued with, which the client mined for, not the current one.
+ */
+@Component
+@Order(50)
+public class ProofOfWorkStage implements AuthEventStage {
+
+    private static final Logger logger = LoggerFactory.getLogger(ProofOfWorkStage.class);
+
+    @Override
+    public String name() {
+        return "pow";
+    }
+
+    @Override
+    public String check(AuthAttempt attempt) {
+        int requiredDifficulty = attempt.getRequiredDifficulty();
+        NostrEvent event = attempt.getEvent();
+        if (requiredDifficulty > 0 && NostrProofOfWork.difficulty(event.getId(), event.getTags()) < requiredDifficulty) {
+            logger.debug("Insufficient proof of work for event ID: {}, required={}", event.getId(), requiredDifficulty);
+            return "Insufficient proof of work: " + requiredDifficulty + " bits required";
+        }
+        return null;
+    }
+}
@@ -0,0 +1,64 @@
+package com.onelubo.strongnostr.service.nostr;
+
+import com.onelubo.strongnostr.dto.nostr.NostrAuthResult;
+import com.onelubo.strongnostr.dto.nostr.NostrUserProfile;
+import com.onelubo.strongnostr.exception.VerificationSaturatedException;
+import com.onelubo.strongnostr.model.user.User;
+import com.onelubo.strongnostr.security.JwtTokenProvider;
+import com.onelubo.strongnostr.service.ChallengeStore;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+import java.util.Optional;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * {@link NostrAuthenticationService#authenticate} for the reactive profile. The checks against the
+ * challenge, signature included, run on the verification pool's scheduler, and the user is read and
+ * written with {@link ReactiveNostrUserService}; no thread waits on either.
+ */
+@Service
+@Profile("reactive")
+public class ReactiveNostrAuthenticationService {
+
+    private final ReactiveNostrUserService reactiveNostrUserService;
+    private final JwtTokenProvider jwtTokenProvider;
+    private final AuthEventPipeline pipeline;
+    private final SignatureVerificationPool signatureVerificationPool;
+
+    public ReactiveNostrAuthenticationService(ReactiveNostrUserService reactiveNostrUserService, JwtTokenProvider jwtTokenProvider,
+                                              AuthEventPipeline pipeline, SignatureVerificationPool signatureVerificationPool) {
+        this.reactiveNostrUserService = reactiveNostrUserService;
+        this.jwtTokenProvider = jwtTokenProvider;
+        this.pipeline = pipeline;
+        this.signatureVerificationPool = signatureVerificationPool;
+    }
+
+    /**
+     * Check an event that passed {@link NostrAuthenticationService#checkEvent} against the challenge it
+     * claimed, then create or update its user and issue tokens
+     *
+     * @return the result, or {@link VerificationSaturatedException} if the pool's queue was full
+     */
+    public Mono<NostrAuthResult> authenticate(AuthAttempt attempt, NostrUserProfile userProfile,
+                                              ChallengeStore.StoredChallenge challenge) {
+        return Mono.fromCallable(() -> {
+                       attempt.setChallenge(challenge.challenge(), challenge.powDifficulty());
+                       return Optional.ofNullable(pipeline.runWithChallenge(attempt));
+                   })
+                   .subscribeOn(signatureVerificationPool.scheduler())
+                   .onErrorMap(RejectedExecutionException.class, e -> new VerificationSaturatedException())
+                   .flatMap(rejection -> rejection.isPresent()
+                           ? Mono.just(NostrAuthResult.failure(rejection.get().message()))
+                           : reactiveNostrUserService.getOrCreateUser(attempt.getEvent().getNpub(), userProfile)
+                                                     .map(this::issueTokens))
+                   .onErrorResume(e -> !(e instanceof VerificationSaturatedException),
+                                  e -> Mono.just(NostrAuthResult.failure(e.getMessage())));
+    }
+
+    private NostrAuthResult issueTokens(User user) {
+        return NostrAuthResult.success(user, jwtTokenProvider.createAccessToken(user.getnPub()),
+                                       jwtTokenProvider.createRefreshToken(user.getnPub()));
+    }
+}
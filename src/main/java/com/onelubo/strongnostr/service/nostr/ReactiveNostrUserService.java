@@ -0,0 +1,85 @@
+package com.onelubo.strongnostr.service.nostr;
+
+import com.onelubo.strongnostr.dto.nostr.NostrUserProfile;
+import com.onelubo.strongnostr.model.user.User;
+import com.onelubo.strongnostr.model.user.UsernameCounter;
+import com.onelubo.strongnostr.nostr.NostrKeyManager;
+import com.onelubo.strongnostr.repository.ReactiveUserRepository;
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+
+/**
+ * {@link NostrUserService} for the reactive profile: the same queries and updates, on reactive Mongo
+ */
+@Service
+@Profile("reactive")
+public class ReactiveNostrUserService {
+
+    private final ReactiveUserRepository reactiveUserRepository;
+    private final ReactiveMongoTemplate reactiveMongoTemplate;
+    private final NostrKeyManager nostrKeyManager;
+
+    public ReactiveNostrUserService(ReactiveUserRepository reactiveUserRepository, ReactiveMongoTemplate reactiveMongoTemplate,
+                                    NostrKeyManager nostrKeyManager) {
+        this.reactiveUserRepository = reactiveUserRepository;
+        this.reactiveMongoTemplate = reactiveMongoTemplate;
+        this.nostrKeyManager = nostrKeyManager;
+    }
+
+    /**
+     * @see NostrUserService#getOrCreateUser
+     */
+    public Mono<User> getOrCreateUser(String npub, NostrUserProfile userProfile) {
+        Update profile = NostrUserService.profileUpdate(userProfile);
+
+        Mono<User> changed = Mono.empty();
+        if (!profile.getUpdateObject().isEmpty()) {
+            changed = reactiveMongoTemplate.findAndModify(NostrUserService.byNpubWithProfileChanged(npub, profile), profile,
+                                                          FindAndModifyOptions.options().returnNew(true), User.class);
+        }
+        // Unchanged profile or first login
+        return changed.switchIfEmpty(Mono.defer(() -> reactiveUserRepository.findByNpub(npub)))
+                      .switchIfEmpty(Mono.defer(() -> createUser(npub, userProfile)));
+    }
+
+    /**
+     * Upsert a first-time user, retrying a taken username as {@code NostrUserService} does
+     */
+    private Mono<User> createUser(String npub, NostrUserProfile userProfile) {
+        String hexKey = nostrKeyManager.npubToHex(npub);
+        String baseName = NostrUserService.usernameBase(userProfile);
+        FindAndModifyOptions options = FindAndModifyOptions.options().upsert(true).returnNew(true);
+
+        return allocateUsername(baseName)
+                .flatMap(username -> {
+                    Update update = NostrUserService.profileUpdate(userProfile)
+                                                    .setOnInsert("username", username)
+                                                    .setOnInsert("nPubHex", hexKey)
+                                                    .setOnInsert("verified", true);
+                    return reactiveMongoTemplate.findAndModify(NostrUserService.byNpub(npub), update, options, User.class);
+                })
+                .retryWhen(Retry.max(NostrUserService.MAX_USERNAME_ATTEMPTS - 1)
+                                .filter(DuplicateKeyException.class::isInstance)
+                                .onRetryExhaustedThrow((spec, signal) -> signal.failure()));
+    }
+
+    /**
+     * @see UsernameAllocator#allocate
+     */
+    private Mono<String> allocateUsername(String baseName) {
+        Query query = UsernameAllocator.counter(baseName);
+        FindAndModifyOptions options = FindAndModifyOptions.options().upsert(true).returnNew(true);
+        Mono<UsernameCounter> next = Mono.defer(() -> reactiveMongoTemplate.findAndModify(query, UsernameAllocator.next(),
+                                                                                          options, UsernameCounter.class));
+        // A concurrent first use of the same base name created the counter; it exists now
+        return next.onErrorResume(DuplicateKeyException.class, e -> next)
+                   .map(counter -> UsernameAllocator.username(baseName, counter));
+    }
+}
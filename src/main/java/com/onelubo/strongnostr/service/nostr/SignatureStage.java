@@ -0,0 +1,36 @@
+package com.onelubo.strongnostr.service.nostr;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+/**
+ * The BIP-340 signature over the computed event id, verified on the bounded verification pool
+ */
+@Component
+@Order(70)
+public class SignatureStage implements AuthEventStage {
+
+    private static final Logger logger = LoggerFactory.getLogger(SignatureStage.class);
+
+    private final SignatureVerificationPool signatureVerificationPool;
+
+    public SignatureStage(SignatureVerificationPool signatureVerificationPool) {
+        this.signatureVerificationPool = signatureVerificationPool;
+    }
+
+    @Override
+    public String name() {
+        return "signature";
+    }
+
+    @Override
+    public String check(AuthAttempt attempt) {
+        if (!signatureVerificationPool.verify(attempt.getPubkeyHex(), attempt.getComputedEventId(), attempt.getEvent().getSignature())) {
+            logger.debug("Invalid signature for event ID: {}", attempt.getComputedEventId());
+            return "Invalid signature";
+        }
+        return null;
+    }
+}
@@ -0,0 +1,165 @@
+package com.onelubo.strongnostr.service.nostr;
+
+import com.onelubo.strongnostr.exception.VerificationSaturatedException;
+import com.onelubo.strongnostr.nostr.NostrSignatureVerifier;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Schnorr verification is the CPU-bound part of a login. It runs on a fixed pool sized to the
+ * cores, so however many requests are in flight (cheap with virtual threads) only that many
+ * verifications compete for the CPU; the rest wait for a worker.
+ * <p>
+ * The pool is also a bulkhead. Callers are admitted before the login starts, up to the verification
+ * threads plus the queue capacity, and the rest are turned away at once instead of parking request
+ * threads that serve workout reads and writes. A bounded queue alone would not do: with fewer request
+ * threads than queue slots every request thread could be waiting on a verification before it filled.
+ * The queue is still bounded, and a verification it rejects fails with {@link VerificationSaturatedException}.
+ * <p>
+ * The reactive profile runs a login's checks on the pool through {@link #scheduler()}, so they queue
+ * like any other verification; the signature is then verified in place on the pool thread.
+ */
+@Component
+public class SignatureVerificationPool {
+
+    private final ThreadPoolExecutor executor;
+    private final Scheduler scheduler;
+    private final Semaphore admissions;
+    private final int queueCapacity;
+    private final Timer queueWait;
+    private final Timer valid;
+    private final Timer invalid;
+
+    public SignatureVerificationPool(MeterRegistry meterRegistry,
+                                     @Value("${strongnostr.auth.verification-threads:0}") int threads,
+                                     @Value("${strongnostr.auth.verification-queue-capacity:32}") int queueCapacity) {
+        this.queueCapacity = queueCapacity;
+        this.queueWait = Timer.builder("strongnostr.auth.verification.queue.wait")
+                              .description("Time a login waited for a verification thread")
+                              .publishPercentileHistogram()
+                              .register(meterRegistry);
+        this.valid = schnorrTimer(meterRegistry, "valid");
+        this.invalid = schnorrTimer(meterRegistry, "invalid");
+        int size = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        this.admissions = new Semaphore(size + queueCapacity);
+        AtomicInteger count = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(size, size, 0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(queueCapacity),
+                                               runnable -> {
+                                                   Thread thread = new VerificationThread(runnable, "nostr-verify-" + count.incrementAndGet());
+                                                   thread.setDaemon(true);
+                                                   return thread;
+                                               },
+                                               new ThreadPoolExecutor.AbortPolicy());
+        this.scheduler = Schedulers.fromExecutorService(executor, "nostr-verify");
+    }
+
+    /**
+     * Admit a login if there is a verification thread or queue slot for it; every admission that
+     * succeeded must be given back with {@link #leave()} once the login is over
+     *
+     * @return false if the login should be turned away, before it has consumed anything
+     */
+    public boolean tryAdmit() {
+        return admissions.tryAcquire();
+    }
+
+    public void leave() {
+        admissions.release();
+    }
+
+    /**
+     * Verifications waiting for a worker
+     */
+    public int queueDepth() {
+        return executor.getQueue().size();
+    }
+
+    public int queueCapacity() {
+        return queueCapacity;
+    }
+
+    /**
+     * The pool's threads and bounded queue as a Reactor scheduler; work it rejects fails with
+     * {@link RejectedExecutionException}
+     */
+    public Scheduler scheduler() {
+        return scheduler;
+    }
+
+    /**
+     * Verify a BIP-340 signature on the pool, blocking the caller until it is done; called from a pool
+     * thread it verifies in place
+     *
+     * @throws VerificationSaturatedException if the queue is full
+     */
+    public boolean verify(String pubkeyHex, String messageHex, String signatureHex) {
+        if (Thread.currentThread() instanceof VerificationThread thread && thread.pool() == this) {
+            return verifyNow(pubkeyHex, messageHex, signatureHex);
+        }
+        Future<Boolean> result;
+        try {
+            long submitted = System.nanoTime();
+            result = executor.submit(() -> {
+                queueWait.record(System.nanoTime() - submitted, TimeUnit.NANOSECONDS);
+                return verifyNow(pubkeyHex, messageHex, signatureHex);
+            });
+        } catch (RejectedExecutionException e) {
+            throw new VerificationSaturatedException();
+        }
+        try {
+            return result.get();
+        } catch (InterruptedException e) {
+            result.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while verifying signature", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Signature verification failed", e.getCause());
+        }
+    }
+
+    private boolean verifyNow(String pubkeyHex, String messageHex, String signatureHex) {
+        long started = System.nanoTime();
+        boolean verified = NostrSignatureVerifier.verifySchnorrSignature(pubkeyHex, messageHex, signatureHex);
+        (verified ? valid : invalid).record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+        return verified;
+    }
+
+    private static Timer schnorrTimer(MeterRegistry meterRegistry, String outcome) {
+        return Timer.builder("strongnostr.auth.schnorr.verify")
+                    .description("BIP-340 signature verification, excluding the queue wait")
+                    .tag("outcome", outcome)
+                    .publishPercentileHistogram()
+                    .register(meterRegistry);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.dispose();
+        executor.shutdownNow();
+    }
+
+    private class VerificationThread extends Thread {
+
+        VerificationThread(Runnable runnable, String name) {
+            super(runnable, name);
+        }
+
+        SignatureVerificationPool pool() {
+            return SignatureVerificationPool.this;
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.onelubo.strongnostr.service.nostr;
+
+import com.onelubo.strongnostr.model.user.UsernameCounter;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+
+import java.util.Objects;
+
+/**
+ * Hands out usernames as a base name plus a per-base sequence number, with a single atomic
+ * {@code $inc} instead of probing the users collection for a free name. The two are joined with
+ * {@link #SEPARATOR}, which base names must not end with, so no two bases can hand out the same
+ * name: without it {@code bob1} would give out {@code bob11}, the eleventh name of {@code bob}.
+ */
+@Component
+public class UsernameAllocator {
+
+    static final String SEPARATOR = "_";
+
+    private final MongoTemplate mongoTemplate;
+
+    public UsernameAllocator(MongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    public String allocate(String baseName) {
+        Objects.requireNonNull(baseName);
+        Query query = counter(baseName);
+        FindAndModifyOptions options = FindAndModifyOptions.options().upsert(true).returnNew(true);
+        UsernameCounter counter;
+        try {
+            counter = mongoTemplate.findAndModify(query, next(), options, UsernameCounter.class);
+        } catch (DuplicateKeyException e) {
+            // A concurrent first use of the same base name created the counter; it exists now
+            counter = mongoTemplate.findAndModify(query, next(), options, UsernameCounter.class);
+        }
+        return username(baseName, counter);
+    }
+
+    static Query counter(String baseName) {
+        return new Query(Criteria.where("_id").is(baseName));
+    }
+
+    static Update next() {
+        return new Update().inc("next", 1);
+    }
+
+    static String username(String baseName, UsernameCounter counter) {
+        return baseName + SEPARATOR + Objects.requireNonNull(counter).getNext();
+    }
+}
@@ -0,0 +1,10 @@
+package com.onelubo.strongnostr.service.workout;
+
+/**
+ * Propagates exercise changes to every node's {@link ExerciseNearCache}
+ */
+public interface ExerciseCacheInvalidation {
+    String CHANNEL = "strongnostr:exercise-invalidation";
+
+    void invalidate(String exerciseId);
+}
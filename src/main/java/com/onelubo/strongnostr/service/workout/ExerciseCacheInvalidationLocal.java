@@ -0,0 +1,23 @@
+package com.onelubo.strongnostr.service.workout;
+
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+/**
+ * Single-node invalidation: only the local near-cache needs to be evicted
+ */
+@Profile("!redis")
+@Component
+public class ExerciseCacheInvalidationLocal implements ExerciseCacheInvalidation {
+
+    private final ExerciseNearCache exerciseNearCache;
+
+    public ExerciseCacheInvalidationLocal(ExerciseNearCache exerciseNearCache) {
+        this.exerciseNearCache = exerciseNearCache;
+    }
+
+    @Override
+    public void invalidate(String exerciseId) {
+        exerciseNearCache.evict(exerciseId);
+    }
+}
@@ -0,0 +1,57 @@
+package com.onelubo.strongnostr.service.workout;
+
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Multi-node invalidation: the id of a changed exercise is published on a Redis channel
+ * and every node (including this one) evicts it from its near-cache when the message arrives.
+ */
+@Profile("redis")
+@Component
+public class ExerciseCacheInvalidationRedis implements ExerciseCacheInvalidation, MessageListener {
+
+    private static final Logger logger = LoggerFactory.getLogger(ExerciseCacheInvalidationRedis.class);
+
+    private final ExerciseNearCache exerciseNearCache;
+    private final StringRedisTemplate stringRedisTemplate;
+    private final RedisMessageListenerContainer listenerContainer;
+
+    public ExerciseCacheInvalidationRedis(ExerciseNearCache exerciseNearCache, StringRedisTemplate stringRedisTemplate,
+                                          RedisMessageListenerContainer listenerContainer) {
+        this.exerciseNearCache = exerciseNearCache;
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.listenerContainer = listenerContainer;
+    }
+
+    @PostConstruct
+    public void init() {
+        listenerContainer.addMessageListener(this, new ChannelTopic(CHANNEL));
+    }
+
+    @Override
+    public void invalidate(String exerciseId) {
+        // Evict locally right away so this node never serves the stale entry while the message is in flight
+        exerciseNearCache.evict(exerciseId);
+        try {
+            stringRedisTemplate.convertAndSend(CHANNEL, exerciseId);
+        } catch (Exception e) {
+            logger.warn("Failed to publish exercise invalidation for {}: {}", exerciseId, e.getMessage());
+        }
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        exerciseNearCache.evict(new String(message.getBody(), StandardCharsets.UTF_8));
+    }
+}
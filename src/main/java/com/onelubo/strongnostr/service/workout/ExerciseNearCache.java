@@ -0,0 +1,71 @@
+package com.onelubo.strongnostr.service.workout;
+
+import com.onelubo.strongnostr.model.workout.Exercise;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Bounded, in-process LRU cache of resolved exercises keyed by the same identity key that
+ * the exercises collection is uniquely indexed on. Entries are evicted by id when an exercise
+ * changes on any node (see {@link ExerciseCacheInvalidation}).
+ */
+@Component
+public class ExerciseNearCache {
+
+    private final Map<String, Exercise> exercises;
+
+    public ExerciseNearCache(@Value("${strongnostr.exercise-cache.max-size:10000}") int maxSize) {
+        this.exercises = new LinkedHashMap<>(256, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Exercise> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    public Optional<Exercise> get(Exercise exercise) {
+        String key = keyOf(exercise);
+        synchronized (exercises) {
+            return Optional.ofNullable(exercises.get(key));
+        }
+    }
+
+    public void put(Exercise exercise) {
+        if (exercise == null || exercise.getId() == null) {
+            return;
+        }
+        String key = keyOf(exercise);
+        synchronized (exercises) {
+            exercises.put(key, exercise);
+        }
+    }
+
+    public void evict(String exerciseId) {
+        if (exerciseId == null) {
+            return;
+        }
+        synchronized (exercises) {
+            exercises.values().removeIf(cached -> exerciseId.equals(cached.getId()));
+        }
+    }
+
+    public void clear() {
+        synchronized (exercises) {
+            exercises.clear();
+        }
+    }
+
+    public int size() {
+        synchronized (exercises) {
+            return exercises.size();
+        }
+    }
+
+    static String keyOf(Exercise exercise) {
+        return Exercise.identityKeyOf(exercise.getName(), exercise.getDescription(), exercise.getEquipment());
+    }
+}
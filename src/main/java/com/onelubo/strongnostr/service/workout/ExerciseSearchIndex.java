@@ -0,0 +1,311 @@
+package com.onelubo.strongnostr.service.workout;
+
+import com.onelubo.strongnostr.dto.ExerciseSearchResult;
+import com.onelubo.strongnostr.model.workout.Exercise;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * In-memory prefix index over the exercise catalog for type-ahead search.
+ * Every name and description token is kept in a sorted map of postings, so a prefix lookup
+ * is a range scan over that map and never touches Mongo. Results are ranked by where the
+ * match occurred (name over description, mirroring the text index weights on {@link Exercise})
+ * and by how often the exercise appears in workouts.
+ * <p>
+ * The index is rebuilt from Mongo in the background on startup and periodically, and the catalog is
+ * kept current in between by {@link ExerciseService} on every exercise write. Writes made while a
+ * rebuild is reading Mongo are journaled and replayed onto the new index before it is swapped in.
+ * Usage counts come only from the rebuild's aggregation, so they move once per rebuild.
+ */
+@Component
+public class ExerciseSearchIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(ExerciseSearchIndex.class);
+
+    private static final double NAME_WEIGHT = 10.0;
+    private static final double DESCRIPTION_WEIGHT = 5.0;
+    private static final double NAME_PREFIX_BONUS = 5.0;
+    private static final double USAGE_WEIGHT = 2.0;
+
+    private final MongoTemplate mongoTemplate;
+
+    // Writes share the read side; a rebuild takes the write side to start and to finish its journal
+    private final ReadWriteLock journalLock = new ReentrantReadWriteLock();
+    private Queue<Consumer<IndexState>> journal;
+
+    private volatile IndexState state = new IndexState();
+
+    public ExerciseSearchIndex(MongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    /**
+     * Search exercises visible to the user whose name or description tokens start with the query tokens
+     */
+    public List<ExerciseSearchResult> search(String query, String userNPub, int limit) {
+        List<String> queryTokens = tokenize(query);
+        if (queryTokens.isEmpty() || limit <= 0) {
+            return List.of();
+        }
+
+        IndexState current = state;
+        Map<String, Double> scores = null;
+        for (String queryToken : queryTokens) {
+            Map<String, Double> tokenScores = scoreToken(current, queryToken);
+            if (scores == null) {
+                scores = tokenScores;
+            } else {
+                Map<String, Double> merged = new HashMap<>();
+                for (Map.Entry<String, Double> entry : scores.entrySet()) {
+                    Double tokenScore = tokenScores.get(entry.getKey());
+                    if (tokenScore != null) {
+                        merged.put(entry.getKey(), entry.getValue() + tokenScore);
+                    }
+                }
+                scores = merged;
+            }
+            if (scores.isEmpty()) {
+                return List.of();
+            }
+        }
+
+        String normalisedQuery = String.join(" ", queryTokens);
+        List<ExerciseSearchResult> results = new ArrayList<>();
+        for (Map.Entry<String, Double> entry : scores.entrySet()) {
+            IndexedExercise exercise = current.exercisesById.get(entry.getKey());
+            if (exercise == null || !exercise.isVisibleTo(userNPub)) {
+                continue;
+            }
+            double score = entry.getValue();
+            if (exercise.normalisedName.startsWith(normalisedQuery)) {
+                score += NAME_PREFIX_BONUS;
+            }
+            Long usage = current.usageById.get(exercise.id);
+            if (usage != null) {
+                score += USAGE_WEIGHT * Math.log1p(usage);
+            }
+            results.add(new ExerciseSearchResult(exercise.id, exercise.name, exercise.description,
+                                                 exercise.equipment, exercise.custom, score));
+        }
+
+        results.sort(Comparator.comparingDouble(ExerciseSearchResult::score).reversed()
+                               .thenComparing(ExerciseSearchResult::name));
+        return results.size() > limit ? results.subList(0, limit) : results;
+    }
+
+    /**
+     * Add or replace an exercise in the index
+     */
+    public void index(Exercise exercise) {
+        if (exercise == null || exercise.getId() == null) {
+            return;
+        }
+        IndexedExercise indexed = new IndexedExercise(exercise);
+        write(target -> {
+            remove(target, indexed.id);
+            add(target, indexed);
+        });
+    }
+
+    public void remove(String exerciseId) {
+        if (exerciseId != null) {
+            write(target -> remove(target, exerciseId));
+        }
+    }
+
+    public int size() {
+        return state.exercisesById.size();
+    }
+
+    /**
+     * Rebuild the whole index from Mongo and swap it in atomically
+     */
+    @Scheduled(initialDelay = 0, fixedDelayString = "${strongnostr.exercise-search.rebuild-interval-minutes:30}",
+               timeUnit = TimeUnit.MINUTES)
+    public synchronized void rebuild() {
+        startJournal();
+        try {
+            IndexState rebuilt = new IndexState();
+            try (Stream<Exercise> exercises = mongoTemplate.stream(new Query(), Exercise.class)) {
+                exercises.forEach(exercise -> add(rebuilt, new IndexedExercise(exercise)));
+            }
+
+            Aggregation usageAggregation = Aggregation.newAggregation(
+                    Aggregation.unwind("exercises"),
+                    Aggregation.group("exercises.exerciseId").count().as("count"));
+            for (Document usage : mongoTemplate.aggregate(usageAggregation, "workouts", Document.class)) {
+                Object exerciseId = usage.get("_id");
+                if (exerciseId != null) {
+                    rebuilt.usageById.put(exerciseId.toString(), ((Number) usage.get("count")).longValue());
+                }
+            }
+
+            swapIn(rebuilt);
+            logger.info("Exercise search index rebuilt with {} exercises", rebuilt.exercisesById.size());
+        } catch (Exception e) {
+            swapIn(null);
+            logger.warn("Failed to rebuild exercise search index: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Apply a write to the live index, and record it for the rebuild in progress if there is one
+     */
+    private void write(Consumer<IndexState> write) {
+        journalLock.readLock().lock();
+        try {
+            write.accept(state);
+            Queue<Consumer<IndexState>> pending = journal;
+            if (pending != null) {
+                pending.add(write);
+            }
+        } finally {
+            journalLock.readLock().unlock();
+        }
+    }
+
+    private void startJournal() {
+        journalLock.writeLock().lock();
+        try {
+            journal = new ConcurrentLinkedQueue<>();
+        } finally {
+            journalLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Replay the writes made since the rebuild started reading, then swap; a null rebuild only stops the journal
+     */
+    private void swapIn(IndexState rebuilt) {
+        journalLock.writeLock().lock();
+        try {
+            if (rebuilt != null) {
+                journal.forEach(write -> write.accept(rebuilt));
+                state = rebuilt;
+            }
+            journal = null;
+        } finally {
+            journalLock.writeLock().unlock();
+        }
+    }
+
+    private static Map<String, Double> scoreToken(IndexState current, String queryToken) {
+        Map<String, Double> scores = new HashMap<>();
+        NavigableMap<String, Set<Posting>> matches = current.postings.subMap(queryToken, true,
+                                                                             queryToken + Character.MAX_VALUE, false);
+        for (Map.Entry<String, Set<Posting>> match : matches.entrySet()) {
+            // Exact token matches rank above pure prefix matches
+            double exactness = match.getKey().length() == queryToken.length() ? 1.0 : 0.5;
+            for (Posting posting : match.getValue()) {
+                double weight = (posting.inName ? NAME_WEIGHT : DESCRIPTION_WEIGHT) * exactness;
+                scores.merge(posting.exerciseId, weight, Math::max);
+            }
+        }
+        return scores;
+    }
+
+    private static void add(IndexState target, IndexedExercise exercise) {
+        target.exercisesById.put(exercise.id, exercise);
+        for (String token : exercise.nameTokens) {
+            target.postings.computeIfAbsent(token, t -> ConcurrentHashMap.newKeySet()).add(new Posting(exercise.id, true));
+        }
+        for (String token : exercise.descriptionTokens) {
+            target.postings.computeIfAbsent(token, t -> ConcurrentHashMap.newKeySet()).add(new Posting(exercise.id, false));
+        }
+    }
+
+    private static void remove(IndexState target, String exerciseId) {
+        IndexedExercise existing = target.exercisesById.remove(exerciseId);
+        if (existing == null) {
+            return;
+        }
+        removePostings(target, existing.nameTokens, new Posting(exerciseId, true));
+        removePostings(target, existing.descriptionTokens, new Posting(exerciseId, false));
+    }
+
+    private static void removePostings(IndexState target, Collection<String> tokens, Posting posting) {
+        for (String token : tokens) {
+            target.postings.computeIfPresent(token, (t, postings) -> {
+                postings.remove(posting);
+                return postings.isEmpty() ? null : postings;
+            });
+        }
+    }
+
+    static List<String> tokenize(String text) {
+        if (text == null || text.isBlank()) {
+            return List.of();
+        }
+        return Arrays.stream(text.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}]+"))
+                     .filter(token -> !token.isEmpty())
+                     .toList();
+    }
+
+    private static final class IndexState {
+        private final Map<String, IndexedExercise> exercisesById = new ConcurrentHashMap<>();
+        private final ConcurrentSkipListMap<String, Set<Posting>> postings = new ConcurrentSkipListMap<>();
+        // Workout entries per exercise, as counted by the last rebuild
+        private final Map<String, Long> usageById = new HashMap<>();
+    }
+
+    private record Posting(String exerciseId, boolean inName) {
+    }
+
+    private static final class IndexedExercise {
+        private final String id;
+        private final String name;
+        private final String description;
+        private final String equipment;
+        private final boolean custom;
+        private final String createdByUserId;
+        private final String normalisedName;
+        private final Set<String> nameTokens;
+        private final Set<String> descriptionTokens;
+
+        IndexedExercise(Exercise exercise) {
+            this.id = exercise.getId();
+            this.name = exercise.getName();
+            this.description = exercise.getDescription();
+            this.equipment = exercise.getEquipment();
+            this.custom = exercise.isCustom();
+            this.createdByUserId = exercise.getCreatedByUserId();
+            List<String> tokens = tokenize(name);
+            this.normalisedName = String.join(" ", tokens);
+            this.nameTokens = new HashSet<>(tokens);
+            this.nameTokens.addAll(tokenize(equipment));
+            this.descriptionTokens = new HashSet<>(tokenize(description));
+            this.descriptionTokens.removeAll(nameTokens);
+        }
+
+        boolean isVisibleTo(String userNPub) {
+            return !custom || (createdByUserId != null && createdByUserId.equals(userNPub));
+        }
+    }
+}
@@ -1,19 +1,46 @@
 package com.onelubo.strongnostr.service.workout;
 
+import com.onelubo.strongnostr.dto.ExerciseSearchResult;
 import com.onelubo.strongnostr.exception.ExerciseNotFoundException;
 import com.onelubo.strongnostr.model.workout.Exercise;
 import com.onelubo.strongnostr.repository.ExerciseRepository;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.stereotype.Service;
 
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 @Service
 public class ExerciseService {
 
     private final ExerciseRepository exerciseRepository;
+    private final MongoTemplate mongoTemplate;
+    private final ExerciseNearCache exerciseNearCache;
+    private final ExerciseCacheInvalidation exerciseCacheInvalidation;
+    private final ExerciseSearchIndex exerciseSearchIndex;
 
-    public ExerciseService(ExerciseRepository exerciseRepository) {
+    public ExerciseService(ExerciseRepository exerciseRepository, MongoTemplate mongoTemplate,
+                           ExerciseNearCache exerciseNearCache, ExerciseCacheInvalidation exerciseCacheInvalidation,
+                           ExerciseSearchIndex exerciseSearchIndex) {
         this.exerciseRepository = exerciseRepository;
+        this.mongoTemplate = mongoTemplate;
+        this.exerciseNearCache = exerciseNearCache;
+        this.exerciseCacheInvalidation = exerciseCacheInvalidation;
+        this.exerciseSearchIndex = exerciseSearchIndex;
+    }
+
+    public List<ExerciseSearchResult> searchExercises(String query, String userNPub, int limit) {
+        return exerciseSearchIndex.search(query, userNPub, limit);
     }
 
     public Exercise createExercise(String exerciseName, String exerciseDescription, String equipment) {
@@ -29,6 +56,8 @@ public class ExerciseService {
             existingExercise.get().setDescription(exerciseDescription);
             existingExercise.get().setEquipment(equipment);
             exerciseRepository.save(existingExercise.get());
+            exerciseCacheInvalidation.invalidate(exerciseId);
+            exerciseSearchIndex.index(existingExercise.get());
             return existingExercise.get();
         }
         throw new ExerciseNotFoundException(exerciseId);
@@ -38,21 +67,103 @@ public class ExerciseService {
         Optional<Exercise> existingExercise = exerciseRepository.findById(exercise.getId());
 
         existingExercise.ifPresentOrElse(
-                exerciseRepository::delete,
+                existing -> {
+                    exerciseRepository.delete(existing);
+                    exerciseCacheInvalidation.invalidate(existing.getId());
+                    exerciseSearchIndex.remove(existing.getId());
+                },
             () -> { throw new ExerciseNotFoundException(exercise.getId()); }
         );
     }
 
+    /**
+     * Resolve an exercise by its normalised (name, description, equipment) identity key.
+     * Hits are served from the near-cache; misses are resolved with a single atomic upsert,
+     * so concurrent requests for a new exercise cannot create duplicates.
+     */
     public Exercise findOrCreateExercise(Exercise exercise) {
-        Optional<Exercise> existingExercise = exerciseRepository.findByNameAndDescriptionAndEquipment(
-                exercise.getName(), exercise.getDescription(), exercise.getEquipment());
+        Optional<Exercise> cachedExercise = exerciseNearCache.get(exercise);
+        return cachedExercise.orElseGet(() -> resolveUncached(exercise));
+    }
+
+    /**
+     * Resolve many exercises at once, in request order. Near-cache misses are looked up with a single
+     * {@code $in} query on the identity key; only exercises that do not exist yet fall back to an upsert each.
+     */
+    public List<Exercise> findOrCreateExercises(List<Exercise> exercises) {
+        Map<String, Exercise> resolved = new LinkedHashMap<>();
+        Map<String, Exercise> missing = new LinkedHashMap<>();
+        for (Exercise exercise : exercises) {
+            String identity = identityKeyOf(exercise);
+            if (resolved.containsKey(identity) || missing.containsKey(identity)) {
+                continue;
+            }
+            exerciseNearCache.get(exercise).ifPresentOrElse(cached -> resolved.put(identity, cached),
+                                                             () -> missing.put(identity, exercise));
+        }
+
+        if (!missing.isEmpty()) {
+            Query query = new Query(Criteria.where("identityKey").in(new HashSet<>(missing.keySet())));
+            for (Exercise existing : mongoTemplate.find(query, Exercise.class)) {
+                String identity = identityKeyOf(existing);
+                if (missing.remove(identity) != null) {
+                    resolved.put(identity, existing);
+                    exerciseNearCache.put(existing);
+                }
+            }
+            for (Map.Entry<String, Exercise> entry : missing.entrySet()) {
+                resolved.put(entry.getKey(), resolveUncached(entry.getValue()));
+            }
+        }
+
+        List<Exercise> result = new ArrayList<>(exercises.size());
+        for (Exercise exercise : exercises) {
+            result.add(resolved.get(identityKeyOf(exercise)));
+        }
+        return result;
+    }
+
+    private Exercise resolveUncached(Exercise exercise) {
+        Exercise resolvedExercise;
+        try {
+            resolvedExercise = upsertExercise(exercise);
+        } catch (DuplicateKeyException e) {
+            // Another writer inserted the same exercise between our match and insert; it exists now
+            resolvedExercise = upsertExercise(exercise);
+        }
 
-        return existingExercise.orElseGet(() -> exerciseRepository.save(exercise));
+        exerciseNearCache.put(resolvedExercise);
+        exerciseSearchIndex.index(resolvedExercise);
+        return resolvedExercise;
+    }
+
+    private Exercise upsertExercise(Exercise exercise) {
+        Query query = new Query(Criteria.where("identityKey").is(identityKeyOf(exercise)));
+
+        // The first writer's spelling is kept for display; later spellings resolve to the same document
+        OffsetDateTime now = OffsetDateTime.now();
+        Update update = new Update()
+                .setOnInsert("name", exercise.getName())
+                .setOnInsert("description", exercise.getDescription())
+                .setOnInsert("equipment", exercise.getEquipment())
+                .setOnInsert("isCustom", exercise.isCustom())
+                .setOnInsert("createdByUserId", exercise.getCreatedByUserId())
+                .setOnInsert("createdAt", now)
+                .setOnInsert("updatedAt", now);
+
+        return mongoTemplate.findAndModify(query, update, FindAndModifyOptions.options().upsert(true).returnNew(true),
+                                           Exercise.class);
     }
 
     protected Exercise createExerciseInternal(String exerciseName, String exerciseDescription, String equipment,
                                               boolean isCustom, String createdByUserId) {
         Exercise exercise = new Exercise(exerciseName, exerciseDescription, equipment, isCustom, createdByUserId);
-        return exerciseRepository.save(exercise);
+        Exercise savedExercise = exerciseRepository.save(exercise);
+        exerciseSearchIndex.index(savedExercise);
+        return savedExercise;
+    }
+
+    private static String identityKeyOf(Exercise exercise) {
+        return Exercise.identityKeyOf(exercise.getName(), exercise.getDescription(), exercise.getEquipment());
     }
 }
@@ -0,0 +1,336 @@
+package com.onelubo.strongnostr.service.workout;
+
+import com.onelubo.strongnostr.dto.WorkoutResponse;
+import com.onelubo.strongnostr.exception.WorkoutNotFoundException;
+import com.onelubo.strongnostr.model.history.PersonalRecord;
+import com.onelubo.strongnostr.model.history.PersonalRecordType;
+import com.onelubo.strongnostr.model.workout.Exercise;
+import com.onelubo.strongnostr.model.workout.Workout;
+import com.onelubo.strongnostr.model.workout.WorkoutExercise;
+import com.onelubo.strongnostr.model.workout.WorkoutSet;
+import com.onelubo.strongnostr.repository.WorkoutRepository;
+import jakarta.annotation.PreDestroy;
+import org.bson.types.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * In-progress workouts of live WebSocket sessions. Sets are applied to a {@link Workout} held in
+ * memory and persisted write-behind: the workout document is saved and the derived read models
+ * notified once per batch, on a timer, when enough sets are pending, when the session ends, and
+ * for every open session on shutdown. A session is only dropped once its sets are saved; a failed
+ * flush keeps them pending for the next attempt, unless the workout is gone or the flush keeps failing,
+ * in which case the session and its sets are dropped and the loss is logged.
+ */
+@Service
+public class LiveWorkoutSessionService {
+
+    private static final Logger logger = LoggerFactory.getLogger(LiveWorkoutSessionService.class);
+    private static final int SHUTDOWN_FLUSH_ATTEMPTS = 3;
+    private static final long SHUTDOWN_FLUSH_BACKOFF_MILLIS = 200;
+    private static final int MAX_FAILED_FLUSHES = 30;
+
+    private final ExerciseService exerciseService;
+    private final WorkoutRepository workoutRepository;
+    private final PersonalRecordService personalRecordService;
+    private final WorkoutSyncService workoutSyncService;
+    private final WorkoutWriteRetry workoutWriteRetry;
+    private final List<WorkoutWriteListener> workoutWriteListeners;
+    private final int maxPendingSets;
+    private final Map<String, LiveSession> sessions = new ConcurrentHashMap<>();
+
+    public LiveWorkoutSessionService(ExerciseService exerciseService, WorkoutRepository workoutRepository,
+                                     PersonalRecordService personalRecordService, WorkoutSyncService workoutSyncService,
+                                     WorkoutWriteRetry workoutWriteRetry,
+                                     List<WorkoutWriteListener> workoutWriteListeners,
+                                     @Value("${strongnostr.live-session.max-pending-sets:20}") int maxPendingSets) {
+        this.exerciseService = exerciseService;
+        this.workoutRepository = workoutRepository;
+        this.personalRecordService = personalRecordService;
+        this.workoutSyncService = workoutSyncService;
+        this.workoutWriteRetry = workoutWriteRetry;
+        this.workoutWriteListeners = workoutWriteListeners;
+        this.maxPendingSets = maxPendingSets;
+    }
+
+    /**
+     * Flush every open session before the Mongo client goes away. A failing flush is retried a few
+     * times; whatever still cannot be saved is reported as lost.
+     */
+    @PreDestroy
+    public void shutdown() {
+        for (int attempt = 1; attempt <= SHUTDOWN_FLUSH_ATTEMPTS && pendingSets() > 0; attempt++) {
+            if (attempt > 1) {
+                try {
+                    Thread.sleep(SHUTDOWN_FLUSH_BACKOFF_MILLIS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+            flushAll();
+        }
+        for (LiveSession session : sessions.values()) {
+            if (session.pendingCount > 0) {
+                logger.error("Lost {} unsaved sets of live workout {} on shutdown",
+                             session.pendingCount, session.workout.getId());
+            }
+        }
+        logger.info("Flushed {} live workout sessions on shutdown", sessions.size());
+    }
+
+    /**
+     * Start a session on a new workout, or resume one of the user's existing workouts
+     */
+    public Workout start(String sessionId, String userNPub, String workoutId) {
+        Objects.requireNonNull(sessionId);
+        Objects.requireNonNull(userNPub);
+
+        Workout workout;
+        boolean persisted;
+        if (workoutId != null) {
+            workout = workoutRepository.findById(workoutId)
+                                       .filter(existing -> userNPub.equals(existing.getUserNPub()))
+                                       .orElseThrow(() -> new WorkoutNotFoundException(workoutId));
+            persisted = true;
+        } else {
+            workout = new Workout(userNPub);
+            // Known up front so pushed responses and later listener writes agree on the id
+            workout.setId(new ObjectId().toHexString());
+            persisted = false;
+        }
+
+        Map<String, PersonalRecord> records = new HashMap<>();
+        personalRecordService.getPersonalRecords(userNPub).forEach(record -> records.put(record.getExerciseId(), record));
+
+        // Save what the replaced session still holds before it is dropped
+        LiveSession previous = sessions.get(sessionId);
+        if (previous != null) {
+            flush(previous);
+        }
+        sessions.put(sessionId, new LiveSession(workout, persisted, records));
+        return workout;
+    }
+
+    /**
+     * Apply a set in memory; the response carries refreshed metrics and the records the set would break
+     */
+    public WorkoutResponse logSet(String sessionId, Exercise exercise, WorkoutSet set) {
+        Objects.requireNonNull(exercise);
+        Objects.requireNonNull(set);
+        LiveSession session = sessions.get(sessionId);
+        if (session == null) {
+            throw new IllegalStateException("No live workout session started");
+        }
+
+        exercise.setCreatedByUserId(session.workout.getUserNPub());
+        Exercise existingExercise = exerciseService.findOrCreateExercise(exercise);
+
+        boolean flushNow;
+        WorkoutResponse response;
+        session.lock.lock();
+        try {
+            if (session.ended) {
+                throw new IllegalStateException("Live workout session already ended");
+            }
+            Workout workout = session.workout;
+            workout.updateWorkout(new WorkoutExercise(existingExercise.getId(), existingExercise.getName(),
+                                                      existingExercise.getEquipment(), List.of(set)));
+            WorkoutExercise workoutExercise = workout.getExercises().stream()
+                                                     .filter(wex -> existingExercise.getId().equals(wex.getExerciseId()))
+                                                     .findFirst()
+                                                     .orElseThrow();
+            session.pendingSets.computeIfAbsent(existingExercise.getId(), id -> new ArrayList<>()).add(set);
+            session.pendingCount++;
+
+            Set<PersonalRecordType> newRecords = personalRecordService.previewNewRecords(
+                    session.records.get(existingExercise.getId()), workout, workoutExercise, List.of(set));
+            workout.getNewPersonalRecords().clear();
+            workout.addNewPersonalRecords(newRecords);
+            response = workout.toWorkoutResponse();
+            flushNow = session.pendingCount >= maxPendingSets;
+        } finally {
+            session.lock.unlock();
+        }
+        if (flushNow) {
+            try {
+                flush(session);
+            } catch (RuntimeException e) {
+                // The set is accepted either way: it stays pending and the next flush retries it
+                flushFailed(sessionId, session, e);
+            }
+        }
+        return response;
+    }
+
+    /**
+     * Flush and forget the session; returns the persisted workout, or null if no session was open.
+     * If the flush fails the session stays open, so the periodic flush keeps retrying its sets.
+     */
+    public Workout end(String sessionId) {
+        LiveSession session = sessions.get(sessionId);
+        if (session == null) {
+            return null;
+        }
+        session.lock.lock();
+        try {
+            try {
+                flush(session);
+            } catch (RuntimeException e) {
+                flushFailed(sessionId, session, e);
+                throw e;
+            }
+            session.ended = true;
+            sessions.remove(sessionId, session);
+            return session.workout;
+        } finally {
+            session.lock.unlock();
+        }
+    }
+
+    public int openSessions() {
+        return sessions.size();
+    }
+
+    @Scheduled(initialDelayString = "${strongnostr.live-session.flush-interval-seconds:10}",
+               fixedDelayString = "${strongnostr.live-session.flush-interval-seconds:10}", timeUnit = TimeUnit.SECONDS)
+    public void flushAll() {
+        for (Map.Entry<String, LiveSession> entry : sessions.entrySet()) {
+            try {
+                flush(entry.getValue());
+            } catch (RuntimeException e) {
+                flushFailed(entry.getKey(), entry.getValue(), e);
+            }
+        }
+    }
+
+    /**
+     * Keep the sets of a failed flush pending, unless they can never be saved: a session whose workout
+     * was deleted, or that keeps failing, is dropped rather than retried forever under the id of a
+     * socket that is long gone
+     */
+    private void flushFailed(String sessionId, LiveSession session, RuntimeException e) {
+        session.lock.lock();
+        try {
+            session.failedFlushes++;
+            if (e instanceof WorkoutNotFoundException || session.failedFlushes >= MAX_FAILED_FLUSHES) {
+                session.ended = true;
+                sessions.remove(sessionId, session);
+                logger.error("Dropping live workout {} after {} failed flushes, lost {} unsaved sets: {}",
+                             session.workout.getId(), session.failedFlushes, session.pendingCount, e.getMessage());
+            } else {
+                logger.warn("Failed to flush live workout {}, keeping {} sets pending: {}",
+                            session.workout.getId(), session.pendingCount, e.getMessage());
+            }
+        } finally {
+            session.lock.unlock();
+        }
+    }
+
+    private int pendingSets() {
+        return sessions.values().stream().mapToInt(session -> session.pendingCount).sum();
+    }
+
+    /**
+     * Holds the session's lock across the save, so it must not be a monitor: a virtual thread blocked
+     * on Mongo inside {@code synchronized} would pin its carrier thread
+     */
+    private void flush(LiveSession session) {
+        session.lock.lock();
+        try {
+            if (session.pendingCount == 0) {
+                return;
+            }
+            Workout saved = save(session);
+            boolean firstFlush = !session.persisted;
+            Map<String, List<WorkoutSet>> flushed = new LinkedHashMap<>(session.pendingSets);
+            session.workout = saved;
+            session.persisted = true;
+            session.pendingSets.clear();
+            session.pendingCount = 0;
+            session.failedFlushes = 0;
+            notifyListeners(saved, firstFlush, flushed);
+        } finally {
+            session.lock.unlock();
+        }
+    }
+
+    /**
+     * The sets are saved by now, so a failing read model must not put them back in the pending
+     * batch, where the next flush would append them a second time
+     */
+    private void notifyListeners(Workout saved, boolean firstFlush, Map<String, List<WorkoutSet>> flushed) {
+        try {
+            if (firstFlush) {
+                // The first flush writes the whole workout, exactly like an imported one
+                workoutWriteListeners.forEach(listener -> listener.onWorkoutsImported(List.of(saved)));
+                return;
+            }
+            for (Map.Entry<String, List<WorkoutSet>> pending : flushed.entrySet()) {
+                saved.getExercises().stream()
+                     .filter(wex -> pending.getKey().equals(wex.getExerciseId()))
+                     .findFirst()
+                     .ifPresent(wex -> workoutWriteListeners.forEach(
+                             listener -> listener.onSetsAdded(saved, wex, pending.getValue())));
+            }
+        } catch (RuntimeException e) {
+            logger.error("Saved live workout {} but failed to update its read models", saved.getId(), e);
+        }
+    }
+
+    /**
+     * Save the session's workout; if another client saved it in the meantime, replay the pending sets
+     * onto their version instead of overwriting it
+     */
+    private Workout save(LiveSession session) {
+        return workoutWriteRetry.execute("liveSessionFlush", attempt -> {
+            if (attempt > 0) {
+                String workoutId = session.workout.getId();
+                List<WorkoutExercise> pending = new ArrayList<>();
+                session.pendingSets.forEach((exerciseId, sets) -> session.workout.getExercises().stream()
+                        .filter(wex -> exerciseId.equals(wex.getExerciseId()))
+                        .findFirst()
+                        .ifPresent(wex -> pending.add(new WorkoutExercise(exerciseId, wex.getExerciseName(),
+                                                                          wex.getEquipment(), sets))));
+                Workout latest = workoutRepository.findById(workoutId)
+                                                  .orElseThrow(() -> new WorkoutNotFoundException(workoutId));
+                latest.addSets(pending);
+                session.workout = latest;
+            }
+            try (WorkoutSyncService.Reservation reservation = workoutSyncService.stamp(session.workout)) {
+                return workoutRepository.save(session.workout);
+            }
+        });
+    }
+
+    private static final class LiveSession {
+        private Workout workout;
+        private boolean persisted;
+        private final Map<String, PersonalRecord> records;
+        private final Map<String, List<WorkoutSet>> pendingSets = new LinkedHashMap<>();
+        private int pendingCount;
+        private int failedFlushes;
+        private boolean ended;
+        private final ReentrantLock lock = new ReentrantLock();
+
+        LiveSession(Workout workout, boolean persisted, Map<String, PersonalRecord> records) {
+            this.workout = workout;
+            this.persisted = persisted;
+            this.records = records;
+        }
+    }
+}
@@ -0,0 +1,379 @@
+package com.onelubo.strongnostr.service.workout;
+
+import com.onelubo.strongnostr.model.history.OneRepMax;
+import com.onelubo.strongnostr.model.history.PersonalRecord;
+import com.onelubo.strongnostr.model.history.PersonalRecordType;
+import com.onelubo.strongnostr.model.history.SetHistoryEntry;
+import com.onelubo.strongnostr.model.workout.Workout;
+import com.onelubo.strongnostr.model.workout.WorkoutExercise;
+import com.onelubo.strongnostr.model.workout.WorkoutSet;
+import com.onelubo.strongnostr.repository.PersonalRecordRepository;
+import org.bson.Document;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Stream;
+
+/**
+ * Keeps the personal-record table current as sets are logged.
+ * Every write is a single upserting findAndModify that advances the records with {@code $max}
+ * and returns the previous document, so detecting a new record costs one round trip regardless
+ * of how much history the user has. Records are only rebuilt from the set history when sets
+ * disappear (exercise removed, workout deleted).
+ */
+@Service
+@Order(Ordered.LOWEST_PRECEDENCE)
+public class PersonalRecordService implements WorkoutWriteListener {
+
+    private final PersonalRecordRepository personalRecordRepository;
+    private final MongoTemplate mongoTemplate;
+
+    public PersonalRecordService(PersonalRecordRepository personalRecordRepository, MongoTemplate mongoTemplate) {
+        this.personalRecordRepository = personalRecordRepository;
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    @Override
+    public void onSetsAdded(Workout workout, WorkoutExercise exercise, List<WorkoutSet> sets) {
+        Candidates added = new Candidates();
+        sets.forEach(added::accept);
+        Candidates session = new Candidates();
+        exercise.getSets().forEach(session::accept);
+
+        Set<PersonalRecordType> newRecords = recordSets(workout.getUserNPub(), exercise.getExerciseId(),
+                                                        exercise.getExerciseName(), workout.getId(),
+                                                        workout.getWorkoutDate().toInstant(), added, session);
+        workout.addNewPersonalRecords(newRecords);
+    }
+
+    @Override
+    public void onExerciseRemoved(Workout workout, WorkoutExercise exercise) {
+        rebuild(workout.getUserNPub(), exercise.getExerciseId());
+    }
+
+    @Override
+    public void onWorkoutDeleted(Workout workout) {
+        for (WorkoutExercise exercise : workout.getExercises()) {
+            rebuild(workout.getUserNPub(), exercise.getExerciseId());
+        }
+    }
+
+    public List<PersonalRecord> getPersonalRecords(String userNPub) {
+        Objects.requireNonNull(userNPub);
+        return personalRecordRepository.findByUserNPub(userNPub);
+    }
+
+    public Optional<PersonalRecord> getPersonalRecord(String userNPub, String exerciseId) {
+        Objects.requireNonNull(userNPub);
+        Objects.requireNonNull(exerciseId);
+        return personalRecordRepository.findByUserNPubAndExerciseId(userNPub, exerciseId);
+    }
+
+    /**
+     * Records the sets would break, judged in memory against a snapshot of the stored records and
+     * the earlier sets of the same exercise in this workout. Nothing is written; used by live sessions
+     * that persist later in batches.
+     */
+    public Set<PersonalRecordType> previewNewRecords(PersonalRecord snapshot, Workout workout,
+                                                     WorkoutExercise exercise, List<WorkoutSet> sets) {
+        Candidates added = new Candidates();
+        sets.forEach(added::accept);
+        Candidates session = new Candidates();
+        exercise.getSets().forEach(session::accept);
+        Candidates earlier = new Candidates();
+        exercise.getSets().subList(0, exercise.getSets().size() - sets.size()).forEach(earlier::accept);
+
+        Set<PersonalRecordType> newRecords = newRecords(snapshot, added, session, workout.getId());
+        if (added.heaviestWeight() <= earlier.heaviestWeight()) {
+            newRecords.remove(PersonalRecordType.HEAVIEST_WEIGHT);
+        }
+        if (added.mostReps() <= earlier.mostReps()) {
+            newRecords.remove(PersonalRecordType.MOST_REPS);
+        }
+        if (added.bestEpley <= earlier.bestEpley && added.bestBrzycki <= earlier.bestBrzycki) {
+            newRecords.remove(PersonalRecordType.BEST_ESTIMATED_1RM);
+        }
+        if (added.repsAtWeight.entrySet().stream()
+                              .allMatch(entry -> entry.getValue() <= earlier.repsAtWeight.getOrDefault(entry.getKey(), 0))) {
+            newRecords.remove(PersonalRecordType.MOST_REPS_AT_WEIGHT);
+        }
+        if (snapshot != null && snapshot.getBestSessionVolume() != null
+                && earlier.volume > snapshot.getBestSessionVolume().value()) {
+            newRecords.remove(PersonalRecordType.BEST_SESSION_VOLUME);
+        }
+        return newRecords;
+    }
+
+    /**
+     * Recompute the records of one exercise from the set history. Relies on the set history
+     * having already dropped the removed sets, which is why this listener runs last. The records
+     * are folded in memory and written over the existing document in one update, so readers never
+     * see the exercise without records while the history is replayed.
+     */
+    public void rebuild(String userNPub, String exerciseId) {
+        Query history = new Query(Criteria.where("userNPub").is(userNPub).and("exerciseId").is(exerciseId))
+                .with(Sort.by(Sort.Direction.ASC, "performedAt", "setNumber"));
+        RebuiltRecords rebuilt = new RebuiltRecords();
+        try (Stream<SetHistoryEntry> entries = mongoTemplate.stream(history, SetHistoryEntry.class)) {
+            Candidates session = null;
+            SetHistoryEntry sessionStart = null;
+            for (SetHistoryEntry entry : (Iterable<SetHistoryEntry>) entries::iterator) {
+                if (sessionStart == null || !sessionStart.getWorkoutId().equals(entry.getWorkoutId())) {
+                    if (sessionStart != null) {
+                        rebuilt.addSession(sessionStart, session);
+                    }
+                    sessionStart = entry;
+                    session = new Candidates();
+                }
+                WorkoutSet set = new WorkoutSet(entry.getWeight(), entry.getReps());
+                set.setWarmup(entry.getWarmup());
+                session.accept(set);
+            }
+            if (sessionStart != null) {
+                rebuilt.addSession(sessionStart, session);
+            }
+        }
+
+        if (rebuilt.isEmpty()) {
+            personalRecordRepository.deleteByUserNPubAndExerciseId(userNPub, exerciseId);
+            return;
+        }
+        Query query = new Query(Criteria.where("userNPub").is(userNPub).and("exerciseId").is(exerciseId));
+        try {
+            mongoTemplate.upsert(query, rebuilt.toUpdate(), PersonalRecord.class);
+        } catch (DuplicateKeyException e) {
+            mongoTemplate.upsert(query, rebuilt.toUpdate(), PersonalRecord.class);
+        }
+    }
+
+    private Set<PersonalRecordType> recordSets(String userNPub, String exerciseId, String exerciseName,
+                                               String workoutId, Instant achievedAt,
+                                               Candidates added, Candidates session) {
+        if (added.isEmpty()) {
+            return EnumSet.noneOf(PersonalRecordType.class);
+        }
+
+        Update update = new Update()
+                .set("exerciseName", exerciseName)
+                .max("heaviestSet", record(added.heaviestSet(achievedAt, workoutId)))
+                .max("highestRepSet", record(added.highestRepSet(achievedAt, workoutId)))
+                .max("bestEpley", record(added.bestEpleySet(achievedAt, workoutId)))
+                .max("bestBrzycki", record(added.bestBrzyckiSet(achievedAt, workoutId)))
+                .max("bestSessionVolume", record(session.volumeSet(achievedAt, workoutId)));
+        added.repsAtWeight.forEach((weightKey, reps) -> update.max("repsAtWeight." + weightKey, reps));
+
+        Query query = new Query(Criteria.where("userNPub").is(userNPub).and("exerciseId").is(exerciseId));
+        FindAndModifyOptions options = FindAndModifyOptions.options().upsert(true).returnNew(false);
+        PersonalRecord previous;
+        try {
+            previous = mongoTemplate.findAndModify(query, update, options, PersonalRecord.class);
+        } catch (DuplicateKeyException e) {
+            // A concurrent first write for the same exercise won the upsert; the retry is a plain update
+            previous = mongoTemplate.findAndModify(query, update, options, PersonalRecord.class);
+        }
+        return newRecords(previous, added, session, workoutId);
+    }
+
+    /**
+     * Records improved by the added sets. The very first sets of an exercise set a baseline, not a record.
+     */
+    static Set<PersonalRecordType> newRecords(PersonalRecord previous, Candidates added, Candidates session,
+                                              String workoutId) {
+        Set<PersonalRecordType> newRecords = EnumSet.noneOf(PersonalRecordType.class);
+        if (previous == null) {
+            return newRecords;
+        }
+        if (exceeds(added.heaviestWeight(), previous.getHeaviestSet())) {
+            newRecords.add(PersonalRecordType.HEAVIEST_WEIGHT);
+        }
+        if (exceeds(added.mostReps(), previous.getHighestRepSet())) {
+            newRecords.add(PersonalRecordType.MOST_REPS);
+        }
+        if (exceeds(added.bestEpley, previous.getBestEpley()) || exceeds(added.bestBrzycki, previous.getBestBrzycki())) {
+            newRecords.add(PersonalRecordType.BEST_ESTIMATED_1RM);
+        }
+        Map<String, Integer> previousRepsAtWeight = previous.getRepsAtWeight();
+        if (previousRepsAtWeight != null) {
+            for (Map.Entry<String, Integer> entry : added.repsAtWeight.entrySet()) {
+                Integer previousReps = previousRepsAtWeight.get(entry.getKey());
+                if (previousReps != null && entry.getValue() > previousReps) {
+                    newRecords.add(PersonalRecordType.MOST_REPS_AT_WEIGHT);
+                    break;
+                }
+            }
+        }
+        // Session volume grows with every set, so only the first set to pass another session's best counts
+        PersonalRecord.RecordSet previousVolume = previous.getBestSessionVolume();
+        if (exceeds(session.volume, previousVolume) && !workoutId.equals(previousVolume.workoutId())) {
+            newRecords.add(PersonalRecordType.BEST_SESSION_VOLUME);
+        }
+        return newRecords;
+    }
+
+    private static boolean exceeds(double value, PersonalRecord.RecordSet previous) {
+        return previous != null && value > previous.value();
+    }
+
+    private static Document record(PersonalRecord.RecordSet recordSet) {
+        // Field order matters: $max compares embedded documents field by field
+        return new Document("value", recordSet.value())
+                .append("weight", recordSet.weight())
+                .append("reps", recordSet.reps())
+                .append("achievedAt", Date.from(recordSet.achievedAt()))
+                .append("workoutId", recordSet.workoutId());
+    }
+
+    /**
+     * Best values among a group of working sets. Which sets count and how ties are settled is
+     * decided by {@link WorkoutSet}, the same rules {@link WorkoutExercise} reports with.
+     */
+    static final class Candidates {
+        private WorkoutSet heaviest;
+        private WorkoutSet highestReps;
+        private double bestEpley;
+        private double bestEpleyWeight;
+        private int bestEpleyReps;
+        private double bestBrzycki;
+        private double bestBrzyckiWeight;
+        private int bestBrzyckiReps;
+        private double volume;
+        private int totalReps;
+        private final Map<String, Integer> repsAtWeight = new HashMap<>();
+
+        void accept(WorkoutSet set) {
+            if (!set.countsTowardsRecords()) {
+                return;
+            }
+            double weight = set.getWeight();
+            int reps = set.getReps();
+
+            if (heaviest == null || WorkoutSet.BY_WEIGHT_THEN_REPS.compare(set, heaviest) > 0) {
+                heaviest = set;
+            }
+            if (highestReps == null || WorkoutSet.BY_REPS_THEN_WEIGHT.compare(set, highestReps) > 0) {
+                highestReps = set;
+            }
+            double epley = OneRepMax.epley(weight, reps);
+            if (epley > bestEpley) {
+                bestEpley = epley;
+                bestEpleyWeight = weight;
+                bestEpleyReps = reps;
+            }
+            double brzycki = OneRepMax.brzycki(weight, reps);
+            if (brzycki > bestBrzycki) {
+                bestBrzycki = brzycki;
+                bestBrzyckiWeight = weight;
+                bestBrzyckiReps = reps;
+            }
+            repsAtWeight.merge(PersonalRecord.weightKey(weight), reps, Math::max);
+            volume += weight * reps;
+            totalReps += reps;
+        }
+
+        double heaviestWeight() {
+            return heaviest == null ? 0 : heaviest.getWeight();
+        }
+
+        int mostReps() {
+            return highestReps == null ? 0 : highestReps.getReps();
+        }
+
+        PersonalRecord.RecordSet heaviestSet(Instant achievedAt, String workoutId) {
+            return new PersonalRecord.RecordSet(heaviest.getWeight(), heaviest.getWeight(), heaviest.getReps(),
+                                                achievedAt, workoutId);
+        }
+
+        PersonalRecord.RecordSet highestRepSet(Instant achievedAt, String workoutId) {
+            return new PersonalRecord.RecordSet(highestReps.getReps(), highestReps.getWeight(), highestReps.getReps(),
+                                                achievedAt, workoutId);
+        }
+
+        PersonalRecord.RecordSet bestEpleySet(Instant achievedAt, String workoutId) {
+            return new PersonalRecord.RecordSet(bestEpley, bestEpleyWeight, bestEpleyReps, achievedAt, workoutId);
+        }
+
+        PersonalRecord.RecordSet bestBrzyckiSet(Instant achievedAt, String workoutId) {
+            return new PersonalRecord.RecordSet(bestBrzycki, bestBrzyckiWeight, bestBrzyckiReps, achievedAt, workoutId);
+        }
+
+        PersonalRecord.RecordSet volumeSet(Instant achievedAt, String workoutId) {
+            return new PersonalRecord.RecordSet(volume, heaviestWeight(), totalReps, achievedAt, workoutId);
+        }
+
+        boolean isEmpty() {
+            return totalReps == 0;
+        }
+    }
+
+    /**
+     * Records folded across sessions in memory, in the order {@code $max} would have applied them
+     */
+    static final class RebuiltRecords {
+        // Mirrors the field-by-field comparison $max makes on the embedded record documents
+        private static final Comparator<PersonalRecord.RecordSet> RECORD_ORDER =
+                Comparator.comparingDouble(PersonalRecord.RecordSet::value)
+                          .thenComparingDouble(PersonalRecord.RecordSet::weight)
+                          .thenComparingInt(PersonalRecord.RecordSet::reps)
+                          .thenComparing(PersonalRecord.RecordSet::achievedAt);
+
+        private String exerciseName;
+        private PersonalRecord.RecordSet heaviestSet;
+        private PersonalRecord.RecordSet highestRepSet;
+        private PersonalRecord.RecordSet bestEpley;
+        private PersonalRecord.RecordSet bestBrzycki;
+        private PersonalRecord.RecordSet bestSessionVolume;
+        private final Map<String, Integer> repsAtWeight = new HashMap<>();
+
+        void addSession(SetHistoryEntry sessionStart, Candidates session) {
+            if (session.isEmpty()) {
+                return;
+            }
+            Instant achievedAt = sessionStart.getPerformedAt();
+            String workoutId = sessionStart.getWorkoutId();
+            exerciseName = sessionStart.getExerciseName();
+            heaviestSet = best(heaviestSet, session.heaviestSet(achievedAt, workoutId));
+            highestRepSet = best(highestRepSet, session.highestRepSet(achievedAt, workoutId));
+            bestEpley = best(bestEpley, session.bestEpleySet(achievedAt, workoutId));
+            bestBrzycki = best(bestBrzycki, session.bestBrzyckiSet(achievedAt, workoutId));
+            bestSessionVolume = best(bestSessionVolume, session.volumeSet(achievedAt, workoutId));
+            session.repsAtWeight.forEach((weightKey, reps) -> repsAtWeight.merge(weightKey, reps, Math::max));
+        }
+
+        boolean isEmpty() {
+            return heaviestSet == null;
+        }
+
+        Update toUpdate() {
+            return new Update()
+                    .set("exerciseName", exerciseName)
+                    .set("heaviestSet", record(heaviestSet))
+                    .set("highestRepSet", record(highestRepSet))
+                    .set("bestEpley", record(bestEpley))
+                    .set("bestBrzycki", record(bestBrzycki))
+                    .set("bestSessionVolume", record(bestSessionVolume))
+                    .set("repsAtWeight", new Document(repsAtWeight));
+        }
+
+        private static PersonalRecord.RecordSet best(PersonalRecord.RecordSet current, PersonalRecord.RecordSet candidate) {
+            return current == null || RECORD_ORDER.compare(candidate, current) > 0 ? candidate : current;
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package com.onelubo.strongnostr.service.workout;
+
+import com.onelubo.strongnostr.dto.ExerciseSessionResponse;
+import com.onelubo.strongnostr.model.history.SetHistoryEntry;
+import com.onelubo.strongnostr.model.workout.Workout;
+import com.onelubo.strongnostr.model.workout.WorkoutExercise;
+import com.onelubo.strongnostr.model.workout.WorkoutSet;
+import com.onelubo.strongnostr.repository.SetHistoryRepository;
+import org.springframework.core.annotation.Order;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+import java.util.stream.Stream;
+
+/**
+ * Maintains the flattened per-exercise set history and answers "last time" and date-range
+ * questions from the (userNPub, exerciseId, performedAt) index.
+ * Runs before the other listeners, which may rebuild their state from this history.
+ */
+@Service
+@Order(0)
+public class SetHistoryService implements WorkoutWriteListener {
+
+    private final SetHistoryRepository setHistoryRepository;
+    private final MongoTemplate mongoTemplate;
+
+    public SetHistoryService(SetHistoryRepository setHistoryRepository, MongoTemplate mongoTemplate) {
+        this.setHistoryRepository = setHistoryRepository;
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    @Override
+    public void onSetsAdded(Workout workout, WorkoutExercise exercise, List<WorkoutSet> sets) {
+        setHistoryRepository.saveAll(toEntries(workout, exercise, sets));
+    }
+
+    @Override
+    public void onExerciseRemoved(Workout workout, WorkoutExercise exercise) {
+        setHistoryRepository.deleteByWorkoutIdAndExerciseId(workout.getId(), exercise.getExerciseId());
+    }
+
+    @Override
+    public void onWorkoutDeleted(Workout workout) {
+        setHistoryRepository.deleteByWorkoutId(workout.getId());
+    }
+
+    @Override
+    public void onWorkoutsImported(List<Workout> workouts) {
+        List<SetHistoryEntry> entries = new ArrayList<>();
+        for (Workout workout : workouts) {
+            for (WorkoutExercise exercise : workout.getExercises()) {
+                entries.addAll(toEntries(workout, exercise, exercise.getSets()));
+            }
+        }
+        if (entries.isEmpty()) {
+            return;
+        }
+        BulkOperations bulkOperations = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, SetHistoryEntry.class);
+        bulkOperations.insert(entries);
+        bulkOperations.execute();
+    }
+
+    /**
+     * The last {@code sessions} workouts in which the user performed the exercise, most recent first.
+     * Walks the index newest-first and stops as soon as one row beyond the requested sessions is seen.
+     */
+    public List<ExerciseSessionResponse> getLastSessions(String userNPub, String exerciseId, int sessions) {
+        Objects.requireNonNull(userNPub);
+        Objects.requireNonNull(exerciseId);
+
+        Query query = new Query(Criteria.where("userNPub").is(userNPub).and("exerciseId").is(exerciseId))
+                .with(Sort.by(Sort.Direction.DESC, "performedAt", "setNumber"))
+                .cursorBatchSize(50);
+
+        List<ExerciseSessionResponse> result = new ArrayList<>();
+        try (Stream<SetHistoryEntry> entries = mongoTemplate.stream(query, SetHistoryEntry.class)) {
+            Iterator<SetHistoryEntry> iterator = entries.iterator();
+            List<SetHistoryEntry> currentSets = new ArrayList<>();
+            String currentWorkoutId = null;
+            Instant currentPerformedAt = null;
+
+            while (iterator.hasNext()) {
+                SetHistoryEntry entry = iterator.next();
+                if (!entry.getWorkoutId().equals(currentWorkoutId)) {
+                    if (currentWorkoutId != null) {
+                        result.add(toSession(currentWorkoutId, currentPerformedAt, currentSets));
+                        if (result.size() == sessions) {
+                            return result;
+                        }
+                    }
+                    currentWorkoutId = entry.getWorkoutId();
+                    currentPerformedAt = entry.getPerformedAt();
+                    currentSets = new ArrayList<>();
+                }
+                currentSets.add(entry);
+            }
+            if (currentWorkoutId != null && result.size() < sessions) {
+                result.add(toSession(currentWorkoutId, currentPerformedAt, currentSets));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * All sets of the exercise performed by the user in [from, to], oldest first
+     */
+    public List<SetHistoryEntry> getSetsBetween(String userNPub, String exerciseId, Instant from, Instant to) {
+        Objects.requireNonNull(userNPub);
+        Objects.requireNonNull(exerciseId);
+        Query query = new Query(Criteria.where("userNPub").is(userNPub)
+                                        .and("exerciseId").is(exerciseId)
+                                        .and("performedAt").gte(from).lte(to))
+                .with(Sort.by(Sort.Direction.ASC, "performedAt", "setNumber"));
+        return mongoTemplate.find(query, SetHistoryEntry.class);
+    }
+
+    private static ExerciseSessionResponse toSession(String workoutId, Instant performedAt, List<SetHistoryEntry> setsNewestFirst) {
+        List<SetHistoryEntry> sets = new ArrayList<>(setsNewestFirst);
+        Collections.reverse(sets);
+        return new ExerciseSessionResponse(workoutId, performedAt, sets);
+    }
+
+    private static List<SetHistoryEntry> toEntries(Workout workout, WorkoutExercise exercise, List<WorkoutSet> sets) {
+        // New sets are always the tail of the exercise's set list
+        int firstSetNumber = exercise.getSets().size() - sets.size() + 1;
+        List<SetHistoryEntry> entries = new ArrayList<>(sets.size());
+        for (int i = 0; i < sets.size(); i++) {
+            entries.add(new SetHistoryEntry(workout, exercise, sets.get(i), firstSetNumber + i));
+        }
+        return entries;
+    }
+}
@@ -0,0 +1,382 @@
+package com.onelubo.strongnostr.service.workout;
+
+import com.onelubo.strongnostr.dto.WorkoutImportResponse;
+import com.onelubo.strongnostr.model.workout.Exercise;
+import com.onelubo.strongnostr.model.workout.Workout;
+import com.onelubo.strongnostr.model.workout.WorkoutExercise;
+import com.onelubo.strongnostr.model.workout.WorkoutSet;
+import com.onelubo.strongnostr.util.StrongCsvReader;
+import org.bson.types.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Imports workout history from a Strong app CSV export.
+ * The file is read row by row; rows are grouped into one pending workout at a time
+ * (Strong exports are ordered by workout date) and completed workouts are written
+ * in unordered bulk batches, so memory use is bounded by the batch size and not the file size.
+ */
+@Service
+public class StrongCsvImportService {
+
+    private static final Logger logger = LoggerFactory.getLogger(StrongCsvImportService.class);
+
+    private static final DateTimeFormatter STRONG_DATE_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private static final Pattern EXERCISE_EQUIPMENT = Pattern.compile("^(.*?)\\s*\\(([^)]+)\\)\\s*$");
+    private static final Pattern DURATION_PART = Pattern.compile("(\\d+)\\s*([hms])");
+    private static final double LBS_TO_KG = 0.45359237;
+
+    private final ExerciseService exerciseService;
+    private final MongoTemplate mongoTemplate;
+    private final WorkoutSyncService workoutSyncService;
+    private final List<WorkoutWriteListener> workoutWriteListeners;
+    private final int batchSize;
+
+    public StrongCsvImportService(ExerciseService exerciseService, MongoTemplate mongoTemplate,
+                                  WorkoutSyncService workoutSyncService, List<WorkoutWriteListener> workoutWriteListeners,
+                                  @Value("${strongnostr.import.batch-size:500}") int batchSize) {
+        this.exerciseService = exerciseService;
+        this.mongoTemplate = mongoTemplate;
+        this.workoutSyncService = workoutSyncService;
+        this.workoutWriteListeners = workoutWriteListeners;
+        this.batchSize = batchSize;
+    }
+
+    public WorkoutImportResponse importStrongCsv(InputStream csvStream, String userNPub, ZoneId zone) throws IOException {
+        return importStrongCsv(csvStream, userNPub, zone, progress ->
+                logger.info("Strong import for {}: {} rows read, {} workouts written",
+                            userNPub, progress.rowsRead(), progress.workoutsImported()));
+    }
+
+    public WorkoutImportResponse importStrongCsv(InputStream csvStream, String userNPub, ZoneId zone,
+                                                 Consumer<WorkoutImportResponse> progressListener) throws IOException {
+        Objects.requireNonNull(csvStream);
+        Objects.requireNonNull(userNPub);
+        Objects.requireNonNull(zone);
+
+        try (StrongCsvReader reader = new StrongCsvReader(
+                new BufferedReader(new InputStreamReader(csvStream, StandardCharsets.UTF_8)))) {
+
+            List<String> header = reader.readRecord();
+            if (header == null) {
+                return new WorkoutImportResponse(0, 0, 0, 0, 0);
+            }
+
+            ImportRun run = new ImportRun(StrongColumns.fromHeader(header), userNPub, zone, progressListener);
+
+            List<String> record;
+            while ((record = reader.readRecord()) != null) {
+                run.accept(record);
+            }
+            return run.finish();
+        }
+    }
+
+    /**
+     * State of a single import: the workout currently being assembled, the pending write batch
+     * and a local exercise cache so each distinct exercise is resolved against Mongo only once.
+     */
+    private final class ImportRun {
+        private final StrongColumns columns;
+        private final String userNPub;
+        private final ZoneId zone;
+        private final Consumer<WorkoutImportResponse> progressListener;
+
+        private final Map<String, Exercise> exerciseCache = new HashMap<>();
+        private final List<Workout> batch = new ArrayList<>(batchSize);
+        private PendingWorkout pendingWorkout;
+
+        private long rowsRead = 0;
+        private long rowsSkipped = 0;
+        private long workoutsImported = 0;
+        private long setsImported = 0;
+
+        ImportRun(StrongColumns columns, String userNPub, ZoneId zone, Consumer<WorkoutImportResponse> progressListener) {
+            this.columns = columns;
+            this.userNPub = userNPub;
+            this.zone = zone;
+            this.progressListener = progressListener;
+        }
+
+        void accept(List<String> record) {
+            if (record.size() == 1 && record.get(0).isBlank()) {
+                return;
+            }
+            rowsRead++;
+
+            StrongRow row = columns.parse(record);
+            if (row == null) {
+                rowsSkipped++;
+                return;
+            }
+
+            String workoutKey = row.date() + '|' + row.workoutName();
+            if (pendingWorkout == null || !pendingWorkout.key.equals(workoutKey)) {
+                completePendingWorkout();
+                OffsetDateTime workoutDate;
+                try {
+                    workoutDate = LocalDateTime.parse(row.date(), STRONG_DATE_FORMAT).atZone(zone).toOffsetDateTime();
+                } catch (DateTimeParseException e) {
+                    rowsSkipped++;
+                    return;
+                }
+                pendingWorkout = new PendingWorkout(workoutKey, workoutDate, row.workoutNotes(), row.durationSeconds());
+            }
+
+            Exercise exercise = resolveExercise(row.exerciseName());
+            pendingWorkout.addSet(exercise, row.set());
+        }
+
+        WorkoutImportResponse finish() {
+            completePendingWorkout();
+            flushBatch();
+            return snapshot();
+        }
+
+        private Exercise resolveExercise(String strongExerciseName) {
+            return exerciseCache.computeIfAbsent(strongExerciseName.toLowerCase(Locale.ROOT), key -> {
+                Matcher matcher = EXERCISE_EQUIPMENT.matcher(strongExerciseName);
+                Exercise exercise = matcher.matches()
+                        ? new Exercise(matcher.group(1), null, matcher.group(2))
+                        : new Exercise(strongExerciseName, null, null);
+                exercise.setCreatedByUserId(userNPub);
+                return exerciseService.findOrCreateExercise(exercise);
+            });
+        }
+
+        private void completePendingWorkout() {
+            if (pendingWorkout == null) {
+                return;
+            }
+            batch.add(pendingWorkout.toWorkout(userNPub));
+            setsImported += pendingWorkout.setCount;
+            pendingWorkout = null;
+
+            if (batch.size() >= batchSize) {
+                flushBatch();
+            }
+        }
+
+        private void flushBatch() {
+            if (batch.isEmpty()) {
+                return;
+            }
+            // Assign ids up front so derived read models can reference the workouts without reading them back,
+            // and versions because bulk inserts do not initialise them
+            batch.forEach(workout -> {
+                workout.setId(new ObjectId().toHexString());
+                workout.setVersion(0L);
+            });
+            try (WorkoutSyncService.Reservation reservation = workoutSyncService.stamp(batch)) {
+                BulkOperations bulkOperations = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Workout.class);
+                bulkOperations.insert(batch);
+                bulkOperations.execute();
+            }
+            workoutWriteListeners.forEach(listener -> listener.onWorkoutsImported(batch));
+
+            workoutsImported += batch.size();
+            batch.clear();
+            progressListener.accept(snapshot());
+        }
+
+        private WorkoutImportResponse snapshot() {
+            return new WorkoutImportResponse(rowsRead, rowsSkipped, workoutsImported, setsImported, exerciseCache.size());
+        }
+    }
+
+    private static final class PendingWorkout {
+        private final String key;
+        private final OffsetDateTime workoutDate;
+        private final String notes;
+        private final Integer durationSeconds;
+        private final Map<String, PendingExercise> exercises = new LinkedHashMap<>();
+        private int setCount = 0;
+
+        PendingWorkout(String key, OffsetDateTime workoutDate, String notes, Integer durationSeconds) {
+            this.key = key;
+            this.workoutDate = workoutDate;
+            this.notes = notes;
+            this.durationSeconds = durationSeconds;
+        }
+
+        void addSet(Exercise exercise, WorkoutSet set) {
+            exercises.computeIfAbsent(exercise.getId(), id -> new PendingExercise(exercise)).sets.add(set);
+            setCount++;
+        }
+
+        Workout toWorkout(String userNPub) {
+            Workout workout = new Workout(userNPub, workoutDate);
+            exercises.values().forEach(pending -> workout.addExercise(
+                    new WorkoutExercise(pending.exercise.getId(), pending.exercise.getName(),
+                                        pending.exercise.getEquipment(), pending.sets)));
+            workout.setNotes(notes);
+            if (durationSeconds != null) {
+                workout.setDurationSeconds(durationSeconds);
+            }
+            return workout;
+        }
+    }
+
+    private static final class PendingExercise {
+        private final Exercise exercise;
+        private final List<WorkoutSet> sets = new ArrayList<>();
+
+        PendingExercise(Exercise exercise) {
+            this.exercise = exercise;
+        }
+    }
+
+    private record StrongRow(String date, String workoutName, Integer durationSeconds, String exerciseName,
+                             WorkoutSet set, String workoutNotes) {
+    }
+
+    /**
+     * Column positions resolved from the export header, so column order changes between
+     * Strong app versions do not break the import.
+     */
+    private record StrongColumns(int date, int workoutName, int duration, int exerciseName, int setOrder,
+                                 int weight, int weightUnit, int reps, int notes, int workoutNotes, int rpe) {
+
+        static StrongColumns fromHeader(List<String> header) {
+            Map<String, Integer> positions = new HashMap<>();
+            for (int i = 0; i < header.size(); i++) {
+                positions.putIfAbsent(header.get(i).trim().toLowerCase(Locale.ROOT), i);
+            }
+
+            StrongColumns columns = new StrongColumns(
+                    find(positions, "date"),
+                    find(positions, "workout name"),
+                    find(positions, "duration"),
+                    find(positions, "exercise name"),
+                    find(positions, "set order"),
+                    find(positions, "weight"),
+                    find(positions, "weight unit"),
+                    find(positions, "reps"),
+                    find(positions, "notes"),
+                    find(positions, "workout notes"),
+                    find(positions, "rpe"));
+
+            if (columns.date < 0 || columns.exerciseName < 0 || columns.weight < 0 || columns.reps < 0) {
+                throw new IllegalArgumentException("Not a Strong CSV export: missing Date, Exercise Name, Weight or Reps column");
+            }
+            return columns;
+        }
+
+        private static int find(Map<String, Integer> positions, String name) {
+            Integer exact = positions.get(name);
+            if (exact != null) {
+                return exact;
+            }
+            // Some exports append the unit to the header, e.g. "Weight (kg)" or "Duration (sec)"
+            return positions.entrySet().stream()
+                            .filter(entry -> entry.getKey().startsWith(name + " ("))
+                            .mapToInt(Map.Entry::getValue)
+                            .findFirst()
+                            .orElse(-1);
+        }
+
+        StrongRow parse(List<String> record) {
+            String rowDate = value(record, date);
+            String rowExerciseName = value(record, exerciseName);
+            Double rowWeight = parseDouble(value(record, weight));
+            Integer rowReps = parseInteger(value(record, reps));
+            String rowSetOrder = value(record, setOrder);
+
+            if (rowDate == null || rowExerciseName == null || rowReps == null || rowReps <= 0) {
+                return null;
+            }
+            // Strong marks warmup sets with "W"; rest timer rows carry no set data
+            boolean warmup = "W".equalsIgnoreCase(rowSetOrder);
+            if (rowSetOrder != null && !warmup && parseInteger(rowSetOrder) == null
+                    && !"D".equalsIgnoreCase(rowSetOrder) && !"F".equalsIgnoreCase(rowSetOrder)) {
+                return null;
+            }
+
+            double weightKg = rowWeight == null ? 0.0 : rowWeight;
+            if ("lbs".equalsIgnoreCase(value(record, weightUnit))) {
+                weightKg = weightKg * LBS_TO_KG;
+            }
+
+            WorkoutSet set = new WorkoutSet(weightKg, rowReps);
+            set.setWarmup(warmup);
+            set.setRpe(parseDouble(value(record, rpe)));
+            set.setNotes(value(record, notes));
+
+            return new StrongRow(rowDate, value(record, workoutName), parseDuration(value(record, duration)),
+                                 rowExerciseName, set, value(record, workoutNotes));
+        }
+
+        private static String value(List<String> record, int index) {
+            if (index < 0 || index >= record.size()) {
+                return null;
+            }
+            String value = record.get(index).trim();
+            return value.isEmpty() ? null : value;
+        }
+
+        private static Double parseDouble(String value) {
+            if (value == null) {
+                return null;
+            }
+            try {
+                return Double.parseDouble(value.replace(',', '.'));
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+
+        private static Integer parseInteger(String value) {
+            Double parsed = parseDouble(value);
+            return parsed == null ? null : parsed.intValue();
+        }
+
+        private static Integer parseDuration(String value) {
+            if (value == null) {
+                return null;
+            }
+            Integer seconds = parseInteger(value);
+            if (seconds != null) {
+                return seconds;
+            }
+
+            Matcher matcher = DURATION_PART.matcher(value);
+            int total = 0;
+            boolean matched = false;
+            while (matcher.find()) {
+                matched = true;
+                int amount = Integer.parseInt(matcher.group(1));
+                total += switch (matcher.group(2)) {
+                    case "h" -> amount * 3600;
+                    case "m" -> amount * 60;
+                    default -> amount;
+                };
+            }
+            return matched ? total : null;
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package com.onelubo.strongnostr.service.workout;
+
+import com.onelubo.strongnostr.dto.TrainingCalendarResponse;
+import com.onelubo.strongnostr.model.user.TrainingCalendar;
+import com.onelubo.strongnostr.model.user.User;
+import com.onelubo.strongnostr.model.workout.Workout;
+import com.onelubo.strongnostr.model.workout.WorkoutExercise;
+import com.onelubo.strongnostr.model.workout.WorkoutSet;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Keeps each user's {@link TrainingCalendar} in step with their workouts. A workout marks the day
+ * it took place (in its own offset) with an atomic {@code $bit} OR on the user document; deleting
+ * the last workout of a day clears the bit again.
+ */
+@Service
+public class TrainingCalendarService implements WorkoutWriteListener {
+
+    private static final String FIELD = "trainingCalendar";
+
+    private final MongoTemplate mongoTemplate;
+
+    public TrainingCalendarService(MongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    @Override
+    public void onSetsAdded(Workout workout, WorkoutExercise exercise, List<WorkoutSet> sets) {
+        // Only the first sets of a workout can introduce a new training day
+        if (workout.getTotalSets() != null && workout.getTotalSets() == sets.size()) {
+            LocalDate day = workout.getWorkoutDate().toLocalDate();
+            updateDays(workout.getUserNPub(), Map.of(day.getYear(), wordsOf(List.of(day))), true);
+        }
+    }
+
+    @Override
+    public void onWorkoutDeleted(Workout workout) {
+        OffsetDateTime workoutDate = workout.getWorkoutDate();
+        LocalDate day = workoutDate.toLocalDate();
+        OffsetDateTime dayStart = day.atStartOfDay().atOffset(workoutDate.getOffset());
+        Query sameDay = new Query(Criteria.where("userNPub").is(workout.getUserNPub())
+                                          .and("workoutDate.dateTime").gte(dayStart.toInstant())
+                                          .lt(dayStart.plusDays(1).toInstant())
+                                          .and("_id").ne(workout.getId()));
+        if (!mongoTemplate.exists(sameDay, Workout.class)) {
+            updateDays(workout.getUserNPub(), Map.of(day.getYear(), wordsOf(List.of(day))), false);
+        }
+    }
+
+    @Override
+    public void onWorkoutsImported(List<Workout> workouts) {
+        Map<String, Map<Integer, List<LocalDate>>> daysByUser = new HashMap<>();
+        for (Workout workout : workouts) {
+            LocalDate day = workout.getWorkoutDate().toLocalDate();
+            daysByUser.computeIfAbsent(workout.getUserNPub(), u -> new HashMap<>())
+                      .computeIfAbsent(day.getYear(), y -> new ArrayList<>())
+                      .add(day);
+        }
+        daysByUser.forEach((userNPub, days) -> {
+            Map<Integer, long[]> words = new HashMap<>();
+            days.forEach((year, yearDays) -> words.put(year, wordsOf(yearDays)));
+            updateDays(userNPub, words, true);
+        });
+    }
+
+    public TrainingCalendar getCalendar(String userNPub) {
+        Objects.requireNonNull(userNPub);
+        Query query = new Query(Criteria.where("npub").is(userNPub));
+        query.fields().include(FIELD);
+        User user = mongoTemplate.findOne(query, User.class);
+        return user != null ? user.getTrainingCalendar() : new TrainingCalendar();
+    }
+
+    public TrainingCalendarResponse getStats(String userNPub, LocalDate today) {
+        TrainingCalendar calendar = getCalendar(userNPub);
+        int lastTwelveWeeks = calendar.daysTrained(today.minusWeeks(12).plusDays(1), today);
+        return new TrainingCalendarResponse(calendar.currentStreak(today),
+                                            calendar.longestStreak(),
+                                            calendar.daysTrained(today.minusDays(6), today),
+                                            calendar.daysTrained(today.minusDays(29), today),
+                                            lastTwelveWeeks / 12.0);
+    }
+
+    public List<LocalDate> getTrainedDays(String userNPub, int year) {
+        return getCalendar(userNPub).trainedDays(year);
+    }
+
+    /**
+     * Set (or clear) the given day bits of each year on the user document
+     */
+    private void updateDays(String userNPub, Map<Integer, long[]> wordsByYear, boolean set) {
+        Criteria user = Criteria.where("npub").is(userNPub);
+        Update update = new Update();
+        for (Map.Entry<Integer, long[]> entry : wordsByYear.entrySet()) {
+            String yearField = FIELD + "." + entry.getKey();
+            if (!set) {
+                // Nothing to clear in a year that was never marked
+                user.and(yearField).exists(true);
+            } else {
+                // $bit on a missing path would create a sub-document, so give new years a zeroed word array first
+                mongoTemplate.updateFirst(new Query(Criteria.where("npub").is(userNPub).and(yearField).exists(false)),
+                                          new Update().set(yearField, Collections.nCopies(TrainingCalendar.WORDS_PER_YEAR, 0L)),
+                                          User.class);
+            }
+            long[] words = entry.getValue();
+            for (int w = 0; w < words.length; w++) {
+                if (words[w] != 0L) {
+                    if (set) {
+                        update.bitwise(yearField + "." + w).or(words[w]);
+                    } else {
+                        update.bitwise(yearField + "." + w).and(~words[w]);
+                    }
+                }
+            }
+        }
+        if (!update.getUpdateObject().isEmpty()) {
+            mongoTemplate.updateFirst(new Query(user), update, User.class);
+        }
+    }
+
+    private static long[] wordsOf(List<LocalDate> days) {
+        long[] words = new long[TrainingCalendar.WORDS_PER_YEAR];
+        for (LocalDate day : days) {
+            words[TrainingCalendar.word(day)] |= TrainingCalendar.mask(day);
+        }
+        return words;
+    }
+}
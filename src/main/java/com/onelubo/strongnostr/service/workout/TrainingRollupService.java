@@ -0,0 +1,367 @@
+package com.onelubo.strongnostr.service.workout;
+
+import com.onelubo.strongnostr.dto.TrainingRollupResponse;
+import com.onelubo.strongnostr.model.history.RollupPeriod;
+import com.onelubo.strongnostr.model.history.TrainingRollup;
+import com.onelubo.strongnostr.model.workout.Workout;
+import com.onelubo.strongnostr.model.workout.WorkoutExercise;
+import com.onelubo.strongnostr.model.workout.WorkoutSet;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Maintains weekly and monthly training rollups per user, both per exercise and across all exercises.
+ * Every workout write is folded into the affected buckets with {@code $inc} in a single unordered
+ * bulk upsert; {@link #backfill(String)} recomputes a user's buckets from the workouts with one
+ * aggregation per period and overwrites them in place, so readers never see a user without rollups.
+ */
+@Service
+public class TrainingRollupService implements WorkoutWriteListener {
+
+    private static final Logger logger = LoggerFactory.getLogger(TrainingRollupService.class);
+
+    private final MongoTemplate mongoTemplate;
+    private final TaskScheduler taskScheduler;
+    private final boolean backfillOnStartup;
+
+    public TrainingRollupService(MongoTemplate mongoTemplate, TaskScheduler taskScheduler,
+                                 @Value("${strongnostr.rollups.backfill-on-startup:false}") boolean backfillOnStartup) {
+        this.mongoTemplate = mongoTemplate;
+        this.taskScheduler = taskScheduler;
+        this.backfillOnStartup = backfillOnStartup;
+    }
+
+    /**
+     * Run the startup backfill on the scheduler once the app is serving, so it neither delays startup
+     * nor runs on a thread of its own
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        if (backfillOnStartup) {
+            taskScheduler.schedule(this::backfillAll, Instant.now());
+        }
+    }
+
+    @Override
+    public void onSetsAdded(Workout workout, WorkoutExercise exercise, List<WorkoutSet> sets) {
+        RollupDeltas deltas = new RollupDeltas();
+        // The first sets of a workout (or of an exercise within it) open a new workout (or session)
+        if (workout.getTotalSets() != null && workout.getTotalSets() == sets.size()) {
+            deltas.addWorkout(workout, 1);
+        }
+        int sessionDelta = exercise.getSets().size() == sets.size() ? 1 : 0;
+        deltas.addSets(workout, exercise, sets, sessionDelta, 1);
+        apply(deltas);
+    }
+
+    @Override
+    public void onExerciseRemoved(Workout workout, WorkoutExercise exercise) {
+        RollupDeltas deltas = new RollupDeltas();
+        if (workout.getExercises().isEmpty()) {
+            deltas.addWorkout(workout, -1);
+        }
+        deltas.addSets(workout, exercise, exercise.getSets(), -1, -1);
+        apply(deltas);
+    }
+
+    @Override
+    public void onWorkoutDeleted(Workout workout) {
+        RollupDeltas deltas = new RollupDeltas();
+        deltas.addWorkout(workout, -1);
+        for (WorkoutExercise exercise : workout.getExercises()) {
+            deltas.addSets(workout, exercise, exercise.getSets(), -1, -1);
+        }
+        apply(deltas);
+    }
+
+    @Override
+    public void onWorkoutsImported(List<Workout> workouts) {
+        RollupDeltas deltas = new RollupDeltas();
+        for (Workout workout : workouts) {
+            deltas.addWorkout(workout, 1);
+            for (WorkoutExercise exercise : workout.getExercises()) {
+                deltas.addSets(workout, exercise, exercise.getSets(), 1, 1);
+            }
+        }
+        apply(deltas);
+    }
+
+    /**
+     * Chart data: the user's buckets of the given period in [from, to], oldest first.
+     * Pass a null {@code exerciseId} for totals across all exercises.
+     */
+    public List<TrainingRollupResponse> getRollups(String userNPub, RollupPeriod period, String exerciseId,
+                                                   LocalDate from, LocalDate to) {
+        Objects.requireNonNull(userNPub);
+        Objects.requireNonNull(period);
+
+        Criteria criteria = Criteria.where("userNPub").is(userNPub)
+                                    .and("period").is(period)
+                                    .and("exerciseId").is(exerciseId != null ? exerciseId : TrainingRollup.ALL_EXERCISES);
+        if (from != null || to != null) {
+            Criteria bucketStart = criteria.and("bucketStart");
+            if (from != null) {
+                bucketStart.gte(period.bucketStart(from));
+            }
+            if (to != null) {
+                bucketStart.lte(to.toString());
+            }
+        }
+        Query query = new Query(criteria).with(Sort.by(Sort.Direction.ASC, "bucketStart"));
+
+        return mongoTemplate.find(query, TrainingRollup.class)
+                            .stream()
+                            .filter(rollup -> rollup.getSets() > 0)
+                            .map(rollup -> new TrainingRollupResponse(rollup.getBucketStart(), rollup.getWorkouts(),
+                                                                      rollup.getVolume(), rollup.getSets(),
+                                                                      rollup.getReps(), rollup.getAverageRpe()))
+                            .toList();
+    }
+
+    public void backfillAll() {
+        List<String> users = mongoTemplate.findDistinct(new Query(), "userNPub", Workout.class, String.class);
+        logger.info("Backfilling training rollups for {} users", users.size());
+        for (String userNPub : users) {
+            try {
+                backfill(userNPub);
+            } catch (Exception e) {
+                logger.warn("Failed to backfill training rollups for {}: {}", userNPub, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Replace the user's rollups with buckets recomputed from their workouts.
+     * Grouping happens in the database; only one document per bucket crosses the wire. Each recomputed
+     * bucket is overwritten with {@code $set} in one unordered bulk write, so live {@code $inc} upserts
+     * arriving meanwhile never race a delete, and only buckets that existed before the recomputation and
+     * no longer have any workouts are removed.
+     */
+    public void backfill(String userNPub) {
+        Objects.requireNonNull(userNPub);
+        Query userRollups = new Query(Criteria.where("userNPub").is(userNPub));
+        userRollups.fields().include("userNPub", "period", "exerciseId", "bucketStart");
+        List<TrainingRollup> existing = mongoTemplate.find(userRollups, TrainingRollup.class);
+
+        String workoutCollection = mongoTemplate.getCollectionName(Workout.class);
+        Map<RollupKey, Document> rollups = new LinkedHashMap<>();
+        for (RollupPeriod period : RollupPeriod.values()) {
+            Document facets = mongoTemplate.getCollection(workoutCollection)
+                                           .aggregate(rollupPipeline(userNPub, period))
+                                           .first();
+            if (facets == null) {
+                continue;
+            }
+            for (Document bucket : facets.getList("byExercise", Document.class)) {
+                Document id = bucket.get("_id", Document.class);
+                rollups.put(new RollupKey(userNPub, period, id.getString("exerciseId"), id.getString("bucketStart")),
+                            rollupTotals(bucket.getString("exerciseName"), bucket));
+            }
+            for (Document bucket : facets.getList("allExercises", Document.class)) {
+                rollups.put(new RollupKey(userNPub, period, TrainingRollup.ALL_EXERCISES, bucket.getString("_id")),
+                            rollupTotals(null, bucket));
+            }
+        }
+
+        List<String> staleIds = new ArrayList<>();
+        for (TrainingRollup rollup : existing) {
+            RollupKey key = new RollupKey(rollup.getUserNPub(), rollup.getPeriod(), rollup.getExerciseId(),
+                                          rollup.getBucketStart());
+            if (!rollups.containsKey(key)) {
+                staleIds.add(rollup.getId());
+            }
+        }
+        if (rollups.isEmpty() && staleIds.isEmpty()) {
+            return;
+        }
+
+        BulkOperations bulkOperations = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, TrainingRollup.class);
+        for (Map.Entry<RollupKey, Document> entry : rollups.entrySet()) {
+            Update update = new Update();
+            entry.getValue().forEach(update::set);
+            bulkOperations.upsert(bucketQuery(entry.getKey()), update);
+        }
+        if (!staleIds.isEmpty()) {
+            bulkOperations.remove(new Query(Criteria.where("_id").in(staleIds)));
+        }
+        bulkOperations.execute();
+    }
+
+    private static List<Document> rollupPipeline(String userNPub, RollupPeriod period) {
+        // Workout dates are stored as {dateTime, zone, offset}; bucket in the workout's own offset
+        Document timezone = new Document("$cond", List.of(new Document("$eq", List.of("$workoutDate.offset", "Z")),
+                                                          "UTC", "$workoutDate.offset"));
+        Document truncated = new Document("$dateTrunc", new Document("date", "$workoutDate.dateTime")
+                .append("unit", period.getMongoUnit())
+                .append("startOfWeek", "monday")
+                .append("timezone", timezone));
+        Document bucketStart = new Document("$dateToString", new Document("format", "%Y-%m-%d")
+                .append("date", truncated)
+                .append("timezone", timezone));
+        Document setsWithRpe = new Document("$filter", new Document("input", "$exercises.sets")
+                .append("cond", new Document("$isNumber", "$$this.rpe")));
+
+        Document project = new Document("bucketStart", bucketStart)
+                .append("exerciseId", "$exercises.exerciseId")
+                .append("exerciseName", "$exercises.exerciseName")
+                .append("volume", new Document("$ifNull", List.of("$exercises.totalVolume", 0)))
+                .append("sets", new Document("$size", "$exercises.sets"))
+                .append("reps", new Document("$ifNull", List.of("$exercises.totalReps", 0)))
+                .append("rpeSum", new Document("$sum", "$exercises.sets.rpe"))
+                .append("rpeCount", new Document("$size", setsWithRpe));
+
+        Document byExercise = new Document("$group", totals(new Document("bucketStart", "$bucketStart")
+                                                                   .append("exerciseId", "$exerciseId"))
+                .append("exerciseName", new Document("$first", "$exerciseName"))
+                .append("workouts", new Document("$sum", 1)));
+        Document allExercises = new Document("$group", totals("$bucketStart")
+                .append("workoutIds", new Document("$addToSet", "$_id")));
+
+        return List.of(
+                new Document("$match", new Document("userNPub", userNPub)),
+                new Document("$unwind", "$exercises"),
+                new Document("$match", new Document("exercises.sets.0", new Document("$exists", true))),
+                new Document("$project", project),
+                new Document("$facet", new Document("byExercise", List.of(byExercise))
+                        .append("allExercises", List.of(allExercises))));
+    }
+
+    private static Document totals(Object groupId) {
+        return new Document("_id", groupId)
+                .append("volume", new Document("$sum", "$volume"))
+                .append("sets", new Document("$sum", "$sets"))
+                .append("reps", new Document("$sum", "$reps"))
+                .append("rpeSum", new Document("$sum", "$rpeSum"))
+                .append("rpeCount", new Document("$sum", "$rpeCount"));
+    }
+
+    private static Document rollupTotals(String exerciseName, Document totals) {
+        long workouts = totals.containsKey("workoutIds")
+                ? totals.getList("workoutIds", Object.class).size()
+                : ((Number) totals.get("workouts")).longValue();
+        Document rollup = new Document("workouts", workouts)
+                .append("volume", ((Number) totals.get("volume")).doubleValue())
+                .append("sets", ((Number) totals.get("sets")).longValue())
+                .append("reps", ((Number) totals.get("reps")).longValue())
+                .append("rpeSum", ((Number) totals.get("rpeSum")).doubleValue())
+                .append("rpeCount", ((Number) totals.get("rpeCount")).longValue());
+        if (exerciseName != null) {
+            rollup.append("exerciseName", exerciseName);
+        }
+        return rollup;
+    }
+
+    private static Query bucketQuery(RollupKey key) {
+        return new Query(Criteria.where("userNPub").is(key.userNPub())
+                                 .and("period").is(key.period())
+                                 .and("exerciseId").is(key.exerciseId())
+                                 .and("bucketStart").is(key.bucketStart()));
+    }
+
+    private void apply(RollupDeltas deltas) {
+        if (deltas.isEmpty()) {
+            return;
+        }
+        BulkOperations bulkOperations = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, TrainingRollup.class);
+        for (Map.Entry<RollupKey, RollupDelta> entry : deltas.entries()) {
+            RollupDelta delta = entry.getValue();
+            Update update = new Update()
+                    .inc("workouts", delta.workouts)
+                    .inc("volume", delta.volume)
+                    .inc("sets", delta.sets)
+                    .inc("reps", delta.reps)
+                    .inc("rpeSum", delta.rpeSum)
+                    .inc("rpeCount", delta.rpeCount);
+            if (delta.exerciseName != null) {
+                update.set("exerciseName", delta.exerciseName);
+            }
+            bulkOperations.upsert(bucketQuery(entry.getKey()), update);
+        }
+        bulkOperations.execute();
+    }
+
+    private record RollupKey(String userNPub, RollupPeriod period, String exerciseId, String bucketStart) {
+    }
+
+    private static final class RollupDelta {
+        private String exerciseName;
+        private long workouts;
+        private double volume;
+        private long sets;
+        private long reps;
+        private double rpeSum;
+        private long rpeCount;
+    }
+
+    /**
+     * Changes of one write, merged per bucket so each bucket is updated once
+     */
+    private static final class RollupDeltas {
+        private final Map<RollupKey, RollupDelta> deltas = new LinkedHashMap<>();
+
+        void addWorkout(Workout workout, int sign) {
+            for (RollupPeriod period : RollupPeriod.values()) {
+                delta(workout, period, TrainingRollup.ALL_EXERCISES).workouts += sign;
+            }
+        }
+
+        void addSets(Workout workout, WorkoutExercise exercise, List<WorkoutSet> sets, int sessionDelta, int sign) {
+            for (RollupPeriod period : RollupPeriod.values()) {
+                RollupDelta exerciseDelta = delta(workout, period, exercise.getExerciseId());
+                exerciseDelta.exerciseName = exercise.getExerciseName();
+                exerciseDelta.workouts += sessionDelta;
+                RollupDelta allDelta = delta(workout, period, TrainingRollup.ALL_EXERCISES);
+                for (WorkoutSet set : sets) {
+                    add(exerciseDelta, set, sign);
+                    add(allDelta, set, sign);
+                }
+            }
+        }
+
+        private static void add(RollupDelta delta, WorkoutSet set, int sign) {
+            double weight = set.getWeight() != null ? set.getWeight() : 0.0;
+            int reps = set.getReps() != null ? set.getReps() : 0;
+            delta.volume += sign * weight * reps;
+            delta.sets += sign;
+            delta.reps += (long) sign * reps;
+            if (set.getRpe() != null) {
+                delta.rpeSum += sign * set.getRpe();
+                delta.rpeCount += sign;
+            }
+        }
+
+        private RollupDelta delta(Workout workout, RollupPeriod period, String exerciseId) {
+            RollupKey key = new RollupKey(workout.getUserNPub(), period, exerciseId,
+                                          period.bucketStart(workout.getWorkoutDate()));
+            return deltas.computeIfAbsent(key, k -> new RollupDelta());
+        }
+
+        boolean isEmpty() {
+            return deltas.isEmpty();
+        }
+
+        Iterable<Map.Entry<RollupKey, RollupDelta>> entries() {
+            return deltas.entrySet();
+        }
+    }
+}
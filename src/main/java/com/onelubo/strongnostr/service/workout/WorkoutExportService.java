@@ -0,0 +1,155 @@
+package com.onelubo.strongnostr.service.workout;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.onelubo.strongnostr.model.workout.Workout;
+import com.onelubo.strongnostr.model.workout.WorkoutExercise;
+import com.onelubo.strongnostr.model.workout.WorkoutSet;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Objects;
+import java.util.stream.Stream;
+
+/**
+ * Streams a user's full workout history straight from a Mongo cursor to the response.
+ * Only one workout is materialised at a time and the writer is flushed every
+ * {@code flushEvery} workouts, so memory stays flat and a slow client simply blocks the cursor.
+ */
+@Service
+public class WorkoutExportService {
+
+    static final String CSV_HEADER = "workout_id,workout_date,exercise_id,exercise_name,equipment,set_number," +
+            "weight,reps,rpe,rest_time_seconds,warmup,set_notes,workout_notes";
+
+    private final MongoTemplate mongoTemplate;
+    private final ObjectMapper objectMapper;
+    private final int cursorBatchSize;
+    private final int flushEvery;
+
+    public WorkoutExportService(MongoTemplate mongoTemplate, ObjectMapper objectMapper,
+                                @Value("${strongnostr.export.cursor-batch-size:200}") int cursorBatchSize,
+                                @Value("${strongnostr.export.flush-every:50}") int flushEvery) {
+        this.mongoTemplate = mongoTemplate;
+        this.objectMapper = objectMapper;
+        this.cursorBatchSize = cursorBatchSize;
+        this.flushEvery = flushEvery;
+    }
+
+    /**
+     * Write one JSON document per line (NDJSON) for every workout of the user
+     */
+    public void exportNdjson(String userNPub, OutputStream outputStream) throws IOException {
+        Objects.requireNonNull(userNPub);
+        Writer writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+
+        streamWorkouts(userNPub, (workout, count) -> {
+            writer.write(objectMapper.writeValueAsString(workout.toWorkoutResponse()));
+            writer.write('\n');
+            if (count % flushEvery == 0) {
+                writer.flush();
+            }
+        });
+        writer.flush();
+    }
+
+    /**
+     * Write one flattened CSV row per set for every workout of the user
+     */
+    public void exportCsv(String userNPub, OutputStream outputStream) throws IOException {
+        Objects.requireNonNull(userNPub);
+        Writer writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+        writer.write(CSV_HEADER);
+        writer.write('\n');
+
+        streamWorkouts(userNPub, (workout, count) -> {
+            writeCsvRows(writer, workout);
+            if (count % flushEvery == 0) {
+                writer.flush();
+            }
+        });
+        writer.flush();
+    }
+
+    private void streamWorkouts(String userNPub, WorkoutWriter workoutWriter) throws IOException {
+        Query query = new Query(Criteria.where("userNPub").is(userNPub))
+                .with(Sort.by(Sort.Direction.ASC, "workoutDate.dateTime"))
+                .cursorBatchSize(cursorBatchSize);
+
+        try (Stream<Workout> workouts = mongoTemplate.stream(query, Workout.class)) {
+            long[] count = {0};
+            workouts.forEach(workout -> {
+                try {
+                    workoutWriter.write(workout, ++count[0]);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static void writeCsvRows(Writer writer, Workout workout) throws IOException {
+        String workoutDate = workout.getWorkoutDate() != null ? workout.getWorkoutDate().toString() : "";
+        for (WorkoutExercise exercise : workout.getExercises()) {
+            List<WorkoutSet> sets = exercise.getSets();
+            for (int i = 0; i < sets.size(); i++) {
+                WorkoutSet set = sets.get(i);
+                writer.write(csv(workout.getId()));
+                writer.write(',');
+                writer.write(csv(workoutDate));
+                writer.write(',');
+                writer.write(csv(exercise.getExerciseId()));
+                writer.write(',');
+                writer.write(csv(exercise.getExerciseName()));
+                writer.write(',');
+                writer.write(csv(exercise.getEquipment()));
+                writer.write(',');
+                writer.write(Integer.toString(i + 1));
+                writer.write(',');
+                writer.write(csv(set.getWeight()));
+                writer.write(',');
+                writer.write(csv(set.getReps()));
+                writer.write(',');
+                writer.write(csv(set.getRpe()));
+                writer.write(',');
+                writer.write(csv(set.getRestTimeSeconds()));
+                writer.write(',');
+                writer.write(csv(set.getWarmup()));
+                writer.write(',');
+                writer.write(csv(set.getNotes()));
+                writer.write(',');
+                writer.write(csv(workout.getNotes()));
+                writer.write('\n');
+            }
+        }
+    }
+
+    private static String csv(Object value) {
+        if (value == null) {
+            return "";
+        }
+        String text = value.toString();
+        if (text.indexOf(',') < 0 && text.indexOf('"') < 0 && text.indexOf('\n') < 0 && text.indexOf('\r') < 0) {
+            return text;
+        }
+        return '"' + text.replace("\"", "\"\"") + '"';
+    }
+
+    @FunctionalInterface
+    private interface WorkoutWriter {
+        void write(Workout workout, long count) throws IOException;
+    }
+}
@@ -1,27 +1,60 @@
 package com.onelubo.strongnostr.service.workout;
 
+import com.onelubo.strongnostr.dto.ExerciseSetDto;
 import com.onelubo.strongnostr.exception.WorkoutNotFoundException;
 import com.onelubo.strongnostr.model.workout.Exercise;
 import com.onelubo.strongnostr.model.workout.Workout;
 import com.onelubo.strongnostr.model.workout.WorkoutExercise;
 import com.onelubo.strongnostr.model.workout.WorkoutSet;
 import com.onelubo.strongnostr.repository.WorkoutRepository;
+import com.onelubo.strongnostr.service.AdaptiveConcurrencyLimiter;
+import com.onelubo.strongnostr.service.ConcurrencyLimiters;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.security.core.Authentication;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
 
 @Service
 public class WorkoutService {
 
+    private static final Logger logger = LoggerFactory.getLogger(WorkoutService.class);
+
     private final ExerciseService exerciseService;
     private final WorkoutRepository workoutRepository;
+    private final WorkoutSyncService workoutSyncService;
+    private final WorkoutWriteRetry workoutWriteRetry;
+    private final AdaptiveConcurrencyLimiter writeLimiter;
+    private final List<WorkoutWriteListener> workoutWriteListeners;
 
-    public WorkoutService(ExerciseService exerciseService, WorkoutRepository workoutRepository) {
+    public WorkoutService(ExerciseService exerciseService, WorkoutRepository workoutRepository,
+                          WorkoutSyncService workoutSyncService, WorkoutWriteRetry workoutWriteRetry,
+                          ConcurrencyLimiters concurrencyLimiters, List<WorkoutWriteListener> workoutWriteListeners) {
         this.exerciseService = exerciseService;
         this.workoutRepository = workoutRepository;
+        this.workoutSyncService = workoutSyncService;
+        this.workoutWriteRetry = workoutWriteRetry;
+        this.writeLimiter = concurrencyLimiters.workoutWrites();
+        this.workoutWriteListeners = workoutWriteListeners;
+    }
+
+    @PostConstruct
+    public void init() {
+        long initialized = workoutRepository.initializeMissingVersions();
+        if (initialized > 0) {
+            logger.info("Initialized the version of {} workouts", initialized);
+        }
     }
 
     public Workout createWorkout(Exercise exercise, WorkoutSet set, String userNPub) {
@@ -36,7 +69,12 @@ public class WorkoutService {
                                                               existingExercise.getName(),
                                                               existingExercise.getEquipment(), List.of(set));
         workout.addExercise(workoutExercise);
-        return workoutRepository.save(workout);
+        Workout savedWorkout;
+        try (WorkoutSyncService.Reservation reservation = workoutSyncService.stamp(workout)) {
+            savedWorkout = writeLimiter.execute(() -> workoutRepository.save(workout));
+        }
+        notifySetsAdded(savedWorkout, existingExercise.getId(), List.of(set));
+        return savedWorkout;
     }
 
     public Workout addExerciseToWorkout(Workout workout, Exercise exercise, WorkoutSet set) {
@@ -48,22 +86,99 @@ public class WorkoutService {
         WorkoutExercise workoutExercise = new WorkoutExercise(existingExercise.getId(),
                                                               existingExercise.getName(),
                                                               existingExercise.getEquipment(), List.of(set));
-        workout.updateWorkout(workoutExercise);
+        Workout savedWorkout = saveWithRetry("addExercise", workout, target -> target.updateWorkout(workoutExercise));
+        notifySetsAdded(savedWorkout, existingExercise.getId(), List.of(set));
+        return savedWorkout;
+    }
+
+    /**
+     * Apply a batch of sets, e.g. replayed by a client that was offline: exercises are resolved together,
+     * sets are grouped per exercise, metrics are recomputed once and the workout is written once.
+     */
+    public Workout addSetsToWorkout(Workout workout, List<ExerciseSetDto> entries) {
+        Objects.requireNonNull(workout);
+        Objects.requireNonNull(entries);
+        if (entries.isEmpty()) {
+            return workout;
+        }
 
-        return workoutRepository.save(workout);
+        List<Exercise> exercises = entries.stream().map(ExerciseSetDto::getExercise).toList();
+        exercises.forEach(exercise -> exercise.setCreatedByUserId(workout.getUserNPub()));
+        List<Exercise> resolvedExercises = exerciseService.findOrCreateExercises(exercises);
+
+        Map<String, Exercise> exercisesById = new LinkedHashMap<>();
+        Map<String, List<WorkoutSet>> setsByExercise = new LinkedHashMap<>();
+        for (int i = 0; i < entries.size(); i++) {
+            Exercise resolvedExercise = resolvedExercises.get(i);
+            exercisesById.putIfAbsent(resolvedExercise.getId(), resolvedExercise);
+            setsByExercise.computeIfAbsent(resolvedExercise.getId(), id -> new ArrayList<>())
+                          .add(entries.get(i).getWorkoutSet());
+        }
+
+        List<WorkoutExercise> newExercises = new ArrayList<>(setsByExercise.size());
+        setsByExercise.forEach((exerciseId, sets) -> {
+            Exercise exercise = exercisesById.get(exerciseId);
+            newExercises.add(new WorkoutExercise(exerciseId, exercise.getName(), exercise.getEquipment(), sets));
+        });
+        Workout savedWorkout = saveWithRetry("addSets", workout, target -> target.addSets(newExercises));
+        setsByExercise.forEach((exerciseId, sets) -> notifySetsAdded(savedWorkout, exerciseId, sets));
+        return savedWorkout;
     }
 
     public Workout removeExerciseFromWorkout(Workout workout, Exercise exercise) {
-        workout.getExercises()
-               .stream()
-               .filter(wex -> wex.getExerciseId().equals(exercise.getId()))
-               .findFirst()
-               .ifPresentOrElse(workout::removeExercise, () -> {
-                   throw new IllegalArgumentException(
-                           String.format("Exercise '%s' with id '%s' not found in workout",
-                                         exercise.getName(), exercise.getId()));
-               });
-        return workoutRepository.save(workout);
+        AtomicReference<WorkoutExercise> removedExercise = new AtomicReference<>();
+        Workout savedWorkout = saveWithRetry("removeExercise", workout, target -> {
+            removedExercise.set(target.getExercises()
+                   .stream()
+                   .filter(wex -> wex.getExerciseId().equals(exercise.getId()))
+                   .findFirst()
+                   .orElseThrow(() -> new IllegalArgumentException(
+                               String.format("Exercise '%s' with id '%s' not found in workout",
+                                             exercise.getName(), exercise.getId()))));
+            target.removeExercise(removedExercise.get());
+        });
+        notifyListeners(savedWorkout, listener -> listener.onExerciseRemoved(savedWorkout, removedExercise.get()));
+        return savedWorkout;
+    }
+
+    public void deleteWorkout(String workoutId) {
+        Workout workout = workoutWriteRetry.execute("deleteWorkout", attempt -> writeLimiter.execute(() -> {
+            Workout current = getWorkoutById(workoutId);
+            workoutSyncService.deleteWithTombstone(current, () -> workoutRepository.delete(current));
+            return current;
+        }));
+        notifyListeners(workout, listener -> listener.onWorkoutDeleted(workout));
+    }
+
+    /**
+     * Used by method security on workout endpoints; unknown workouts are reported as not owned
+     */
+    public boolean isWorkoutOwner(Authentication authentication, String workoutId) {
+        if (authentication == null || workoutId == null) {
+            return false;
+        }
+        return workoutRepository.findVersionById(workoutId)
+                                .map(workout -> authentication.getName().equals(workout.getUserNPub()))
+                                .orElse(false);
+    }
+
+    /**
+     * Owner and version of a workout, read without loading the workout itself; enough to check
+     * ownership and build its ETag. Empty for unknown workouts.
+     */
+    public Optional<Workout> getWorkoutHeader(String workoutId) {
+        return workoutRepository.findVersionById(workoutId);
+    }
+
+    public static String eTagOf(Workout workout) {
+        return "\"" + workout.getId() + "-" + workout.getVersion() + "\"";
+    }
+
+    /**
+     * Strong ETag of a page of the user's workouts, from their count of completed writes
+     */
+    public String getWorkoutListETag(String userNPub, int page, int size) {
+        return "\"" + workoutSyncService.changeCount(userNPub) + "-" + page + "-" + size + "\"";
     }
 
     public Workout getWorkoutById(String workoutID) {
@@ -76,4 +191,45 @@ public class WorkoutService {
         Pageable pageable = PageRequest.of(page, size);
         return workoutRepository.findByUserNPub(userNPub, pageable);
     }
+
+    /**
+     * Apply a change to a workout and save it. On a version conflict the change is applied again to
+     * the workout as saved by the other writer, so neither write is lost. Each attempt passes the
+     * write limiter on its own, so backoff between attempts does not count as Mongo latency.
+     */
+    private Workout saveWithRetry(String operation, Workout workout, Consumer<Workout> change) {
+        return workoutWriteRetry.execute(operation, attempt -> writeLimiter.execute(() -> {
+            Workout target = attempt == 0 ? workout : getWorkoutById(workout.getId());
+            change.accept(target);
+            try (WorkoutSyncService.Reservation reservation = workoutSyncService.stamp(target)) {
+                return workoutRepository.save(target);
+            }
+        }));
+    }
+
+    private void notifySetsAdded(Workout savedWorkout, String exerciseId, List<WorkoutSet> sets) {
+        if (savedWorkout == null) {
+            return;
+        }
+        savedWorkout.getExercises()
+                    .stream()
+                    .filter(wex -> exerciseId.equals(wex.getExerciseId()))
+                    .findFirst()
+                    .ifPresent(wex -> notifyListeners(savedWorkout, listener -> listener.onSetsAdded(savedWorkout, wex, sets)));
+    }
+
+    /**
+     * The workout is saved by the time listeners run, so a failing read model is logged rather than
+     * failing the request: a client retrying an error would write the same sets a second time
+     */
+    private void notifyListeners(Workout workout, Consumer<WorkoutWriteListener> event) {
+        for (WorkoutWriteListener listener : workoutWriteListeners) {
+            try {
+                event.accept(listener);
+            } catch (RuntimeException e) {
+                logger.error("{} failed to process a write of workout {}", listener.getClass().getSimpleName(),
+                             workout.getId(), e);
+            }
+        }
+    }
 }
@@ -0,0 +1,324 @@
+package com.onelubo.strongnostr.service.workout;
+
+import com.onelubo.strongnostr.dto.WorkoutResponse;
+import com.onelubo.strongnostr.dto.WorkoutSyncResponse;
+import com.onelubo.strongnostr.model.workout.Workout;
+import com.onelubo.strongnostr.model.workout.WorkoutExercise;
+import com.onelubo.strongnostr.model.workout.WorkoutSet;
+import com.onelubo.strongnostr.model.workout.WorkoutSyncCounter;
+import com.onelubo.strongnostr.model.workout.WorkoutTombstone;
+import jakarta.annotation.PostConstruct;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.AggregationOperation;
+import org.springframework.data.mongodb.core.aggregation.AggregationUpdate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+
+/**
+ * Delta sync for offline-first clients. Every workout write is stamped with the next value of a
+ * per-user sequence and every deletion leaves a {@link WorkoutTombstone} stamped the same way, so
+ * the changes since a client's token are a range scan on {@code (userNPub, syncVersion)}. Tombstones
+ * are written with the delete itself, not by a listener, so a deletion cannot go missing.
+ * <p>
+ * Versions are allocated before the write they stamp and stay pending on the counter until the
+ * write is released, so writes can complete out of order. Sync only serves versions below the
+ * oldest pending reservation, which keeps a client from moving its token past a version that is
+ * still being written. The same counter document also counts completed writes, which is what
+ * list ETags are built from.
+ */
+@Service
+public class WorkoutSyncService implements WorkoutWriteListener {
+
+    private static final Logger logger = LoggerFactory.getLogger(WorkoutSyncService.class);
+
+    /**
+     * A reservation this old belongs to a writer that died; it stops holding back the watermark
+     */
+    static final Duration RESERVATION_LEASE = Duration.ofSeconds(30);
+
+    private final MongoTemplate mongoTemplate;
+
+    public WorkoutSyncService(MongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    /**
+     * Workouts written before delta sync existed have no version yet; give them one before any
+     * client syncs, so serving a sync never writes
+     */
+    @PostConstruct
+    public void init() {
+        Query query = new Query(Criteria.where("syncVersion").exists(false));
+        List<String> users = mongoTemplate.findDistinct(query, "userNPub", Workout.class, String.class);
+        long stamped = users.stream().mapToLong(this::stampUnversioned).sum();
+        if (stamped > 0) {
+            logger.info("Stamped the sync version of {} workouts", stamped);
+        }
+    }
+
+    /**
+     * Stamp a workout about to be saved with the user's next sync version. The version stays
+     * pending until the returned reservation is closed, which callers do once the save is over.
+     */
+    public Reservation stamp(Workout workout) {
+        Reservation reservation = new Reservation(List.of(workout.getUserNPub()));
+        workout.setSyncVersion(reserve(workout.getUserNPub(), 1, reservation.id));
+        return reservation;
+    }
+
+    /**
+     * Stamp a batch of workouts about to be written, reserving one block of versions per user
+     */
+    public Reservation stamp(Collection<Workout> workouts) {
+        Map<String, List<Workout>> byUser = new LinkedHashMap<>();
+        workouts.forEach(workout -> byUser.computeIfAbsent(workout.getUserNPub(), u -> new ArrayList<>()).add(workout));
+        Reservation reservation = new Reservation(List.copyOf(byUser.keySet()));
+        byUser.forEach((userNPub, userWorkouts) -> {
+            long last = reserve(userNPub, userWorkouts.size(), reservation.id);
+            long next = last - userWorkouts.size() + 1;
+            for (Workout workout : userWorkouts) {
+                workout.setSyncVersion(next++);
+            }
+        });
+        return reservation;
+    }
+
+    /**
+     * Delete a workout together with its tombstone. The tombstone is written first, under a reservation
+     * that keeps sync from serving it until the delete is over, and removed again if the delete fails;
+     * failing to write it fails the delete, so a deletion is never hidden from syncing clients.
+     */
+    public void deleteWithTombstone(Workout workout, Runnable delete) {
+        String userNPub = workout.getUserNPub();
+        try (Reservation reservation = new Reservation(List.of(userNPub))) {
+            WorkoutTombstone tombstone = mongoTemplate.insert(
+                    new WorkoutTombstone(userNPub, workout.getId(), reserve(userNPub, 1, reservation.id), Instant.now()));
+            try {
+                delete.run();
+            } catch (RuntimeException e) {
+                mongoTemplate.remove(tombstone);
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Count of the user's completed workout writes, 0 if nothing was ever written; a cheap validator
+     * for anything derived from the user's workout list
+     */
+    public long changeCount(String userNPub) {
+        Query query = new Query(Criteria.where("_id").is(userNPub));
+        query.fields().include("changes");
+        WorkoutSyncCounter counter = mongoTemplate.findOne(query, WorkoutSyncCounter.class);
+        return counter != null ? counter.getChanges() : 0L;
+    }
+
+    @Override
+    public void onSetsAdded(Workout workout, WorkoutExercise exercise, List<WorkoutSet> sets) {
+        recordChange(workout.getUserNPub());
+    }
+
+    @Override
+    public void onExerciseRemoved(Workout workout, WorkoutExercise exercise) {
+        recordChange(workout.getUserNPub());
+    }
+
+    @Override
+    public void onWorkoutDeleted(Workout workout) {
+        recordChange(workout.getUserNPub());
+    }
+
+    @Override
+    public void onWorkoutsImported(List<Workout> workouts) {
+        workouts.stream().map(Workout::getUserNPub).distinct().forEach(this::recordChange);
+    }
+
+    /**
+     * Changes since the given token, or the whole history when there is none, in pages of at most {@code limit}
+     */
+    public WorkoutSyncResponse sync(String userNPub, String token, int limit) {
+        Objects.requireNonNull(userNPub);
+        if (limit <= 0) {
+            throw new IllegalArgumentException("Limit must be positive");
+        }
+
+        long since;
+        if (token == null || token.isBlank()) {
+            since = 0L;
+        } else {
+            SyncToken syncToken = SyncToken.parse(token);
+            if (syncToken.issuedAt().isBefore(Instant.now().minus(WorkoutTombstone.RETENTION))) {
+                // Tombstones of deletions since then may have expired
+                return WorkoutSyncResponse.reset();
+            }
+            since = syncToken.version();
+        }
+
+        WorkoutSyncCounter counter = mongoTemplate.findById(userNPub, WorkoutSyncCounter.class);
+        long committed = counter != null ? counter.committedVersion(Instant.now().minus(RESERVATION_LEASE)) : 0L;
+        if (committed <= since) {
+            return new WorkoutSyncResponse(List.of(), List.of(), new SyncToken(since, Instant.now()).toString(),
+                                           false, false);
+        }
+
+        List<Workout> workouts = mongoTemplate.find(changesSince(userNPub, since, committed, limit), Workout.class);
+        List<WorkoutTombstone> tombstones = mongoTemplate.find(changesSince(userNPub, since, committed, limit),
+                                                               WorkoutTombstone.class);
+
+        // Both lists are sorted and hold up to limit + 1 entries, so the first limit of the merge are the oldest changes
+        List<Change> changes = new ArrayList<>(workouts.size() + tombstones.size());
+        workouts.forEach(workout -> changes.add(new Change(workout.getSyncVersion(), workout, null)));
+        tombstones.forEach(tombstone -> changes.add(new Change(tombstone.getSyncVersion(), null, tombstone.getWorkoutId())));
+        changes.sort(Comparator.comparingLong(Change::version));
+
+        boolean hasMore = changes.size() > limit;
+        List<Change> page = hasMore ? changes.subList(0, limit) : changes;
+
+        List<WorkoutResponse> changed = new ArrayList<>();
+        List<String> deleted = new ArrayList<>();
+        long nextVersion = since;
+        for (Change change : page) {
+            if (change.workout() != null) {
+                changed.add(change.workout().toWorkoutResponse());
+            } else {
+                deleted.add(change.deletedWorkoutId());
+            }
+            nextVersion = change.version();
+        }
+        return new WorkoutSyncResponse(changed, deleted, new SyncToken(nextVersion, Instant.now()).toString(),
+                                       hasMore, false);
+    }
+
+    private static Query changesSince(String userNPub, long since, long committed, int limit) {
+        return new Query(Criteria.where("userNPub").is(userNPub).and("syncVersion").gt(since).lte(committed))
+                .with(Sort.by(Sort.Direction.ASC, "syncVersion"))
+                .limit(limit + 1);
+    }
+
+    private long stampUnversioned(String userNPub) {
+        Query query = new Query(Criteria.where("userNPub").is(userNPub).and("syncVersion").exists(false));
+        query.fields().include("_id");
+        List<Workout> unversioned = mongoTemplate.find(query, Workout.class);
+        if (unversioned.isEmpty()) {
+            return 0;
+        }
+
+        try (Reservation reservation = new Reservation(List.of(userNPub))) {
+            long next = reserve(userNPub, unversioned.size(), reservation.id) - unversioned.size() + 1;
+            BulkOperations bulkOperations = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Workout.class);
+            for (Workout workout : unversioned) {
+                bulkOperations.updateOne(new Query(Criteria.where("_id").is(workout.getId()).and("syncVersion").exists(false)),
+                                         new Update().set("syncVersion", next++));
+            }
+            return bulkOperations.execute().getModifiedCount();
+        }
+    }
+
+    private void recordChange(String userNPub) {
+        mongoTemplate.upsert(new Query(Criteria.where("_id").is(userNPub)), new Update().inc("changes", 1),
+                             WorkoutSyncCounter.class);
+    }
+
+    /**
+     * Advance the user's sequence by {@code count}, record the block as pending under the given
+     * reservation, and return the last version reserved. One pipeline update, so the block is
+     * pending from the moment it exists; expired reservations are dropped on the way.
+     */
+    private long reserve(String userNPub, int count, String reservationId) {
+        Instant now = Instant.now();
+        Document previousVersion = new Document("$ifNull", List.of("$version", 0L));
+        Document livePending = new Document("$filter", new Document()
+                .append("input", new Document("$ifNull", List.of("$pending", List.of())))
+                .append("cond", new Document("$gt", List.of("$$this.reservedAt", Date.from(now.minus(RESERVATION_LEASE))))));
+        Document reserved = new Document("first", new Document("$add", List.of(previousVersion, 1L)))
+                .append("reservation", reservationId)
+                .append("reservedAt", Date.from(now));
+        AggregationOperation set = context -> new Document("$set", new Document()
+                .append("version", new Document("$add", List.of(previousVersion, (long) count)))
+                .append("pending", new Document("$concatArrays", List.of(livePending, List.of(reserved)))));
+
+        Query query = new Query(Criteria.where("_id").is(userNPub));
+        AggregationUpdate update = AggregationUpdate.from(List.of(set));
+        FindAndModifyOptions options = FindAndModifyOptions.options().upsert(true).returnNew(true);
+        WorkoutSyncCounter counter;
+        try {
+            counter = mongoTemplate.findAndModify(query, update, options, WorkoutSyncCounter.class);
+        } catch (DuplicateKeyException e) {
+            // A concurrent first write of the same user created the counter; it exists now
+            counter = mongoTemplate.findAndModify(query, update, options, WorkoutSyncCounter.class);
+        }
+        return Objects.requireNonNull(counter).getVersion();
+    }
+
+    private void release(String userNPub, String reservationId) {
+        mongoTemplate.updateFirst(new Query(Criteria.where("_id").is(userNPub)),
+                                  new Update().pull("pending", new Document("reservation", reservationId)),
+                                  WorkoutSyncCounter.class);
+    }
+
+    /**
+     * Versions reserved for one write; closing it, whether the write succeeded or not, lets sync
+     * serve past them
+     */
+    public final class Reservation implements AutoCloseable {
+
+        private final String id = UUID.randomUUID().toString();
+        private final List<String> userNPubs;
+
+        private Reservation(List<String> userNPubs) {
+            this.userNPubs = userNPubs;
+        }
+
+        @Override
+        public void close() {
+            userNPubs.forEach(userNPub -> release(userNPub, id));
+        }
+    }
+
+    private record Change(long version, Workout workout, String deletedWorkoutId) {}
+
+    /**
+     * Opaque to clients: the last version they have seen and when the token was issued
+     */
+    record SyncToken(long version, Instant issuedAt) {
+
+        static SyncToken parse(String token) {
+            int separator = token.indexOf('.');
+            try {
+                if (separator > 0) {
+                    return new SyncToken(Long.parseLong(token.substring(0, separator)),
+                                         Instant.ofEpochSecond(Long.parseLong(token.substring(separator + 1))));
+                }
+            } catch (NumberFormatException e) {
+                // fall through
+            }
+            throw new IllegalArgumentException("Invalid sync token: " + token);
+        }
+
+        @Override
+        public String toString() {
+            return version + "." + issuedAt.getEpochSecond();
+        }
+    }
+}
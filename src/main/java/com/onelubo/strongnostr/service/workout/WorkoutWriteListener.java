@@ -0,0 +1,34 @@
+package com.onelubo.strongnostr.service.workout;
+
+import com.onelubo.strongnostr.model.workout.Workout;
+import com.onelubo.strongnostr.model.workout.WorkoutExercise;
+import com.onelubo.strongnostr.model.workout.WorkoutSet;
+
+import java.util.List;
+
+/**
+ * Callback for read models derived from workouts (set history, records, rollups...).
+ * Invoked after the workout has been persisted, so {@link Workout#getId()} is always set.
+ */
+public interface WorkoutWriteListener {
+
+    /**
+     * New sets were appended to {@code exercise}; the sets are already part of {@code exercise.getSets()}
+     */
+    default void onSetsAdded(Workout workout, WorkoutExercise exercise, List<WorkoutSet> sets) {}
+
+    default void onExerciseRemoved(Workout workout, WorkoutExercise exercise) {}
+
+    default void onWorkoutDeleted(Workout workout) {}
+
+    /**
+     * Workouts written in bulk (e.g. by an import). Listeners with a cheaper bulk path should override this.
+     */
+    default void onWorkoutsImported(List<Workout> workouts) {
+        for (Workout workout : workouts) {
+            for (WorkoutExercise exercise : workout.getExercises()) {
+                onSetsAdded(workout, exercise, exercise.getSets());
+            }
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.onelubo.strongnostr.service.workout;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntFunction;
+
+/**
+ * Bounded retry for versioned workout writes. Each attempt re-reads the workout, re-applies its
+ * change and saves; a concurrent writer makes the save fail with an
+ * {@link OptimisticLockingFailureException} and the next attempt starts after a jittered backoff.
+ */
+@Component
+public class WorkoutWriteRetry {
+
+    private static final Logger logger = LoggerFactory.getLogger(WorkoutWriteRetry.class);
+    private static final long MAX_BACKOFF_MILLIS = 500;
+
+    private final MeterRegistry meterRegistry;
+    private final int maxAttempts;
+    private final long baseBackoffMillis;
+
+    public WorkoutWriteRetry(MeterRegistry meterRegistry,
+                             @Value("${strongnostr.workout-writes.max-attempts:5}") int maxAttempts,
+                             @Value("${strongnostr.workout-writes.base-backoff-millis:10}") long baseBackoffMillis) {
+        this.meterRegistry = meterRegistry;
+        this.maxAttempts = maxAttempts;
+        this.baseBackoffMillis = baseBackoffMillis;
+    }
+
+    /**
+     * Run {@code attempt} with the attempt number, starting at 0, until it no longer conflicts or
+     * the attempts are used up, in which case the last conflict is rethrown
+     */
+    public <T> T execute(String operation, IntFunction<T> attempt) {
+        for (int i = 0; ; i++) {
+            try {
+                return attempt.apply(i);
+            } catch (OptimisticLockingFailureException e) {
+                counter("strongnostr.workout.write.conflicts", operation).increment();
+                if (i + 1 >= maxAttempts) {
+                    counter("strongnostr.workout.write.exhausted", operation).increment();
+                    logger.warn("Giving up {} after {} conflicting attempts", operation, maxAttempts);
+                    throw e;
+                }
+                counter("strongnostr.workout.write.retries", operation).increment();
+                backoff(operation, i);
+            }
+        }
+    }
+
+    /**
+     * Full jitter: a random pause up to an exponentially growing, capped bound, so that writers that
+     * collided once do not collide again in lockstep
+     */
+    private void backoff(String operation, int attempt) {
+        long bound = Math.min(MAX_BACKOFF_MILLIS, baseBackoffMillis << Math.min(attempt, 16));
+        if (bound <= 0) {
+            return;
+        }
+        try {
+            TimeUnit.MILLISECONDS.sleep(ThreadLocalRandom.current().nextLong(bound + 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while retrying " + operation, e);
+        }
+    }
+
+    private Counter counter(String name, String operation) {
+        return meterRegistry.counter(name, "operation", operation);
+    }
+}
@@ -0,0 +1,130 @@
+package com.onelubo.strongnostr.util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Minimal streaming CSV reader for Strong app exports.
+ * Reads one record at a time from the underlying reader so the whole file is never held in memory.
+ * Handles quoted fields, escaped quotes ("") and line breaks inside quoted fields.
+ * The delimiter (',' or ';') is detected from the header line.
+ */
+public class StrongCsvReader implements Closeable {
+
+    private static final int EOF = -1;
+
+    private final Reader reader;
+    private char delimiter = ',';
+    private boolean delimiterDetected = false;
+    private int pushedBack = EOF;
+    private long recordNumber = 0;
+
+    public StrongCsvReader(Reader reader) {
+        this.reader = reader;
+    }
+
+    /**
+     * Read the next record
+     * @return list of fields, or null when the end of the stream is reached
+     */
+    public List<String> readRecord() throws IOException {
+        int c = read();
+        if (c == EOF) {
+            return null;
+        }
+
+        if (!delimiterDetected) {
+            pushedBack = c;
+            detectDelimiter();
+            c = read();
+        }
+
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean inQuotes = false;
+
+        while (c != EOF) {
+            if (inQuotes) {
+                if (c == '"') {
+                    int next = read();
+                    if (next == '"') {
+                        field.append('"');
+                    } else {
+                        inQuotes = false;
+                        pushedBack = next;
+                    }
+                } else {
+                    field.append((char) c);
+                }
+            } else if (c == '"' && field.isEmpty()) {
+                inQuotes = true;
+            } else if (c == delimiter) {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else if (c == '\r') {
+                int next = read();
+                if (next != '\n') {
+                    pushedBack = next;
+                }
+                break;
+            } else if (c == '\n') {
+                break;
+            } else {
+                field.append((char) c);
+            }
+            c = read();
+        }
+
+        fields.add(field.toString());
+        recordNumber++;
+        return fields;
+    }
+
+    public long getRecordNumber() {
+        return recordNumber;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    /**
+     * Strong writes ',' by default but some locales export with ';'.
+     * Peek at the header line to decide which one is in use.
+     */
+    private void detectDelimiter() throws IOException {
+        delimiterDetected = true;
+        if (!reader.markSupported()) {
+            return;
+        }
+
+        reader.mark(1024);
+        int commas = 0;
+        int semicolons = 0;
+        int c;
+        int read = 0;
+        while ((c = reader.read()) != EOF && c != '\n' && read++ < 1023) {
+            if (c == ',') commas++;
+            if (c == ';') semicolons++;
+        }
+        reader.reset();
+
+        if (pushedBack == ',') commas++;
+        if (pushedBack == ';') semicolons++;
+
+        delimiter = semicolons > commas ? ';' : ',';
+    }
+
+    private int read() throws IOException {
+        if (pushedBack != EOF) {
+            int c = pushedBack;
+            pushedBack = EOF;
+            return c;
+        }
+        return reader.read();
+    }
+}
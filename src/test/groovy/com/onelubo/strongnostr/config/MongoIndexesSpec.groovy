@@ -0,0 +1,150 @@
+package com.onelubo.strongnostr.config
+
+import com.mongodb.client.MongoClient
+import com.mongodb.client.MongoClients
+import com.onelubo.strongnostr.model.history.PersonalRecord
+import com.onelubo.strongnostr.model.user.User
+import com.onelubo.strongnostr.model.workout.Exercise
+import com.onelubo.strongnostr.nostr.NostrKeyManager
+import com.onelubo.strongnostr.repository.UserRepository
+import com.onelubo.strongnostr.service.nostr.NostrUserService
+import com.onelubo.strongnostr.service.nostr.UsernameAllocator
+import com.onelubo.strongnostr.util.NostrUtils
+import de.flapdoodle.embed.mongo.distribution.Version
+import de.flapdoodle.embed.mongo.transitions.Mongod
+import de.flapdoodle.embed.mongo.transitions.RunningMongodProcess
+import de.flapdoodle.reverse.TransitionWalker
+import org.bson.Document
+import org.springframework.dao.DuplicateKeyException
+import org.springframework.data.mongodb.core.MongoTemplate
+import org.springframework.data.mongodb.core.query.Criteria
+import org.springframework.data.mongodb.core.query.Query
+import spock.lang.Shared
+import spock.lang.Specification
+
+import java.util.concurrent.Callable
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.Executors
+
+class MongoIndexesSpec extends Specification {
+
+    @Shared
+    TransitionWalker.ReachedState<RunningMongodProcess> running
+    @Shared
+    MongoClient mongoClient
+    MongoTemplate mongoTemplate
+
+    def setupSpec() {
+        running = Mongod.instance().start(Version.Main.V8_0)
+        mongoClient = MongoClients.create("mongodb://${running.current().getServerAddress()}")
+    }
+
+    def cleanupSpec() {
+        mongoClient?.close()
+        running?.close()
+    }
+
+    def setup() {
+        mongoTemplate = new MongoTemplate(mongoClient, "strongnostr-" + UUID.randomUUID())
+    }
+
+    def cleanup() {
+        mongoTemplate.getDb().drop()
+    }
+
+    def "should create the unique exercise identity index"() {
+        when:
+        new MongoIndexes(mongoTemplate).ensureIndexes()
+
+        then:
+        def index = mongoTemplate.indexOps(Exercise).getIndexInfo().find { it.getName() == "exercise_identity" }
+        index != null
+        index.isUnique()
+        index.getIndexFields()*.getKey() == ["identityKey"]
+    }
+
+    def "should create the unique personal record index"() {
+        when:
+        new MongoIndexes(mongoTemplate).ensureIndexes()
+
+        then:
+        def index = mongoTemplate.indexOps(PersonalRecord).getIndexInfo().find { it.getName() == "user_exercise" }
+        index != null
+        index.isUnique()
+        index.getIndexFields()*.getKey() == ["userNPub", "exerciseId"]
+    }
+
+    def "should create the unique user indexes"() {
+        when:
+        new MongoIndexes(mongoTemplate).ensureIndexes()
+
+        then:
+        def unique = mongoTemplate.indexOps(User).getIndexInfo().findAll { it.isUnique() }*.getIndexFields()*.getKey()
+        unique.containsAll([["username"], ["npub"], ["nPubHex"]])
+    }
+
+    def "should reject a username that is already taken"() {
+        given:
+        new MongoIndexes(mongoTemplate).ensureIndexes()
+        mongoTemplate.insert(new User("nostr_user_1", "npub1first", "hex-first"))
+
+        when:
+        mongoTemplate.insert(new User("nostr_user_1", "npub1second", "hex-second"))
+
+        then:
+        thrown(DuplicateKeyException)
+    }
+
+    def "should settle concurrent first logins of one npub on a single user"() {
+        given: "several app instances seeing the same new npub at once"
+        new MongoIndexes(mongoTemplate).ensureIndexes()
+        def nostrKeyManager = Stub(NostrKeyManager)
+        nostrKeyManager.npubToHex(_ as String) >> { String npub -> "hex-" + npub }
+        def instances = 8
+        def start = new CountDownLatch(1)
+
+        when:
+        def users = Executors.newFixedThreadPool(instances).withCloseable { executor ->
+            (1..instances).collect {
+                def service = new NostrUserService(Stub(UserRepository), mongoTemplate, nostrKeyManager,
+                                                   new UsernameAllocator(mongoTemplate))
+                executor.submit({
+                    start.await()
+                    service.getOrCreateUser(NostrUtils.VALID_NPUB, NostrUtils.createNostrUserProfile(null, "Alice", null))
+                } as Callable)
+            }.with { futures -> start.countDown(); futures*.get() }
+        }
+
+        then: "every login resolves to the one stored user"
+        mongoTemplate.count(new Query(Criteria.where("npub").is(NostrUtils.VALID_NPUB)), User) == 1
+        users*.getId().unique().size() == 1
+    }
+
+    def "should reject a second exercise that only differs in casing and spacing"() {
+        given:
+        new MongoIndexes(mongoTemplate).ensureIndexes()
+        mongoTemplate.insert(new Exercise("Bench Press", "Flat bench", "Barbell"))
+
+        when:
+        mongoTemplate.insert(new Exercise(" bench  press", "flat bench", "BARBELL "))
+
+        then:
+        thrown(DuplicateKeyException)
+    }
+
+    def "should key existing exercises before building the index and leave duplicates unkeyed"() {
+        given: "exercises stored before the identity key existed"
+        def exercises = mongoTemplate.getCollection("exercises")
+        exercises.insertOne(new Document("name", "Squat").append("equipment", "Barbell"))
+        exercises.insertOne(new Document("name", " squat").append("equipment", "barbell"))
+        exercises.insertOne(new Document("name", "Row").append("equipment", "Cable"))
+
+        when:
+        new MongoIndexes(mongoTemplate).ensureIndexes()
+
+        then:
+        mongoTemplate.count(new Query(Criteria.where("identityKey").exists(true)), Exercise) == 2
+        mongoTemplate.count(new Query(Criteria.where("identityKey").is(Exercise.identityKeyOf("Squat", null, "Barbell"))), Exercise) == 1
+        mongoTemplate.indexOps(Exercise).getIndexInfo().any { it.getName() == "exercise_identity" }
+    }
+}
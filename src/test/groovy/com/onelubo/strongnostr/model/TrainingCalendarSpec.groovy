@@ -0,0 +1,83 @@
+package com.onelubo.strongnostr.model
+
+import com.onelubo.strongnostr.model.user.TrainingCalendar
+import spock.lang.Specification
+
+import java.time.LocalDate
+
+class TrainingCalendarSpec extends Specification {
+
+    def "should mark and clear days"() {
+        given:
+        def calendar = new TrainingCalendar()
+        def day = LocalDate.of(2024, 12, 31)
+
+        when:
+        calendar.mark(day)
+
+        then: "the last day of a leap year fits in the sixth word"
+        calendar.isTrained(day)
+        calendar.words(2024)[5] == 1L << 45
+
+        when:
+        calendar.clear(day)
+
+        then:
+        !calendar.isTrained(day)
+    }
+
+    def "should count the current streak across word and year boundaries"() {
+        given: "100 consecutive trained days ending on 2025-02-10"
+        def calendar = new TrainingCalendar()
+        def today = LocalDate.of(2025, 2, 10)
+        100.times { calendar.mark(today.minusDays(it)) }
+        calendar.mark(today.minusDays(101))
+
+        expect:
+        calendar.streakEndingAt(today) == 100
+        calendar.currentStreak(today) == 100
+
+        and: "a streak still counts when today has not been trained yet"
+        calendar.currentStreak(today.plusDays(1)) == 100
+        calendar.currentStreak(today.plusDays(2)) == 0
+    }
+
+    def "should find the longest streak"() {
+        given:
+        def calendar = new TrainingCalendar()
+        def start = LocalDate.of(2023, 12, 1)
+        70.times { calendar.mark(start.plusDays(it)) }
+        5.times { calendar.mark(LocalDate.of(2024, 6, 1).plusDays(it)) }
+
+        expect:
+        calendar.longestStreak() == 70
+    }
+
+    def "should count trained days in a range"() {
+        given: "Monday, Wednesday and Friday of every week in 2024"
+        def calendar = new TrainingCalendar()
+        def day = LocalDate.of(2024, 1, 1)
+        while (day.getYear() == 2024) {
+            if (day.getDayOfWeek().getValue() in [1, 3, 5]) {
+                calendar.mark(day)
+            }
+            day = day.plusDays(1)
+        }
+
+        expect:
+        calendar.daysTrained(LocalDate.of(2024, 1, 1), LocalDate.of(2024, 1, 7)) == 3
+        calendar.daysTrained(LocalDate.of(2024, 3, 1), LocalDate.of(2024, 3, 31)) == 13
+        calendar.daysTrained(LocalDate.of(2024, 1, 1), LocalDate.of(2024, 12, 31)) == 157
+        calendar.trainedDays(2024).size() == 157
+        calendar.trainedDays(2024)[0] == LocalDate.of(2024, 1, 1)
+    }
+
+    def "should restore the persisted form"() {
+        given:
+        def calendar = TrainingCalendar.of(["2024": [1L] as long[]])
+
+        expect:
+        calendar.isTrained(LocalDate.of(2024, 1, 1))
+        !calendar.isTrained(LocalDate.of(2024, 1, 2))
+    }
+}
@@ -0,0 +1,39 @@
+package com.onelubo.strongnostr.nostr
+
+import spock.lang.Specification
+
+class NostrProofOfWorkSpec extends Specification {
+
+    def "should count leading zero bits of #id"() {
+        expect:
+        NostrProofOfWork.leadingZeroBits(id) == bits
+
+        where:
+        id                                                                   || bits
+        "ffff"                                                               || 0
+        "7fff"                                                               || 1
+        "1fff"                                                               || 3
+        "0fff"                                                               || 4
+        "000000000e9d97a1ab09fc381030b346cdd7a142ad57e6df0b46dc9bef6c7e2d"   || 36
+        "0000"                                                               || 16
+        "00zz"                                                               || 0
+        null                                                                 || 0
+    }
+
+    def "should credit no more than the target committed in the nonce tag"() {
+        given: "an id with 36 leading zero bits"
+        def id = "000000000e9d97a1ab09fc381030b346cdd7a142ad57e6df0b46dc9bef6c7e2d"
+
+        expect:
+        NostrProofOfWork.difficulty(id, tags) == difficulty
+
+        where:
+        tags                                  || difficulty
+        []                                    || 36
+        null                                  || 36
+        [["nonce", "776797", "20"]]           || 20
+        [["nonce", "776797", "40"]]           || 36
+        [["nonce", "776797", "junk"]]         || 0
+        [["p", "abc"], ["nonce", "1", "8"]]   || 8
+    }
+}
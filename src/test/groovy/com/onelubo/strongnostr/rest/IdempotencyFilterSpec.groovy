@@ -0,0 +1,157 @@
+package com.onelubo.strongnostr.rest
+
+import com.onelubo.strongnostr.service.IdempotencyStoreInMemory
+import com.onelubo.strongnostr.util.NostrUtils
+import jakarta.servlet.FilterChain
+import jakarta.servlet.ReadListener
+import jakarta.servlet.http.HttpServletResponse
+import org.springframework.mock.web.MockHttpServletRequest
+import org.springframework.mock.web.MockHttpServletResponse
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken
+import org.springframework.security.core.context.SecurityContextHolder
+import spock.lang.Specification
+
+class IdempotencyFilterSpec extends Specification {
+
+    IdempotencyFilter idempotencyFilter
+    FilterChain filterChain
+
+    def setup() {
+        idempotencyFilter = new IdempotencyFilter(new IdempotencyStoreInMemory(), 24, 60)
+        filterChain = Mock(FilterChain)
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken(NostrUtils.VALID_NPUB, null, []))
+    }
+
+    def cleanup() {
+        SecurityContextHolder.clearContext()
+    }
+
+    def "should replay the first response for a retried request"() {
+        when: "the same request is sent twice"
+        def first = send("POST", "/api/v1/nostr/workout", "key-1")
+        def retry = send("POST", "/api/v1/nostr/workout", "key-1")
+
+        then: "the controller runs once"
+        1 * filterChain.doFilter(_, _) >> { req, HttpServletResponse res ->
+            res.setStatus(200)
+            res.setContentType("application/json")
+            res.getWriter().write('{"id":"w1"}')
+        }
+
+        and: "the retry receives the same response"
+        first.getContentAsString() == '{"id":"w1"}'
+        retry.getStatus() == 200
+        retry.getContentAsString() == '{"id":"w1"}'
+        retry.getHeader(IdempotencyFilter.REPLAYED_HEADER) == "true"
+    }
+
+    def "should run a request turned away before it ran again on retry"() {
+        when:
+        def first = send("POST", "/api/v1/nostr/workout", "key-1")
+        def retry = send("POST", "/api/v1/nostr/workout", "key-1")
+
+        then:
+        2 * filterChain.doFilter(_, _) >> { req, HttpServletResponse res -> res.setStatus(503) } >>
+                { req, HttpServletResponse res -> res.setStatus(200) }
+        first.getStatus() == 503
+        retry.getStatus() == 200
+        retry.getHeader(IdempotencyFilter.REPLAYED_HEADER) == null
+    }
+
+    def "should replay a server error instead of repeating a write that may have happened"() {
+        when:
+        send("POST", "/api/v1/nostr/workout", "key-1")
+        def retry = send("POST", "/api/v1/nostr/workout", "key-1")
+
+        then: "the controller runs once"
+        1 * filterChain.doFilter(_, _) >> { req, HttpServletResponse res -> res.setStatus(500) }
+        retry.getStatus() == 500
+        retry.getHeader(IdempotencyFilter.REPLAYED_HEADER) == "true"
+    }
+
+    def "should reject a key reused with a different body"() {
+        given:
+        filterChain.doFilter(_, _) >> { req, HttpServletResponse res -> res.setStatus(200) }
+        send("POST", "/api/v1/nostr/workout", "key-1", '{"weight":100}')
+
+        when:
+        def response = send("POST", "/api/v1/nostr/workout", "key-1", '{"weight":120}')
+
+        then:
+        response.getStatus() == 422
+    }
+
+    def "should pass the request body on to the controller"() {
+        when:
+        send("POST", "/api/v1/nostr/workout", "key-1", '{"weight":100}')
+
+        then:
+        1 * filterChain.doFilter(_, _) >> { req, HttpServletResponse res ->
+            assert req.getInputStream().readAllBytes() == '{"weight":100}'.bytes
+            res.setStatus(200)
+        }
+    }
+
+    def "should reject a key reused for a different request"() {
+        given:
+        filterChain.doFilter(_, _) >> { req, HttpServletResponse res -> res.setStatus(200) }
+        send("POST", "/api/v1/nostr/workout", "key-1")
+
+        when:
+        def response = send("POST", "/api/v1/nostr/workout/addExercise/w1", "key-1")
+
+        then:
+        response.getStatus() == 422
+    }
+
+    def "should leave the streaming import to stream"() {
+        when: "an import is sent twice with the same key"
+        send("POST", "/api/v1/nostr/workout/import", "key-1", "Date,Workout Name")
+        send("POST", "/api/v1/nostr/workout/import", "key-1", "Date,Workout Name")
+
+        then: "the original request reaches the controller unbuffered both times"
+        2 * filterChain.doFilter({ it instanceof MockHttpServletRequest }, { it instanceof MockHttpServletResponse })
+    }
+
+    def "should hand the buffered body to a read listener"() {
+        given:
+        def listener = Mock(ReadListener)
+
+        when:
+        send("POST", "/api/v1/nostr/workout", "key-1", '{"weight":100}')
+
+        then:
+        1 * filterChain.doFilter(_, _) >> { req, HttpServletResponse res ->
+            req.getInputStream().setReadListener(listener)
+            res.setStatus(200)
+        }
+        1 * listener.onDataAvailable()
+
+        then:
+        1 * listener.onAllDataRead()
+        0 * listener.onError(_)
+    }
+
+    def "should leave requests without a key untouched"() {
+        when:
+        send("POST", "/api/v1/nostr/workout", null)
+        send("POST", "/api/v1/nostr/workout", null)
+
+        then:
+        2 * filterChain.doFilter(_, _)
+    }
+
+    private MockHttpServletResponse send(String method, String uri, String idempotencyKey, String body = null) {
+        def request = new MockHttpServletRequest(method, uri)
+        if (body != null) {
+            request.setContent(body.bytes)
+        }
+        if (idempotencyKey != null) {
+            request.addHeader(IdempotencyFilter.IDEMPOTENCY_KEY_HEADER, idempotencyKey)
+        }
+        def response = new MockHttpServletResponse()
+        idempotencyFilter.doFilter(request, response, filterChain)
+        response
+    }
+}
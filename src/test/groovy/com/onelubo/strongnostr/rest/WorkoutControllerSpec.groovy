@@ -0,0 +1,87 @@
+package com.onelubo.strongnostr.rest
+
+import com.onelubo.strongnostr.model.workout.Workout
+import com.onelubo.strongnostr.model.workout.WorkoutExercise
+import com.onelubo.strongnostr.model.workout.WorkoutSet
+import com.onelubo.strongnostr.service.workout.StrongCsvImportService
+import com.onelubo.strongnostr.service.workout.TrainingCalendarService
+import com.onelubo.strongnostr.service.workout.TrainingRollupService
+import com.onelubo.strongnostr.service.workout.WorkoutExportService
+import com.onelubo.strongnostr.service.workout.WorkoutService
+import com.onelubo.strongnostr.service.workout.WorkoutSyncService
+import com.onelubo.strongnostr.util.NostrUtils
+import org.springframework.http.HttpStatus
+import org.springframework.mock.web.MockHttpServletRequest
+import org.springframework.mock.web.MockHttpServletResponse
+import org.springframework.security.access.AccessDeniedException
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken
+import org.springframework.web.context.request.ServletWebRequest
+import spock.lang.Specification
+
+class WorkoutControllerSpec extends Specification {
+
+    WorkoutService workoutService
+    WorkoutController workoutController
+    def authentication = new UsernamePasswordAuthenticationToken(NostrUtils.VALID_NPUB, null, [])
+
+    def setup() {
+        workoutService = Mock(WorkoutService)
+        workoutController = new WorkoutController(workoutService, Mock(StrongCsvImportService), Mock(WorkoutExportService),
+                                                  Mock(TrainingRollupService), Mock(TrainingCalendarService),
+                                                  Mock(WorkoutSyncService))
+    }
+
+    def "should answer a matching If-None-Match with one lookup"() {
+        given:
+        def request = new MockHttpServletRequest("GET", "/api/v1/nostr/workout/workout-1")
+        request.addHeader("If-None-Match", '"workout-1-3"')
+
+        when:
+        def response = workoutController.getWorkoutById("workout-1", authentication, webRequest(request))
+
+        then: "the owner and version projection is read once and the workout is never loaded"
+        1 * workoutService.getWorkoutHeader("workout-1") >> Optional.of(header(NostrUtils.VALID_NPUB))
+        0 * workoutService.getWorkoutById(_)
+        response.getStatusCode() == HttpStatus.NOT_MODIFIED
+    }
+
+    def "should load the workout after a single projection when it changed"() {
+        given:
+        def workout = new Workout(NostrUtils.VALID_NPUB)
+        workout.setId("workout-1")
+        workout.setVersion(4L)
+        workout.addExercise(new WorkoutExercise("squat", "Squat", "Barbell", [new WorkoutSet(100.0, 5)]))
+
+        when:
+        def response = workoutController.getWorkoutById("workout-1", authentication,
+                                                        webRequest(new MockHttpServletRequest("GET", "/api/v1/nostr/workout/workout-1")))
+
+        then:
+        1 * workoutService.getWorkoutHeader("workout-1") >> Optional.of(header(NostrUtils.VALID_NPUB))
+        1 * workoutService.getWorkoutById("workout-1") >> workout
+        response.getStatusCode() == HttpStatus.OK
+        response.getHeaders().getETag() == '"workout-1-4"'
+    }
+
+    def "should deny another user's workout"() {
+        when:
+        workoutController.getWorkoutById("workout-1", authentication,
+                                         webRequest(new MockHttpServletRequest("GET", "/api/v1/nostr/workout/workout-1")))
+
+        then:
+        1 * workoutService.getWorkoutHeader("workout-1") >> Optional.of(header("npub1someoneelse"))
+        0 * workoutService.getWorkoutById(_)
+        thrown(AccessDeniedException)
+    }
+
+    private static Workout header(String userNPub) {
+        def header = new Workout(userNPub)
+        header.setId("workout-1")
+        header.setVersion(3L)
+        header
+    }
+
+    private static ServletWebRequest webRequest(MockHttpServletRequest request) {
+        new ServletWebRequest(request, new MockHttpServletResponse())
+    }
+}
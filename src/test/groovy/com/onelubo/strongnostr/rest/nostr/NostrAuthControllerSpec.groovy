@@ -0,0 +1,177 @@
+package com.onelubo.strongnostr.rest.nostr
+
+import com.onelubo.strongnostr.dto.nostr.NostrAuthChallenge
+import com.onelubo.strongnostr.dto.nostr.NostrAuthRequest
+import com.onelubo.strongnostr.dto.nostr.NostrAuthResult
+import com.onelubo.strongnostr.dto.nostr.NostrUserProfile
+import com.onelubo.strongnostr.exception.VerificationSaturatedException
+import com.onelubo.strongnostr.model.user.User
+import com.onelubo.strongnostr.nostr.NostrEvent
+import com.onelubo.strongnostr.nostr.NostrKeyManager
+import com.onelubo.strongnostr.security.JwtTokenProvider
+import com.onelubo.strongnostr.service.ChallengeStoreInMemory
+import com.onelubo.strongnostr.service.ConcurrencyLimiters
+import com.onelubo.strongnostr.service.RateLimiter
+import com.onelubo.strongnostr.service.nostr.AuthEventPipeline
+import com.onelubo.strongnostr.service.nostr.AuthRateLimiter
+import com.onelubo.strongnostr.service.nostr.NostrAuthenticationService
+import com.onelubo.strongnostr.service.nostr.NostrUserService
+import com.onelubo.strongnostr.service.nostr.ProofOfWorkPolicy
+import com.onelubo.strongnostr.service.nostr.SignatureVerificationPool
+import com.onelubo.strongnostr.util.NostrUtils
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry
+import io.micrometer.observation.ObservationRegistry
+import org.springframework.http.HttpStatus
+import org.springframework.mock.web.MockHttpServletRequest
+import spock.lang.Specification
+import spock.util.concurrent.PollingConditions
+
+import java.time.Instant
+import java.util.concurrent.Callable
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+
+class NostrAuthControllerSpec extends Specification {
+
+    // The npub of VALID_PRIVATE_KEY_HEX, so the signing key matches the npub and every signature verifies
+    static final String SIGNER_NPUB = new NostrKeyManager().hexToNpub(NostrUtils.PUBLIC_FROM_PRIVATE_KEY_HEX)
+
+    NostrAuthenticationService nostrAuthenticationService
+    ChallengeStoreInMemory challengeStore
+    NostrAuthController nostrAuthController
+
+    def setup() {
+        nostrAuthenticationService = Mock(NostrAuthenticationService)
+        challengeStore = Spy(ChallengeStoreInMemory)
+        def unlimited = { String key, RateLimiter.RateLimit limit -> 0L } as RateLimiter
+        def signatureVerificationPool = Stub(SignatureVerificationPool) { tryAdmit() >> true }
+        nostrAuthController = new NostrAuthController(nostrAuthenticationService, challengeStore, signatureVerificationPool,
+                                                      new AuthRateLimiter(unlimited, new SimpleMeterRegistry(), 1, 1, 1, 1),
+                                                      new ConcurrencyLimiters(new SimpleMeterRegistry(), 10, 10, 10, 10, 10, 10),
+                                                      ObservationRegistry.NOOP)
+        challengeStore.storeChallenge(new NostrAuthChallenge("challenge-1", "abc", System.currentTimeMillis()))
+    }
+
+    def "should hand the challenge back when verification saturates after it was consumed"() {
+        when: "the verification queue fills up between the saturation check and the submit"
+        def saturated = nostrAuthController.loginWithNostrEvent(loginRequest(), new MockHttpServletRequest())
+
+        then:
+        1 * nostrAuthenticationService.authenticate(_, _, { it.challenge() == "abc" }) >> { throw new VerificationSaturatedException() }
+        saturated.getStatusCode() == HttpStatus.SERVICE_UNAVAILABLE
+        !challengeStore.getChallenge("challenge-1").get().used()
+
+        when: "the client retries with the same challenge"
+        def retry = nostrAuthController.loginWithNostrEvent(loginRequest(), new MockHttpServletRequest())
+
+        then:
+        1 * nostrAuthenticationService.authenticate(_, _, { it.challenge() == "abc" }) >> NostrAuthResult.failure("Invalid signature")
+        retry.getStatusCode() == HttpStatus.BAD_REQUEST
+        challengeStore.getChallenge("challenge-1").get().used()
+    }
+
+    def "should not verify a challenge that was already used"() {
+        given:
+        challengeStore.markChallengeAsUsed("challenge-1")
+
+        when:
+        def response = nostrAuthController.loginWithNostrEvent(loginRequest(), new MockHttpServletRequest())
+
+        then:
+        0 * nostrAuthenticationService.authenticate(*_)
+        response.getStatusCode() == HttpStatus.BAD_REQUEST
+    }
+
+    def "should turn away a malformed event before touching its challenge"() {
+        when:
+        def response = nostrAuthController.loginWithNostrEvent(loginRequest(), new MockHttpServletRequest())
+
+        then:
+        1 * nostrAuthenticationService.checkEvent(_) >> NostrAuthResult.failure("Malformed signature")
+        0 * challengeStore.getChallenge(_)
+        0 * challengeStore.markChallengeAsUsed(_)
+        0 * nostrAuthenticationService.authenticate(*_)
+        response.getStatusCode() == HttpStatus.BAD_REQUEST
+        response.getBody().message() == "Malformed signature"
+    }
+
+    def "should keep serving workout requests while logins saturate the verification pool"() {
+        given: "eight request threads, and a pool with one verification thread and one queue slot"
+        def requestThreads = Executors.newFixedThreadPool(8)
+        def pool = new SignatureVerificationPool(new SimpleMeterRegistry(), 1, 1)
+        def store = new ChallengeStoreInMemory()
+        def userLookup = new CountDownLatch(1)
+        def controller = realController(store, pool, userLookup)
+
+        when: "a burst of logins arrives, and the admitted ones hang on the user lookup"
+        def logins = (1..20).collect { i ->
+            def request = signedLoginRequest(store, "burst-" + i)
+            requestThreads.submit({ controller.loginWithNostrEvent(request, new MockHttpServletRequest()) } as Callable)
+        }
+        new PollingConditions(timeout: 5).eventually {
+            assert logins.count { it.isDone() } == 18
+        }
+
+        and: "a workout request comes in"
+        def workout = requestThreads.submit({ "workout" } as Callable)
+
+        then: "it gets a request thread straight away"
+        workout.get(1, TimeUnit.SECONDS) == "workout"
+
+        when:
+        userLookup.countDown()
+        def statuses = logins*.get(5, TimeUnit.SECONDS)*.getStatusCode()
+
+        then: "only the two admitted logins went through, the rest were turned away with 503"
+        statuses.count { it == HttpStatus.OK } == 2
+        statuses.count { it == HttpStatus.SERVICE_UNAVAILABLE } == 18
+
+        cleanup:
+        requestThreads.shutdownNow()
+        pool.shutdown()
+    }
+
+    private static NostrAuthController realController(ChallengeStoreInMemory store, SignatureVerificationPool pool,
+                                                      CountDownLatch userLookup) {
+        def nostrUserService = new NostrUserService(null, null, null, null) {
+            @Override
+            User getOrCreateUser(String npub, NostrUserProfile userProfile) {
+                userLookup.await()
+                new User("fiatjaf_1", npub, NostrUtils.PUBLIC_FROM_PRIVATE_KEY_HEX)
+            }
+        }
+        def jwtTokenProvider = new JwtTokenProvider() {
+            @Override
+            String createAccessToken(String npub) { "access" }
+
+            @Override
+            String createRefreshToken(String npub) { "refresh" }
+        }
+        def meterRegistry = new SimpleMeterRegistry()
+        def service = new NostrAuthenticationService(nostrUserService, jwtTokenProvider,
+                                                     new ProofOfWorkPolicy(pool, meterRegistry, false, 0, 0),
+                                                     new AuthEventPipeline(meterRegistry, NostrUtils.authEventStages(pool)),
+                                                     ObservationRegistry.NOOP)
+        def unlimited = { String key, RateLimiter.RateLimit limit -> 0L } as RateLimiter
+        new NostrAuthController(service, store, pool, new AuthRateLimiter(unlimited, meterRegistry, 1, 1, 1, 1),
+                                new ConcurrencyLimiters(meterRegistry, 100, 100, 100, 100, 100, 100),
+                                ObservationRegistry.NOOP)
+    }
+
+    private static NostrAuthRequest signedLoginRequest(ChallengeStoreInMemory store, String challengeId) {
+        def challenge = new NostrAuthChallenge(challengeId, NostrUtils.CHALLENGE_PREFIX + UUID.randomUUID(),
+                                               Instant.now().getEpochSecond())
+        store.storeChallenge(challenge)
+        def request = new NostrAuthRequest(NostrUtils.createSignedNostrEvent(SIGNER_NPUB, NostrUtils.VALID_PRIVATE_KEY_HEX,
+                                                                             challenge.getChallenge()))
+        request.@challengeId = challengeId
+        request
+    }
+
+    private static NostrAuthRequest loginRequest() {
+        def request = new NostrAuthRequest(new NostrEvent(npub: NostrUtils.VALID_NPUB))
+        request.@challengeId = "challenge-1"
+        request
+    }
+}
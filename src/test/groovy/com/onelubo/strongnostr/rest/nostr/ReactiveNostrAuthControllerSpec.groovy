@@ -0,0 +1,166 @@
+package com.onelubo.strongnostr.rest.nostr
+
+import com.onelubo.strongnostr.dto.nostr.NostrAuthChallenge
+import com.onelubo.strongnostr.dto.nostr.NostrAuthRequest
+import com.onelubo.strongnostr.dto.nostr.NostrUserProfile
+import com.onelubo.strongnostr.model.user.User
+import com.onelubo.strongnostr.nostr.NostrEvent
+import com.onelubo.strongnostr.nostr.NostrKeyManager
+import com.onelubo.strongnostr.security.JwtTokenProvider
+import com.onelubo.strongnostr.service.ChallengeStore
+import com.onelubo.strongnostr.service.ChallengeStoreReactiveRedis
+import com.onelubo.strongnostr.service.RateLimiter
+import com.onelubo.strongnostr.service.nostr.AuthEventPipeline
+import com.onelubo.strongnostr.service.nostr.AuthRateLimiter
+import com.onelubo.strongnostr.service.nostr.NostrAuthenticationService
+import com.onelubo.strongnostr.service.nostr.ProofOfWorkPolicy
+import com.onelubo.strongnostr.service.nostr.ReactiveNostrAuthenticationService
+import com.onelubo.strongnostr.service.nostr.ReactiveNostrUserService
+import com.onelubo.strongnostr.service.nostr.SignatureVerificationPool
+import com.onelubo.strongnostr.util.NostrUtils
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry
+import io.micrometer.observation.ObservationRegistry
+import org.springframework.http.HttpStatus
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest
+import reactor.core.publisher.Mono
+import spock.lang.Specification
+
+import java.time.Instant
+import java.util.concurrent.CountDownLatch
+
+class ReactiveNostrAuthControllerSpec extends Specification {
+
+    // The npub of VALID_PRIVATE_KEY_HEX, so the signing key matches the npub and every signature verifies
+    static final String SIGNER_NPUB = new NostrKeyManager().hexToNpub(NostrUtils.PUBLIC_FROM_PRIVATE_KEY_HEX)
+
+    SimpleMeterRegistry meterRegistry
+    SignatureVerificationPool pool
+    ChallengeStoreReactiveRedis challengeStore
+    ReactiveNostrUserService nostrUserService
+    ReactiveNostrAuthController controller
+
+    def setup() {
+        meterRegistry = new SimpleMeterRegistry()
+        pool = new SignatureVerificationPool(meterRegistry, 1, 1)
+        challengeStore = Mock(ChallengeStoreReactiveRedis)
+        nostrUserService = Stub(ReactiveNostrUserService) {
+            getOrCreateUser(_, _) >> { String npub, NostrUserProfile profile ->
+                Mono.just(new User("fiatjaf_1", npub, NostrUtils.PUBLIC_FROM_PRIVATE_KEY_HEX))
+            }
+        }
+        def jwtTokenProvider = new JwtTokenProvider() {
+            @Override
+            String createAccessToken(String npub) { "access" }
+
+            @Override
+            String createRefreshToken(String npub) { "refresh" }
+        }
+        def pipeline = new AuthEventPipeline(meterRegistry, NostrUtils.authEventStages(pool))
+        def nostrAuthenticationService = new NostrAuthenticationService(null, jwtTokenProvider,
+                                                                        new ProofOfWorkPolicy(pool, meterRegistry, false, 0, 0),
+                                                                        pipeline, ObservationRegistry.NOOP)
+        def unlimited = { String key, RateLimiter.RateLimit limit -> 0L } as RateLimiter
+        controller = new ReactiveNostrAuthController(nostrAuthenticationService,
+                                                     new ReactiveNostrAuthenticationService(nostrUserService, jwtTokenProvider,
+                                                                                            pipeline, pool),
+                                                     challengeStore, pool,
+                                                     new AuthRateLimiter(unlimited, meterRegistry, 1, 1, 1, 1))
+    }
+
+    def cleanup() {
+        pool.shutdown()
+    }
+
+    def "should log in with a signed challenge, verifying it in place on the verification pool"() {
+        given:
+        def challenge = challenge()
+
+        when:
+        def response = controller.loginWithNostrEvent(signedLoginRequest(challenge), request()).block()
+
+        then:
+        1 * challengeStore.getChallenge("challenge-1") >> Mono.just(stored(challenge))
+        1 * challengeStore.markChallengeAsUsed("challenge-1") >> Mono.just(true)
+        response.getStatusCode() == HttpStatus.OK
+        response.getBody().accessToken() == "access"
+
+        and: "the signature was checked on the pool thread running the login, without queueing again"
+        meterRegistry.timer("strongnostr.auth.schnorr.verify", "outcome", "valid").count() == 1
+        meterRegistry.timer("strongnostr.auth.verification.queue.wait").count() == 0
+    }
+
+    def "should turn away a malformed event before touching its challenge"() {
+        given:
+        def malformed = new NostrAuthRequest(new NostrEvent(npub: NostrUtils.VALID_NPUB))
+        malformed.@challengeId = "challenge-1"
+
+        when:
+        def response = controller.loginWithNostrEvent(malformed, request()).block()
+
+        then:
+        0 * challengeStore._
+        response.getStatusCode() == HttpStatus.BAD_REQUEST
+    }
+
+    def "should not verify a challenge another login claimed first"() {
+        given:
+        def challenge = challenge()
+
+        when:
+        def response = controller.loginWithNostrEvent(signedLoginRequest(challenge), request()).block()
+
+        then:
+        1 * challengeStore.getChallenge("challenge-1") >> Mono.just(stored(challenge))
+        1 * challengeStore.markChallengeAsUsed("challenge-1") >> Mono.just(false)
+        response.getStatusCode() == HttpStatus.BAD_REQUEST
+        response.getBody().message() == "Invalid or expired challenge"
+        meterRegistry.timer("strongnostr.auth.schnorr.verify", "outcome", "valid").count() == 0
+    }
+
+    def "should hand the challenge back when the verification pool is full"() {
+        given: "the verification thread is busy and its one queue slot taken"
+        def busy = new CountDownLatch(1)
+        def started = new CountDownLatch(1)
+        pool.scheduler().schedule { started.countDown(); busy.await() }
+        started.await()
+        pool.scheduler().schedule { busy.await() }
+        def challenge = challenge()
+
+        when:
+        def response = controller.loginWithNostrEvent(signedLoginRequest(challenge), request()).block()
+
+        then:
+        1 * challengeStore.getChallenge("challenge-1") >> Mono.just(stored(challenge))
+        1 * challengeStore.markChallengeAsUsed("challenge-1") >> Mono.just(true)
+        1 * challengeStore.releaseChallenge("challenge-1") >> Mono.empty()
+        response.getStatusCode() == HttpStatus.SERVICE_UNAVAILABLE
+
+        and: "the admission was given back"
+        pool.tryAdmit()
+        pool.tryAdmit()
+
+        cleanup:
+        busy.countDown()
+    }
+
+    private static NostrAuthChallenge challenge() {
+        new NostrAuthChallenge("challenge-1", NostrUtils.CHALLENGE_PREFIX + UUID.randomUUID(), Instant.now().getEpochSecond())
+    }
+
+    private static ChallengeStore.StoredChallenge stored(NostrAuthChallenge challenge) {
+        new ChallengeStore.StoredChallenge(challenge.getChallenge(), System.currentTimeMillis() + 60_000, false, 0)
+    }
+
+    private static NostrAuthRequest signedLoginRequest(NostrAuthChallenge challenge) {
+        def request = new NostrAuthRequest(NostrUtils.createSignedNostrEvent(SIGNER_NPUB, NostrUtils.VALID_PRIVATE_KEY_HEX,
+                                                                             challenge.getChallenge()))
+        request.@challengeId = challenge.getId()
+        request
+    }
+
+    private static MockServerHttpRequest request() {
+        MockServerHttpRequest.post("/api/v1/nostr/auth/login")
+                             .remoteAddress(new InetSocketAddress("127.0.0.1", 50000))
+                             .build()
+    }
+}
@@ -0,0 +1,102 @@
+package com.onelubo.strongnostr.service
+
+import com.onelubo.strongnostr.exception.ConcurrencyLimitExceededException
+import org.springframework.dao.QueryTimeoutException
+import spock.lang.Specification
+
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+import java.util.function.Supplier
+
+class AdaptiveConcurrencyLimiterSpec extends Specification {
+
+    static final long MILLIS = TimeUnit.MILLISECONDS.toNanos(1)
+
+    def "should shed calls beyond the limit at once"() {
+        given: "two calls holding both permits"
+        def limiter = new AdaptiveConcurrencyLimiter("test", 2, 1, 2, { false })
+        def started = new CountDownLatch(2)
+        def release = new CountDownLatch(1)
+        def executor = Executors.newFixedThreadPool(2)
+        def held = (1..2).collect {
+            executor.submit({
+                limiter.execute({ started.countDown(); release.await(); "done" } as Supplier)
+            })
+        }
+        started.await()
+
+        when:
+        limiter.execute({ "third" } as Supplier)
+
+        then:
+        thrown(ConcurrencyLimitExceededException)
+        limiter.getRejected() == 1
+        limiter.getInFlight() == 2
+
+        cleanup:
+        release.countDown()
+        held*.get()
+        executor.shutdown()
+    }
+
+    def "should raise the limit while a fully used backend stays fast"() {
+        given:
+        def limiter = new AdaptiveConcurrencyLimiter("test", 10, 1, 100, { false })
+
+        when:
+        50.times { limiter.onSample(MILLIS, limiter.getLimit()) }
+
+        then:
+        limiter.getLimit() > 10
+    }
+
+    def "should not raise the limit while it is mostly unused"() {
+        given:
+        def limiter = new AdaptiveConcurrencyLimiter("test", 10, 1, 100, { false })
+
+        when:
+        50.times { limiter.onSample(MILLIS, 1) }
+
+        then:
+        limiter.getLimit() == 10
+    }
+
+    def "should lower the limit when latency rises above the baseline"() {
+        given: "a limit found at 1ms"
+        def limiter = new AdaptiveConcurrencyLimiter("test", 50, 1, 100, { false })
+        100.times { limiter.onSample(MILLIS, limiter.getLimit()) }
+        def settled = limiter.getLimit()
+
+        when: "the backend slows down tenfold"
+        20.times { limiter.onSample(10 * MILLIS, limiter.getLimit()) }
+
+        then:
+        limiter.getLimit() < settled
+    }
+
+    def "should back off multiplicatively on an overload signal"() {
+        given:
+        def limiter = new AdaptiveConcurrencyLimiter("test", 100, 1, 100, { it instanceof QueryTimeoutException })
+
+        when:
+        limiter.execute({ throw new QueryTimeoutException("slow") } as Supplier)
+
+        then:
+        thrown(QueryTimeoutException)
+        limiter.getLimit() == 90
+        limiter.getInFlight() == 0
+    }
+
+    def "should leave the limit alone for ordinary failures"() {
+        given:
+        def limiter = new AdaptiveConcurrencyLimiter("test", 100, 1, 100, { it instanceof QueryTimeoutException })
+
+        when:
+        limiter.execute({ throw new IllegalArgumentException("bad input") } as Supplier)
+
+        then:
+        thrown(IllegalArgumentException)
+        limiter.getLimit() == 100
+    }
+}
@@ -0,0 +1,64 @@
+package com.onelubo.strongnostr.service
+
+import com.onelubo.strongnostr.nostr.NostrEvent
+import com.onelubo.strongnostr.service.nostr.AuthAttempt
+import com.onelubo.strongnostr.service.nostr.AuthEventPipeline
+import com.onelubo.strongnostr.service.nostr.AuthEventStage
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry
+import spock.lang.Specification
+
+class AuthEventPipelineSpec extends Specification {
+
+    SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry()
+    List<String> ran = []
+
+    def "should stop at the first stage that rejects"() {
+        given:
+        def pipeline = new AuthEventPipeline(meterRegistry, [stage("cheap", null), stage("medium", "nope"), stage("costly", null)])
+
+        when:
+        def rejection = pipeline.run(new AuthAttempt(new NostrEvent()))
+
+        then:
+        rejection == new AuthEventPipeline.Rejection("medium", "nope")
+        ran == ["cheap", "medium"]
+        meterRegistry.counter("strongnostr.auth.stage.rejected", "stage", "medium").count() == 1
+        meterRegistry.counter("strongnostr.auth.stage.rejected", "stage", "cheap").count() == 0
+        meterRegistry.timer("strongnostr.auth.stage.duration", "stage", "cheap", "outcome", "passed").count() == 1
+        meterRegistry.timer("strongnostr.auth.stage.duration", "stage", "medium", "outcome", "rejected").count() == 1
+        meterRegistry.timer("strongnostr.auth.stage.duration", "stage", "costly", "outcome", "passed").count() == 0
+    }
+
+    def "should pass when every stage passes"() {
+        given:
+        def pipeline = new AuthEventPipeline(meterRegistry, [stage("a", null), stage("b", null)])
+
+        expect:
+        pipeline.run(new AuthAttempt(new NostrEvent())) == null
+        ran == ["a", "b"]
+    }
+
+    def "should run the stages that need only the event apart from the rest"() {
+        given:
+        def pipeline = new AuthEventPipeline(meterRegistry, [AuthEventStage.of("structure", true, { ran << "structure"; null }),
+                                                             stage("challenge", null),
+                                                             AuthEventStage.of("encoding", true, { ran << "encoding"; null })])
+        def attempt = new AuthAttempt(new NostrEvent())
+
+        when:
+        pipeline.runBeforeChallenge(attempt)
+
+        then:
+        ran == ["structure", "encoding"]
+
+        when:
+        pipeline.runWithChallenge(attempt)
+
+        then:
+        ran == ["structure", "encoding", "challenge"]
+    }
+
+    private AuthEventStage stage(String name, String failure) {
+        AuthEventStage.of(name, { AuthAttempt attempt -> ran << name; failure })
+    }
+}
@@ -0,0 +1,119 @@
+package com.onelubo.strongnostr.service
+
+import com.onelubo.strongnostr.model.workout.Exercise
+import com.onelubo.strongnostr.service.workout.ExerciseSearchIndex
+import org.bson.Document
+import org.springframework.data.mongodb.core.MongoTemplate
+import org.springframework.data.mongodb.core.aggregation.Aggregation
+import org.springframework.data.mongodb.core.aggregation.AggregationResults
+import org.springframework.data.mongodb.core.query.Query
+import spock.lang.Specification
+
+import java.util.stream.Stream
+
+class ExerciseSearchIndexSpec extends Specification {
+
+    static final String USER = "npub1user"
+    static final String OTHER_USER = "npub1other"
+
+    ExerciseSearchIndex exerciseSearchIndex
+
+    def setup() {
+        exerciseSearchIndex = new ExerciseSearchIndex(Mock(MongoTemplate))
+        exerciseSearchIndex.index(exercise("1", "Bench Press", "Flat barbell press", "Barbell", false, null))
+        exerciseSearchIndex.index(exercise("2", "Incline Bench Press", null, "Dumbbell", false, null))
+        exerciseSearchIndex.index(exercise("3", "Leg Press", "Machine press for legs", "Machine", false, null))
+        exerciseSearchIndex.index(exercise("4", "Benchmark Row", null, "Cable", true, USER))
+    }
+
+    def "should match exercises by token prefix"() {
+        when: "searching with a partial word"
+        def results = exerciseSearchIndex.search("ben", OTHER_USER, 10)
+
+        then: "all visible exercises with a token starting with the prefix are returned, name-prefix first"
+        results*.id() == ["1", "2"]
+    }
+
+    def "should require every query token to match"() {
+        when: "searching with two partial words"
+        def results = exerciseSearchIndex.search("inc ben", OTHER_USER, 10)
+
+        then: "only exercises matching both tokens are returned"
+        results*.id() == ["2"]
+    }
+
+    def "should rank name matches above description matches"() {
+        when: "searching for a word present in names and descriptions"
+        def results = exerciseSearchIndex.search("press", OTHER_USER, 10)
+
+        then: "all three press exercises are found"
+        results*.id().toSet() == ["1", "2", "3"] as Set
+
+        when: "searching for a word only in a description"
+        results = exerciseSearchIndex.search("legs", OTHER_USER, 10)
+
+        then: "the description match is found"
+        results*.id() == ["3"]
+    }
+
+    def "should only show custom exercises to their owner"() {
+        expect:
+        exerciseSearchIndex.search("benchm", USER, 10)*.id() == ["4"]
+        exerciseSearchIndex.search("benchm", OTHER_USER, 10).isEmpty()
+    }
+
+    def "should boost exercises that appear in many workouts"() {
+        given: "workouts that log the incline bench press far more often"
+        def mongoTemplate = Mock(MongoTemplate)
+        def index = new ExerciseSearchIndex(mongoTemplate)
+        mongoTemplate.stream(_ as Query, Exercise) >> Stream.of(
+                exercise("1", "Bench Press", null, "Barbell", false, null),
+                exercise("2", "Incline Bench Press", null, "Dumbbell", false, null))
+        mongoTemplate.aggregate(_ as Aggregation, "workouts", Document) >> new AggregationResults<Document>(
+                [new Document("_id", "1").append("count", 1), new Document("_id", "2").append("count", 20)],
+                new Document())
+        index.rebuild()
+
+        when: "searching for bench"
+        def results = index.search("bench", OTHER_USER, 10)
+
+        then: "the frequently used exercise ranks first"
+        results[0].id() == "2"
+    }
+
+    def "should drop removed exercises and reindex updated ones"() {
+        when: "an exercise is removed and another renamed"
+        exerciseSearchIndex.remove("1")
+        exerciseSearchIndex.index(exercise("3", "Hack Squat", null, "Machine", false, null))
+
+        then: "the index reflects the changes"
+        exerciseSearchIndex.search("bench", OTHER_USER, 10)*.id() == ["2"]
+        exerciseSearchIndex.search("leg", OTHER_USER, 10).isEmpty()
+        exerciseSearchIndex.search("hack", OTHER_USER, 10)*.id() == ["3"]
+    }
+
+    def "should keep writes made while a rebuild is reading Mongo"() {
+        given: "a catalog that gains an exercise while the rebuild streams it"
+        def mongoTemplate = Mock(MongoTemplate)
+        def index = new ExerciseSearchIndex(mongoTemplate)
+        mongoTemplate.stream(_ as Query, Exercise) >> {
+            index.index(exercise("5", "Romanian Deadlift", null, "Barbell", false, null))
+            Stream.of(exercise("1", "Bench Press", null, "Barbell", false, null))
+        }
+        mongoTemplate.aggregate(_ as Aggregation, "workouts", Document) >> new AggregationResults<Document>([], new Document())
+
+        when:
+        index.rebuild()
+
+        then: "both the streamed and the concurrently written exercise are searchable"
+        index.search("bench", OTHER_USER, 10)*.id() == ["1"]
+        index.search("romanian", OTHER_USER, 10)*.id() == ["5"]
+    }
+
+    private static Exercise exercise(String id, String name, String description, String equipment, boolean custom,
+                                     String owner) {
+        def exercise = new Exercise(name, description, equipment, custom, owner)
+        exercise.setId(id)
+        exercise
+    }
+}
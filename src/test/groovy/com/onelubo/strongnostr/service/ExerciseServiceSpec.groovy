@@ -2,7 +2,16 @@ package com.onelubo.strongnostr.service
 
 import com.onelubo.strongnostr.model.workout.Exercise
 import com.onelubo.strongnostr.repository.ExerciseRepository
+import com.onelubo.strongnostr.service.workout.ExerciseCacheInvalidation
+import com.onelubo.strongnostr.service.workout.ExerciseNearCache
+import com.onelubo.strongnostr.service.workout.ExerciseSearchIndex
 import com.onelubo.strongnostr.service.workout.ExerciseService
+import org.bson.Document
+import org.springframework.dao.DuplicateKeyException
+import org.springframework.data.mongodb.core.FindAndModifyOptions
+import org.springframework.data.mongodb.core.MongoTemplate
+import org.springframework.data.mongodb.core.query.Query
+import org.springframework.data.mongodb.core.query.Update
 import spock.lang.Specification
 import spock.lang.Unroll
 
@@ -10,10 +19,19 @@ class ExerciseServiceSpec extends Specification {
 
     ExerciseService exerciseService
     ExerciseRepository exerciseRepository
+    MongoTemplate mongoTemplate
+    ExerciseNearCache exerciseNearCache
+    ExerciseCacheInvalidation exerciseCacheInvalidation
+    ExerciseSearchIndex exerciseSearchIndex
 
     def setup() {
         exerciseRepository = Mock(ExerciseRepository)
-        exerciseService = new ExerciseService(exerciseRepository)
+        mongoTemplate = Mock(MongoTemplate)
+        exerciseNearCache = new ExerciseNearCache(100)
+        exerciseCacheInvalidation = Mock(ExerciseCacheInvalidation)
+        exerciseSearchIndex = Mock(ExerciseSearchIndex)
+        exerciseService = new ExerciseService(exerciseRepository, mongoTemplate, exerciseNearCache, exerciseCacheInvalidation,
+                                              exerciseSearchIndex)
     }
 
     @Unroll
@@ -72,6 +90,93 @@ class ExerciseServiceSpec extends Specification {
 
         then: "The exercise should be deleted successfully"
         1 * exerciseRepository.delete(existingExercise)
+
+        and: "The exercise should be evicted from every near-cache"
+        1 * exerciseCacheInvalidation.invalidate(exerciseId)
+    }
+
+    def "should resolve a new exercise with a single upsert and serve repeats from the near-cache"() {
+        given: "An exercise that is not cached yet"
+        def savedExercise = createExerciseWithId("Bench Press", "Flat bench", "Barbell", UUID.randomUUID().toString())
+
+        when: "Resolving the same exercise twice with different casing and spacing"
+        def first = exerciseService.findOrCreateExercise(new Exercise("Bench Press", "Flat bench", "Barbell"))
+        def second = exerciseService.findOrCreateExercise(new Exercise(" bench  press", "flat bench", "barbell "))
+
+        then: "Mongo is hit exactly once with an upsert on the identity key"
+        1 * mongoTemplate.findAndModify({ Query q -> q.getQueryObject() == new Document("identityKey", Exercise.identityKeyOf("bench press", "flat bench", "barbell")) },
+                                        _ as Update, { FindAndModifyOptions o -> o.isUpsert() && o.isReturnNew() }, Exercise) >> savedExercise
+        0 * exerciseRepository._
+
+        and: "Both calls return the same exercise"
+        first.is(savedExercise)
+        second.is(savedExercise)
+    }
+
+    def "should resolve casing and spacing variants to the same document on nodes with cold caches"() {
+        given: "a second node with its own near-cache"
+        def otherNode = new ExerciseService(exerciseRepository, mongoTemplate, new ExerciseNearCache(100), exerciseCacheInvalidation,
+                                            exerciseSearchIndex)
+        def queries = []
+
+        when:
+        exerciseService.findOrCreateExercise(new Exercise("Bench Press", "Flat bench", "Barbell"))
+        otherNode.findOrCreateExercise(new Exercise(" bench  press", "flat bench", "barbell "))
+
+        then: "both upserts match the same stored identity"
+        2 * mongoTemplate.findAndModify(_ as Query, _ as Update, _ as FindAndModifyOptions, Exercise) >> { Query q, Update u, FindAndModifyOptions o, Class c ->
+            queries << q.getQueryObject()
+            createExerciseWithId("Bench Press", "Flat bench", "Barbell", "bench")
+        }
+        queries.size() == 2
+        queries[0] == queries[1]
+    }
+
+    def "should retry the upsert once when a concurrent insert wins the race"() {
+        given: "An exercise that another writer is inserting concurrently"
+        def savedExercise = createExerciseWithId("Squat", null, "Barbell", UUID.randomUUID().toString())
+
+        when: "Resolving the exercise"
+        def result = exerciseService.findOrCreateExercise(new Exercise("Squat", null, "Barbell"))
+
+        then: "The duplicate key error is absorbed and the existing exercise returned"
+        2 * mongoTemplate.findAndModify(_ as Query, _ as Update, _ as FindAndModifyOptions, Exercise) >>
+                { throw new DuplicateKeyException("duplicate") } >> savedExercise
+        result.is(savedExercise)
+    }
+
+    def "should invalidate the near-cache when an exercise is updated"() {
+        given: "A cached exercise"
+        def exerciseId = UUID.randomUUID().toString()
+        def existingExercise = createExerciseWithId("Row", null, "Cable", exerciseId)
+        exerciseNearCache.put(existingExercise)
+        exerciseRepository.findById(exerciseId) >> Optional.of(existingExercise)
+
+        when: "Updating the exercise"
+        exerciseService.updateExercise(exerciseId, "Seated Row", null, "Cable")
+
+        then: "Every node is told to evict it"
+        1 * exerciseCacheInvalidation.invalidate(exerciseId)
+    }
+
+    def "should resolve a batch of exercises with one query and upsert only the new ones"() {
+        given: "one cached, one stored and one new exercise"
+        def cached = createExerciseWithId("Squat", null, "Barbell", "squat")
+        exerciseNearCache.put(cached)
+        def stored = createExerciseWithId("Bench Press", null, "Barbell", "bench")
+        def created = createExerciseWithId("Row", null, "Cable", "row")
+
+        when:
+        def result = exerciseService.findOrCreateExercises([new Exercise("Squat", null, "Barbell"),
+                                                            new Exercise("Bench Press", null, "Barbell"),
+                                                            new Exercise("Row", null, "Cable"),
+                                                            new Exercise("Bench Press", null, "Barbell")])
+
+        then: "the misses are looked up together by identity key and only the unknown one is upserted"
+        1 * mongoTemplate.find({ Query q -> q.getQueryObject().get("identityKey").get('$in').size() == 2 }, Exercise) >>
+                [stored, createExerciseWithId("Row", null, "Dumbbell", "db-row")]
+        1 * mongoTemplate.findAndModify(_ as Query, _ as Update, _ as FindAndModifyOptions, Exercise) >> created
+        result*.getId() == ["squat", "bench", "row", "bench"]
     }
 
     Exercise createExerciseWithId(String name, String description, String equipment, String id) {
@@ -0,0 +1,272 @@
+package com.onelubo.strongnostr.service
+
+import com.onelubo.strongnostr.exception.WorkoutNotFoundException
+import com.onelubo.strongnostr.model.workout.Exercise
+import com.onelubo.strongnostr.model.workout.Workout
+import com.onelubo.strongnostr.model.workout.WorkoutExercise
+import com.onelubo.strongnostr.model.workout.WorkoutSet
+import com.onelubo.strongnostr.repository.WorkoutRepository
+import com.onelubo.strongnostr.service.workout.ExerciseService
+import com.onelubo.strongnostr.service.workout.LiveWorkoutSessionService
+import com.onelubo.strongnostr.service.workout.PersonalRecordService
+import com.onelubo.strongnostr.service.workout.WorkoutSyncService
+import com.onelubo.strongnostr.service.workout.WorkoutWriteListener
+import com.onelubo.strongnostr.service.workout.WorkoutWriteRetry
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry
+import com.onelubo.strongnostr.util.NostrUtils
+import jdk.jfr.Recording
+import jdk.jfr.consumer.RecordingFile
+import org.springframework.dao.OptimisticLockingFailureException
+import spock.lang.Specification
+
+import java.nio.file.Files
+import java.util.concurrent.Callable
+import java.util.concurrent.Executors
+
+class LiveWorkoutSessionServiceSpec extends Specification {
+
+    ExerciseService exerciseService
+    WorkoutRepository workoutRepository
+    PersonalRecordService personalRecordService
+    WorkoutWriteListener workoutWriteListener
+    LiveWorkoutSessionService liveWorkoutSessionService
+
+    def setup() {
+        exerciseService = Mock(ExerciseService)
+        workoutRepository = Mock(WorkoutRepository)
+        personalRecordService = Mock(PersonalRecordService)
+        workoutWriteListener = Mock(WorkoutWriteListener)
+        exerciseService.findOrCreateExercise(_ as Exercise) >> { Exercise e -> e.setId(e.getName()); e }
+        personalRecordService.getPersonalRecords(_) >> []
+        personalRecordService.previewNewRecords(*_) >> ([] as Set)
+        liveWorkoutSessionService = new LiveWorkoutSessionService(exerciseService, workoutRepository, personalRecordService,
+                                                                  Mock(WorkoutSyncService), new WorkoutWriteRetry(new SimpleMeterRegistry(), 3, 0),
+                                                                  [workoutWriteListener], 3)
+    }
+
+    def "should keep sets in memory until the session ends"() {
+        given: "a started session"
+        def workout = liveWorkoutSessionService.start("s1", NostrUtils.VALID_NPUB, null)
+
+        when: "two sets are logged"
+        liveWorkoutSessionService.logSet("s1", new Exercise("Squat", null, "Barbell"), new WorkoutSet(100.0, 5))
+        def response = liveWorkoutSessionService.logSet("s1", new Exercise("Squat", null, "Barbell"), new WorkoutSet(105.0, 5))
+
+        then: "nothing is written yet but metrics are current"
+        0 * workoutRepository.save(_)
+        workout.getId() != null
+        response.getId() == workout.getId()
+        response.getTotalSets() == 2
+        response.getTotalVolume() == 1025.0
+
+        when: "the session ends"
+        liveWorkoutSessionService.end("s1")
+
+        then: "the workout is written once and listeners see it as a whole"
+        1 * workoutRepository.save(workout) >> workout
+        1 * workoutWriteListener.onWorkoutsImported([workout])
+        liveWorkoutSessionService.openSessions() == 0
+    }
+
+    def "should flush when enough sets are pending"() {
+        given:
+        liveWorkoutSessionService.start("s1", NostrUtils.VALID_NPUB, null)
+
+        when: "the pending set limit is reached"
+        3.times {
+            liveWorkoutSessionService.logSet("s1", new Exercise("Bench Press", null, "Barbell"), new WorkoutSet(80.0, 5))
+        }
+
+        then: "the batch is written"
+        1 * workoutRepository.save(_ as Workout) >> { Workout w -> w }
+        1 * workoutWriteListener.onWorkoutsImported(_)
+    }
+
+    def "should notify only the new sets of a resumed workout"() {
+        given: "an existing workout"
+        def existing = new Workout(NostrUtils.VALID_NPUB)
+        existing.setId("workout-1")
+        existing.addExercise(new WorkoutExercise("Squat", "Squat", "Barbell", [new WorkoutSet(100.0, 5)]))
+        workoutRepository.findById("workout-1") >> Optional.of(existing)
+        def newSet = new WorkoutSet(100.0, 6)
+
+        when: "the workout is resumed and a set logged"
+        liveWorkoutSessionService.start("s1", NostrUtils.VALID_NPUB, "workout-1")
+        liveWorkoutSessionService.logSet("s1", new Exercise("Squat", null, "Barbell"), newSet)
+        liveWorkoutSessionService.end("s1")
+
+        then:
+        1 * workoutRepository.save(existing) >> existing
+        1 * workoutWriteListener.onSetsAdded(existing, { it.getTotalSets() == 2 }, [newSet])
+        0 * workoutWriteListener.onWorkoutsImported(_)
+    }
+
+    def "should keep the session open when the final flush fails"() {
+        given: "a session with a pending set"
+        def workout = liveWorkoutSessionService.start("s1", NostrUtils.VALID_NPUB, null)
+        liveWorkoutSessionService.logSet("s1", new Exercise("Squat", null, "Barbell"), new WorkoutSet(100.0, 5))
+
+        when: "ending it while Mongo is unavailable"
+        liveWorkoutSessionService.end("s1")
+
+        then: "the failure surfaces and the set is still pending"
+        1 * workoutRepository.save(_) >> { throw new IllegalStateException("mongo down") }
+        thrown(IllegalStateException)
+        liveWorkoutSessionService.openSessions() == 1
+
+        when: "the periodic flush runs once Mongo is back"
+        liveWorkoutSessionService.flushAll()
+
+        then: "the set is saved and the session can end"
+        1 * workoutRepository.save(workout) >> workout
+        liveWorkoutSessionService.end("s1") == workout
+        liveWorkoutSessionService.openSessions() == 0
+    }
+
+    def "should not resave sets when a listener fails after the save"() {
+        given:
+        liveWorkoutSessionService.start("s1", NostrUtils.VALID_NPUB, null)
+        liveWorkoutSessionService.logSet("s1", new Exercise("Squat", null, "Barbell"), new WorkoutSet(100.0, 5))
+
+        when:
+        liveWorkoutSessionService.end("s1")
+        liveWorkoutSessionService.flushAll()
+
+        then: "the workout is written once and the session is gone"
+        1 * workoutRepository.save(_ as Workout) >> { Workout w -> w }
+        1 * workoutWriteListener.onWorkoutsImported(_) >> { throw new IllegalStateException("read model down") }
+        liveWorkoutSessionService.openSessions() == 0
+    }
+
+    def "should acknowledge a set when the batch flush fails"() {
+        given:
+        def workout = liveWorkoutSessionService.start("s1", NostrUtils.VALID_NPUB, null)
+        2.times {
+            liveWorkoutSessionService.logSet("s1", new Exercise("Squat", null, "Barbell"), new WorkoutSet(100.0, 5))
+        }
+
+        when: "the set that fills the batch cannot be saved"
+        def response = liveWorkoutSessionService.logSet("s1", new Exercise("Squat", null, "Barbell"), new WorkoutSet(100.0, 5))
+
+        then: "it is still acknowledged and kept pending"
+        1 * workoutRepository.save(_) >> { throw new IllegalStateException("mongo down") }
+        response.getTotalSets() == 3
+        liveWorkoutSessionService.openSessions() == 1
+
+        when: "the periodic flush runs once Mongo is back"
+        liveWorkoutSessionService.flushAll()
+
+        then: "all three sets are saved once"
+        1 * workoutRepository.save(workout) >> workout
+        1 * workoutWriteListener.onWorkoutsImported({ it[0].getTotalSets() == 3 })
+    }
+
+    def "should drop a session whose workout was deleted"() {
+        given: "a resumed workout that is deleted while the session is open"
+        def existing = new Workout(NostrUtils.VALID_NPUB)
+        existing.setId("workout-1")
+        workoutRepository.findById("workout-1") >>> [Optional.of(existing), Optional.empty()]
+        liveWorkoutSessionService.start("s1", NostrUtils.VALID_NPUB, "workout-1")
+        liveWorkoutSessionService.logSet("s1", new Exercise("Squat", null, "Barbell"), new WorkoutSet(100.0, 5))
+
+        when:
+        liveWorkoutSessionService.flushAll()
+
+        then: "the save conflicts and the reload finds nothing"
+        1 * workoutRepository.save(_) >> { throw new OptimisticLockingFailureException("deleted") }
+
+        and: "the session is dropped instead of being retried forever"
+        liveWorkoutSessionService.openSessions() == 0
+
+        when:
+        liveWorkoutSessionService.flushAll()
+
+        then:
+        0 * workoutRepository.save(_)
+    }
+
+    def "should give up on a session that keeps failing to flush"() {
+        given:
+        liveWorkoutSessionService.start("s1", NostrUtils.VALID_NPUB, null)
+        liveWorkoutSessionService.logSet("s1", new Exercise("Squat", null, "Barbell"), new WorkoutSet(100.0, 5))
+        workoutRepository.save(_) >> { throw new IllegalStateException("mongo down") }
+
+        when:
+        29.times { liveWorkoutSessionService.flushAll() }
+
+        then: "it is retried for a while"
+        liveWorkoutSessionService.openSessions() == 1
+
+        when:
+        liveWorkoutSessionService.flushAll()
+
+        then: "and then dropped"
+        liveWorkoutSessionService.openSessions() == 0
+    }
+
+    def "should retry the flush on shutdown"() {
+        given:
+        liveWorkoutSessionService.start("s1", NostrUtils.VALID_NPUB, null)
+        liveWorkoutSessionService.logSet("s1", new Exercise("Squat", null, "Barbell"), new WorkoutSet(100.0, 5))
+
+        when:
+        liveWorkoutSessionService.shutdown()
+
+        then: "a transient failure does not lose the set"
+        1 * workoutRepository.save(_) >> { throw new IllegalStateException("mongo down") }
+
+        then:
+        1 * workoutRepository.save(_ as Workout) >> { Workout w -> w }
+    }
+
+    def "should not resume another user's workout"() {
+        given:
+        def existing = new Workout("npub1someoneelse")
+        existing.setId("workout-1")
+        workoutRepository.findById("workout-1") >> Optional.of(existing)
+
+        when:
+        liveWorkoutSessionService.start("s1", NostrUtils.VALID_NPUB, "workout-1")
+
+        then:
+        thrown(WorkoutNotFoundException)
+    }
+
+    def "should not pin virtual threads while flushing sessions"() {
+        given: "a repository that blocks like a Mongo round trip, outside of any mock monitor"
+        def blockingRepository = [
+                save: { Workout w -> Thread.sleep(20); w }
+        ] as WorkoutRepository
+        def service = new LiveWorkoutSessionService(exerciseService, blockingRepository, personalRecordService,
+                                                    Mock(WorkoutSyncService), new WorkoutWriteRetry(new SimpleMeterRegistry(), 3, 0),
+                                                    [], 3)
+        def sessions = 50
+        (1..sessions).each { service.start("s" + it, NostrUtils.VALID_NPUB, null) }
+        def recording = new Recording()
+        recording.enable("jdk.VirtualThreadPinned").withoutThreshold().withStackTrace()
+        def dump = Files.createTempFile("pinning", ".jfr")
+
+        when: "every session logs a set and ends on its own virtual thread"
+        recording.start()
+        Executors.newVirtualThreadPerTaskExecutor().withCloseable { executor ->
+            (1..sessions).collect { i ->
+                executor.submit({
+                    service.logSet("s" + i, new Exercise("Squat", null, "Barbell"), new WorkoutSet(100.0, 5))
+                    service.end("s" + i)
+                } as Callable)
+            }*.get()
+        }
+        recording.stop()
+        recording.dump(dump)
+
+        then: "no virtual thread blocked while holding a monitor in our code"
+        RecordingFile.readAllEvents(dump).findAll { event ->
+            event.getStackTrace()?.getFrames()?.any { it.getMethod().getType().getName().startsWith("com.onelubo") }
+        }.isEmpty()
+        service.openSessions() == 0
+
+        cleanup:
+        recording.close()
+        Files.deleteIfExists(dump)
+    }
+}
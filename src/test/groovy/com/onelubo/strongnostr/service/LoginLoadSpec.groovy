@@ -0,0 +1,149 @@
+package com.onelubo.strongnostr.service
+
+import com.onelubo.strongnostr.dto.nostr.NostrAuthChallenge
+import com.onelubo.strongnostr.dto.nostr.NostrAuthRequest
+import com.onelubo.strongnostr.dto.nostr.NostrUserProfile
+import com.onelubo.strongnostr.model.user.User
+import com.onelubo.strongnostr.nostr.NostrKeyManager
+import com.onelubo.strongnostr.rest.nostr.NostrAuthController
+import com.onelubo.strongnostr.security.JwtTokenProvider
+import com.onelubo.strongnostr.service.nostr.AuthEventPipeline
+import com.onelubo.strongnostr.service.nostr.AuthRateLimiter
+import com.onelubo.strongnostr.service.nostr.NostrAuthenticationService
+import com.onelubo.strongnostr.service.nostr.NostrUserService
+import com.onelubo.strongnostr.service.nostr.ProofOfWorkPolicy
+import com.onelubo.strongnostr.service.nostr.SignatureVerificationPool
+import com.onelubo.strongnostr.util.NostrUtils
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry
+import io.micrometer.observation.ObservationRegistry
+import org.springframework.mock.web.MockHttpServletRequest
+import spock.lang.Requires
+import spock.lang.Specification
+
+import java.util.concurrent.Callable
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
+
+/**
+ * Concurrent login capacity with a platform thread pool the size of Tomcat's default against one virtual
+ * thread per request. Tomcat itself is not started: both modes are simulated with executors calling the
+ * controller, and Redis and Mongo round trips with sleeps, so the comparison isolates how each mode copes
+ * with blocking I/O. Latency is timed from when a thread picks a login up, not from when it was queued.
+ * Run with {@code ./gradlew test -PloadTest --tests '*LoginLoadSpec'}.
+ */
+@Requires({ System.getProperty("strongnostr.load-test") })
+class LoginLoadSpec extends Specification {
+
+    static final int LOGINS = 5000
+    static final int TOMCAT_MAX_THREADS = 200
+    static final long ROUND_TRIP_MILLIS = 5
+    // The npub of VALID_PRIVATE_KEY_HEX, so the signing key matches the npub and every signature verifies
+    static final String SIGNER_NPUB = new NostrKeyManager().hexToNpub(NostrUtils.PUBLIC_FROM_PRIVATE_KEY_HEX)
+
+    SignatureVerificationPool signatureVerificationPool
+    NostrAuthController nostrAuthController
+    List<NostrAuthRequest> requests
+
+    def setup() {
+        // Two Redis round trips per login: read the challenge and mark it used
+        def challengeStore = new ChallengeStoreInMemory() {
+            @Override
+            Optional<ChallengeStore.StoredChallenge> getChallenge(String challengeId) {
+                Thread.sleep(ROUND_TRIP_MILLIS)
+                super.getChallenge(challengeId)
+            }
+
+            @Override
+            boolean markChallengeAsUsed(String challengeId) {
+                Thread.sleep(ROUND_TRIP_MILLIS)
+                super.markChallengeAsUsed(challengeId)
+            }
+        }
+        // One Mongo round trip to load or upsert the user
+        def user = new User("fiatjaf1", SIGNER_NPUB, NostrUtils.PUBLIC_FROM_PRIVATE_KEY_HEX)
+        def nostrUserService = new NostrUserService(null, null, null, null) {
+            @Override
+            User getOrCreateUser(String npub, NostrUserProfile userProfile) {
+                Thread.sleep(ROUND_TRIP_MILLIS)
+                user
+            }
+        }
+        def jwtTokenProvider = new JwtTokenProvider() {
+            @Override
+            String createAccessToken(String npub) { "access" }
+
+            @Override
+            String createRefreshToken(String npub) { "refresh" }
+        }
+        signatureVerificationPool = new SignatureVerificationPool(new SimpleMeterRegistry(), 0, LOGINS)
+        def nostrAuthenticationService = new NostrAuthenticationService(nostrUserService, jwtTokenProvider,
+                                                                        new ProofOfWorkPolicy(signatureVerificationPool,
+                                                                                              new SimpleMeterRegistry(),
+                                                                                              false, 0, 0),
+                                                                        new AuthEventPipeline(new SimpleMeterRegistry(),
+                                                                                              NostrUtils.authEventStages(signatureVerificationPool)),
+                                                                        ObservationRegistry.NOOP)
+        def unlimited = { String key, RateLimiter.RateLimit limit -> 0L } as RateLimiter
+        nostrAuthController = new NostrAuthController(nostrAuthenticationService, challengeStore, signatureVerificationPool,
+                                                      new AuthRateLimiter(unlimited, new SimpleMeterRegistry(), 1, 1, 1, 1),
+                                                      new ConcurrencyLimiters(new SimpleMeterRegistry(), LOGINS, LOGINS, LOGINS,
+                                                                              LOGINS, LOGINS, LOGINS),
+                                                      ObservationRegistry.NOOP)
+
+        // Signing is the client's work, so it happens before the clock starts
+        requests = (1..LOGINS * 2).collect {
+            NostrAuthChallenge challenge = nostrAuthenticationService.generateAuthChallenge()
+            challengeStore.storeChallenge(challenge)
+            def request = new NostrAuthRequest(NostrUtils.createSignedNostrEvent(SIGNER_NPUB,
+                                                                                 NostrUtils.VALID_PRIVATE_KEY_HEX,
+                                                                                 challenge.getChallenge()))
+            request.@challengeId = challenge.getId()
+            request
+        }
+    }
+
+    def cleanup() {
+        signatureVerificationPool.shutdown()
+    }
+
+    def "should compare login throughput and p99 latency of platform and virtual threads"() {
+        when:
+        def platform = run("platform", Executors.newFixedThreadPool(TOMCAT_MAX_THREADS), requests.subList(0, LOGINS))
+        def virtual = run("virtual", Executors.newVirtualThreadPerTaskExecutor(), requests.subList(LOGINS, LOGINS * 2))
+
+        then: "every login succeeds in both modes"
+        platform.failures == 0
+        virtual.failures == 0
+
+        and: "virtual threads are not limited by the size of the pool"
+        virtual.loginsPerSecond >= platform.loginsPerSecond
+    }
+
+    private LoadResult run(String mode, ExecutorService executor, List<NostrAuthRequest> logins) {
+        long start = System.nanoTime()
+        List<Long> latencies = executor.withCloseable {
+            executor.invokeAll(logins.collect { request ->
+                { ->
+                    long loginStart = System.nanoTime()
+                    def response = nostrAuthController.loginWithNostrEvent(request, new MockHttpServletRequest())
+                    response.getStatusCode().is2xxSuccessful() ? System.nanoTime() - loginStart : -1L
+                } as Callable<Long>
+            })*.get()
+        }
+        double seconds = (System.nanoTime() - start) / 1e9d
+
+        List<Long> succeeded = latencies.findAll { it >= 0 }.sort()
+        def result = new LoadResult(mode, logins.size() / seconds,
+                                    succeeded ? succeeded[(int) Math.ceil(succeeded.size() * 0.99d) - 1] / 1e6d : 0d,
+                                    logins.size() - succeeded.size())
+        println result
+        result
+    }
+
+    record LoadResult(String mode, double loginsPerSecond, double p99Millis, int failures) {
+        @Override
+        String toString() {
+            String.format("%-8s %8.0f logins/s  p99 %8.1f ms  %d failed", mode, loginsPerSecond, p99Millis, failures)
+        }
+    }
+}
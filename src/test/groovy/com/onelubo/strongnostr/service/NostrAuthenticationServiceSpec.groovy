@@ -1,13 +1,23 @@
 package com.onelubo.strongnostr.service
 
+import com.onelubo.strongnostr.dto.nostr.NostrAuthChallenge
 import com.onelubo.strongnostr.dto.nostr.NostrAuthRequest
+import com.onelubo.strongnostr.exception.VerificationSaturatedException
 import com.onelubo.strongnostr.model.user.User
 import com.onelubo.strongnostr.nostr.NostrEvent
 import com.onelubo.strongnostr.nostr.NostrKeyManager
 import com.onelubo.strongnostr.security.JwtTokenProvider
+import com.onelubo.strongnostr.service.nostr.AuthAttempt
+import com.onelubo.strongnostr.service.nostr.AuthEventPipeline
 import com.onelubo.strongnostr.service.nostr.NostrAuthenticationService
 import com.onelubo.strongnostr.service.nostr.NostrUserService
+import com.onelubo.strongnostr.service.nostr.ProofOfWorkPolicy
+import com.onelubo.strongnostr.service.nostr.SignatureVerificationPool
 import com.onelubo.strongnostr.util.NostrUtils
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry
+import io.micrometer.core.instrument.observation.DefaultMeterObservationHandler
+import io.micrometer.observation.Observation
+import io.micrometer.observation.ObservationRegistry
 import spock.lang.Specification
 
 import java.time.Instant
@@ -16,6 +26,9 @@ class NostrAuthenticationServiceSpec extends Specification{
     NostrUserService nostrUserService
     NostrKeyManager nostrKeyManager
     JwtTokenProvider jwtTokenProvider
+    SignatureVerificationPool signatureVerificationPool
+    ProofOfWorkPolicy proofOfWorkPolicy
+    SimpleMeterRegistry meterRegistry
     NostrAuthenticationService nostrAuthenticationService
     
     private static final String VALID_HEX = "02a1b2c3d4e5f6789abc123def456"
@@ -26,7 +39,14 @@ class NostrAuthenticationServiceSpec extends Specification{
         nostrUserService = Mock(NostrUserService)
         nostrKeyManager = Mock(NostrKeyManager)
         jwtTokenProvider = Mock(JwtTokenProvider)
-        nostrAuthenticationService = new NostrAuthenticationService(nostrUserService, jwtTokenProvider)
+        meterRegistry = new SimpleMeterRegistry()
+        signatureVerificationPool = new SignatureVerificationPool(meterRegistry, 1, 16)
+        proofOfWorkPolicy = Mock(ProofOfWorkPolicy)
+        nostrAuthenticationService = newService(signatureVerificationPool)
+    }
+
+    def cleanup() {
+        signatureVerificationPool.shutdown()
     }
 
     def "should generate authentication challenge"() {
@@ -57,18 +77,17 @@ class NostrAuthenticationServiceSpec extends Specification{
         def existingUser = createTestUser()
         def validChallenge = NostrUtils.generateAuthChallenge()
         def validEvent = NostrUtils.createSignedNostrEvent(NostrUtils.VALID_NPUB, NostrUtils.VALID_PRIVATE_KEY_HEX, validChallenge.getChallenge())
-        nostrUserService.getOrCreateUser(NostrUtils.VALID_NPUB, existingUser.getNostrProfile()) >> existingUser
         jwtTokenProvider.createAccessToken(existingUser.getnPub()) >> JWT_TOKEN
 
         when: "Authenticating with the valid event"
         def request = new NostrAuthRequest(validEvent)
-        def result = nostrAuthenticationService.authenticateWithNostrEvent(request, validChallenge.getChallenge())
+        def result = nostrAuthenticationService.authenticateWithNostrEvent(request, stored(validChallenge))
 
         then: "Should return a valid JWT token and user profile"
         result.success()
         result.user() == existingUser
         result.accessToken() == JWT_TOKEN
-        1 * nostrUserService.saveUser(existingUser)
+        1 * nostrUserService.getOrCreateUser(NostrUtils.VALID_NPUB, existingUser.getNostrProfile()) >> existingUser
     }
 
     def "should create new user on first authentication"() {
@@ -76,21 +95,19 @@ class NostrAuthenticationServiceSpec extends Specification{
         def newUser = createTestUser()
         def validChallenge = NostrUtils.generateAuthChallenge()
         def validEvent = NostrUtils.createSignedNostrEvent(NostrUtils.VALID_NPUB, NostrUtils.VALID_PRIVATE_KEY_HEX, validChallenge.getChallenge())
-        nostrUserService.getOrCreateUser(NostrUtils.VALID_NPUB, newUser.getNostrProfile()) >> newUser
-        nostrUserService.saveUser(_ as User) >> newUser
         nostrKeyManager.npubToHex(NostrUtils.VALID_NPUB) >> VALID_HEX
         jwtTokenProvider.createAccessToken(newUser.getnPub()) >> JWT_TOKEN
 
         when: "Authenticating with the valid event"
         def request = new NostrAuthRequest(validEvent)
-        def result = nostrAuthenticationService.authenticateWithNostrEvent(request,validChallenge.getChallenge())
+        def result = nostrAuthenticationService.authenticateWithNostrEvent(request, stored(validChallenge))
 
         then: "Should create a new user and return a valid JWT token"
         result.success()
         result.user() != null
         result.user() == newUser
         result.accessToken() == JWT_TOKEN
-        1 * nostrUserService.saveUser(newUser)
+        1 * nostrUserService.getOrCreateUser(NostrUtils.VALID_NPUB, newUser.getNostrProfile()) >> newUser
     }
 
     def "should reject invalid Nostr event"() {
@@ -103,14 +120,14 @@ class NostrAuthenticationServiceSpec extends Specification{
 
         when: "Authenticating with the invalid event"
         def request = new NostrAuthRequest(invalidEvent)
-        def result = nostrAuthenticationService.authenticateWithNostrEvent(request, validChallenge.getChallenge())
+        def result = nostrAuthenticationService.authenticateWithNostrEvent(request, stored(validChallenge))
 
         then: "Should return an error indicating the event is invalid"
         !result.success()
         result.message() == "Invalid nostr event structure"
         result.user() == null
         result.accessToken() == null
-        0 * nostrUserService.saveUser(_)
+        0 * nostrUserService.getOrCreateUser(*_)
     }
 
     def "should reject an expired challenge"() {
@@ -121,7 +138,7 @@ class NostrAuthenticationServiceSpec extends Specification{
 
         when: "Authenticating with the expired challenge"
         def request = new NostrAuthRequest(expiredEvent)
-        def result = nostrAuthenticationService.authenticateWithNostrEvent(request, validChallenge.getChallenge())
+        def result = nostrAuthenticationService.authenticateWithNostrEvent(request, stored(validChallenge))
 
         then: "Should return an error indicating the challenge is expired"
         !result.success()
@@ -139,7 +156,7 @@ class NostrAuthenticationServiceSpec extends Specification{
 
         when: "Authenticating with the event"
         def request = new NostrAuthRequest(invalidContentEvent)
-        def result = nostrAuthenticationService.authenticateWithNostrEvent(request, validChallenge.getChallenge())
+        def result = nostrAuthenticationService.authenticateWithNostrEvent(request, stored(validChallenge))
 
         then: "Should return an error indicating the content is invalid"
         !result.success()
@@ -148,6 +165,193 @@ class NostrAuthenticationServiceSpec extends Specification{
         result.accessToken() == null
     }
 
+    def "should let a saturated verification pool surface instead of failing the login"() {
+        given: "a verification pool with no room left"
+        def saturatedPool = Mock(SignatureVerificationPool)
+        saturatedPool.verify(*_) >> { throw new VerificationSaturatedException() }
+        def service = newService(saturatedPool)
+        def challenge = NostrUtils.generateAuthChallenge()
+        def event = NostrUtils.createSignedNostrEvent(NostrUtils.VALID_NPUB, NostrUtils.VALID_PRIVATE_KEY_HEX, challenge.getChallenge())
+
+        when:
+        service.authenticateWithNostrEvent(new NostrAuthRequest(event), stored(challenge))
+
+        then: "the controller can answer 503 and the user is never touched"
+        thrown(VerificationSaturatedException)
+        0 * nostrUserService.getOrCreateUser(*_)
+    }
+
+    def "should reject an event without enough proof of work before verifying its signature"() {
+        given: "a busy verifier asking for 8 bits"
+        def pool = Mock(SignatureVerificationPool)
+        def service = newService(pool)
+        def challenge = NostrUtils.generateAuthChallenge()
+        def event = NostrUtils.createMinedNostrEvent(NostrUtils.VALID_NPUB, NostrUtils.VALID_PRIVATE_KEY_HEX,
+                                                     challenge.getChallenge(), 4)
+
+        when:
+        def result = service.authenticateWithNostrEvent(new NostrAuthRequest(event), stored(challenge, 8))
+
+        then:
+        !result.success()
+        result.message() == "Insufficient proof of work: 8 bits required"
+        0 * pool.verify(*_)
+        0 * nostrUserService.getOrCreateUser(*_)
+    }
+
+    def "should accept an event mined to the required difficulty"() {
+        given:
+        def pool = Mock(SignatureVerificationPool)
+        def service = newService(pool)
+        def challenge = NostrUtils.generateAuthChallenge()
+        def event = NostrUtils.createMinedNostrEvent(NostrUtils.VALID_NPUB, NostrUtils.VALID_PRIVATE_KEY_HEX,
+                                                     challenge.getChallenge(), 8)
+        def user = createTestUser()
+
+        when:
+        def result = service.authenticateWithNostrEvent(new NostrAuthRequest(event), stored(challenge, 8))
+
+        then:
+        result.success()
+        1 * pool.verify(*_) >> true
+        1 * nostrUserService.getOrCreateUser(NostrUtils.VALID_NPUB, _) >> user
+    }
+
+    def "should hold the login to the difficulty its challenge was issued with"() {
+        given: "a challenge issued while the verifier was idle"
+        def pool = Mock(SignatureVerificationPool)
+        def service = newService(pool)
+        def challenge = NostrUtils.generateAuthChallenge()
+        def event = NostrUtils.createSignedNostrEvent(NostrUtils.VALID_NPUB, NostrUtils.VALID_PRIVATE_KEY_HEX, challenge.getChallenge())
+
+        and: "a backlog that has since raised the difficulty"
+        proofOfWorkPolicy.requiredDifficulty() >> 20
+
+        when:
+        def result = service.authenticateWithNostrEvent(new NostrAuthRequest(event), stored(challenge, 0))
+
+        then: "the event needs no proof of work"
+        result.success()
+        1 * pool.verify(*_) >> true
+        1 * nostrUserService.getOrCreateUser(NostrUtils.VALID_NPUB, _) >> createTestUser()
+    }
+
+    def "should turn away a malformed signature before it reaches the verifier"() {
+        given:
+        def pool = Mock(SignatureVerificationPool)
+        def service = newService(pool)
+        def challenge = NostrUtils.generateAuthChallenge()
+        def event = NostrUtils.createSignedNostrEvent(NostrUtils.VALID_NPUB, NostrUtils.VALID_PRIVATE_KEY_HEX, challenge.getChallenge())
+        event.setSignature(NostrUtils.INVALID_SIGNATURE)
+
+        when:
+        def result = service.authenticateWithNostrEvent(new NostrAuthRequest(event), stored(challenge))
+
+        then:
+        result.message() == "Malformed signature"
+        0 * pool.verify(*_)
+        meterRegistry.counter("strongnostr.auth.stage.rejected", "stage", "encoding").count() == 1
+        meterRegistry.timer("strongnostr.auth.stage.duration", "stage", "event-id", "outcome", "passed").count() == 0
+    }
+
+    def "should require the exact challenge"() {
+        given: "an event whose content only contains the challenge"
+        def challenge = NostrUtils.generateAuthChallenge()
+        def event = NostrUtils.createSignedNostrEvent(NostrUtils.VALID_NPUB, NostrUtils.VALID_PRIVATE_KEY_HEX,
+                                                      challenge.getChallenge() + " extra")
+
+        when:
+        def result = nostrAuthenticationService.authenticateWithNostrEvent(new NostrAuthRequest(event), stored(challenge))
+
+        then:
+        result.message() == "Challenge mismatch"
+        meterRegistry.counter("strongnostr.auth.stage.rejected", "stage", "challenge").count() == 1
+    }
+
+    def "should check the event without its challenge before the challenge is known"() {
+        given: "a well-formed event signing some other challenge"
+        def pool = Mock(SignatureVerificationPool)
+        def service = newService(pool)
+        def event = NostrUtils.createSignedNostrEvent(NostrUtils.VALID_NPUB, NostrUtils.VALID_PRIVATE_KEY_HEX,
+                                                      NostrUtils.generateAuthChallenge().getChallenge())
+        def attempt = new AuthAttempt(event)
+
+        when:
+        def result = service.checkEvent(attempt)
+
+        then: "only the structure, encoding and replay stages ran"
+        result == null
+        attempt.getPubkeyHex() != null
+        0 * pool.verify(*_)
+        ["structure", "encoding", "replay"].every {
+            meterRegistry.timer("strongnostr.auth.stage.duration", "stage", it, "outcome", "passed").count() == 1
+        }
+        meterRegistry.timer("strongnostr.auth.stage.duration", "stage", "challenge", "outcome", "passed").count() == 0
+
+        when: "the login is finished against the challenge it was issued"
+        result = service.authenticate(attempt, null, stored(NostrUtils.generateAuthChallenge()))
+
+        then:
+        result.message() == "Challenge mismatch"
+        0 * nostrUserService.getOrCreateUser(*_)
+    }
+
+    def "should reject a signing key that is not the claimed npub"() {
+        given:
+        def pool = Mock(SignatureVerificationPool)
+        def service = newService(pool)
+        def challenge = NostrUtils.generateAuthChallenge()
+        def event = NostrUtils.createSignedNostrEvent(NostrUtils.VALID_NPUB, NostrUtils.VALID_PRIVATE_KEY_HEX, challenge.getChallenge())
+        event.setPubkey(NostrUtils.PUBLIC_FROM_PRIVATE_KEY_HEX)
+
+        when:
+        def result = service.authenticateWithNostrEvent(new NostrAuthRequest(event), stored(challenge))
+
+        then:
+        result.message() == "Public key does not match npub"
+        0 * pool.verify(*_)
+        0 * nostrUserService.getOrCreateUser(*_)
+    }
+
+    def "should tag the enclosing login observation with the rejecting stage and time the user lookup and tokens"() {
+        given: "observations recorded as timers"
+        def observationRegistry = ObservationRegistry.create()
+        observationRegistry.observationConfig().observationHandler(new DefaultMeterObservationHandler(meterRegistry))
+        def pool = Mock(SignatureVerificationPool)
+        pool.verify(*_) >> true
+        def service = new NostrAuthenticationService(nostrUserService, jwtTokenProvider, proofOfWorkPolicy,
+                                                     new AuthEventPipeline(meterRegistry, NostrUtils.authEventStages(pool)),
+                                                     observationRegistry)
+        nostrUserService.getOrCreateUser(*_) >> createTestUser()
+        def challenge = NostrUtils.generateAuthChallenge()
+        def valid = NostrUtils.createSignedNostrEvent(NostrUtils.VALID_NPUB, NostrUtils.VALID_PRIVATE_KEY_HEX, challenge.getChallenge())
+        def mismatched = NostrUtils.createSignedNostrEvent(NostrUtils.VALID_NPUB, NostrUtils.VALID_PRIVATE_KEY_HEX, challenge.getChallenge() + "x")
+
+        when:
+        [valid, mismatched].each { event ->
+            Observation.createNotStarted("strongnostr.login", observationRegistry)
+                       .lowCardinalityKeyValue("reason", "none")
+                       .observe({ service.authenticateWithNostrEvent(new NostrAuthRequest(event), stored(challenge)) } as Runnable)
+        }
+
+        then:
+        meterRegistry.timer("strongnostr.login", "reason", "none", "error", "none").count() == 1
+        meterRegistry.timer("strongnostr.login", "reason", "challenge", "error", "none").count() == 1
+        meterRegistry.timer("strongnostr.login.user", "error", "none").count() == 1
+        meterRegistry.timer("strongnostr.login.jwt", "error", "none").count() == 1
+    }
+
+    private NostrAuthenticationService newService(SignatureVerificationPool pool) {
+        new NostrAuthenticationService(nostrUserService, jwtTokenProvider, proofOfWorkPolicy,
+                                       new AuthEventPipeline(meterRegistry, NostrUtils.authEventStages(pool)),
+                                       ObservationRegistry.NOOP)
+    }
+
+    private static ChallengeStore.StoredChallenge stored(NostrAuthChallenge challenge, int powDifficulty = 0) {
+        new ChallengeStore.StoredChallenge(challenge.getChallenge(), (challenge.getTimestamp() + 300) * 1000L, true,
+                                           powDifficulty)
+    }
+
     User createTestUser() {
         return new User(VALID_USERNAME, NostrUtils.VALID_NPUB, VALID_HEX)
     }
@@ -0,0 +1,235 @@
+package com.onelubo.strongnostr.service
+
+import com.onelubo.strongnostr.dto.nostr.NostrUserProfile
+import com.onelubo.strongnostr.model.user.User
+import com.onelubo.strongnostr.model.user.UsernameCounter
+import com.onelubo.strongnostr.nostr.NostrKeyManager
+import com.onelubo.strongnostr.repository.UserRepository
+import com.onelubo.strongnostr.service.nostr.NostrUserService
+import com.onelubo.strongnostr.service.nostr.UsernameAllocator
+import com.onelubo.strongnostr.util.NostrUtils
+import org.bson.Document
+import org.springframework.dao.DuplicateKeyException
+import org.springframework.data.mongodb.core.FindAndModifyOptions
+import org.springframework.data.mongodb.core.MongoTemplate
+import org.springframework.data.mongodb.core.query.Query
+import org.springframework.data.mongodb.core.query.Update
+import spock.lang.Specification
+
+import java.util.concurrent.Callable
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.concurrent.atomic.AtomicLong
+
+class NostrUserServiceSpec extends Specification {
+
+    Map<String, AtomicLong> counters
+    AtomicInteger allocations
+    AtomicInteger writes
+    Set<String> usernames
+    Map<String, User> usersByNpub
+    Document lastSet
+    Closure beforeUpsert = {}
+    MongoTemplate mongoTemplate
+    NostrKeyManager nostrKeyManager
+    UserRepository userRepository
+    NostrUserService nostrUserService
+
+    def setup() {
+        counters = new ConcurrentHashMap<>()
+        allocations = new AtomicInteger()
+        writes = new AtomicInteger()
+        usernames = new HashSet<>()
+        usersByNpub = new HashMap<>()
+
+        mongoTemplate = Stub(MongoTemplate)
+        mongoTemplate.findAndModify(_ as Query, _ as Update, _ as FindAndModifyOptions, UsernameCounter) >> { Query query, Update update, options, type ->
+            // Behaves like an atomic $inc upsert on the counter document
+            allocations.incrementAndGet()
+            String baseName = query.getQueryObject().get("_id")
+            new UsernameCounter(baseName, counters.computeIfAbsent(baseName, { new AtomicLong() }).incrementAndGet())
+        }
+        mongoTemplate.findAndModify(_ as Query, _ as Update, _ as FindAndModifyOptions, User) >> { Query query, Update update, FindAndModifyOptions options, type ->
+            beforeUpsert(options.isUpsert())
+            def user = upsertUser(query.getQueryObject(), update.getUpdateObject(), options.isUpsert())
+            if (user != null) {
+                writes.incrementAndGet()
+            }
+            user
+        }
+        nostrKeyManager = Stub(NostrKeyManager)
+        nostrKeyManager.npubToHex(_ as String) >> { String npub -> "hex-" + npub }
+
+        userRepository = [
+                findByNpub: { String npub -> synchronized (usersByNpub) { Optional.ofNullable(usersByNpub.get(npub)) } }
+        ] as UserRepository
+
+        nostrUserService = newInstance()
+    }
+
+    private NostrUserService newInstance() {
+        new NostrUserService(userRepository, mongoTemplate, nostrKeyManager, new UsernameAllocator(mongoTemplate))
+    }
+
+    /**
+     * A findAndModify on the users collection, enforcing its unique npub and username indexes
+     * and the filter's {@code $or} of {@code $ne} profile fields
+     */
+    private User upsertUser(Document queryObject, Document updateObject, boolean upsert) {
+        synchronized (usersByNpub) {
+            Document set = updateObject.get('$set', Document) ?: new Document()
+            User user = usersByNpub.get(queryObject.getString("npub"))
+            if (user != null && queryObject.containsKey('$or') && !anyDiffers(user, queryObject.getList('$or', Document))) {
+                return null
+            }
+            lastSet = set
+            String npub = queryObject.getString("npub")
+            if (user == null) {
+                if (!upsert) {
+                    return null
+                }
+                Document onInsert = updateObject.get('$setOnInsert', Document)
+                if (!usernames.add(onInsert.getString("username"))) {
+                    throw new DuplicateKeyException("username")
+                }
+                user = new User(onInsert.getString("username"), npub, onInsert.getString("nPubHex"))
+                usersByNpub.put(npub, user)
+            }
+            set.each { String field, value ->
+                if (user.getNostrProfile() == null) {
+                    user.setNostrProfile(new NostrUserProfile())
+                }
+                user.getNostrProfile().setProperty(field - "nostrProfile.", value)
+            }
+            user
+        }
+    }
+
+    private static boolean anyDiffers(User user, List<Document> notEquals) {
+        notEquals.any { Document condition ->
+            String field = condition.keySet().first()
+            user.getNostrProfile()?.getProperty(field - "nostrProfile.") != condition.get(field, Document).get('$ne')
+        }
+    }
+
+    def "should allocate distinct usernames to thousands of concurrent same-named users"() {
+        given: "a username handed out before the allocator existed"
+        usernames.add("fiatjaf_1")
+        def profile = NostrUtils.createNostrUserProfile("fiatjaf@nostr.com", "FiatJaf", null)
+        def executor = Executors.newFixedThreadPool(32)
+        def userCount = 2000
+
+        when: "they all log in for the first time at once"
+        def futures = executor.invokeAll((1..userCount).collect { i ->
+            { -> nostrUserService.getOrCreateUser("npub-" + i, profile) } as Callable<User>
+        })
+        def users = futures*.get()
+        executor.shutdown()
+        executor.awaitTermination(10, TimeUnit.SECONDS)
+
+        then: "every user gets a unique username from the shared base name"
+        users*.@username.toSet().size() == userCount
+        users.every { it.@username ==~ /fiatjaf_\d+/ }
+
+        and: "each user costs one allocation, plus one for the single pre-existing name"
+        allocations.get() == userCount + 1
+    }
+
+    def "should return the user created by a concurrent first login of the same npub"() {
+        given: "another login inserts the user while ours is upserting"
+        def existing = new User("fiatjaf_7", NostrUtils.VALID_NPUB, "hex")
+        def profile = NostrUtils.createNostrUserProfile(null, "FiatJaf", null)
+        def raced = false
+        beforeUpsert = { boolean upsert ->
+            if (upsert && !raced) {
+                raced = true
+                synchronized (usersByNpub) { usersByNpub.put(NostrUtils.VALID_NPUB, existing) }
+                throw new DuplicateKeyException("npub")
+            }
+        }
+
+        when:
+        def user = nostrUserService.getOrCreateUser(NostrUtils.VALID_NPUB, profile)
+
+        then: "the retry matches the other login's user and applies the profile to it"
+        user.is(existing)
+        user.getNostrProfile().getName() == "FiatJaf"
+    }
+
+    def "should not write for a returning user with an unchanged profile"() {
+        given:
+        def profile = NostrUtils.createNostrUserProfile("fiatjaf@nostr.com", "FiatJaf", null)
+        def created = nostrUserService.getOrCreateUser(NostrUtils.VALID_NPUB, profile)
+
+        when:
+        def user = nostrUserService.getOrCreateUser(NostrUtils.VALID_NPUB,
+                                                    NostrUtils.createNostrUserProfile("fiatjaf@nostr.com", "FiatJaf", null))
+
+        then:
+        user.is(created)
+        writes.get() == 1
+        allocations.get() == 1
+    }
+
+    def "should write the profile when one of its fields changed"() {
+        given:
+        nostrUserService.getOrCreateUser(NostrUtils.VALID_NPUB,
+                                         NostrUtils.createNostrUserProfile("fiatjaf@nostr.com", "FiatJaf", null))
+
+        when:
+        def user = nostrUserService.getOrCreateUser(NostrUtils.VALID_NPUB,
+                                                    NostrUtils.createNostrUserProfile("fiatjaf@damus.io", "FiatJaf", null))
+
+        then: "one write without a new username"
+        writes.get() == 2
+        allocations.get() == 1
+        lastSet == new Document("nostrProfile.name", "FiatJaf").append("nostrProfile.nip05", "fiatjaf@damus.io")
+        user.getNostrProfile().getNip05() == "fiatjaf@damus.io"
+        user.getNostrProfile().getName() == "FiatJaf"
+    }
+
+    def "should write a profile that another instance changed since this one last saw it"() {
+        given: "a user who logged in here, then on another instance with a new NIP-05"
+        def profile = NostrUtils.createNostrUserProfile("fiatjaf@nostr.com", "FiatJaf", null)
+        nostrUserService.getOrCreateUser(NostrUtils.VALID_NPUB, profile)
+        newInstance().getOrCreateUser(NostrUtils.VALID_NPUB,
+                                      NostrUtils.createNostrUserProfile("fiatjaf@damus.io", "FiatJaf", null))
+
+        when: "they log in here again with the first profile"
+        def user = nostrUserService.getOrCreateUser(NostrUtils.VALID_NPUB,
+                                                    NostrUtils.createNostrUserProfile("fiatjaf@nostr.com", "FiatJaf", null))
+
+        then: "the stored profile is the one they just sent"
+        writes.get() == 3
+        user.getNostrProfile().getNip05() == "fiatjaf@nostr.com"
+    }
+
+    def "should derive clean base names from profile names"() {
+        when:
+        def user = nostrUserService.getOrCreateUser("npub-1", NostrUtils.createNostrUserProfile(null, name, null))
+
+        then:
+        user.@username == expected
+
+        where:
+        name                | expected
+        "  Fiat  Jaf!!  "   | "fiat_jaf_1"
+        "Agent 2"           | "agent_2_1"
+        "!!!"               | "nostr_user_1"
+    }
+
+    def "should not hand out a name of another base that ends in a digit"() {
+        given: "eleven users named Bob"
+        (1..11).each { i -> nostrUserService.getOrCreateUser("npub-bob-" + i, NostrUtils.createNostrUserProfile(null, "Bob", null)) }
+
+        when: "a user named Bob1 logs in for the first time"
+        def user = nostrUserService.getOrCreateUser("npub-bob1", NostrUtils.createNostrUserProfile(null, "Bob1", null))
+
+        then: "their name cannot be taken by a Bob, so it is allocated without a retry"
+        user.@username == "bob1_1"
+        usernames.contains("bob_11")
+        allocations.get() == 12
+    }
+}
@@ -0,0 +1,193 @@
+package com.onelubo.strongnostr.service
+
+import com.onelubo.strongnostr.model.history.OneRepMax
+import com.onelubo.strongnostr.model.history.PersonalRecord
+import com.onelubo.strongnostr.model.history.PersonalRecordType
+import com.onelubo.strongnostr.model.history.SetHistoryEntry
+import com.onelubo.strongnostr.model.workout.Workout
+import com.onelubo.strongnostr.model.workout.WorkoutExercise
+import com.onelubo.strongnostr.model.workout.WorkoutSet
+import com.onelubo.strongnostr.repository.PersonalRecordRepository
+import com.onelubo.strongnostr.service.workout.PersonalRecordService
+import com.onelubo.strongnostr.util.NostrUtils
+import org.springframework.data.mongodb.core.FindAndModifyOptions
+import org.springframework.data.mongodb.core.MongoTemplate
+import org.springframework.data.mongodb.core.query.Query
+import org.springframework.data.mongodb.core.query.Update
+import spock.lang.Specification
+
+import java.time.Instant
+import java.time.OffsetDateTime
+
+class PersonalRecordServiceSpec extends Specification {
+
+    MongoTemplate mongoTemplate
+    PersonalRecordRepository personalRecordRepository
+    PersonalRecordService personalRecordService
+
+    def setup() {
+        mongoTemplate = Mock(MongoTemplate)
+        personalRecordRepository = Mock(PersonalRecordRepository)
+        personalRecordService = new PersonalRecordService(personalRecordRepository, mongoTemplate)
+    }
+
+    def "should not flag records for the first sets of an exercise"() {
+        given: "a workout with the first ever bench press set"
+        def (workout, exercise, set) = workoutWithSet(100.0, 5)
+
+        when: "the set is logged"
+        personalRecordService.onSetsAdded(workout, exercise, [set])
+
+        then: "the records are upserted in a single round trip"
+        1 * mongoTemplate.findAndModify(_ as Query, _ as Update, _ as FindAndModifyOptions, PersonalRecord) >> null
+
+        and: "the baseline is not reported as a record"
+        workout.getNewPersonalRecords().isEmpty()
+    }
+
+    def "should flag records beaten by the new set"() {
+        given: "previous records of 100kg x 5 from another workout"
+        def (workout, exercise, set) = workoutWithSet(105.0, 5)
+        def previous = previousRecord(100.0, 5)
+
+        when: "a heavier set for the same reps is logged"
+        personalRecordService.onSetsAdded(workout, exercise, [set])
+
+        then: "the previous records are returned by the upsert"
+        1 * mongoTemplate.findAndModify(_ as Query, _ as Update, _ as FindAndModifyOptions, PersonalRecord) >> previous
+
+        and: "weight, estimated 1RM and session volume records are flagged"
+        workout.getNewPersonalRecords() == [PersonalRecordType.HEAVIEST_WEIGHT,
+                                            PersonalRecordType.BEST_ESTIMATED_1RM,
+                                            PersonalRecordType.BEST_SESSION_VOLUME] as Set
+        workout.toWorkoutResponse().isNewPersonalRecord()
+    }
+
+    def "should flag more reps at a known weight"() {
+        given: "previous records of 100kg x 5"
+        def (workout, exercise, set) = workoutWithSet(100.0, 6)
+        def previous = previousRecord(100.0, 5)
+
+        when: "the same weight is lifted for one more rep"
+        personalRecordService.onSetsAdded(workout, exercise, [set])
+
+        then:
+        1 * mongoTemplate.findAndModify(_ as Query, _ as Update, _ as FindAndModifyOptions, PersonalRecord) >> previous
+
+        and: "a reps-at-weight record is flagged, but not a heaviest weight record"
+        workout.getNewPersonalRecords().contains(PersonalRecordType.MOST_REPS_AT_WEIGHT)
+        workout.getNewPersonalRecords().contains(PersonalRecordType.MOST_REPS)
+        !workout.getNewPersonalRecords().contains(PersonalRecordType.HEAVIEST_WEIGHT)
+    }
+
+    def "should ignore warmup sets"() {
+        given: "a warmup set"
+        def (workout, exercise, set) = workoutWithSet(60.0, 10)
+        set.setWarmup(true)
+
+        when: "the warmup is logged"
+        personalRecordService.onSetsAdded(workout, exercise, [set])
+
+        then: "the record table is not touched"
+        0 * mongoTemplate.findAndModify(*_)
+        workout.getNewPersonalRecords().isEmpty()
+    }
+
+    def "should pick the same heaviest and highest rep sets as the workout"() {
+        given: "a warmup and two working sets tied on weight and on reps"
+        def warmup = new WorkoutSet(140.0, 12)
+        warmup.setWarmup(true)
+        def heavy = new WorkoutSet(100.0, 5)
+        def heavier = new WorkoutSet(100.0, 6)
+        def light = new WorkoutSet(60.0, 6)
+        def exercise = new WorkoutExercise("bench", "Bench Press", "Barbell", [warmup, heavy, heavier, light])
+        def candidates = new PersonalRecordService.Candidates()
+        exercise.getSets().each { candidates.accept(it) }
+        def achievedAt = Instant.now()
+
+        expect: "the warmup is ignored and ties are settled the same way on both sides"
+        exercise.getHeaviestWorkingSet().is(heavier)
+        exercise.getHighestRepWorkingSet().is(heavier)
+        candidates.heaviestSet(achievedAt, "workout-1") == new PersonalRecord.RecordSet(100.0, 100.0, 6, achievedAt, "workout-1")
+        candidates.highestRepSet(achievedAt, "workout-1") == new PersonalRecord.RecordSet(6, 100.0, 6, achievedAt, "workout-1")
+
+        and: "the plain workout getters keep counting every set"
+        exercise.getHeaviestSet().is(warmup)
+        exercise.getHighestRepSet().is(warmup)
+    }
+
+    def "should rebuild the records in place from the set history"() {
+        given: "two sessions left in the set history"
+        def older = historyEntry("workout-1", 100.0, 5, Instant.parse("2025-01-01T10:00:00Z"))
+        def newer = historyEntry("workout-3", 90.0, 8, Instant.parse("2025-01-08T10:00:00Z"))
+
+        when:
+        personalRecordService.rebuild(NostrUtils.VALID_NPUB, "bench")
+
+        then: "the history is read once"
+        1 * mongoTemplate.stream(_ as Query, SetHistoryEntry) >> [older, newer].stream()
+
+        and: "the existing document is overwritten in one update instead of being deleted first"
+        0 * personalRecordRepository.deleteByUserNPubAndExerciseId(*_)
+        1 * mongoTemplate.upsert(_ as Query, { Update update ->
+            def set = update.getUpdateObject().get('$set')
+            set.get("heaviestSet").get("weight") == 100.0 &&
+                    set.get("heaviestSet").get("workoutId") == "workout-1" &&
+                    set.get("highestRepSet").get("reps") == 8 &&
+                    set.get("highestRepSet").get("workoutId") == "workout-3" &&
+                    new HashMap(set.get("repsAtWeight")) == [(PersonalRecord.weightKey(100.0)): 5, (PersonalRecord.weightKey(90.0)): 8]
+        }, PersonalRecord)
+        0 * mongoTemplate.findAndModify(*_)
+    }
+
+    def "should delete the records when no working sets are left"() {
+        when:
+        personalRecordService.rebuild(NostrUtils.VALID_NPUB, "bench")
+
+        then:
+        1 * mongoTemplate.stream(_ as Query, SetHistoryEntry) >> [].stream()
+        1 * personalRecordRepository.deleteByUserNPubAndExerciseId(NostrUtils.VALID_NPUB, "bench")
+        0 * mongoTemplate.upsert(*_)
+    }
+
+    def "should estimate one-rep max"() {
+        expect:
+        OneRepMax.epley(100.0, 1) == 100.0
+        Math.abs(OneRepMax.epley(100.0, 10) - 133.33) < 0.01
+        OneRepMax.brzycki(100.0, 10) == 100.0 * 36 / 27
+        OneRepMax.brzycki(100.0, 40) == 0.0
+    }
+
+    private static List workoutWithSet(double weight, int reps) {
+        def set = new WorkoutSet(weight, reps)
+        def exercise = new WorkoutExercise("bench", "Bench Press", "Barbell", [set])
+        def workout = new Workout(NostrUtils.VALID_NPUB, OffsetDateTime.now())
+        workout.setId("workout-2")
+        workout.addExercise(exercise)
+        [workout, exercise, set]
+    }
+
+    private static SetHistoryEntry historyEntry(String workoutId, double weight, int reps, Instant performedAt) {
+        def entry = new SetHistoryEntry()
+        entry.@userNPub = NostrUtils.VALID_NPUB
+        entry.@exerciseId = "bench"
+        entry.@exerciseName = "Bench Press"
+        entry.@workoutId = workoutId
+        entry.@weight = weight
+        entry.@reps = reps
+        entry.@performedAt = performedAt
+        entry
+    }
+
+    private static PersonalRecord previousRecord(double weight, int reps) {
+        def achievedAt = Instant.now().minusSeconds(86400)
+        def record = new PersonalRecord()
+        record.@heaviestSet = new PersonalRecord.RecordSet(weight, weight, reps, achievedAt, "workout-1")
+        record.@highestRepSet = new PersonalRecord.RecordSet(reps, weight, reps, achievedAt, "workout-1")
+        record.@bestEpley = new PersonalRecord.RecordSet(OneRepMax.epley(weight, reps), weight, reps, achievedAt, "workout-1")
+        record.@bestBrzycki = new PersonalRecord.RecordSet(OneRepMax.brzycki(weight, reps), weight, reps, achievedAt, "workout-1")
+        record.@bestSessionVolume = new PersonalRecord.RecordSet(weight * reps, weight, reps, achievedAt, "workout-1")
+        record.@repsAtWeight = [(PersonalRecord.weightKey(weight)): reps]
+        record
+    }
+}
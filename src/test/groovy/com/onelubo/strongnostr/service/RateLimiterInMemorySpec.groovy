@@ -0,0 +1,76 @@
+package com.onelubo.strongnostr.service
+
+import spock.lang.Specification
+
+import java.util.concurrent.Callable
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+
+class RateLimiterInMemorySpec extends Specification {
+
+    RateLimiterInMemory rateLimiter = new RateLimiterInMemory()
+
+    def "should allow a burst and then ask the caller to wait"() {
+        given:
+        def limit = new RateLimiter.RateLimit(3, 60)
+
+        when:
+        def results = (1..4).collect { rateLimiter.tryAcquire("ip:1.2.3.4", limit) }
+
+        then: "the fourth call waits for the next token, about a second at 60 per minute"
+        results[0..2] == [0L, 0L, 0L]
+        results[3] > 0
+        results[3] <= 1000
+    }
+
+    def "should refill lazily over time"() {
+        given: "one token every 10ms"
+        def limit = new RateLimiter.RateLimit(1, 6000)
+        rateLimiter.tryAcquire("npub:a", limit)
+
+        when:
+        Thread.sleep(30)
+
+        then:
+        rateLimiter.tryAcquire("npub:a", limit) == 0
+    }
+
+    def "should keep keys independent"() {
+        given:
+        def limit = new RateLimiter.RateLimit(1, 1)
+        rateLimiter.tryAcquire("ip:1.2.3.4", limit)
+
+        expect:
+        rateLimiter.tryAcquire("ip:1.2.3.4", limit) > 0
+        rateLimiter.tryAcquire("ip:5.6.7.8", limit) == 0
+    }
+
+    def "should never hand out more than the burst under contention"() {
+        given: "a bucket that effectively does not refill during the test"
+        def limit = new RateLimiter.RateLimit(50, 1)
+        def executor = Executors.newFixedThreadPool(32)
+
+        when:
+        def permits = executor.invokeAll((1..32).collect {
+            { -> (1..100).count { rateLimiter.tryAcquire("ip:1.2.3.4", limit) == 0 } } as Callable<Integer>
+        })*.get().sum()
+        executor.shutdown()
+        executor.awaitTermination(10, TimeUnit.SECONDS)
+
+        then:
+        permits == 50
+    }
+
+    def "should drop buckets that have refilled completely"() {
+        given:
+        def limit = new RateLimiter.RateLimit(1, 6000)
+        rateLimiter.tryAcquire("ip:1.2.3.4", limit)
+
+        when:
+        Thread.sleep(30)
+        rateLimiter.cleanupExpired()
+
+        then:
+        rateLimiter.@buckets.isEmpty()
+    }
+}
@@ -0,0 +1,82 @@
+package com.onelubo.strongnostr.service
+
+import com.onelubo.strongnostr.service.analytics.SetAnalyticsService
+import com.onelubo.strongnostr.service.analytics.SetColumns
+import org.springframework.data.mongodb.core.MongoTemplate
+import spock.lang.Specification
+
+class SetAnalyticsServiceSpec extends Specification {
+
+    static final long DAY = 86_400_000L
+
+    def "should lay out sets as contiguous exercise ranges"() {
+        given: "more sets than the initial column capacity"
+        def builder = SetColumns.builder()
+        300.times { builder.add("squat", "Squat", it * DAY, 100.0, 5, Float.NaN) }
+        builder.add("bench", "Bench Press", 0L, 80.0, 5, 8.0f)
+
+        when: "the columns are built"
+        def columns = builder.build()
+
+        then: "each exercise is one row range"
+        columns.size() == 301
+        columns.exerciseCount() == 2
+        columns.exerciseStart(0) == 0
+        columns.exerciseEnd(0) == 300
+        columns.exerciseStart(1) == 300
+        columns.exerciseEnd(1) == 301
+        columns.exerciseName(1) == "Bench Press"
+        columns.rpe(300) == 8.0f
+    }
+
+    def "should reject exercises that are not contiguous"() {
+        when:
+        SetColumns.builder()
+                  .add("squat", "Squat", 0L, 100.0, 5, Float.NaN)
+                  .add("bench", "Bench Press", 0L, 80.0, 5, Float.NaN)
+                  .add("squat", "Squat", DAY, 100.0, 5, Float.NaN)
+
+        then:
+        thrown(IllegalStateException)
+    }
+
+    def "should compute trend, volume load and rpe regression"() {
+        given: "three sessions of single sets adding 3kg each week"
+        def columns = SetColumns.builder()
+                                .add("squat", "Squat", 0L, 100.0, 1, 7.0f)
+                                .add("squat", "Squat", 7 * DAY, 103.0, 1, 8.0f)
+                                .add("squat", "Squat", 7 * DAY, 90.0, 1, Float.NaN)
+                                .add("squat", "Squat", 14 * DAY, 106.0, 1, 9.0f)
+                                .build()
+        def service = new SetAnalyticsService(Mock(MongoTemplate), 1000, 1)
+
+        when: "analysing the columns"
+        def result = service.analyse(columns)[0]
+
+        then: "totals are summed"
+        result.sets() == 4
+        result.totalVolume() == 399.0d
+        result.bestEstimatedOneRepMax() == 106.0d
+
+        and: "sets of the same session are grouped into one volume point"
+        result.volumeLoad()*.volume() == [100.0d, 193.0d, 106.0d]
+
+        and: "rpe rises by one per 3kg"
+        Math.abs(result.rpeVsLoad().slope() - 1.0 / 3.0) < 1e-9
+        result.rpeVsLoad().points() == 3
+        Math.abs(result.rpeVsLoad().r2() - 1.0) < 1e-9
+
+        and: "the trend line is fitted over every set"
+        result.estimatedOneRepMaxTrend().points() == 4
+    }
+
+    def "should leave fits empty without enough distinct points"() {
+        given: "a single set"
+        def columns = SetColumns.builder().add("squat", "Squat", 0L, 100.0, 5, Float.NaN).build()
+        def service = new SetAnalyticsService(Mock(MongoTemplate), 1000, 20000)
+
+        expect:
+        service.analyse(columns)[0].estimatedOneRepMaxTrend() == null
+        service.analyse(columns)[0].rpeVsLoad() == null
+    }
+}
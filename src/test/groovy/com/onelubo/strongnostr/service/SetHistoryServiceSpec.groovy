@@ -0,0 +1,197 @@
+package com.onelubo.strongnostr.service
+
+import com.mongodb.client.MongoClient
+import com.mongodb.client.MongoClients
+import com.onelubo.strongnostr.model.history.SetHistoryEntry
+import com.onelubo.strongnostr.model.workout.Workout
+import com.onelubo.strongnostr.model.workout.WorkoutExercise
+import com.onelubo.strongnostr.model.workout.WorkoutSet
+import com.onelubo.strongnostr.repository.SetHistoryRepository
+import com.onelubo.strongnostr.service.workout.SetHistoryService
+import de.flapdoodle.embed.mongo.distribution.Version
+import de.flapdoodle.embed.mongo.transitions.Mongod
+import de.flapdoodle.embed.mongo.transitions.RunningMongodProcess
+import de.flapdoodle.reverse.TransitionWalker
+import org.springframework.data.mongodb.core.MongoTemplate
+import org.springframework.data.mongodb.core.query.Query
+import org.springframework.data.mongodb.repository.support.MongoRepositoryFactory
+import spock.lang.Shared
+import spock.lang.Specification
+
+import java.time.OffsetDateTime
+import java.time.ZoneOffset
+
+class SetHistoryServiceSpec extends Specification {
+
+    static final String USER = "npub1user"
+    static final String OTHER_USER = "npub1other"
+    static final String BENCH = "bench"
+    static final String SQUAT = "squat"
+
+    @Shared
+    TransitionWalker.ReachedState<RunningMongodProcess> running
+    @Shared
+    MongoClient mongoClient
+    MongoTemplate mongoTemplate
+    SetHistoryService setHistoryService
+
+    def setupSpec() {
+        running = Mongod.instance().start(Version.Main.V8_0)
+        mongoClient = MongoClients.create("mongodb://${running.current().getServerAddress()}")
+    }
+
+    def cleanupSpec() {
+        mongoClient?.close()
+        running?.close()
+    }
+
+    def setup() {
+        mongoTemplate = new MongoTemplate(mongoClient, "strongnostr-" + UUID.randomUUID())
+        def setHistoryRepository = new MongoRepositoryFactory(mongoTemplate).getRepository(SetHistoryRepository)
+        setHistoryService = new SetHistoryService(setHistoryRepository, mongoTemplate)
+    }
+
+    def cleanup() {
+        mongoTemplate.getDb().drop()
+    }
+
+    def "should number appended sets after the ones already logged"() {
+        given: "a bench press with two sets already in history"
+        def workout = workout("w1", USER, 1)
+        def exercise = exercise(BENCH, [new WorkoutSet(100.0, 5), new WorkoutSet(100.0, 5)])
+        workout.addExercise(exercise)
+        setHistoryService.onSetsAdded(workout, exercise, exercise.getSets())
+
+        when: "a third set is appended"
+        def third = new WorkoutSet(105.0, 3)
+        exercise.addWorkoutSet(third)
+        setHistoryService.onSetsAdded(workout, exercise, [third])
+
+        then:
+        def sets = setHistoryService.getLastSessions(USER, BENCH, 1)[0].sets()
+        sets*.getSetNumber() == [1, 2, 3]
+        sets*.getWeight() == [100.0, 100.0, 105.0]
+    }
+
+    def "should return the last sessions newest first with their sets in order"() {
+        given: "three bench sessions on consecutive days"
+        logWorkout("w1", USER, 1, BENCH, [new WorkoutSet(90.0, 5)])
+        logWorkout("w2", USER, 2, BENCH, [new WorkoutSet(95.0, 5), new WorkoutSet(95.0, 4)])
+        logWorkout("w3", USER, 3, BENCH, [new WorkoutSet(100.0, 3)])
+
+        and: "sessions of another exercise and another user"
+        logWorkout("w4", USER, 4, SQUAT, [new WorkoutSet(140.0, 5)])
+        logWorkout("w5", OTHER_USER, 5, BENCH, [new WorkoutSet(60.0, 10)])
+
+        when:
+        def sessions = setHistoryService.getLastSessions(USER, BENCH, 2)
+
+        then: "only the user's two most recent bench sessions are returned"
+        sessions*.workoutId() == ["w3", "w2"]
+        sessions[0].performedAt() == day(3).toInstant()
+
+        and: "sets within a session are oldest first"
+        sessions[1].sets()*.getSetNumber() == [1, 2]
+        sessions[1].sets()*.getReps() == [5, 4]
+    }
+
+    def "should return every session when fewer exist than requested"() {
+        given:
+        logWorkout("w1", USER, 1, BENCH, [new WorkoutSet(90.0, 5)])
+
+        expect:
+        setHistoryService.getLastSessions(USER, BENCH, 5)*.workoutId() == ["w1"]
+        setHistoryService.getLastSessions(USER, SQUAT, 5).isEmpty()
+    }
+
+    def "should return the sets performed in a date range oldest first"() {
+        given:
+        logWorkout("w1", USER, 1, BENCH, [new WorkoutSet(90.0, 5)])
+        logWorkout("w2", USER, 2, BENCH, [new WorkoutSet(95.0, 5), new WorkoutSet(95.0, 4)])
+        logWorkout("w3", USER, 3, BENCH, [new WorkoutSet(100.0, 3)])
+        logWorkout("w4", OTHER_USER, 2, BENCH, [new WorkoutSet(60.0, 10)])
+
+        when:
+        def sets = setHistoryService.getSetsBetween(USER, BENCH, day(2).toInstant(), day(3).toInstant())
+
+        then: "both bounds are inclusive and other users are excluded"
+        sets*.getWorkoutId() == ["w2", "w2", "w3"]
+        sets*.getSetNumber() == [1, 2, 1]
+    }
+
+    def "should drop only the removed exercise of a workout"() {
+        given: "a workout with bench and squat"
+        def workout = workout("w1", USER, 1)
+        def bench = exercise(BENCH, [new WorkoutSet(100.0, 5)])
+        def squat = exercise(SQUAT, [new WorkoutSet(140.0, 5)])
+        workout.addExercise(bench)
+        workout.addExercise(squat)
+        setHistoryService.onWorkoutsImported([workout])
+
+        when:
+        setHistoryService.onExerciseRemoved(workout, bench)
+
+        then:
+        setHistoryService.getLastSessions(USER, BENCH, 1).isEmpty()
+        setHistoryService.getLastSessions(USER, SQUAT, 1)*.workoutId() == ["w1"]
+    }
+
+    def "should drop every set of a deleted workout"() {
+        given:
+        def deleted = logWorkout("w1", USER, 1, BENCH, [new WorkoutSet(100.0, 5), new WorkoutSet(100.0, 5)])
+        logWorkout("w2", USER, 2, BENCH, [new WorkoutSet(102.5, 5)])
+
+        when:
+        setHistoryService.onWorkoutDeleted(deleted)
+
+        then:
+        mongoTemplate.findAll(SetHistoryEntry)*.getWorkoutId() == ["w2"]
+    }
+
+    def "should write imported workouts in one bulk insert"() {
+        given: "two imported workouts"
+        def first = workout("w1", USER, 1)
+        first.addExercise(exercise(BENCH, [new WorkoutSet(90.0, 5), new WorkoutSet(90.0, 5)]))
+        first.addExercise(exercise(SQUAT, [new WorkoutSet(120.0, 5)]))
+        def second = workout("w2", USER, 2)
+        second.addExercise(exercise(BENCH, [new WorkoutSet(92.5, 5)]))
+
+        when:
+        setHistoryService.onWorkoutsImported([first, second])
+
+        then:
+        mongoTemplate.count(new Query(), SetHistoryEntry) == 4
+        setHistoryService.getLastSessions(USER, BENCH, 5)*.workoutId() == ["w2", "w1"]
+        setHistoryService.getLastSessions(USER, SQUAT, 5)[0].sets()*.getWeight() == [120.0]
+    }
+
+    def "should ignore an import without sets"() {
+        when:
+        setHistoryService.onWorkoutsImported([workout("w1", USER, 1)])
+
+        then:
+        mongoTemplate.findAll(SetHistoryEntry).isEmpty()
+    }
+
+    private Workout logWorkout(String workoutId, String userNPub, int day, String exerciseId, List<WorkoutSet> sets) {
+        def workout = workout(workoutId, userNPub, day)
+        def exercise = exercise(exerciseId, sets)
+        workout.addExercise(exercise)
+        setHistoryService.onSetsAdded(workout, exercise, exercise.getSets())
+        workout
+    }
+
+    private static Workout workout(String workoutId, String userNPub, int day) {
+        def workout = new Workout(userNPub, day(day))
+        workout.setId(workoutId)
+        workout
+    }
+
+    private static WorkoutExercise exercise(String exerciseId, List<WorkoutSet> sets) {
+        new WorkoutExercise(exerciseId, exerciseId.capitalize(), "Barbell", sets)
+    }
+
+    private static OffsetDateTime day(int day) {
+        OffsetDateTime.of(2025, 1, day, 18, 0, 0, 0, ZoneOffset.UTC)
+    }
+}
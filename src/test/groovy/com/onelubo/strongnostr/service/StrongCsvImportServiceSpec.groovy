@@ -0,0 +1,111 @@
+package com.onelubo.strongnostr.service
+
+import com.onelubo.strongnostr.model.workout.Exercise
+import com.onelubo.strongnostr.model.workout.Workout
+import com.onelubo.strongnostr.service.workout.ExerciseService
+import com.onelubo.strongnostr.service.workout.StrongCsvImportService
+import com.onelubo.strongnostr.service.workout.WorkoutSyncService
+import com.onelubo.strongnostr.util.NostrUtils
+import org.springframework.data.mongodb.core.BulkOperations
+import org.springframework.data.mongodb.core.MongoTemplate
+import spock.lang.Specification
+
+import java.nio.charset.StandardCharsets
+import java.time.ZoneOffset
+
+class StrongCsvImportServiceSpec extends Specification {
+
+    static final String HEADER = "Date,Workout Name,Duration,Exercise Name,Set Order,Weight,Reps,Distance,Seconds,Notes,Workout Notes,RPE\n"
+
+    ExerciseService exerciseService
+    MongoTemplate mongoTemplate
+    BulkOperations bulkOperations
+    List<Workout> written
+
+    def setup() {
+        exerciseService = Mock(ExerciseService)
+        mongoTemplate = Mock(MongoTemplate)
+        bulkOperations = Mock(BulkOperations)
+        written = []
+        mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Workout) >> bulkOperations
+        bulkOperations.insert(_ as List) >> { List<Workout> workouts -> written.addAll(workouts); bulkOperations }
+        exerciseService.findOrCreateExercise(_ as Exercise) >> { Exercise e -> e.setId(e.getName()); e }
+    }
+
+    def "should group rows into workouts and exercises"() {
+        given: "an export with two workouts"
+        def csv = HEADER +
+                "2024-01-02 08:00:00,Push,1h 5m,Bench Press (Barbell),1,80,5,,,,\"Felt good, strong\",8\n" +
+                "2024-01-02 08:00:00,Push,1h 5m,Bench Press (Barbell),2,85,3,,,,\"Felt good, strong\",9\n" +
+                "2024-01-02 08:00:00,Push,1h 5m,Dips,1,0,12,,,,,\n" +
+                "2024-01-04 08:00:00,Legs,45m,Squat (Barbell),1,100,5,,,,,\n"
+        def service = new StrongCsvImportService(exerciseService, mongoTemplate, Mock(WorkoutSyncService), [], 500)
+
+        when: "importing the export"
+        def result = service.importStrongCsv(stream(csv), NostrUtils.VALID_NPUB, ZoneOffset.UTC)
+
+        then: "each distinct exercise is resolved only once"
+        result.rowsRead() == 4
+        result.rowsSkipped() == 0
+        result.workoutsImported() == 2
+        result.setsImported() == 4
+        result.exercisesResolved() == 3
+
+        and: "workouts are assembled with their sets"
+        written.size() == 2
+        written[0].getExercises().size() == 2
+        written[0].getExercises()[0].getExerciseName() == "Bench Press"
+        written[0].getExercises()[0].getTotalSets() == 2
+        written[0].getNotes() == "Felt good, strong"
+        written[0].getDurationSeconds() == 3900
+        written[1].getTotalVolume() == 500.0
+    }
+
+    def "should write workouts in configured batch sizes"() {
+        given: "an export with three workouts and a batch size of two"
+        def csv = HEADER +
+                "2024-01-01 08:00:00,A,30m,Squat (Barbell),1,100,5,,,,,\n" +
+                "2024-01-02 08:00:00,B,30m,Squat (Barbell),1,100,5,,,,,\n" +
+                "2024-01-03 08:00:00,C,30m,Squat (Barbell),1,100,5,,,,,\n"
+        def service = new StrongCsvImportService(exerciseService, mongoTemplate, Mock(WorkoutSyncService), [], 2)
+
+        when: "importing the export"
+        def result = service.importStrongCsv(stream(csv), NostrUtils.VALID_NPUB, ZoneOffset.UTC)
+
+        then: "two bulk writes are executed"
+        2 * bulkOperations.execute()
+        result.workoutsImported() == 3
+    }
+
+    def "should skip rest timer and unparseable rows"() {
+        given: "an export with a rest timer row and a row without reps"
+        def csv = HEADER +
+                "2024-01-01 08:00:00,A,30m,Squat (Barbell),Rest Timer,0,0,,,,,\n" +
+                "2024-01-01 08:00:00,A,30m,Squat (Barbell),1,100,,,,,,\n" +
+                "2024-01-01 08:00:00,A,30m,Squat (Barbell),W,60,5,,,,,\n"
+        def service = new StrongCsvImportService(exerciseService, mongoTemplate, Mock(WorkoutSyncService), [], 500)
+
+        when: "importing the export"
+        def result = service.importStrongCsv(stream(csv), NostrUtils.VALID_NPUB, ZoneOffset.UTC)
+
+        then: "only the warmup set is imported"
+        result.rowsRead() == 3
+        result.rowsSkipped() == 2
+        result.setsImported() == 1
+    }
+
+    def "should reject files without the Strong header"() {
+        given: "a csv that is not a Strong export"
+        def service = new StrongCsvImportService(exerciseService, mongoTemplate, Mock(WorkoutSyncService), [], 500)
+
+        when: "importing the file"
+        service.importStrongCsv(stream("foo,bar\n1,2\n"), NostrUtils.VALID_NPUB, ZoneOffset.UTC)
+
+        then: "the import is rejected"
+        thrown(IllegalArgumentException)
+    }
+
+    private static InputStream stream(String csv) {
+        new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8))
+    }
+}
@@ -0,0 +1,169 @@
+package com.onelubo.strongnostr.service
+
+import com.mongodb.client.AggregateIterable
+import com.mongodb.client.MongoCollection
+import com.onelubo.strongnostr.model.history.RollupPeriod
+import com.onelubo.strongnostr.model.history.TrainingRollup
+import com.onelubo.strongnostr.model.workout.Workout
+import com.onelubo.strongnostr.model.workout.WorkoutExercise
+import com.onelubo.strongnostr.model.workout.WorkoutSet
+import com.onelubo.strongnostr.service.workout.TrainingRollupService
+import com.onelubo.strongnostr.util.NostrUtils
+import org.bson.Document
+import org.springframework.data.mongodb.core.BulkOperations
+import org.springframework.data.mongodb.core.MongoTemplate
+import org.springframework.data.mongodb.core.query.Query
+import org.springframework.data.mongodb.core.query.Update
+import org.springframework.scheduling.TaskScheduler
+import spock.lang.Specification
+
+import java.time.LocalDate
+import java.time.OffsetDateTime
+import java.time.ZoneOffset
+
+class TrainingRollupServiceSpec extends Specification {
+
+    MongoTemplate mongoTemplate
+    BulkOperations bulkOperations
+    TrainingRollupService trainingRollupService
+    Map<String, Update> upserts
+
+    def setup() {
+        mongoTemplate = Mock(MongoTemplate)
+        bulkOperations = Mock(BulkOperations)
+        upserts = [:]
+        mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, TrainingRollup) >> bulkOperations
+        bulkOperations.upsert(_ as Query, _ as Update) >> { Query query, Update update ->
+            def criteria = query.getQueryObject()
+            upserts["${criteria.get('period')}/${criteria.get('exerciseId')}/${criteria.get('bucketStart')}".toString()] = update
+            bulkOperations
+        }
+        trainingRollupService = new TrainingRollupService(mongoTemplate, Mock(TaskScheduler), false)
+    }
+
+    def "should bucket dates by ISO week and month"() {
+        given: "a Sunday evening"
+        def date = OffsetDateTime.of(2024, 3, 10, 20, 0, 0, 0, ZoneOffset.ofHours(2))
+
+        expect:
+        RollupPeriod.WEEK.bucketStart(date) == "2024-03-04"
+        RollupPeriod.MONTH.bucketStart(date) == "2024-03-01"
+        RollupPeriod.WEEK.bucketStart(LocalDate.of(2024, 3, 4)) == "2024-03-04"
+    }
+
+    def "should increment weekly and monthly buckets in one bulk write"() {
+        given: "a new workout with its first set"
+        def set = new WorkoutSet(100.0, 5)
+        set.setRpe(8.0)
+        def (workout, exercise) = workoutWith([set])
+
+        when: "the set is logged"
+        trainingRollupService.onSetsAdded(workout, exercise, [set])
+
+        then: "per-exercise and all-exercise buckets of both periods are upserted together"
+        1 * bulkOperations.execute()
+        upserts.keySet() == ["WEEK/squat/2024-03-04", "WEEK/*/2024-03-04",
+                             "MONTH/squat/2024-03-01", "MONTH/*/2024-03-01"] as Set
+
+        and: "the totals are incremented"
+        def inc = upserts["WEEK/*/2024-03-04"].getUpdateObject().get('$inc')
+        inc.get("workouts") == 1L
+        inc.get("volume") == 500.0d
+        inc.get("sets") == 1L
+        inc.get("reps") == 5L
+        inc.get("rpeSum") == 8.0d
+        inc.get("rpeCount") == 1L
+    }
+
+    def "should not count the workout again for later sets"() {
+        given: "a workout that already has a set"
+        def first = new WorkoutSet(100.0, 5)
+        def second = new WorkoutSet(100.0, 4)
+        def (workout, exercise) = workoutWith([first, second])
+
+        when: "the second set is logged"
+        trainingRollupService.onSetsAdded(workout, exercise, [second])
+
+        then: "only the set totals change"
+        1 * bulkOperations.execute()
+        def inc = upserts["MONTH/*/2024-03-01"].getUpdateObject().get('$inc')
+        inc.get("workouts") == 0L
+        inc.get("sets") == 1L
+        upserts["MONTH/squat/2024-03-01"].getUpdateObject().get('$inc').get("workouts") == 0L
+    }
+
+    def "should decrement buckets when a workout is deleted"() {
+        given: "a workout with two sets"
+        def (workout, exercise) = workoutWith([new WorkoutSet(100.0, 5), new WorkoutSet(100.0, 5)])
+
+        when: "the workout is deleted"
+        trainingRollupService.onWorkoutDeleted(workout)
+
+        then: "its totals are subtracted"
+        1 * bulkOperations.execute()
+        def inc = upserts["WEEK/*/2024-03-04"].getUpdateObject().get('$inc')
+        inc.get("workouts") == -1L
+        inc.get("volume") == -1000.0d
+        inc.get("sets") == -2L
+        upserts["WEEK/squat/2024-03-04"].getUpdateObject().get('$inc').get("workouts") == -1L
+    }
+
+    def "should overwrite recomputed buckets in place and remove only stale ones"() {
+        given: "stored buckets for March and for a February week that no longer has workouts"
+        mongoTemplate.find(_ as Query, TrainingRollup) >> [storedRollup("current", RollupPeriod.WEEK, "*", "2024-03-04"),
+                                                         storedRollup("stale", RollupPeriod.WEEK, "*", "2024-02-26")]
+        mongoTemplate.getCollectionName(Workout) >> "workouts"
+        def collection = Mock(MongoCollection)
+        mongoTemplate.getCollection("workouts") >> collection
+        def weekly = Stub(AggregateIterable) { first() >> aggregated() }
+        def monthly = Stub(AggregateIterable) { first() >> null }
+        collection.aggregate(_ as List) >> { List pipeline -> pipeline.toString().contains("unit=week") ? weekly : monthly }
+        def removed = []
+        bulkOperations.remove(_ as Query) >> { Query query -> removed << query.getQueryObject(); bulkOperations }
+
+        when:
+        trainingRollupService.backfill(NostrUtils.VALID_NPUB)
+
+        then: "nothing is deleted or inserted outside the bulk write"
+        0 * mongoTemplate.remove(_, TrainingRollup)
+        0 * mongoTemplate.insert(_, _)
+        1 * bulkOperations.execute()
+
+        and: "recomputed buckets are set, not incremented"
+        def week = upserts["WEEK/*/2024-03-04"].getUpdateObject()
+        !week.containsKey('$inc')
+        week.get('$set').get("sets") == 2L
+        week.get('$set').get("volume") == 1000.0d
+        upserts["WEEK/squat/2024-03-04"].getUpdateObject().get('$set').get("exerciseName") == "Squat"
+
+        and: "only the bucket without workouts is removed"
+        removed.size() == 1
+        removed[0].get("_id").get('$in') == ["stale"]
+    }
+
+    private static Document aggregated() {
+        def totals = new Document("volume", 1000.0d).append("sets", 2).append("reps", 10)
+                .append("rpeSum", 0.0d).append("rpeCount", 0)
+        new Document("byExercise", [new Document(totals).append("_id", new Document("bucketStart", "2024-03-04")
+                .append("exerciseId", "squat")).append("exerciseName", "Squat").append("workouts", 1)])
+                .append("allExercises", [new Document(totals).append("_id", "2024-03-04").append("workoutIds", ["workout-1"])])
+    }
+
+    private static TrainingRollup storedRollup(String id, RollupPeriod period, String exerciseId, String bucketStart) {
+        def rollup = new TrainingRollup()
+        rollup.@id = id
+        rollup.@userNPub = NostrUtils.VALID_NPUB
+        rollup.@period = period
+        rollup.@exerciseId = exerciseId
+        rollup.@bucketStart = bucketStart
+        rollup
+    }
+
+    private static List workoutWith(List<WorkoutSet> sets) {
+        def exercise = new WorkoutExercise("squat", "Squat", "Barbell", sets)
+        def workout = new Workout(NostrUtils.VALID_NPUB, OffsetDateTime.of(2024, 3, 10, 9, 0, 0, 0, ZoneOffset.UTC))
+        workout.setId("workout-1")
+        workout.addExercise(exercise)
+        [workout, workout.getExercises()[0]]
+    }
+}
@@ -0,0 +1,68 @@
+package com.onelubo.strongnostr.service
+
+import com.fasterxml.jackson.databind.ObjectMapper
+import com.onelubo.strongnostr.model.workout.Workout
+import com.onelubo.strongnostr.model.workout.WorkoutExercise
+import com.onelubo.strongnostr.model.workout.WorkoutSet
+import com.onelubo.strongnostr.service.workout.WorkoutExportService
+import com.onelubo.strongnostr.util.NostrUtils
+import org.springframework.data.mongodb.core.MongoTemplate
+import org.springframework.data.mongodb.core.query.Query
+import spock.lang.Specification
+
+import java.nio.charset.StandardCharsets
+import java.time.OffsetDateTime
+import java.time.ZoneOffset
+import java.util.stream.Stream
+
+class WorkoutExportServiceSpec extends Specification {
+
+    MongoTemplate mongoTemplate
+    WorkoutExportService workoutExportService
+
+    def setup() {
+        mongoTemplate = Mock(MongoTemplate)
+        workoutExportService = new WorkoutExportService(mongoTemplate, new ObjectMapper(), 200, 1)
+    }
+
+    def "should stream one NDJSON line per workout"() {
+        given: "a user with two workouts"
+        mongoTemplate.stream(_ as Query, Workout) >> Stream.of(createWorkout("w1"), createWorkout("w2"))
+        def output = new ByteArrayOutputStream()
+
+        when: "exporting as NDJSON"
+        workoutExportService.exportNdjson(NostrUtils.VALID_NPUB, output)
+
+        then: "each workout is written as a JSON document on its own line"
+        def lines = output.toString(StandardCharsets.UTF_8).readLines()
+        lines.size() == 2
+        lines[0].contains('"id":"w1"')
+        lines[1].contains('"id":"w2"')
+    }
+
+    def "should stream one CSV row per set"() {
+        given: "a user with a workout with two sets"
+        mongoTemplate.stream(_ as Query, Workout) >> Stream.of(createWorkout("w1"))
+        def output = new ByteArrayOutputStream()
+
+        when: "exporting as CSV"
+        workoutExportService.exportCsv(NostrUtils.VALID_NPUB, output)
+
+        then: "a header and one row per set are written"
+        def lines = output.toString(StandardCharsets.UTF_8).readLines()
+        lines.size() == 3
+        lines[0].startsWith("workout_id,workout_date")
+        lines[1].startsWith("w1,")
+        lines[2].contains("Bench Press,Barbell,2,85.0,3")
+        lines[2].endsWith('"Heavy, but fine"')
+    }
+
+    private static Workout createWorkout(String id) {
+        def workout = new Workout(NostrUtils.VALID_NPUB, OffsetDateTime.of(2024, 1, 2, 8, 0, 0, 0, ZoneOffset.UTC))
+        workout.setId(id)
+        workout.setNotes("Heavy, but fine")
+        workout.addExercise(new WorkoutExercise("bench", "Bench Press", "Barbell",
+                [new WorkoutSet(80.0, 5), new WorkoutSet(85.0, 3)]))
+        workout
+    }
+}
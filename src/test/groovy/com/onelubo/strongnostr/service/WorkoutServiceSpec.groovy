@@ -1,5 +1,6 @@
 package com.onelubo.strongnostr.service
 
+import com.onelubo.strongnostr.dto.ExerciseSetDto
 import com.onelubo.strongnostr.model.workout.Exercise
 import com.onelubo.strongnostr.model.workout.Workout
 import com.onelubo.strongnostr.model.workout.WorkoutExercise
@@ -7,6 +8,12 @@ import com.onelubo.strongnostr.model.workout.WorkoutSet
 import com.onelubo.strongnostr.repository.WorkoutRepository
 import com.onelubo.strongnostr.service.workout.ExerciseService
 import com.onelubo.strongnostr.service.workout.WorkoutService
+import com.onelubo.strongnostr.service.workout.WorkoutSyncService
+import com.onelubo.strongnostr.service.workout.WorkoutWriteListener
+import com.onelubo.strongnostr.service.workout.WorkoutWriteRetry
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry
+import org.springframework.dao.DataAccessResourceFailureException
+import org.springframework.dao.OptimisticLockingFailureException
 import com.onelubo.strongnostr.util.NostrUtils
 import spock.lang.Specification
 
@@ -15,11 +22,20 @@ class WorkoutServiceSpec extends Specification {
     WorkoutService workoutService
     ExerciseService exerciseService
     WorkoutRepository workoutRepository
+    WorkoutSyncService workoutSyncService
+    WorkoutWriteListener workoutWriteListener
+    SimpleMeterRegistry meterRegistry
 
     def setup() {
         exerciseService = Mock(ExerciseService)
         workoutRepository = Mock(WorkoutRepository)
-        workoutService = new WorkoutService(exerciseService, workoutRepository)
+        workoutSyncService = Mock(WorkoutSyncService)
+        workoutWriteListener = Mock(WorkoutWriteListener)
+        meterRegistry = new SimpleMeterRegistry()
+        workoutService = new WorkoutService(exerciseService, workoutRepository, workoutSyncService,
+                                            new WorkoutWriteRetry(meterRegistry, 3, 0),
+                                            new ConcurrencyLimiters(meterRegistry, 20, 4, 500, 20, 2, 500),
+                                            [workoutWriteListener])
     }
 
     def "should create new workout with an existing exercise"() {
@@ -181,4 +197,157 @@ class WorkoutServiceSpec extends Specification {
         and: "The workout should be saved in the database"
         1 * workoutRepository.save(_ as Workout) >> updatedWorkout
     }
+
+    def "should notify write listeners with the added set and removed exercise"() {
+        given: "A saved workout with one exercise"
+        def exercise = new Exercise("Bench Press", null, "Barbell")
+        exercise.setId(UUID.randomUUID().toString())
+        def workout = new Workout(NostrUtils.VALID_NPUB)
+        workout.setId(UUID.randomUUID().toString())
+        workout.addExercise(new WorkoutExercise(exercise.getId(), exercise.getName(), exercise.getEquipment(), List.of(new WorkoutSet(80.0, 5))))
+        def newSet = new WorkoutSet(85.0, 3)
+        exerciseService.findOrCreateExercise(_ as Exercise) >> exercise
+        workoutRepository.save(_ as Workout) >> { Workout w -> w }
+
+        when: "Adding a set to the workout"
+        workoutService.addExerciseToWorkout(workout, new Exercise("Bench Press", null, "Barbell"), newSet)
+
+        then: "Listeners receive the saved workout and only the new set"
+        1 * workoutWriteListener.onSetsAdded(workout, { it.getExerciseId() == exercise.getId() && it.getTotalSets() == 2 }, [newSet])
+
+        when: "Removing the exercise from the workout"
+        workoutService.removeExerciseFromWorkout(workout, exercise)
+
+        then: "Listeners are told which exercise was removed"
+        1 * workoutWriteListener.onExerciseRemoved(workout, { it.getExerciseId() == exercise.getId() })
+    }
+
+    def "should delete a workout and notify write listeners"() {
+        given: "A saved workout"
+        def workout = new Workout(NostrUtils.VALID_NPUB)
+        workout.setId(UUID.randomUUID().toString())
+        workoutRepository.findById(workout.getId()) >> Optional.of(workout)
+
+        when: "Deleting the workout"
+        workoutService.deleteWorkout(workout.getId())
+
+        then: "The workout is removed together with its tombstone and listeners are told"
+        1 * workoutSyncService.deleteWithTombstone(workout, _ as Runnable) >> { Workout w, Runnable delete -> delete.run() }
+        1 * workoutRepository.delete(workout)
+        1 * workoutWriteListener.onWorkoutDeleted(workout)
+    }
+
+    def "should fail the delete when its tombstone cannot be written"() {
+        given: "A saved workout"
+        def workout = new Workout(NostrUtils.VALID_NPUB)
+        workout.setId(UUID.randomUUID().toString())
+        workoutRepository.findById(workout.getId()) >> Optional.of(workout)
+        workoutSyncService.deleteWithTombstone(workout, _ as Runnable) >> { throw new DataAccessResourceFailureException("mongo down") }
+
+        when: "Deleting the workout"
+        workoutService.deleteWorkout(workout.getId())
+
+        then: "The request fails and nothing is deleted"
+        thrown(DataAccessResourceFailureException)
+        0 * workoutRepository.delete(_)
+        0 * workoutWriteListener.onWorkoutDeleted(_)
+    }
+
+    def "should apply a batch of sets with a single save"() {
+        given: "A workout with one bench press set"
+        def bench = new Exercise("Bench Press", null, "Barbell")
+        bench.setId("bench")
+        def squat = new Exercise("Squat", null, "Barbell")
+        squat.setId("squat")
+        def workout = new Workout(NostrUtils.VALID_NPUB)
+        workout.setId(UUID.randomUUID().toString())
+        workout.addExercise(new WorkoutExercise("bench", "Bench Press", "Barbell", [new WorkoutSet(80.0, 5)]))
+        def benchSets = [new WorkoutSet(80.0, 5), new WorkoutSet(85.0, 3)]
+        def squatSet = new WorkoutSet(100.0, 5)
+        exerciseService.findOrCreateExercises(_ as List) >> [bench, squat, bench]
+
+        when: "Replaying three sets"
+        def result = workoutService.addSetsToWorkout(workout, [new ExerciseSetDto(new Exercise("Bench Press", null, "Barbell"), benchSets[0]),
+                                                               new ExerciseSetDto(new Exercise("Squat", null, "Barbell"), squatSet),
+                                                               new ExerciseSetDto(new Exercise("Bench Press", null, "Barbell"), benchSets[1])])
+
+        then: "The workout is written once with up to date metrics"
+        1 * workoutRepository.save(workout) >> workout
+        result.getTotalSets() == 4
+        result.getExercises().size() == 2
+        result.getExercises()[0].getTotalSets() == 3
+        result.getTotalVolume() == 400.0 + 400.0 + 255.0 + 500.0
+
+        and: "Listeners are notified once per exercise with only the new sets"
+        1 * workoutWriteListener.onSetsAdded(workout, { it.getExerciseId() == "bench" }, benchSets)
+        1 * workoutWriteListener.onSetsAdded(workout, { it.getExerciseId() == "squat" }, [squatSet])
+    }
+
+    def "should re-apply a change to the latest version after a conflicting write"() {
+        given: "A workout read before another client added a squat set"
+        def stale = new Workout(NostrUtils.VALID_NPUB)
+        stale.setId("workout-1")
+        stale.addExercise(new WorkoutExercise("bench", "Bench Press", "Barbell", [new WorkoutSet(80.0, 5)]))
+        def latest = new Workout(NostrUtils.VALID_NPUB)
+        latest.setId("workout-1")
+        latest.addExercise(new WorkoutExercise("bench", "Bench Press", "Barbell", [new WorkoutSet(80.0, 5)]))
+        latest.addExercise(new WorkoutExercise("squat", "Squat", "Barbell", [new WorkoutSet(100.0, 5)]))
+        def row = new Exercise("Row", null, "Cable")
+        row.setId("row")
+        exerciseService.findOrCreateExercise(_ as Exercise) >> row
+        workoutRepository.findById("workout-1") >> Optional.of(latest)
+
+        when: "Adding a row set"
+        def result = workoutService.addExerciseToWorkout(stale, new Exercise("Row", null, "Cable"), new WorkoutSet(50.0, 10))
+
+        then: "The stale save conflicts and the change is saved on top of the other write"
+        1 * workoutRepository.save(stale) >> { throw new OptimisticLockingFailureException("conflict") }
+        1 * workoutRepository.save(latest) >> latest
+        result.getExercises()*.getExerciseId() == ["bench", "squat", "row"]
+
+        and: "The conflict is counted"
+        meterRegistry.counter("strongnostr.workout.write.conflicts", "operation", "addExercise").count() == 1
+        meterRegistry.counter("strongnostr.workout.write.retries", "operation", "addExercise").count() == 1
+    }
+
+    def "should give up after the configured number of conflicting attempts"() {
+        given: "Every read returns a fresh copy of the workout"
+        def benchWorkout = {
+            def workout = new Workout(NostrUtils.VALID_NPUB)
+            workout.setId("workout-1")
+            workout.addExercise(new WorkoutExercise("bench", "Bench Press", "Barbell", [new WorkoutSet(80.0, 5)]))
+            workout
+        }
+        def workout = benchWorkout()
+        workoutRepository.findById("workout-1") >> { Optional.of(benchWorkout()) }
+        def bench = new Exercise("Bench Press", null, "Barbell")
+        bench.setId("bench")
+
+        when:
+        workoutService.removeExerciseFromWorkout(workout, bench)
+
+        then:
+        3 * workoutRepository.save(_) >> { throw new OptimisticLockingFailureException("conflict") }
+        thrown(OptimisticLockingFailureException)
+        0 * workoutWriteListener.onExerciseRemoved(*_)
+        meterRegistry.counter("strongnostr.workout.write.exhausted", "operation", "removeExercise").count() == 1
+    }
+
+    def "should derive ETags without loading workouts"() {
+        given:
+        def header = new Workout(NostrUtils.VALID_NPUB)
+        header.setId("workout-1")
+        header.setVersion(3L)
+        workoutRepository.findVersionById("workout-1") >> Optional.of(header)
+        workoutRepository.findVersionById("missing") >> Optional.empty()
+        workoutSyncService.changeCount(NostrUtils.VALID_NPUB) >>> [7L, 8L]
+
+        expect: "the single workout ETag follows its version"
+        WorkoutService.eTagOf(workoutService.getWorkoutHeader("workout-1").get()) == '"workout-1-3"'
+        workoutService.getWorkoutHeader("missing").isEmpty()
+
+        and: "the list ETag changes with every completed write"
+        workoutService.getWorkoutListETag(NostrUtils.VALID_NPUB, 0, 10) == '"7-0-10"'
+        workoutService.getWorkoutListETag(NostrUtils.VALID_NPUB, 0, 10) == '"8-0-10"'
+    }
 }
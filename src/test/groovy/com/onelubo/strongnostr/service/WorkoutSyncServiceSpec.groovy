@@ -0,0 +1,194 @@
+package com.onelubo.strongnostr.service
+
+import com.onelubo.strongnostr.model.workout.Workout
+import com.onelubo.strongnostr.model.workout.WorkoutExercise
+import com.onelubo.strongnostr.model.workout.WorkoutSet
+import com.onelubo.strongnostr.model.workout.WorkoutSyncCounter
+import com.onelubo.strongnostr.model.workout.WorkoutTombstone
+import com.onelubo.strongnostr.service.workout.WorkoutSyncService
+import com.onelubo.strongnostr.util.NostrUtils
+import org.springframework.data.mongodb.core.FindAndModifyOptions
+import org.springframework.data.mongodb.core.MongoTemplate
+import org.springframework.data.mongodb.core.aggregation.Aggregation
+import org.springframework.data.mongodb.core.aggregation.AggregationUpdate
+import org.springframework.data.mongodb.core.query.Query
+import org.springframework.data.mongodb.core.query.Update
+import spock.lang.Specification
+
+import java.time.Instant
+
+class WorkoutSyncServiceSpec extends Specification {
+
+    MongoTemplate mongoTemplate
+    WorkoutSyncService workoutSyncService
+
+    def setup() {
+        mongoTemplate = Mock(MongoTemplate)
+        workoutSyncService = new WorkoutSyncService(mongoTemplate)
+    }
+
+    def "should stamp a batch with one block of versions per user"() {
+        given:
+        def first = new Workout(NostrUtils.VALID_NPUB)
+        def second = new Workout(NostrUtils.VALID_NPUB)
+        def other = new Workout("npub1someoneelse")
+
+        when:
+        workoutSyncService.stamp([first, other, second])
+
+        then: "each user's counter is advanced once"
+        1 * mongoTemplate.findAndModify({ Query q -> q.getQueryObject().get("_id") == NostrUtils.VALID_NPUB },
+                                        { AggregationUpdate u -> versionIncrement(u) == 2L },
+                                        _ as FindAndModifyOptions, WorkoutSyncCounter) >> new WorkoutSyncCounter(NostrUtils.VALID_NPUB, 12)
+        1 * mongoTemplate.findAndModify({ Query q -> q.getQueryObject().get("_id") == "npub1someoneelse" }, _ as AggregationUpdate,
+                                        _ as FindAndModifyOptions, WorkoutSyncCounter) >> new WorkoutSyncCounter("npub1someoneelse", 1)
+        first.getSyncVersion() == 11
+        second.getSyncVersion() == 12
+        other.getSyncVersion() == 1
+    }
+
+    def "should release the reserved versions once the write is over"() {
+        given:
+        def workout = new Workout(NostrUtils.VALID_NPUB)
+        mongoTemplate.findAndModify(_ as Query, _ as AggregationUpdate, _ as FindAndModifyOptions, WorkoutSyncCounter) >>
+                new WorkoutSyncCounter(NostrUtils.VALID_NPUB, 3)
+
+        when:
+        def reservation = workoutSyncService.stamp(workout)
+
+        then: "the version stays pending while the workout is written"
+        workout.getSyncVersion() == 3
+        0 * mongoTemplate.updateFirst(*_)
+
+        when:
+        reservation.close()
+
+        then:
+        1 * mongoTemplate.updateFirst({ Query q -> q.getQueryObject().get("_id") == NostrUtils.VALID_NPUB },
+                                      { Update u -> u.getUpdateObject().get('$pull').get("pending").get("reservation") != null },
+                                      WorkoutSyncCounter)
+    }
+
+    def "should write the tombstone with the delete and release its version afterwards"() {
+        given:
+        def workout = new Workout(NostrUtils.VALID_NPUB)
+        workout.setId("w1")
+        mongoTemplate.findAndModify(_ as Query, _ as AggregationUpdate, _ as FindAndModifyOptions, WorkoutSyncCounter) >>
+                new WorkoutSyncCounter(NostrUtils.VALID_NPUB, 4)
+        def deleted = false
+
+        when:
+        workoutSyncService.deleteWithTombstone(workout, { deleted = true } as Runnable)
+
+        then: "the tombstone is written before the delete runs"
+        1 * mongoTemplate.insert({ WorkoutTombstone t -> t.getWorkoutId() == "w1" && t.getSyncVersion() == 4 && !deleted }) >> { args -> args[0] }
+
+        then: "its version stops being pending once the delete is over"
+        1 * mongoTemplate.updateFirst(_ as Query, { Update u -> u.getUpdateObject().containsKey('$pull') }, WorkoutSyncCounter)
+        deleted
+        0 * mongoTemplate.remove(_)
+    }
+
+    def "should remove the tombstone when the delete fails"() {
+        given:
+        def workout = new Workout(NostrUtils.VALID_NPUB)
+        workout.setId("w1")
+        mongoTemplate.findAndModify(_ as Query, _ as AggregationUpdate, _ as FindAndModifyOptions, WorkoutSyncCounter) >>
+                new WorkoutSyncCounter(NostrUtils.VALID_NPUB, 4)
+        def tombstone = null
+        mongoTemplate.insert(_ as WorkoutTombstone) >> { args -> tombstone = args[0]; tombstone }
+
+        when:
+        workoutSyncService.deleteWithTombstone(workout, { throw new IllegalStateException("conflict") } as Runnable)
+
+        then: "the failure surfaces, the tombstone is taken back and the version released"
+        thrown(IllegalStateException)
+        1 * mongoTemplate.remove({ it.is(tombstone) })
+        1 * mongoTemplate.updateFirst(_ as Query, _ as Update, WorkoutSyncCounter)
+    }
+
+    def "should not serve versions past a write still in flight"() {
+        given: "versions up to 8 handed out, with 7 still being written"
+        def counter = new WorkoutSyncCounter(NostrUtils.VALID_NPUB, 8)
+        counter.@pending = [new WorkoutSyncCounter.PendingReservation(7, "r7", Instant.now())]
+        mongoTemplate.findById(NostrUtils.VALID_NPUB, WorkoutSyncCounter) >> counter
+
+        when:
+        def response = workoutSyncService.sync(NostrUtils.VALID_NPUB, "5." + Instant.now().getEpochSecond(), 10)
+
+        then: "only the committed range is read"
+        1 * mongoTemplate.find({ Query q -> q.getQueryObject().get("syncVersion").get('$lte') == 6L }, Workout) >> [workout("w6", 6)]
+        1 * mongoTemplate.find({ Query q -> q.getQueryObject().get("syncVersion").get('$lte') == 6L }, WorkoutTombstone) >> []
+        response.changed()*.getId() == ["w6"]
+        response.nextToken().startsWith("6.")
+    }
+
+    def "should ignore reservations of writers that died"() {
+        given:
+        def counter = new WorkoutSyncCounter(NostrUtils.VALID_NPUB, 8)
+        def abandonedAt = Instant.now().minus(WorkoutSyncService.RESERVATION_LEASE).minusSeconds(1)
+        counter.@pending = [new WorkoutSyncCounter.PendingReservation(7, "r7", abandonedAt)]
+
+        expect:
+        counter.committedVersion(Instant.now().minus(WorkoutSyncService.RESERVATION_LEASE)) == 8
+    }
+
+    def "should not write when serving a full sync"() {
+        when:
+        workoutSyncService.sync(NostrUtils.VALID_NPUB, null, 100)
+
+        then:
+        0 * mongoTemplate.findAndModify(*_)
+        0 * mongoTemplate.bulkOps(*_)
+    }
+
+    def "should page through changes and deletions in version order"() {
+        given: "changes at versions 6 and 8 and a deletion at version 7, all committed"
+        mongoTemplate.findById(NostrUtils.VALID_NPUB, WorkoutSyncCounter) >> new WorkoutSyncCounter(NostrUtils.VALID_NPUB, 8)
+        mongoTemplate.find({ Query q -> q.getQueryObject().get("syncVersion").get('$gt') == 5L }, Workout) >> [workout("w6", 6), workout("w8", 8)]
+        mongoTemplate.find(_ as Query, WorkoutTombstone) >> [new WorkoutTombstone(NostrUtils.VALID_NPUB, "w1", 7, Instant.now())]
+
+        when: "syncing two changes at a time"
+        def response = workoutSyncService.sync(NostrUtils.VALID_NPUB, "5." + Instant.now().getEpochSecond(), 2)
+
+        then: "the two oldest changes are returned and the token points past them"
+        response.changed()*.getId() == ["w6"]
+        response.deleted() == ["w1"]
+        response.hasMore()
+        !response.resetRequired()
+        response.nextToken().startsWith("7.")
+    }
+
+    def "should ask for a reset when the token predates tombstone retention"() {
+        given:
+        def issuedAt = Instant.now().minus(WorkoutTombstone.RETENTION).minusSeconds(60)
+
+        when:
+        def response = workoutSyncService.sync(NostrUtils.VALID_NPUB, "42." + issuedAt.getEpochSecond(), 100)
+
+        then:
+        response.resetRequired()
+        response.nextToken() == null
+        0 * mongoTemplate.find(*_)
+    }
+
+    def "should reject a malformed token"() {
+        when:
+        workoutSyncService.sync(NostrUtils.VALID_NPUB, "not-a-token", 100)
+
+        then:
+        thrown(IllegalArgumentException)
+    }
+
+    private static long versionIncrement(AggregationUpdate update) {
+        update.toPipeline(Aggregation.DEFAULT_CONTEXT)[0].get('$set').get("version").get('$add')[1] as long
+    }
+
+    private static Workout workout(String id, long syncVersion) {
+        def workout = new Workout(NostrUtils.VALID_NPUB)
+        workout.setId(id)
+        workout.addExercise(new WorkoutExercise("squat", "Squat", "Barbell", [new WorkoutSet(100.0, 5)]))
+        workout.setSyncVersion(syncVersion)
+        workout
+    }
+}
@@ -4,6 +4,16 @@ import com.onelubo.strongnostr.dto.nostr.NostrAuthChallenge
 import com.onelubo.strongnostr.dto.nostr.NostrUserProfile
 import com.onelubo.strongnostr.nostr.NostrEvent
 import com.onelubo.strongnostr.nostr.NostrKeyManager
+import com.onelubo.strongnostr.nostr.NostrProofOfWork
+import com.onelubo.strongnostr.service.nostr.AuthEventStage
+import com.onelubo.strongnostr.service.nostr.ChallengeMatchStage
+import com.onelubo.strongnostr.service.nostr.EventEncodingStage
+import com.onelubo.strongnostr.service.nostr.EventFreshnessStage
+import com.onelubo.strongnostr.service.nostr.EventIdStage
+import com.onelubo.strongnostr.service.nostr.EventStructureStage
+import com.onelubo.strongnostr.service.nostr.ProofOfWorkStage
+import com.onelubo.strongnostr.service.nostr.SignatureStage
+import com.onelubo.strongnostr.service.nostr.SignatureVerificationPool
 import org.bouncycastle.jce.ECNamedCurveTable
 import org.bouncycastle.jce.spec.ECParameterSpec
 
@@ -60,6 +70,32 @@ class NostrUtils {
         return event
     }
 
+    /**
+     * Sign an auth event whose id carries at least {@code difficulty} leading zero bits (NIP-13)
+     */
+    static createMinedNostrEvent(String npub, String nSecHex, String challenge, int difficulty) {
+        def event = new NostrEvent(
+                id: null,
+                kind: 22242,
+                npub: npub,
+                pubkey: convertNpubToHex(npub),
+                content: challenge,
+                createdAt: System.currentTimeMillis() / 1000,
+                signature: null
+        )
+
+        String eventId
+        long nonce = 0
+        do {
+            event.setTags([["nonce", String.valueOf(nonce++), String.valueOf(difficulty)]])
+            eventId = computeEventId(event)
+        } while (NostrProofOfWork.leadingZeroBits(eventId) < difficulty)
+
+        event.setId(eventId)
+        event.setSignature(schnorrSigner.signEventId(nSecHex, eventId))
+        return event
+    }
+
     static byte[] hexStringToByteArray(String hex) {
         int len = hex.length()
         byte[] data = new byte[len / 2]
@@ -74,6 +110,14 @@ class NostrUtils {
         return hex != null && hex.matches(/^[0-9a-fA-F]+$/) && hex.length() % 2 == 0
     }
 
+    /**
+     * The login checks as Spring orders them
+     */
+    static List<AuthEventStage> authEventStages(SignatureVerificationPool signatureVerificationPool) {
+        [new EventStructureStage(), new EventEncodingStage(new NostrKeyManager()), new EventFreshnessStage(),
+         new ChallengeMatchStage(), new ProofOfWorkStage(), new EventIdStage(), new SignatureStage(signatureVerificationPool)]
+    }
+
     static NostrAuthChallenge generateAuthChallenge() {
         String id = UUID.randomUUID().toString();
         String challenge = CHALLENGE_PREFIX + id;